@@ -0,0 +1,246 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger;
+
+import com.sonymobile.tools.gerrit.gerritevents.dto.GerritEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Change;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Provider;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.RefUpdate;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefUpdated;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the processing of events in order per key while events with different keys are processed in parallel.
+ * Each key is hashed onto one of a fixed number of lanes, and the tasks of a lane are run one at a time in the order
+ * they were handed over. A lane with tasks waiting is drained by one task on the executor at a time,
+ * so no thread waits for a busy lane and other lanes are processed by the other threads of the executor.
+ */
+public final class EventLanes {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventLanes.class);
+
+    private final Lane[] lanes;
+    private final Executor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param laneCount the number of lanes, at least one lane is created.
+     * @param executor  runs the lanes.
+     */
+    public EventLanes(int laneCount, Executor executor) {
+        this.executor = executor;
+        lanes = new Lane[Math.max(1, laneCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+    }
+
+    /**
+     * The key that orders the processing of an event.
+     * Events of the same change, or for {@link RefUpdated} of the same project and ref, on the same server
+     * get equal keys.
+     *
+     * @param event the event.
+     * @return the key, or null if the event does not need to be ordered.
+     */
+    public static Object keyOf(GerritEvent event) {
+        String server = null;
+        if (event instanceof GerritTriggeredEvent) {
+            Provider provider = ((GerritTriggeredEvent)event).getProvider();
+            if (provider != null) {
+                server = provider.getName();
+            }
+        }
+        if (event instanceof ChangeBasedEvent) {
+            Change change = ((ChangeBasedEvent)event).getChange();
+            if (change != null) {
+                return server + '\n' + change.getProject() + '\n' + change.getNumber();
+            }
+        } else if (event instanceof RefUpdated) {
+            RefUpdate refUpdate = ((RefUpdated)event).getRefUpdate();
+            if (refUpdate != null) {
+                return server + '\n' + refUpdate.getProject() + '\n' + refUpdate.getRefName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs the task on the executor after the tasks handed over earlier with a key on the same lane.
+     *
+     * @param key  the key of the task, or null if it does not need to be ordered.
+     * @param task the task.
+     */
+    public void execute(Object key, Runnable task) {
+        if (key == null) {
+            executor.execute(task);
+            return;
+        }
+        Lane lane = lanes[indexOf(key)];
+        synchronized (lane) {
+            lane.queue.add(task);
+            if (lane.scheduled) {
+                lane.deferred.incrementAndGet();
+                lane.maxDepth = Math.max(lane.maxDepth, lane.queue.size());
+                return;
+            }
+            lane.scheduled = true;
+        }
+        try {
+            executor.execute(lane);
+        } catch (RuntimeException e) {
+            synchronized (lane) {
+                lane.scheduled = false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The lane of a key.
+     *
+     * @param key the key.
+     * @return the index of the lane.
+     */
+    int indexOf(Object key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    /**
+     * The number of lanes.
+     *
+     * @return the number of lanes.
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * The number of tasks waiting in each lane.
+     *
+     * @return the queue depth per lane.
+     */
+    public int[] getDepths() {
+        int[] depths = new int[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            synchronized (lanes[i]) {
+                depths[i] = lanes[i].queue.size();
+            }
+        }
+        return depths;
+    }
+
+    /**
+     * The number of tasks waiting in all lanes.
+     *
+     * @return the total queue depth.
+     */
+    public int getDepth() {
+        int depth = 0;
+        for (int d : getDepths()) {
+            depth += d;
+        }
+        return depth;
+    }
+
+    /**
+     * The largest number of tasks that have been waiting in one lane.
+     *
+     * @return the max queue depth.
+     */
+    public int getMaxDepth() {
+        int max = 0;
+        for (Lane lane : lanes) {
+            synchronized (lane) {
+                max = Math.max(max, lane.maxDepth);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * The number of tasks that were handed over while their lane had tasks waiting or running.
+     *
+     * @return the number of deferred tasks.
+     */
+    public long getDeferredCount() {
+        long count = 0;
+        for (Lane lane : lanes) {
+            count += lane.deferred.get();
+        }
+        return count;
+    }
+
+    /**
+     * A queue of tasks run one at a time, scheduled on the executor while it has tasks waiting.
+     */
+    private static final class Lane implements Runnable {
+        private final Queue<Runnable> queue = new ArrayDeque<Runnable>();
+        private final AtomicLong deferred = new AtomicLong();
+        private boolean scheduled;
+        private int maxDepth;
+
+        /**
+         * Runs the queued tasks in order until the lane is empty.
+         */
+        @Override
+        public void run() {
+            boolean done = false;
+            try {
+                while (true) {
+                    Runnable task;
+                    synchronized (this) {
+                        task = queue.poll();
+                        if (task == null) {
+                            scheduled = false;
+                            done = true;
+                            return;
+                        }
+                    }
+                    try {
+                        task.run();
+                    } catch (Exception ex) {
+                        logger.error("Error when processing an event. ", ex);
+                    }
+                }
+            } finally {
+                if (!done) {
+                    // An Error escaped the task, the next task handed over schedules the rest of the lane.
+                    synchronized (this) {
+                        scheduled = false;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritProjectList;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The union of the event types that the triggers of a {@link GerritServer} are configured for,
+ * used to drop the events that no trigger would look at, and how many events of each type have been dropped.
+ * The union is taken from {@link GerritProjectList} and recomputed when its revision changes.
+ */
+public final class GerritEventSubscriptions {
+
+    private volatile Snapshot snapshot;
+    private final ConcurrentMap<String, AtomicLong> dropped = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Checks if any trigger for the server, or for any server, is configured for the type of the event.
+     *
+     * @param serverName the name of the server, as in the provider of the event.
+     * @param event the event.
+     * @return true if so.
+     */
+    public boolean isSubscribed(String serverName, GerritTriggeredEvent event) {
+        for (Class type : getSubscribedEventTypes(serverName)) {
+            if (type.isInstance(event)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The event classes that the triggers for the server, or for any server, are configured for.
+     *
+     * @param serverName the name of the server.
+     * @return the event classes.
+     */
+    Set<Class> getSubscribedEventTypes(String serverName) {
+        int revision = GerritProjectList.getRevision();
+        Snapshot s = snapshot;
+        if (s == null || s.revision != revision || !s.serverName.equals(serverName)) {
+            s = new Snapshot(revision, serverName, GerritProjectList.getSubscribedEventTypes(serverName));
+            snapshot = s;
+        }
+        return s.types;
+    }
+
+    /**
+     * Counts a dropped event.
+     *
+     * @param event the event.
+     */
+    public void onDropped(GerritTriggeredEvent event) {
+        String type = event.getEventType().getTypeValue();
+        AtomicLong count = dropped.get(type);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = dropped.putIfAbsent(type, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * The number of dropped events per event type.
+     *
+     * @return the counts, sorted on the event type.
+     */
+    public SortedMap<String, Long> getDroppedCounts() {
+        SortedMap<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : dropped.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    /**
+     * The total number of dropped events.
+     *
+     * @return the count.
+     */
+    public long getDroppedCount() {
+        long count = 0;
+        for (AtomicLong c : dropped.values()) {
+            count += c.get();
+        }
+        return count;
+    }
+
+    /**
+     * The subscribed event types of a server at a revision of the trigger index.
+     */
+    private static final class Snapshot {
+        private final int revision;
+        private final String serverName;
+        private final Set<Class> types;
+
+        /**
+         * Standard constructor.
+         *
+         * @param revision the revision of the trigger index.
+         * @param serverName the name of the server.
+         * @param types the subscribed event types.
+         */
+        Snapshot(int revision, String serverName, Set<Class> types) {
+            this.revision = revision;
+            this.serverName = serverName;
+            this.types = Collections.unmodifiableSet(types);
+        }
+    }
+}
@@ -24,10 +24,20 @@
  */
 package com.sonyericsson.hudson.plugins.gerrit.trigger;
 
+import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
 import com.sonymobile.tools.gerrit.gerritevents.GerritSendCommandQueue;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.Config;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.PluginConfig;
+import com.google.common.cache.CacheStats;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.BuildStartedCoalescer;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationFactory;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLaneStatistics;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.SendCommandDispatcher;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.rest.RestReviewNotifier;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.ChangedFilesCache;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritDynamicUrlCache;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTriggerTimer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritAdministrativeMonitor;
 
 import hudson.DescriptorExtensionList;
@@ -64,6 +74,7 @@ import org.kohsuke.stapler.StaplerProxy;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.bind.JavaScriptMethod;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -345,6 +356,97 @@ public class GerritManagement extends ManagementLink implements StaplerProxy, De
         return null;
     }
 
+    /**
+     * The statistics of the changed files cache.
+     * convenience method for the jelly page.
+     *
+     * @return the statistics.
+     */
+    @SuppressWarnings("unused") //Called from Jelly
+    public CacheStats getChangedFilesCacheStats() {
+        return ChangedFilesCache.getInstance().getStats();
+    }
+
+    /**
+     * The coalescer of build started notifications, for its statistics.
+     * convenience method for the jelly page.
+     *
+     * @return the coalescer.
+     */
+    @SuppressWarnings("unused") //Called from Jelly
+    public BuildStartedCoalescer getBuildStartedCoalescer() {
+        return NotificationFactory.getInstance().getBuildStartedCoalescer();
+    }
+
+    /**
+     * The notifier posting reviews to the REST API, for its statistics and dead letters.
+     * convenience method for the jelly page.
+     *
+     * @return the notifier.
+     */
+    @SuppressWarnings("unused") //Called from Jelly
+    public RestReviewNotifier getRestReviewNotifier() {
+        return RestReviewNotifier.getInstance();
+    }
+
+    /**
+     * The depth, wait time and drops of the notification lanes.
+     * convenience method for the jelly page.
+     *
+     * @return the statistics.
+     */
+    @SuppressWarnings("unused") //Called from Jelly
+    public NotificationLaneStatistics getNotificationLaneStatistics() {
+        return NotificationLaneStatistics.getInstance();
+    }
+
+    /**
+     * The fetch timing and hit rates of the dynamic trigger configuration URLs.
+     * convenience method for the jelly page.
+     *
+     * @return the cache of dynamic trigger configurations.
+     */
+    public GerritDynamicUrlCache getDynamicUrlCache() {
+        return GerritDynamicUrlCache.getInstance();
+    }
+
+    /**
+     * The refresh counts and lag of the dynamic trigger configurations.
+     * convenience method for the jelly page.
+     *
+     * @return the timer refreshing the dynamic trigger configurations.
+     */
+    public GerritTriggerTimer getGerritTriggerTimer() {
+        return GerritTriggerTimer.getInstance();
+    }
+
+    /**
+     * The queue depths of the lanes keeping the events of a change in order.
+     * convenience method for the jelly page.
+     *
+     * @return the event lanes, or null if the plugin is not started.
+     */
+    @CheckForNull
+    public EventLanes getEventLanes() {
+        GerritHandler handler = PluginImpl.getHandler_();
+        if (handler instanceof JenkinsAwareGerritHandler) {
+            return ((JenkinsAwareGerritHandler)handler).getEventLanes();
+        }
+        return null;
+    }
+
+    /**
+     * Forgets the reviews that could not be posted to the REST API.
+     *
+     * @param rsp the StaplerResponse
+     * @throws IOException when error sending redirect back to the management page
+     */
+    @RequirePOST
+    public void doClearDeadLetters(StaplerResponse rsp) throws IOException {
+        RestReviewNotifier.getInstance().clearDeadLetters();
+        rsp.sendRedirect(".");
+    }
+
     /**
      * Convenience method for jelly. Get the list of Gerrit server names.
      *
@@ -397,6 +499,8 @@ public class GerritManagement extends ManagementLink implements StaplerProxy, De
             pluginConfig.setValues(form);
             PluginImpl.save_();
             GerritSendCommandQueue.configure(pluginConfig);
+            RestReviewNotifier.getInstance().configure(pluginConfig);
+            SendCommandDispatcher.getInstance().configure(pluginConfig);
         }
         //TODO reconfigure the incoming worker threads as well
 
@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The names of the projects of a Gerrit server, kept sorted and interned so that the projects starting with
+ * a prefix are found with a binary search. The list is replaced as a whole when it is read from the server,
+ * and new projects are inserted one by one as they are created.
+ */
+public class GerritProjectIndex {
+
+    private volatile String[] projects = new String[0];
+
+    /**
+     * Replaces all the projects.
+     *
+     * @param names the project names.
+     */
+    public synchronized void setProjects(Collection<String> names) {
+        List<String> sorted = new ArrayList<String>(names.size());
+        for (String name : names) {
+            if (name != null) {
+                sorted.add(name.intern());
+            }
+        }
+        Collections.sort(sorted);
+        List<String> unique = new ArrayList<String>(sorted.size());
+        String previous = null;
+        for (String name : sorted) {
+            if (!name.equals(previous)) {
+                unique.add(name);
+                previous = name;
+            }
+        }
+        projects = unique.toArray(new String[unique.size()]);
+    }
+
+    /**
+     * Inserts a project, if it is not already there.
+     *
+     * @param name the project name.
+     */
+    public synchronized void add(String name) {
+        if (name == null) {
+            return;
+        }
+        String[] current = projects;
+        int index = Arrays.binarySearch(current, name);
+        if (index >= 0) {
+            return;
+        }
+        int insertAt = -index - 1;
+        String[] updated = new String[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, insertAt);
+        updated[insertAt] = name.intern();
+        System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+        projects = updated;
+    }
+
+    /**
+     * Finds the first projects, in sorted order, that start with the prefix.
+     *
+     * @param prefix the prefix, null or empty matches all projects.
+     * @param limit  the maximum number of projects to return.
+     * @return the matching projects.
+     */
+    public List<String> findByPrefix(String prefix, int limit) {
+        String[] current = projects;
+        String start = prefix;
+        if (start == null) {
+            start = "";
+        }
+        int index = Arrays.binarySearch(current, start);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        List<String> found = new ArrayList<String>(Math.min(limit, current.length - index));
+        while (index < current.length && found.size() < limit && current[index].startsWith(start)) {
+            found.add(current[index]);
+            index++;
+        }
+        return found;
+    }
+
+    /**
+     * All the projects, in sorted order.
+     *
+     * @return an unmodifiable list of the project names.
+     */
+    public List<String> getProjects() {
+        return Collections.unmodifiableList(Arrays.asList(projects));
+    }
+
+    /**
+     * The number of projects.
+     *
+     * @return the count.
+     */
+    public int size() {
+        return projects.length;
+    }
+}
@@ -58,7 +58,7 @@ public class GerritProjectListUpdater extends Thread implements ConnectionListen
     private boolean connected = false;
     private boolean shutdown = false;
     private static final Logger logger = LoggerFactory.getLogger(GerritProjectListUpdater.class);
-    private List<String> gerritProjects;
+    private final GerritProjectIndex projectIndex = new GerritProjectIndex();
     private String serverName;
 
     /**
@@ -292,30 +292,35 @@ public class GerritProjectListUpdater extends Thread implements ConnectionListen
     }
 
     /**
-     * Adds a Gerrit project to this.gerritProjects.
+     * Adds a Gerrit project to the project index.
      * @param gerritProject the Gerrit project to add.
      */
-    public synchronized void addGerritProject(String gerritProject) {
-        gerritProjects.add(gerritProject);
+    public void addGerritProject(String gerritProject) {
+        projectIndex.add(gerritProject);
     }
 
     /**
      * Sets the internal Gerrit project list.
      * @param projects The list of projects
      */
-    public synchronized void setGerritProjects(List<String> projects) {
-        gerritProjects = projects;
+    public void setGerritProjects(List<String> projects) {
+        projectIndex.setProjects(projects);
     }
 
     /**
      * Returns a string list of Gerrit projects.
-     * @return list of gerrit projects
+     * @return unmodifiable sorted list of gerrit projects
      */
-    public synchronized List<String> getGerritProjects() {
-        if (gerritProjects == null) {
-            gerritProjects = new ArrayList<String>();
-        }
-        return gerritProjects;
+    public List<String> getGerritProjects() {
+        return projectIndex.getProjects();
+    }
+
+    /**
+     * Returns the sorted index of the Gerrit projects.
+     * @return the project index.
+     */
+    public GerritProjectIndex getProjectIndex() {
+        return projectIndex;
     }
 }
 
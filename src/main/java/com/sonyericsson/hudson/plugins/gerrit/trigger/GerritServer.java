@@ -66,6 +66,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import javax.annotation.CheckForNull;
 import javax.servlet.ServletException;
 
 import jenkins.model.Jenkins;
@@ -80,6 +81,7 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.pool.PoolStats;
 import org.jvnet.localizer.ResourceBundleHolder;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
@@ -96,6 +98,7 @@ import com.sonymobile.tools.gerrit.gerritevents.GerritEventListener;
 import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
 import com.sonymobile.tools.gerrit.gerritevents.GerritConnection;
 import com.sonymobile.tools.gerrit.gerritevents.dto.GerritEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.rest.Notify;
 import com.sonymobile.tools.gerrit.gerritevents.ssh.Authentication;
 import com.sonymobile.tools.gerrit.gerritevents.ssh.SshAuthenticationException;
@@ -111,6 +114,7 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritConnec
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.GerritSlave;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.playback.GerritMissedEventsPlaybackManager;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.HttpUtils;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.version.GerritVersionChecker;
 
 /**
@@ -152,6 +156,7 @@ public class GerritServer implements Describable<GerritServer>, Action {
     private IGerritHudsonTriggerConfig config;
     private transient GerritConnectionListener gerritConnectionListener;
     private transient GerritMissedEventsPlaybackManager missedEventsPlaybackManager;
+    private transient volatile GerritEventSubscriptions eventSubscriptions;
 
     @Override
     public DescriptorImpl getDescriptor() {
@@ -166,6 +171,60 @@ public class GerritServer implements Describable<GerritServer>, Action {
         return missedEventsPlaybackManager;
     }
 
+    /**
+     * The statistics of the pool of HTTP connections to this server.
+     * @return the statistics, or null if no REST call has been made.
+     */
+    @CheckForNull
+    public PoolStats getHttpPoolStats() {
+        return HttpUtils.getPoolStats(config);
+    }
+
+    /**
+     * The number of REST calls made through the pool of HTTP connections to this server.
+     * @return the number of calls.
+     */
+    public long getHttpRequestCount() {
+        return HttpUtils.getRequestCount(config);
+    }
+
+    /**
+     * The event types that the triggers on this server are configured for, and how many events have been dropped.
+     * @return the subscriptions.
+     */
+    public GerritEventSubscriptions getEventSubscriptions() {
+        GerritEventSubscriptions subscriptions = eventSubscriptions;
+        if (subscriptions == null) {
+            synchronized (this) {
+                subscriptions = eventSubscriptions;
+                if (subscriptions == null) {
+                    subscriptions = new GerritEventSubscriptions();
+                    eventSubscriptions = subscriptions;
+                }
+            }
+        }
+        return subscriptions;
+    }
+
+    /**
+     * Drops an event from this server if no trigger is configured for its type, so it never reaches the listeners.
+     * The missed events playback still gets to record that the event was received.
+     * @param event the event.
+     * @return true if the event was dropped.
+     */
+    public boolean dropIfUnsubscribed(GerritTriggeredEvent event) {
+        GerritEventSubscriptions subscriptions = getEventSubscriptions();
+        if (subscriptions.isSubscribed(name, event)) {
+            return false;
+        }
+        subscriptions.onDropped(event);
+        GerritMissedEventsPlaybackManager playbackManager = missedEventsPlaybackManager;
+        if (playbackManager != null && playbackManager.isSupported()) {
+            playbackManager.gerritEvent(event);
+        }
+        return true;
+    }
+
      /**
      * Convenience method for jelly to get url of the server list's page relative to root.
      * @link {@link GerritManagement#getUrlName()}.
@@ -454,6 +513,8 @@ public class GerritServer implements Describable<GerritServer>, Action {
             gerritConnection = null;
         }
 
+        HttpUtils.closeClient(config);
+
         logger.info(name + " stopped");
         started = false;
     }
@@ -592,6 +653,21 @@ public class GerritServer implements Describable<GerritServer>, Action {
         }
     }
 
+    /**
+     * Returns the first Gerrit projects, in sorted order, that start with the prefix.
+     *
+     * @param prefix the prefix.
+     * @param limit  the maximum number of projects to return.
+     * @return list of gerrit projects
+     */
+    public List<String> getGerritProjects(String prefix, int limit) {
+        if (projectListUpdater != null) {
+            return projectListUpdater.getProjectIndex().findByPrefix(prefix, limit);
+        } else {
+            return new ArrayList<String>();
+        }
+    }
+
     /**
      * Adds the given event to the stream of events.
      * It gets added to the same event queue as any event coming from the stream-events command in Gerrit.
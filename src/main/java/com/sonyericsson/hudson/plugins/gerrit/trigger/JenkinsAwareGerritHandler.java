@@ -27,9 +27,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
+import com.sonymobile.tools.gerrit.gerritevents.GerritJsonEventFactory;
 import com.sonymobile.tools.gerrit.gerritevents.dto.GerritEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ProjectCreated;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefReplicated;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Provider;
+import com.sonymobile.tools.gerrit.gerritevents.workers.Coordinator;
 import com.sonymobile.tools.gerrit.gerritevents.workers.EventThread;
+import com.sonymobile.tools.gerrit.gerritevents.workers.Work;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.dependency.DependencyQueueTaskDispatcher;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.events.ManualPatchsetCreated;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.events.lifecycle.GerritEventLifecycle;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+
+import java.util.concurrent.Executor;
 
 /**
  * Specialization of GerritHandler that supports gerrit event's
@@ -41,6 +54,8 @@ public class JenkinsAwareGerritHandler extends GerritHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(JenkinsAwareGerritHandler.class);
 
+    private final EventLanes eventLanes;
+
     /**
      * Standard Constructor.
      *
@@ -49,6 +64,26 @@ public class JenkinsAwareGerritHandler extends GerritHandler {
      */
     public JenkinsAwareGerritHandler(int numberOfWorkerThreads) {
         super(numberOfWorkerThreads);
+        eventLanes = new EventLanes(numberOfWorkerThreads, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                getWorkQueue().add(new Work() {
+                    @Override
+                    public void perform(Coordinator coordinator) {
+                        command.run();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * The lanes keeping the events of a change in order while the receiving worker threads process them.
+     *
+     * @return the event lanes.
+     */
+    public EventLanes getEventLanes() {
+        return eventLanes;
     }
 
     /**
@@ -62,6 +97,83 @@ public class JenkinsAwareGerritHandler extends GerritHandler {
         return new SystemEventThread(this, threadName);
     }
 
+    /**
+     * Parses a line from the stream of events and hands the event to the lane of its change, so that
+     * the events of a change are processed in the order they were posted.
+     * The parsing is done here rather than on the receiving worker threads since the lane can only be chosen
+     * once the event is known, and two workers could otherwise hand over the events of a change in reverse order.
+     * Events of a type that no trigger on the server is configured for are dropped here, before any work is queued.
+     *
+     * @param data     the line.
+     * @param provider the provider of the line, or null to use the one in the line, if any.
+     */
+    @Override
+    public void post(String data, Provider provider) {
+        GerritEvent event;
+        try {
+            JSONObject json = GerritJsonEventFactory.getJsonObjectIfInterestingAndUsable(data);
+            if (json == null) {
+                logger.trace("Ignoring line: {}", data);
+                return;
+            }
+            event = GerritJsonEventFactory.getEvent(json);
+        } catch (Exception ex) {
+            logger.warn("Unanticipated error when creating DTO representation of JSON string.", ex);
+            return;
+        }
+        if (event == null) {
+            logger.debug("Could not create an event from line: {}", data);
+            return;
+        }
+        if (provider != null && event instanceof GerritTriggeredEvent) {
+            ((GerritTriggeredEvent)event).setProvider(provider);
+        }
+        if (isUnsubscribed(event)) {
+            logger.trace("No trigger is configured for {}, dropping it.", event);
+            return;
+        }
+        post(event);
+    }
+
+    /**
+     * Checks if the event comes from a server where no trigger is configured for its type,
+     * in which case the server counts it as dropped.
+     * Replication and project created events are never dropped since the plugin's own listeners need them,
+     * and neither are manually triggered events.
+     *
+     * @param event the event.
+     * @return true if the event should be dropped.
+     * @see GerritServer#dropIfUnsubscribed(GerritTriggeredEvent)
+     */
+    private static boolean isUnsubscribed(GerritEvent event) {
+        if (!(event instanceof GerritTriggeredEvent) || event instanceof ManualPatchsetCreated
+                || event instanceof RefReplicated || event instanceof ProjectCreated) {
+            return false;
+        }
+        Provider provider = ((GerritTriggeredEvent)event).getProvider();
+        if (provider == null || provider.getName() == null || Jenkins.getInstance() == null) {
+            return false;
+        }
+        GerritServer server = PluginImpl.getServer_(provider.getName());
+        return server != null && server.dropIfUnsubscribed((GerritTriggeredEvent)event);
+    }
+
+    /**
+     * Hands the event to the lane of its change, the listeners are notified by the receiving worker threads
+     * after the events of the change posted before it.
+     *
+     * @param event the event.
+     */
+    @Override
+    public void post(final GerritEvent event) {
+        eventLanes.execute(EventLanes.keyOf(event), new Runnable() {
+            @Override
+            public void run() {
+                notifyListeners(event);
+            }
+        });
+    }
+
     @Override
     public void notifyListeners(GerritEvent event) {
         // Notify lifecycle listeners.
@@ -73,8 +185,19 @@ public class JenkinsAwareGerritHandler extends GerritHandler {
             }
         }
 
-        // The read deal
-        super.notifyListeners(event);
+        // Hold back the dependent builds until every trigger has scheduled its build for the event.
+        DependencyQueueTaskDispatcher dependencyDispatcher = getDependencyDispatcher(event);
+        if (dependencyDispatcher != null) {
+            dependencyDispatcher.onSchedulingEvent((GerritTriggeredEvent)event);
+        }
+        try {
+            // The read deal
+            super.notifyListeners(event);
+        } finally {
+            if (dependencyDispatcher != null) {
+                dependencyDispatcher.onDoneSchedulingEvent((GerritTriggeredEvent)event);
+            }
+        }
 
         // //Notify lifecycle listeners.
         if (event instanceof GerritEventLifecycle) {
@@ -85,4 +208,17 @@ public class JenkinsAwareGerritHandler extends GerritHandler {
             }
         }
     }
+
+    /**
+     * Finds the dispatcher that holds back dependent builds, if the event can trigger builds.
+     *
+     * @param event the event.
+     * @return the dispatcher, or null if the event does not trigger builds or Jenkins is not available.
+     */
+    private static DependencyQueueTaskDispatcher getDependencyDispatcher(GerritEvent event) {
+        if (!(event instanceof GerritTriggeredEvent) || Jenkins.getInstance() == null) {
+            return null;
+        }
+        return DependencyQueueTaskDispatcher.getInstance();
+    }
 }
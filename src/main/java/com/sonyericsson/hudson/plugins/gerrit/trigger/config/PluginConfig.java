@@ -28,7 +28,12 @@ import net.sf.json.JSONObject;
 import org.kohsuke.stapler.StaplerRequest;
 
 import com.sonymobile.tools.gerrit.gerritevents.workers.GerritWorkersConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.BuildStartedCoalescer;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLaneQueue;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.rest.RestReviewNotifier;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.playback.GerritMissedEventsPlaybackManager;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.replication.ReplicationCache;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.HttpUtils;
 
 /**
  * Configuration bean for the global plugin configuration.
@@ -49,6 +54,12 @@ public class PluginConfig implements GerritWorkersConfig {
     private int numberOfReceivingWorkerThreads;
     private int numberOfSendingWorkerThreads;
     private int replicationCacheExpirationInMinutes;
+    private int missedEventsPersistIntervalInSeconds;
+    private int httpMaxConnectionsPerServer;
+    private int httpTimeoutInSeconds;
+    private int buildStartedCoalesceWindowInSeconds;
+    private int restInFlightPerServer;
+    private int maxStartedBacklog;
 
     /**
      * Constructs a config with default data.
@@ -75,6 +86,12 @@ public class PluginConfig implements GerritWorkersConfig {
         numberOfReceivingWorkerThreads = pluginConfig.getNumberOfReceivingWorkerThreads();
         numberOfSendingWorkerThreads = pluginConfig.getNumberOfSendingWorkerThreads();
         replicationCacheExpirationInMinutes = pluginConfig.getReplicationCacheExpirationInMinutes();
+        missedEventsPersistIntervalInSeconds = pluginConfig.getMissedEventsPersistIntervalInSeconds();
+        httpMaxConnectionsPerServer = pluginConfig.getHttpMaxConnectionsPerServer();
+        httpTimeoutInSeconds = pluginConfig.getHttpTimeoutInSeconds();
+        buildStartedCoalesceWindowInSeconds = pluginConfig.getBuildStartedCoalesceWindowInSeconds();
+        restInFlightPerServer = pluginConfig.getRestInFlightPerServer();
+        maxStartedBacklog = pluginConfig.getMaxStartedBacklog();
     }
 
     /**
@@ -112,6 +129,41 @@ public class PluginConfig implements GerritWorkersConfig {
         if (replicationCacheExpirationInMinutes <= 0) {
             replicationCacheExpirationInMinutes = ReplicationCache.DEFAULT_EXPIRATION_IN_MINUTES;
         }
+
+        missedEventsPersistIntervalInSeconds = formData.optInt("missedEventsPersistIntervalInSeconds",
+            GerritMissedEventsPlaybackManager.DEFAULT_PERSIST_INTERVAL_IN_SECONDS);
+        if (missedEventsPersistIntervalInSeconds <= 0) {
+            missedEventsPersistIntervalInSeconds =
+                    GerritMissedEventsPlaybackManager.DEFAULT_PERSIST_INTERVAL_IN_SECONDS;
+        }
+
+        httpMaxConnectionsPerServer = formData.optInt("httpMaxConnectionsPerServer",
+            HttpUtils.DEFAULT_MAX_CONNECTIONS_PER_SERVER);
+        if (httpMaxConnectionsPerServer <= 0) {
+            httpMaxConnectionsPerServer = HttpUtils.DEFAULT_MAX_CONNECTIONS_PER_SERVER;
+        }
+
+        httpTimeoutInSeconds = formData.optInt("httpTimeoutInSeconds", HttpUtils.DEFAULT_TIMEOUT_IN_SECONDS);
+        if (httpTimeoutInSeconds <= 0) {
+            httpTimeoutInSeconds = HttpUtils.DEFAULT_TIMEOUT_IN_SECONDS;
+        }
+
+        buildStartedCoalesceWindowInSeconds = formData.optInt("buildStartedCoalesceWindowInSeconds",
+            BuildStartedCoalescer.DEFAULT_WINDOW_IN_SECONDS);
+        if (buildStartedCoalesceWindowInSeconds < 0) {
+            buildStartedCoalesceWindowInSeconds = BuildStartedCoalescer.DEFAULT_WINDOW_IN_SECONDS;
+        }
+
+        restInFlightPerServer = formData.optInt("restInFlightPerServer",
+            RestReviewNotifier.DEFAULT_IN_FLIGHT_PER_SERVER);
+        if (restInFlightPerServer <= 0) {
+            restInFlightPerServer = RestReviewNotifier.DEFAULT_IN_FLIGHT_PER_SERVER;
+        }
+
+        maxStartedBacklog = formData.optInt("maxStartedBacklog", NotificationLaneQueue.DEFAULT_MAX_STARTED_BACKLOG);
+        if (maxStartedBacklog <= 0) {
+            maxStartedBacklog = NotificationLaneQueue.DEFAULT_MAX_STARTED_BACKLOG;
+        }
     }
 
     /**
@@ -176,4 +228,119 @@ public class PluginConfig implements GerritWorkersConfig {
     public void setReplicationCacheExpirationInMinutes(int replicationCacheExpirationInMinutes) {
         this.replicationCacheExpirationInMinutes = replicationCacheExpirationInMinutes;
     }
+
+    /**
+     * Number of seconds that missed events timestamp updates are coalesced before they are written to disk.
+     * @return the missedEventsPersistIntervalInSeconds
+     */
+    public int getMissedEventsPersistIntervalInSeconds() {
+        if (missedEventsPersistIntervalInSeconds <= 0) {
+            missedEventsPersistIntervalInSeconds =
+                    GerritMissedEventsPlaybackManager.DEFAULT_PERSIST_INTERVAL_IN_SECONDS;
+        }
+        return missedEventsPersistIntervalInSeconds;
+    }
+
+    /**
+     * Number of seconds that missed events timestamp updates are coalesced before they are written to disk.
+     * @param missedEventsPersistIntervalInSeconds the interval to set
+     */
+    public void setMissedEventsPersistIntervalInSeconds(int missedEventsPersistIntervalInSeconds) {
+        this.missedEventsPersistIntervalInSeconds = missedEventsPersistIntervalInSeconds;
+    }
+
+    /**
+     * Maximum number of open HTTP connections to one Gerrit server.
+     * @return the httpMaxConnectionsPerServer
+     */
+    public int getHttpMaxConnectionsPerServer() {
+        if (httpMaxConnectionsPerServer <= 0) {
+            httpMaxConnectionsPerServer = HttpUtils.DEFAULT_MAX_CONNECTIONS_PER_SERVER;
+        }
+        return httpMaxConnectionsPerServer;
+    }
+
+    /**
+     * Maximum number of open HTTP connections to one Gerrit server.
+     * @param httpMaxConnectionsPerServer the number of connections to set
+     */
+    public void setHttpMaxConnectionsPerServer(int httpMaxConnectionsPerServer) {
+        this.httpMaxConnectionsPerServer = httpMaxConnectionsPerServer;
+    }
+
+    /**
+     * Timeout in seconds for connecting to, reading from and waiting for a pooled HTTP connection to Gerrit.
+     * @return the httpTimeoutInSeconds
+     */
+    public int getHttpTimeoutInSeconds() {
+        if (httpTimeoutInSeconds <= 0) {
+            httpTimeoutInSeconds = HttpUtils.DEFAULT_TIMEOUT_IN_SECONDS;
+        }
+        return httpTimeoutInSeconds;
+    }
+
+    /**
+     * Timeout in seconds for connecting to, reading from and waiting for a pooled HTTP connection to Gerrit.
+     * @param httpTimeoutInSeconds the timeout to set
+     */
+    public void setHttpTimeoutInSeconds(int httpTimeoutInSeconds) {
+        this.httpTimeoutInSeconds = httpTimeoutInSeconds;
+    }
+
+    /**
+     * Number of seconds that build started notifications of the same patch set are collected before one is sent.
+     * @return the buildStartedCoalesceWindowInSeconds, 0 if they are not coalesced.
+     */
+    public int getBuildStartedCoalesceWindowInSeconds() {
+        if (buildStartedCoalesceWindowInSeconds < 0) {
+            buildStartedCoalesceWindowInSeconds = BuildStartedCoalescer.DEFAULT_WINDOW_IN_SECONDS;
+        }
+        return buildStartedCoalesceWindowInSeconds;
+    }
+
+    /**
+     * Number of seconds that build started notifications of the same patch set are collected before one is sent.
+     * @param buildStartedCoalesceWindowInSeconds the window to set, 0 to not coalesce.
+     */
+    public void setBuildStartedCoalesceWindowInSeconds(int buildStartedCoalesceWindowInSeconds) {
+        this.buildStartedCoalesceWindowInSeconds = buildStartedCoalesceWindowInSeconds;
+    }
+
+    /**
+     * Number of reviews posted to the REST API of the same Gerrit server at the same time.
+     * @return the restInFlightPerServer
+     */
+    public int getRestInFlightPerServer() {
+        if (restInFlightPerServer <= 0) {
+            restInFlightPerServer = RestReviewNotifier.DEFAULT_IN_FLIGHT_PER_SERVER;
+        }
+        return restInFlightPerServer;
+    }
+
+    /**
+     * Number of reviews posted to the REST API of the same Gerrit server at the same time.
+     * @param restInFlightPerServer the limit to set
+     */
+    public void setRestInFlightPerServer(int restInFlightPerServer) {
+        this.restInFlightPerServer = restInFlightPerServer;
+    }
+
+    /**
+     * Number of build started messages that can wait to be sent before messages of superseded patch sets are dropped.
+     * @return the maxStartedBacklog
+     */
+    public int getMaxStartedBacklog() {
+        if (maxStartedBacklog <= 0) {
+            maxStartedBacklog = NotificationLaneQueue.DEFAULT_MAX_STARTED_BACKLOG;
+        }
+        return maxStartedBacklog;
+    }
+
+    /**
+     * Number of build started messages that can wait to be sent before messages of superseded patch sets are dropped.
+     * @param maxStartedBacklog the backlog to set
+     */
+    public void setMaxStartedBacklog(int maxStartedBacklog) {
+        this.maxStartedBacklog = maxStartedBacklog;
+    }
 }
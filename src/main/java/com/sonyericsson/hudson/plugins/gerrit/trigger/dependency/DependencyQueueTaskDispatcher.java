@@ -36,16 +36,16 @@ import jenkins.model.Jenkins;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Collections;
 import java.util.StringTokenizer;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.sonymobile.tools.gerrit.gerritevents.GerritDefaultValues;
 import com.sonymobile.tools.gerrit.gerritevents.GerritEventListener;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.GerritEvent;
@@ -63,6 +63,10 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
  * dependency projects (i.e., projects on which it depends) which also trigger for the same
  * event, to finish building before building a dependent project.
  *
+ * The dependency jobs of each project are resolved once per trigger configuration and kept until a job is
+ * created, renamed or deleted. While an event is being dispatched to the triggers, the projects depending on
+ * others are held back until the dispatch is done, so all dependencies that will build for it are scheduled.
+ *
  * @author Yannick Bréhon &lt;yannick.brehon@smartmatic.com&gt;
  */
 @Extension
@@ -71,6 +75,9 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
 
     private static final Logger logger = LoggerFactory.getLogger(DependencyQueueTaskDispatcher.class);
     private Set<GerritTriggeredEvent> currentlyTriggeringEvents;
+    private Set<GerritTriggeredEvent> currentlySchedulingEvents;
+    private final Map<Job, DependencyNode> dependencyGraph =
+            Collections.synchronizedMap(new WeakHashMap<Job, DependencyNode>());
 
     /**
      * Default constructor.
@@ -87,6 +94,8 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
     DependencyQueueTaskDispatcher(GerritHandler gerritHandler) {
         this.currentlyTriggeringEvents = Collections.newSetFromMap(
                 new ConcurrentHashMap<GerritTriggeredEvent, Boolean>());
+        this.currentlySchedulingEvents = Collections.newSetFromMap(
+                new ConcurrentHashMap<GerritTriggeredEvent, Boolean>());
         if (gerritHandler == null) {
             logger.error("Gerrit Handler was not available to construct DependencyQueueTaskDispatcher");
         } else {
@@ -151,31 +160,21 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
             return null;
         }
         //Dependency projects in the build queue
-        List<Job> dependencies = getProjectsFromString(trigger.getDependencyJobsNames(),
-                (Item)p);
+        List<Job> dependencies = getDependencies(p, trigger);
         if ((dependencies == null) || (dependencies.size() == 0)) {
             logger.debug("No dependencies on project: {}", p);
             return null;
         }
-        //logger.debug("We have dependencies on project {} : {}", p, trigger.getDependencyJobsNames());
 
-        // We ensure that we wait until other jobs have been put into queue.
-        // We use the default Gerrit Build Schedule Delay value
-        long inQueueSince = item.getInQueueSince();
-        if (System.currentTimeMillis() - inQueueSince < TimeUnit.SECONDS
-                .toMillis(GerritDefaultValues.DEFAULT_BUILD_SCHEDULE_DELAY)) {
+        // We ensure that we wait until the event has been dispatched to all triggers,
+        // so the dependencies that build for it have been put into queue.
+        if (currentlySchedulingEvents.contains(event)) {
             logger.debug("We need to wait to ensure dependent jobs {} are in queue", event);
             return new BecauseWaitingToEnsureOtherJobsAreInQueue();
         }
 
-        /* we really should first check for other projects which will be triggered
-         * for the same event, and haven't yet. Unfortunately, this requires some kind
-         * of event notification - GerritEventLifecycle like - which is not available
-         * at this time. Fortunately, triggering is near instant, and projects are kept
-         * long enough in the queue  for us to not worry too much about this at this time.
-         * We can do this check for the retrigger.all action however, which does not have a quiet
-         * time, because specific code exists for it in GerritTrigger, fortunately.
-         */
+        // The retrigger.all action triggers the projects outside of the event dispatch,
+        // specific code exists for it in GerritTrigger.
         if (currentlyTriggeringEvents.contains(event)) {
             logger.debug("We need to wait while {} is being triggered", event);
             return new BecauseWaitingForOtherProjectsToTrigger();
@@ -212,6 +211,36 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
         return blockingProjects;
     }
 
+    /**
+     * Gets the dependency projects of a project from the dependency graph,
+     * resolving them if the graph has none for the current trigger configuration.
+     *
+     * @param project the project.
+     * @param trigger the trigger of the project.
+     * @return the dependency projects, or null if there are none.
+     */
+    private List<Job> getDependencies(Job project, GerritTrigger trigger) {
+        String jobsNames = trigger.getDependencyJobsNames();
+        if ((jobsNames == null) || jobsNames.equals("")) {
+            return null;
+        }
+        DependencyNode node = dependencyGraph.get(project);
+        if (node == null || !node.jobsNames.equals(jobsNames)) {
+            node = new DependencyNode(jobsNames, getProjectsFromString(jobsNames, (Item)project));
+            dependencyGraph.put(project, node);
+        }
+        return node.dependencies;
+    }
+
+    /**
+     * Forgets the resolved dependency projects, so they are resolved again when next needed.
+     * Called when a job is created, renamed or deleted.
+     */
+    public void invalidateDependencyGraph() {
+        dependencyGraph.clear();
+        logger.debug("Dependency graph invalidated");
+    }
+
     /**
      * Return the GerritCause of the specific item if any, otherwise return null.
      * @param item The item
@@ -274,6 +303,24 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
         logger.debug("Done triggering all projects for {}", event);
     }
 
+    /**
+     * Signals this event is being dispatched to the triggers.
+     * In the meantime, no builds with dependencies should be allowed to start.
+     * @param event the event being dispatched
+     */
+    public void onSchedulingEvent(GerritTriggeredEvent event) {
+        currentlySchedulingEvents.add(event);
+    }
+
+    /**
+     * Signals this event has been dispatched to all triggers, so all builds for it are scheduled.
+     * Builds with dependencies may be allowed to start once their dependencies are built.
+     * @param event the event done dispatching
+     */
+    public void onDoneSchedulingEvent(GerritTriggeredEvent event) {
+        currentlySchedulingEvents.remove(event);
+    }
+
     /*
      * GerritEventListener interface
      */
@@ -345,4 +392,23 @@ public final class DependencyQueueTaskDispatcher extends QueueTaskDispatcher
     @Override
     public void allBuildsCompleted(GerritEvent event) {
     }
+
+    /**
+     * The dependency projects resolved for one trigger configuration.
+     */
+    private static final class DependencyNode {
+        private final String jobsNames;
+        private final List<Job> dependencies;
+
+        /**
+         * Constructor.
+         *
+         * @param jobsNames    the dependency job names the projects were resolved from.
+         * @param dependencies the resolved projects.
+         */
+        private DependencyNode(String jobsNames, List<Job> dependencies) {
+            this.jobsNames = jobsNames;
+            this.dependencies = dependencies;
+        }
+    }
 }
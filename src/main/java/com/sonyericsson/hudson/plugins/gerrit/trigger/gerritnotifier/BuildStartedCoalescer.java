@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the build started notifications of the same event over a short window
+ * and only sends the last one, which carries the most recent {@link
+ * com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildsStartedStats}.
+ * A notification still pending when the verdict of the event is queued is dropped.
+ * Events are compared by identity, like in the
+ * {@link com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildMemory},
+ * so the verdict of one event never drops the notifications of another event of the same patch set.
+ * Pending notifications are handed over while holding the lock that {@link #discard(GerritTriggeredEvent)} takes,
+ * so a notification is either dropped or queued before the verdict.
+ */
+public final class BuildStartedCoalescer {
+
+    /**
+     * Default window in seconds, 0 means that build started notifications are not coalesced.
+     */
+    public static final int DEFAULT_WINDOW_IN_SECONDS = 0;
+
+    /**
+     * Sends the pending notifications when their window has passed.
+     */
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "Gerrit build started coalescer"));
+
+    private final Map<GerritTriggeredEvent, Pending> pending = new IdentityHashMap<GerritTriggeredEvent, Pending>();
+    private long savedCommands = 0;
+    private long coalescedEvents = 0;
+
+    /**
+     * Adds a notification. If there is no pending notification for the event the notification will be sent
+     * when the window has passed, otherwise it replaces the pending one.
+     *
+     * @param event        the event of the notification.
+     * @param send         queues the notification, must not block.
+     * @param windowMillis how long to collect notifications for the event.
+     */
+    public void add(final GerritTriggeredEvent event, Runnable send, long windowMillis) {
+        synchronized (this) {
+            Pending previous = pending.get(event);
+            if (previous != null) {
+                previous.send = send;
+                previous.superseded++;
+                savedCommands++;
+                return;
+            }
+            pending.put(event, new Pending(send));
+        }
+        SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush(event);
+            }
+        }, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues the pending notification of an event, if any.
+     * The notification is queued under the lock, so a verdict queued meanwhile is queued after it.
+     *
+     * @param event the event.
+     */
+    public synchronized void flush(GerritTriggeredEvent event) {
+        Pending toSend = pending.remove(event);
+        if (toSend == null) {
+            return;
+        }
+        if (toSend.superseded > 0) {
+            coalescedEvents++;
+        }
+        toSend.send.run();
+    }
+
+    /**
+     * Drops the pending notification of an event, if any, because the verdict is about to be queued.
+     *
+     * @param event the event.
+     */
+    public synchronized void discard(GerritTriggeredEvent event) {
+        Pending dropped = pending.remove(event);
+        if (dropped != null) {
+            savedCommands++;
+            coalescedEvents++;
+        }
+    }
+
+    /**
+     * The number of build started commands that were not sent.
+     *
+     * @return the number of commands.
+     */
+    public synchronized long getSavedCommands() {
+        return savedCommands;
+    }
+
+    /**
+     * The number of events for which at least one build started command was not sent.
+     *
+     * @return the number of events.
+     */
+    public synchronized long getCoalescedEvents() {
+        return coalescedEvents;
+    }
+
+    /**
+     * The average number of build started commands not sent per event that had any coalesced.
+     *
+     * @return the average.
+     */
+    public synchronized double getAverageSavedCommandsPerEvent() {
+        if (coalescedEvents == 0) {
+            return 0;
+        }
+        return (double)savedCommands / coalescedEvents;
+    }
+
+    /**
+     * A notification waiting to be sent.
+     */
+    private static final class Pending {
+        private Runnable send;
+        private int superseded = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param send sends the notification.
+         */
+        private Pending(Runnable send) {
+            this.send = send;
+        }
+    }
+}
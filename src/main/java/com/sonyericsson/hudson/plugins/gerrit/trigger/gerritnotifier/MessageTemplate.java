@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import hudson.EnvVars;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A command or message template parsed into literal text and &lt;PARAMETER&gt; tokens,
+ * so that it can be expanded in a single pass.
+ * Environment variables are only expanded in the literal text,
+ * and values of parameters are never expanded themselves.
+ */
+final class MessageTemplate {
+
+    /**
+     * Compiled templates are dropped when there are more than this many,
+     * the templates come from server and job configurations so there are usually only a handful.
+     */
+    private static final int MAX_CACHED_TEMPLATES = 256;
+    private static final ConcurrentMap<String, MessageTemplate> TEMPLATES =
+            new ConcurrentHashMap<String, MessageTemplate>();
+
+    /**
+     * The literal text before each parameter, with one extra for the text after the last parameter.
+     */
+    private final String[] literals;
+    private final String[] parameters;
+    private final boolean environmentVariables;
+    private final int length;
+
+    /**
+     * Parses the template.
+     *
+     * @param template the template.
+     */
+    private MessageTemplate(String template) {
+        List<String> literalList = new ArrayList<String>();
+        List<String> parameterList = new ArrayList<String>();
+        int start = 0;
+        int open = template.indexOf('<');
+        while (open >= 0) {
+            int close = template.indexOf('>', open + 1);
+            if (close < 0) {
+                break;
+            }
+            if (isParameterName(template, open + 1, close)) {
+                literalList.add(template.substring(start, open));
+                parameterList.add(template.substring(open + 1, close));
+                start = close + 1;
+                open = template.indexOf('<', start);
+            } else {
+                open = template.indexOf('<', open + 1);
+            }
+        }
+        literalList.add(template.substring(start));
+        literals = literalList.toArray(new String[literalList.size()]);
+        parameters = parameterList.toArray(new String[parameterList.size()]);
+        environmentVariables = template.indexOf('$') >= 0;
+        length = template.length();
+    }
+
+    /**
+     * Gets the compiled template, parsing it the first time it is seen.
+     *
+     * @param template the template.
+     * @return the compiled template.
+     */
+    static MessageTemplate compile(String template) {
+        MessageTemplate compiled = TEMPLATES.get(template);
+        if (compiled == null) {
+            if (TEMPLATES.size() >= MAX_CACHED_TEMPLATES) {
+                TEMPLATES.clear();
+            }
+            compiled = new MessageTemplate(template);
+            MessageTemplate previous = TEMPLATES.putIfAbsent(template, compiled);
+            if (previous != null) {
+                compiled = previous;
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Checks if the characters between the brackets can be a parameter name.
+     *
+     * @param template the template.
+     * @param start the index after the opening bracket.
+     * @param end the index of the closing bracket.
+     * @return true if so.
+     */
+    private static boolean isParameterName(String template, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = template.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * If the literal text of the template refers to environment variables.
+     *
+     * @return true if so.
+     */
+    boolean hasEnvironmentVariables() {
+        return environmentVariables;
+    }
+
+    /**
+     * The number of &lt;PARAMETER&gt; tokens in the template.
+     *
+     * @return the count.
+     */
+    int getParameterCount() {
+        return parameters.length;
+    }
+
+    /**
+     * Expands the template.
+     * Tokens of parameters that have no value are left as they are.
+     *
+     * @param values the values of the &lt;parameters&gt;.
+     * @param env the environment variables to expand in the literal text, or null.
+     * @return the expanded string.
+     */
+    String expand(Map<String, String> values, EnvVars env) {
+        StringBuilder str = new StringBuilder(length);
+        for (int i = 0; i < parameters.length; i++) {
+            appendLiteral(str, literals[i], env);
+            String value = values.get(parameters[i]);
+            if (value != null) {
+                str.append(value);
+            } else {
+                str.append('<').append(parameters[i]).append('>');
+            }
+        }
+        appendLiteral(str, literals[parameters.length], env);
+        return str.toString();
+    }
+
+    /**
+     * Appends literal text, expanding environment variables in it.
+     *
+     * @param str the string being built.
+     * @param literal the literal text.
+     * @param env the environment variables, or null.
+     */
+    private static void appendLiteral(StringBuilder str, String literal, EnvVars env) {
+        if (env != null && literal.indexOf('$') >= 0) {
+            str.append(env.expand(literal));
+        } else {
+            str.append(literal);
+        }
+    }
+}
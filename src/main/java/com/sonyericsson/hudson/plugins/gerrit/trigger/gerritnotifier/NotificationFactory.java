@@ -26,17 +26,19 @@
 package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
 
 import com.sonymobile.tools.gerrit.gerritevents.GerritCmdRunner;
-import com.sonymobile.tools.gerrit.gerritevents.GerritSendCommandQueue;
 import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Provider;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.PluginConfig;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.ssh.BuildCompletedCommandJob;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.rest.BuildCompletedRestCommandJob;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.ssh.BuildStartedCommandJob;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.rest.BuildStartedRestCommandJob;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.rest.RestReviewNotifier;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLaneQueue.Lane;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildMemory;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildsStartedStats;
 import hudson.model.Run;
@@ -44,6 +46,8 @@ import hudson.model.TaskListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * A factory for creating notification entities.
  * This factory is mainly created and used to ease unit testing.
@@ -53,6 +57,7 @@ import org.slf4j.LoggerFactory;
 public class NotificationFactory {
     private static final Logger logger = LoggerFactory.getLogger(NotificationFactory.class);
     private static NotificationFactory instance;
+    private final BuildStartedCoalescer buildStartedCoalescer = new BuildStartedCoalescer();
 
     /**
      * Gets the singleton instance of the NotificationFactory.
@@ -108,11 +113,11 @@ public class NotificationFactory {
     //CS IGNORE LineLength FOR NEXT 8 LINES. REASON: Javadoc
 
     /**
-     * Queues a build completed command on the send-command queue.
+     * Queues a build completed command in the verdict lane.
      *
      * @param memoryImprint the memory of the builds.
      * @param listener      a listener.
-     * @see GerritSendCommandQueue#queue(com.sonymobile.tools.gerrit.gerritevents.workers.cmd.AbstractSendCommandJob)
+     * @see SendCommandDispatcher
      * @see BuildCompletedCommandJob
      */
     public void queueBuildCompleted(BuildMemory.MemoryImprint memoryImprint, TaskListener listener) {
@@ -120,10 +125,15 @@ public class NotificationFactory {
         if (serverName != null) {
             IGerritHudsonTriggerConfig config = getConfig(serverName);
             if (config != null) {
+                buildStartedCoalescer.discard(memoryImprint.getEvent());
                 if (config.isUseRestApi()) {
-                    GerritSendCommandQueue.queue(new BuildCompletedRestCommandJob(config, memoryImprint, listener));
+                    RestReviewNotifier.getInstance().queue(serverName, config,
+                            new BuildCompletedRestCommandJob(config, memoryImprint, listener), Lane.VERDICT);
                 } else {
-                    GerritSendCommandQueue.queue(new BuildCompletedCommandJob(config, memoryImprint, listener));
+                    SendCommandDispatcher.getInstance().queue(
+                            new BuildCompletedCommandJob(config, memoryImprint, listener), Lane.VERDICT,
+                            memoryImprint.getEvent(), getChangeKey(serverName, memoryImprint.getEvent()),
+                            getPatchSetNumber(memoryImprint.getEvent()));
                 }
             } else {
                 logger.warn("Nothing queued since there is no configuration for serverName: {}", serverName);
@@ -180,26 +190,31 @@ public class NotificationFactory {
     //CS IGNORE LineLength FOR NEXT 10 LINES. REASON: Javadoc
 
     /**
-     * Queues a build started command on the send-command queue.
+     * Queues a build started command in the build started lane.
      *
      * @param build    the build.
      * @param listener a listener.
      * @param event    the event.
      * @param stats    the started stats.
-     * @see GerritSendCommandQueue#queue(com.sonymobile.tools.gerrit.gerritevents.workers.cmd.AbstractSendCommandJob)
+     * @see SendCommandDispatcher
      * @see BuildStartedCommandJob
      */
-    public void queueBuildStarted(Run build, TaskListener listener,
-                                  GerritTriggeredEvent event, BuildsStartedStats stats) {
-        String serverName = getServerName(event);
+    public void queueBuildStarted(final Run build, final TaskListener listener,
+                                  final GerritTriggeredEvent event, final BuildsStartedStats stats) {
+        final String serverName = getServerName(event);
         if (serverName != null) {
-            IGerritHudsonTriggerConfig config = getConfig(serverName);
+            final IGerritHudsonTriggerConfig config = getConfig(serverName);
             if (config != null) {
-                if (config.isUseRestApi() && event instanceof ChangeBasedEvent) {
-                    GerritSendCommandQueue.queue(new BuildStartedRestCommandJob(config, build, listener,
-                            (ChangeBasedEvent)event, stats));
+                int window = getBuildStartedCoalesceWindowInSeconds();
+                if (window > 0) {
+                    buildStartedCoalescer.add(event, new Runnable() {
+                        @Override
+                        public void run() {
+                            queueBuildStarted(serverName, config, build, listener, event, stats);
+                        }
+                    }, TimeUnit.SECONDS.toMillis(window));
                 } else {
-                    GerritSendCommandQueue.queue(new BuildStartedCommandJob(config, build, listener, event, stats));
+                    queueBuildStarted(serverName, config, build, listener, event, stats);
                 }
             } else {
                 logger.warn("Nothing queued since there is no configuration for serverName: {}", serverName);
@@ -208,4 +223,79 @@ public class NotificationFactory {
             logger.warn("Nothing queued since the event contained no serverName: {}", event);
         }
     }
+
+    /**
+     * Queues a build started command in the build started lane without coalescing.
+     *
+     * @param serverName the name of the server.
+     * @param config     the config of the server.
+     * @param build      the build.
+     * @param listener   a listener.
+     * @param event      the event.
+     * @param stats      the started stats.
+     */
+    private void queueBuildStarted(String serverName, IGerritHudsonTriggerConfig config, Run build,
+                                   TaskListener listener, GerritTriggeredEvent event, BuildsStartedStats stats) {
+        if (config.isUseRestApi() && event instanceof ChangeBasedEvent) {
+            RestReviewNotifier.getInstance().queue(serverName, config, new BuildStartedRestCommandJob(config, build,
+                    listener, (ChangeBasedEvent)event, stats), Lane.STARTED);
+        } else {
+            SendCommandDispatcher.getInstance().queue(
+                    new BuildStartedCommandJob(config, build, listener, event, stats), Lane.STARTED,
+                    event, getChangeKey(serverName, event), getPatchSetNumber(event));
+        }
+    }
+
+    /**
+     * The key that notifications of superseded patch sets are found by.
+     *
+     * @param serverName the name of the server.
+     * @param event      the event.
+     * @return the server and change of the event, or null if it isn't about a change.
+     */
+    private String getChangeKey(String serverName, GerritTriggeredEvent event) {
+        if (event instanceof ChangeBasedEvent && ((ChangeBasedEvent)event).getChange() != null) {
+            return serverName + "/" + ((ChangeBasedEvent)event).getChange().getNumber();
+        }
+        return null;
+    }
+
+    /**
+     * The number of the patch set of an event.
+     *
+     * @param event the event.
+     * @return the patch set number, 0 if it isn't about a patch set.
+     */
+    private int getPatchSetNumber(GerritTriggeredEvent event) {
+        if (event instanceof ChangeBasedEvent && ((ChangeBasedEvent)event).getPatchSet() != null) {
+            try {
+                return Integer.parseInt(((ChangeBasedEvent)event).getPatchSet().getNumber());
+            } catch (NumberFormatException e) {
+                logger.debug("Patch set number is not a number: {}", ((ChangeBasedEvent)event).getPatchSet());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The window that build started notifications of the same event are coalesced over.
+     *
+     * @return the window in seconds, 0 if not coalesced.
+     */
+    private int getBuildStartedCoalesceWindowInSeconds() {
+        PluginConfig pluginConfig = PluginImpl.getPluginConfig_();
+        if (pluginConfig == null) {
+            return 0;
+        }
+        return pluginConfig.getBuildStartedCoalesceWindowInSeconds();
+    }
+
+    /**
+     * The coalescer of build started notifications, for statistics.
+     *
+     * @return the coalescer.
+     */
+    public BuildStartedCoalescer getBuildStartedCoalescer() {
+        return buildStartedCoalescer;
+    }
 }
@@ -0,0 +1,580 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded queue of notifications to Gerrit with one lane for verdicts and one for build started messages.
+ *
+ * Verdicts are taken before build started messages, but after a number of verdicts in a row a waiting build started
+ * message gets its turn, so neither lane starves. When the build started lane is full, messages for patch sets that
+ * have a newer patch set queued are dropped, and if that isn't enough the oldest build started message is dropped.
+ * Verdicts are never dropped, only rejected when the whole queue is full. A build started message would reset the
+ * votes of the verdict if it was sent after it, so when a verdict is queued the build started messages of its event
+ * are dropped, and a build started message offered while a verdict of its event is queued is dropped at once.
+ * The build started messages of other events of the same patch set are kept.
+ *
+ * Elements that aren't {@link Item}s go in the verdict lane.
+ */
+public class NotificationLaneQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    /**
+     * Default number of verdicts taken in a row while build started messages are waiting.
+     */
+    public static final int DEFAULT_VERDICT_WEIGHT = 4;
+    /**
+     * Default number of build started messages that can wait in a queue.
+     */
+    public static final int DEFAULT_MAX_STARTED_BACKLOG = 500;
+
+    /**
+     * The lanes of the queue.
+     */
+    public static enum Lane {
+        /**
+         * Build completed verdicts.
+         */
+        VERDICT,
+        /**
+         * Build started messages.
+         */
+        STARTED
+    }
+
+    /**
+     * A notification that knows its lane and the event and patch set it is about.
+     */
+    public interface Item extends Runnable {
+        /**
+         * The lane of the notification.
+         *
+         * @return the lane.
+         */
+        Lane getLane();
+
+        /**
+         * The event the notification is about, used to find the build started messages of a verdict.
+         *
+         * @return the event, or null if the notification is not about an event.
+         */
+        GerritTriggeredEvent getEvent();
+
+        /**
+         * The server and change the notification is about, used to find superseded patch sets.
+         *
+         * @return the key, or null if the notification is not about a patch set.
+         */
+        String getChangeKey();
+
+        /**
+         * The number of the patch set the notification is about.
+         *
+         * @return the patch set number.
+         */
+        int getPatchSetNumber();
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final LinkedList<Entry> verdicts = new LinkedList<Entry>();
+    private final LinkedList<Entry> started = new LinkedList<Entry>();
+    private final int capacity;
+    private final int verdictWeight;
+    private final NotificationLaneStatistics statistics;
+    private volatile int maxStartedBacklog;
+    private int verdictsInARow = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity          the number of notifications the queue can hold.
+     * @param verdictWeight     the number of verdicts taken in a row while build started messages are waiting.
+     * @param maxStartedBacklog the number of build started messages the queue can hold.
+     * @param statistics        where the depth, wait time and drops of the lanes are counted.
+     */
+    public NotificationLaneQueue(int capacity, int verdictWeight, int maxStartedBacklog,
+                                 NotificationLaneStatistics statistics) {
+        this.capacity = capacity;
+        this.verdictWeight = Math.max(1, verdictWeight);
+        this.maxStartedBacklog = maxStartedBacklog;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Sets the number of build started messages the queue can hold,
+     * the messages already queued are trimmed when the next one is offered.
+     *
+     * @param maxStartedBacklog the number of messages.
+     */
+    public void setMaxStartedBacklog(int maxStartedBacklog) {
+        this.maxStartedBacklog = maxStartedBacklog;
+    }
+
+    /**
+     * The number of notifications in a lane.
+     *
+     * @param lane the lane.
+     * @return the number of notifications.
+     */
+    public int size(Lane lane) {
+        lock.lock();
+        try {
+            return getLane(lane).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException();
+        }
+        Lane lane = getLane(runnable);
+        lock.lock();
+        try {
+            if (verdicts.size() + started.size() >= capacity) {
+                return false;
+            }
+            if (lane == Lane.STARTED) {
+                if (hasVerdictFor(runnable)) {
+                    statistics.enqueued(lane);
+                    statistics.dropped(lane, true);
+                    return true;
+                }
+                trimStarted(runnable);
+            } else {
+                removeStartedFor(runnable);
+            }
+            getLane(lane).addLast(new Entry(runnable, lane));
+            statistics.enqueued(lane);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable runnable) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!offer(runnable)) {
+                notFull.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable runnable, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!offer(runnable)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Runnable runnable = dequeue();
+            while (runnable == null) {
+                notEmpty.await();
+                runnable = dequeue();
+            }
+            return runnable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            Runnable runnable = dequeue();
+            while (runnable == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+                runnable = dequeue();
+            }
+            return runnable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            Entry entry = nextLane().peekFirst();
+            if (entry != null) {
+                return entry.runnable;
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return verdicts.size() + started.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            return remove(verdicts, o) || remove(started, o);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int count = 0;
+            Runnable runnable;
+            while (count < maxElements) {
+                runnable = dequeue();
+                if (runnable == null) {
+                    break;
+                }
+                c.add(runnable);
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A snapshot of the queued notifications, verdicts first. Removing through the iterator is not supported.
+     *
+     * @return the iterator.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            final List<Runnable> snapshot = new ArrayList<Runnable>(verdicts.size() + started.size());
+            for (Entry entry : verdicts) {
+                snapshot.add(entry.runnable);
+            }
+            for (Entry entry : started) {
+                snapshot.add(entry.runnable);
+            }
+            return new Iterator<Runnable>() {
+                private final Iterator<Runnable> it = snapshot.iterator();
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Runnable next() {
+                    return it.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a notification from a lane. Must be called with the lock held.
+     *
+     * @param entries the lane.
+     * @param o       the notification.
+     * @return true if it was in the lane.
+     */
+    private boolean remove(LinkedList<Entry> entries, Object o) {
+        Iterator<Entry> it = entries.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.runnable.equals(o)) {
+                it.remove();
+                statistics.removed(entry.lane);
+                notFull.signal();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The lane that the next notification is taken from. Must be called with the lock held.
+     *
+     * @return the lane.
+     */
+    private LinkedList<Entry> nextLane() {
+        if (verdicts.isEmpty()) {
+            return started;
+        } else if (started.isEmpty() || verdictsInARow < verdictWeight) {
+            return verdicts;
+        } else {
+            return started;
+        }
+    }
+
+    /**
+     * Takes the next notification. Must be called with the lock held.
+     *
+     * @return the notification, or null if the queue is empty.
+     */
+    private Runnable dequeue() {
+        LinkedList<Entry> lane = nextLane();
+        Entry entry = lane.pollFirst();
+        if (entry == null) {
+            return null;
+        }
+        if (lane == verdicts) {
+            verdictsInARow++;
+        } else {
+            verdictsInARow = 0;
+        }
+        statistics.dequeued(entry.lane, System.currentTimeMillis() - entry.enqueued);
+        notFull.signal();
+        return entry.runnable;
+    }
+
+    /**
+     * Checks if a verdict of the event of a build started message is queued. Must be called with the lock held.
+     *
+     * @param incoming the build started message.
+     * @return true if so.
+     */
+    private boolean hasVerdictFor(Runnable incoming) {
+        GerritTriggeredEvent event = getEvent(incoming);
+        if (event == null) {
+            return false;
+        }
+        for (Entry entry : verdicts) {
+            if (getEvent(entry.runnable) == event) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the build started messages of the event of a verdict. Must be called with the lock held.
+     *
+     * @param verdict the verdict.
+     */
+    private void removeStartedFor(Runnable verdict) {
+        GerritTriggeredEvent event = getEvent(verdict);
+        if (event == null) {
+            return;
+        }
+        Iterator<Entry> it = started.iterator();
+        while (it.hasNext()) {
+            if (getEvent(it.next().runnable) == event) {
+                it.remove();
+                statistics.dropped(Lane.STARTED, true);
+                notFull.signal();
+            }
+        }
+    }
+
+    /**
+     * The event a notification is about.
+     *
+     * @param runnable the notification.
+     * @return the event, or null if the notification is not an {@link Item} about an event.
+     */
+    private static GerritTriggeredEvent getEvent(Runnable runnable) {
+        if (runnable instanceof Item) {
+            return ((Item)runnable).getEvent();
+        }
+        return null;
+    }
+
+    /**
+     * Makes room for a build started message when the lane is full. Must be called with the lock held.
+     *
+     * @param incoming the message to make room for.
+     */
+    private void trimStarted(Runnable incoming) {
+        if (started.size() < maxStartedBacklog) {
+            return;
+        }
+        Map<String, Integer> newest = new HashMap<String, Integer>();
+        for (Entry entry : verdicts) {
+            updateNewest(newest, entry.runnable);
+        }
+        for (Entry entry : started) {
+            updateNewest(newest, entry.runnable);
+        }
+        updateNewest(newest, incoming);
+        Iterator<Entry> it = started.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.runnable instanceof Item) {
+                Item item = (Item)entry.runnable;
+                if (item.getChangeKey() != null && item.getPatchSetNumber() < newest.get(item.getChangeKey())) {
+                    it.remove();
+                    statistics.dropped(Lane.STARTED, true);
+                }
+            }
+        }
+        while (!started.isEmpty() && started.size() >= maxStartedBacklog) {
+            started.removeFirst();
+            statistics.dropped(Lane.STARTED, false);
+        }
+    }
+
+    /**
+     * Records the patch set of a notification if it is the newest of its change.
+     *
+     * @param newest   the newest patch set number by change.
+     * @param runnable the notification.
+     */
+    private static void updateNewest(Map<String, Integer> newest, Runnable runnable) {
+        if (runnable instanceof Item) {
+            Item item = (Item)runnable;
+            if (item.getChangeKey() != null) {
+                Integer current = newest.get(item.getChangeKey());
+                if (current == null || current < item.getPatchSetNumber()) {
+                    newest.put(item.getChangeKey(), item.getPatchSetNumber());
+                }
+            }
+        }
+    }
+
+    /**
+     * The lane of a notification.
+     *
+     * @param runnable the notification.
+     * @return the lane.
+     */
+    private static Lane getLane(Runnable runnable) {
+        if (runnable instanceof Item && ((Item)runnable).getLane() != null) {
+            return ((Item)runnable).getLane();
+        }
+        return Lane.VERDICT;
+    }
+
+    /**
+     * The entries of a lane.
+     *
+     * @param lane the lane.
+     * @return the entries.
+     */
+    private LinkedList<Entry> getLane(Lane lane) {
+        if (lane == Lane.STARTED) {
+            return started;
+        }
+        return verdicts;
+    }
+
+    /**
+     * A queued notification.
+     */
+    private static final class Entry {
+        private final Runnable runnable;
+        private final Lane lane;
+        private final long enqueued;
+
+        /**
+         * Constructor.
+         *
+         * @param runnable the notification.
+         * @param lane     its lane.
+         */
+        private Entry(Runnable runnable, Lane lane) {
+            this.runnable = runnable;
+            this.lane = lane;
+            this.enqueued = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLaneQueue.Lane;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The depth, wait time and drops of the lanes of all {@link NotificationLaneQueue}s.
+ */
+public final class NotificationLaneStatistics {
+
+    private static final NotificationLaneStatistics INSTANCE = new NotificationLaneStatistics();
+
+    private final Map<Lane, Gauges> gauges = new EnumMap<Lane, Gauges>(Lane.class);
+    private final AtomicLong droppedSuperseded = new AtomicLong();
+    private final AtomicLong droppedOldest = new AtomicLong();
+
+    /**
+     * Constructor.
+     */
+    NotificationLaneStatistics() {
+        for (Lane lane : Lane.values()) {
+            gauges.put(lane, new Gauges());
+        }
+    }
+
+    /**
+     * The statistics of the notification queues of the plugin.
+     *
+     * @return the instance.
+     */
+    public static NotificationLaneStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Counts a notification put in a lane.
+     *
+     * @param lane the lane.
+     */
+    void enqueued(Lane lane) {
+        gauges.get(lane).depth.incrementAndGet();
+    }
+
+    /**
+     * Counts a notification taken from a lane.
+     *
+     * @param lane       the lane.
+     * @param waitMillis how long it waited in the lane.
+     */
+    void dequeued(Lane lane, long waitMillis) {
+        Gauges g = gauges.get(lane);
+        g.depth.decrementAndGet();
+        g.taken.incrementAndGet();
+        g.totalWaitMillis.addAndGet(waitMillis);
+        long max = g.maxWaitMillis.get();
+        while (waitMillis > max && !g.maxWaitMillis.compareAndSet(max, waitMillis)) {
+            max = g.maxWaitMillis.get();
+        }
+    }
+
+    /**
+     * Counts a notification removed from a lane without being taken.
+     *
+     * @param lane the lane.
+     */
+    void removed(Lane lane) {
+        gauges.get(lane).depth.decrementAndGet();
+    }
+
+    /**
+     * Counts a notification dropped to make room in a lane.
+     *
+     * @param lane       the lane.
+     * @param superseded if the patch set of the notification had a newer patch set queued.
+     */
+    void dropped(Lane lane, boolean superseded) {
+        removed(lane);
+        if (superseded) {
+            droppedSuperseded.incrementAndGet();
+        } else {
+            droppedOldest.incrementAndGet();
+        }
+    }
+
+    /**
+     * The number of notifications waiting in a lane.
+     *
+     * @param lane the lane.
+     * @return the number of notifications.
+     */
+    public long getDepth(Lane lane) {
+        return gauges.get(lane).depth.get();
+    }
+
+    /**
+     * The average time notifications waited in a lane before being sent.
+     *
+     * @param lane the lane.
+     * @return the time in ms.
+     */
+    public long getAverageWaitMillis(Lane lane) {
+        Gauges g = gauges.get(lane);
+        long taken = g.taken.get();
+        if (taken == 0) {
+            return 0;
+        }
+        return g.totalWaitMillis.get() / taken;
+    }
+
+    /**
+     * The longest time a notification waited in a lane before being sent.
+     *
+     * @param lane the lane.
+     * @return the time in ms.
+     */
+    public long getMaxWaitMillis(Lane lane) {
+        return gauges.get(lane).maxWaitMillis.get();
+    }
+
+    /**
+     * The number of build started messages dropped because a newer patch set of the change was queued.
+     *
+     * @return the number of messages.
+     */
+    public long getDroppedSuperseded() {
+        return droppedSuperseded.get();
+    }
+
+    /**
+     * The number of build started messages dropped because the lane was full.
+     *
+     * @return the number of messages.
+     */
+    public long getDroppedOldest() {
+        return droppedOldest.get();
+    }
+
+    /**
+     * Convenience for the jelly page, the lanes.
+     *
+     * @return the lanes.
+     */
+    public Lane[] getLanes() {
+        return Lane.values();
+    }
+
+    /**
+     * The counters of a lane.
+     */
+    private static final class Gauges {
+        private final AtomicLong depth = new AtomicLong();
+        private final AtomicLong taken = new AtomicLong();
+        private final AtomicLong totalWaitMillis = new AtomicLong();
+        private final AtomicLong maxWaitMillis = new AtomicLong();
+    }
+}
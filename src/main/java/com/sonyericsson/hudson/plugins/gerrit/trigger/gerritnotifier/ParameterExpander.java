@@ -30,12 +30,14 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTrigge
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildMemory.MemoryImprint;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildMemory.MemoryImprint.Entry;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildsStartedStats;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildsVerdict;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.StringUtil;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.rest.Notify;
 
+import hudson.EnvVars;
 import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
@@ -251,6 +253,8 @@ public class ParameterExpander {
     /**
      * Expands all types of parameters in the string and returns the "replaced" string.
      * Both types means both $ENV_VARS and &lt;PLUGIN_VARS&gt;
+     * The string is parsed once into a {@link MessageTemplate} and expanded in a single pass,
+     * the environment of the build is only fetched if the string refers to environment variables.
      * @param gerritCommand the command "template"
      * @param r the build containing the environment vars.
      * @param taskListener the taskListener
@@ -259,21 +263,22 @@ public class ParameterExpander {
      */
     private String expandParameters(String gerritCommand, Run r, TaskListener taskListener,
             Map<String, String> parameters) {
+        if (gerritCommand == null) {
+            return null;
+        }
+        MessageTemplate template = MessageTemplate.compile(gerritCommand);
 
-        if (r != null && taskListener != null) {
+        EnvVars env = null;
+        if (r != null && taskListener != null && template.hasEnvironmentVariables()) {
             try {
-                gerritCommand = r.getEnvironment(taskListener).expand(gerritCommand);
+                env = r.getEnvironment(taskListener);
             } catch (Exception ex) {
                 logger.error("Failed to expand env vars into gerrit cmd. Gerrit won't be notified!!", ex);
                 return null;
             }
         }
 
-        for (Map.Entry<String, String> param : parameters.entrySet()) {
-            gerritCommand = gerritCommand.replace("<" + param.getKey() + ">", param.getValue());
-        }
-
-        return gerritCommand;
+        return template.expand(parameters, env);
     }
 
     /**
@@ -488,13 +493,14 @@ public class ParameterExpander {
         // builds were successful, unstable or failed, we find the minimum
         // verified/code review value for the NOT_BUILT ones too.
         boolean onlyCountBuilt = true;
-        if (memoryImprint.wereAllBuildsSuccessful()) {
+        BuildsVerdict verdict = memoryImprint.getVerdict();
+        if (verdict.isAllBuildsSuccessful()) {
             command = config.getGerritCmdBuildSuccessful();
-        } else if (memoryImprint.wereAnyBuildsFailed()) {
+        } else if (verdict.isAnyBuildsFailed()) {
             command = config.getGerritCmdBuildFailed();
-        } else if (memoryImprint.wereAnyBuildsUnstable()) {
+        } else if (verdict.isAnyBuildsUnstable()) {
             command = config.getGerritCmdBuildUnstable();
-        } else if (memoryImprint.wereAllBuildsNotBuilt()) {
+        } else if (verdict.isAllBuildsNotBuilt()) {
             onlyCountBuilt = false;
             command = config.getGerritCmdBuildNotBuilt();
         } else {
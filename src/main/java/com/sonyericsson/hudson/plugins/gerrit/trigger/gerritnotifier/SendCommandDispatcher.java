@@ -0,0 +1,197 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.PluginConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLaneQueue.Lane;
+import com.sonymobile.tools.gerrit.gerritevents.GerritSendCommandQueue;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import com.sonymobile.tools.gerrit.gerritevents.workers.cmd.AbstractSendCommandJob;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the build started and build completed commands of the plugin in a {@link NotificationLaneQueue}
+ * and hands them to the {@link GerritSendCommandQueue} only when it has a free worker, so the lanes decide
+ * which command is sent next instead of the first in first out order of the send command queue.
+ */
+public final class SendCommandDispatcher {
+
+    /**
+     * The number of commands that can wait to be dispatched.
+     */
+    static final int QUEUE_CAPACITY = 10000;
+    /**
+     * How often a full send command queue is checked for room.
+     */
+    static final long POLL_MILLIS = 50;
+
+    private static final Logger logger = LoggerFactory.getLogger(SendCommandDispatcher.class);
+    private static final SendCommandDispatcher INSTANCE = new SendCommandDispatcher();
+
+    private final NotificationLaneQueue queue;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Constructor.
+     */
+    private SendCommandDispatcher() {
+        queue = new NotificationLaneQueue(QUEUE_CAPACITY, NotificationLaneQueue.DEFAULT_VERDICT_WEIGHT,
+                getMaxStartedBacklog(), NotificationLaneStatistics.getInstance());
+        executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, queue,
+                new NamingThreadFactory(new DaemonThreadFactory(), "Gerrit send command dispatcher"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The dispatcher of the plugin.
+     *
+     * @return the instance.
+     */
+    public static SendCommandDispatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues a command in its lane.
+     *
+     * @param job       the command.
+     * @param lane      the lane.
+     * @param event     the event of the command.
+     * @param changeKey the server and change of the command, or null if it isn't about a patch set.
+     * @param patchSet  the patch set number of the command.
+     */
+    public void queue(AbstractSendCommandJob job, Lane lane, GerritTriggeredEvent event, String changeKey,
+                      int patchSet) {
+        try {
+            executor.execute(new Dispatch(job, lane, event, changeKey, patchSet));
+        } catch (RejectedExecutionException e) {
+            logger.warn("The dispatcher is full, sending the command straight to the send command queue");
+            GerritSendCommandQueue.queue(job);
+        }
+    }
+
+    /**
+     * Applies a new build started backlog limit.
+     *
+     * @param pluginConfig the global configuration.
+     */
+    public void configure(PluginConfig pluginConfig) {
+        queue.setMaxStartedBacklog(pluginConfig.getMaxStartedBacklog());
+    }
+
+    /**
+     * The build started backlog limit from the global configuration.
+     *
+     * @return the number of build started commands that can wait.
+     */
+    private static int getMaxStartedBacklog() {
+        PluginConfig pluginConfig = PluginImpl.getPluginConfig_();
+        if (pluginConfig == null) {
+            return NotificationLaneQueue.DEFAULT_MAX_STARTED_BACKLOG;
+        }
+        return pluginConfig.getMaxStartedBacklog();
+    }
+
+    /**
+     * The number of commands the send command queue may hold before the dispatcher waits.
+     *
+     * @return the number of sending worker threads.
+     */
+    private static int getSendQueueLimit() {
+        PluginConfig pluginConfig = PluginImpl.getPluginConfig_();
+        if (pluginConfig == null) {
+            return PluginConfig.DEFAULT_NR_OF_SENDING_WORKER_THREADS;
+        }
+        return pluginConfig.getNumberOfSendingWorkerThreads();
+    }
+
+    /**
+     * Hands a command to the send command queue once it has room.
+     */
+    private static final class Dispatch implements NotificationLaneQueue.Item {
+        private final AbstractSendCommandJob job;
+        private final Lane lane;
+        private final GerritTriggeredEvent event;
+        private final String changeKey;
+        private final int patchSet;
+
+        /**
+         * Constructor.
+         *
+         * @param job       the command.
+         * @param lane      the lane.
+         * @param event     the event of the command.
+         * @param changeKey the server and change of the command.
+         * @param patchSet  the patch set number of the command.
+         */
+        private Dispatch(AbstractSendCommandJob job, Lane lane, GerritTriggeredEvent event, String changeKey,
+                         int patchSet) {
+            this.job = job;
+            this.lane = lane;
+            this.event = event;
+            this.changeKey = changeKey;
+            this.patchSet = patchSet;
+        }
+
+        @Override
+        public Lane getLane() {
+            return lane;
+        }
+
+        @Override
+        public GerritTriggeredEvent getEvent() {
+            return event;
+        }
+
+        @Override
+        public String getChangeKey() {
+            return changeKey;
+        }
+
+        @Override
+        public int getPatchSetNumber() {
+            return patchSet;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (GerritSendCommandQueue.getQueueSize() >= getSendQueueLimit()) {
+                    Thread.sleep(POLL_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            GerritSendCommandQueue.queue(job);
+        }
+    }
+}
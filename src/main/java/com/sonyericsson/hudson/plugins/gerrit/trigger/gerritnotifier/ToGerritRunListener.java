@@ -26,6 +26,7 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.events.lifecycle.GerritEventLifecycle;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildMemory;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildMemory.MemoryImprint;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildsStartedStats;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritCause;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
@@ -48,6 +49,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import jenkins.model.Jenkins;
 
@@ -87,7 +89,8 @@ public final class ToGerritRunListener extends RunListener<Run> {
     }
 
     @Override
-    public synchronized void onCompleted(@Nonnull Run r, @Nonnull TaskListener listener) {
+    public void onCompleted(@Nonnull Run r, @Nonnull TaskListener listener) {
+        long start = System.nanoTime();
         GerritCause cause = getCause(r);
         logger.debug("Completed. Build: {} Cause: {}", r, cause);
         if (cause != null) {
@@ -102,30 +105,57 @@ public final class ToGerritRunListener extends RunListener<Run> {
                 ((GerritEventLifecycle)event).fireBuildCompleted(r);
             }
             if (!cause.isSilentMode()) {
-                memory.completed(event, r);
-
                 Result result = r.getResult();
                 if (result != null && result.isWorseThan(Result.SUCCESS)) {
-                    try {
-                        // Attempt to record the failure message, if applicable
-                        String failureMessage = this.obtainFailureMessage(event, r, listener);
-                        logger.info("Obtained failure message: {}", failureMessage);
-                        memory.setEntryFailureMessage(event, r, failureMessage);
-                    } catch (IOException e) {
-                        listener.error("[gerrit-trigger] Unable to read failure message from the workspace.");
-                        logger.warn("IOException while obtaining failure message for build: "
-                                + r.getDisplayName(), e);
-                    } catch (InterruptedException e) {
-                        listener.error("[gerrit-trigger] Unable to read failure message from the workspace.");
-                        logger.warn("InterruptedException while obtaining failure message for build: "
-                                + r.getDisplayName(), e);
-                    }
+                    recordFailureMessage(event, r, listener);
                 }
-
-                updateTriggerContexts(r);
-                allBuildsCompleted(event, cause, listener);
+                completed(event, cause, r, listener);
             }
         }
+        if (logger.isDebugEnabled()) {
+            logger.debug("onCompleted for {} took {} ms", r,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Marks the build as completed and reports the event if all of its builds are completed.
+     *
+     * @param event    the event that triggered the build.
+     * @param cause    the cause of the build.
+     * @param r        the build.
+     * @param listener the build listener.
+     */
+    private void completed(GerritTriggeredEvent event, GerritCause cause, Run r, TaskListener listener) {
+        memory.completed(event, r);
+        updateTriggerContexts(r);
+        allBuildsCompleted(event, cause, listener);
+    }
+
+    /**
+     * Reads the failure message of the build, if applicable, and records it in the memory.
+     * The message is read while the build's listener and workspace are still the build's, and is recorded before
+     * the build is marked as completed so that a concurrently completing build of the same event can't send the
+     * verdict without it.
+     *
+     * @param event    the event that triggered the build.
+     * @param r        the build.
+     * @param listener the build listener.
+     */
+    private void recordFailureMessage(GerritTriggeredEvent event, Run r, TaskListener listener) {
+        try {
+            String failureMessage = obtainFailureMessage(event, r, listener);
+            logger.info("Obtained failure message: {}", failureMessage);
+            memory.setEntryFailureMessage(event, r, failureMessage);
+        } catch (IOException e) {
+            listener.error("[gerrit-trigger] Unable to read failure message from the workspace.");
+            logger.warn("IOException while obtaining failure message for build: "
+                    + r.getDisplayName(), e);
+        } catch (InterruptedException e) {
+            listener.error("[gerrit-trigger] Unable to read failure message from the workspace.");
+            logger.warn("InterruptedException while obtaining failure message for build: "
+                    + r.getDisplayName(), e);
+        }
     }
 
     /**
@@ -136,17 +166,14 @@ public final class ToGerritRunListener extends RunListener<Run> {
      * @param cause   the Gerrit Cause which triggered the build initially.
      * @param listener   the Jenkins listener.
      */
-    public synchronized void allBuildsCompleted(GerritTriggeredEvent event, GerritCause cause, TaskListener listener) {
-        if (memory.isAllBuildsCompleted(event)) {
-            try {
-                logger.info("All Builds are completed for cause: {}", cause);
-                if (event instanceof GerritEventLifecycle) {
-                    ((GerritEventLifecycle)event).fireAllBuildsCompleted();
-                }
-                NotificationFactory.getInstance().queueBuildCompleted(memory.getMemoryImprint(event), listener);
-            } finally {
-                memory.forget(event);
+    public void allBuildsCompleted(GerritTriggeredEvent event, GerritCause cause, TaskListener listener) {
+        MemoryImprint imprint = memory.forgetIfAllBuildsCompleted(event);
+        if (imprint != null) {
+            logger.info("All Builds are completed for cause: {}", cause);
+            if (event instanceof GerritEventLifecycle) {
+                ((GerritEventLifecycle)event).fireAllBuildsCompleted();
             }
+            NotificationFactory.getInstance().queueBuildCompleted(imprint, listener);
         } else {
             logger.info("Waiting for more builds to complete for cause [{}]. Status: \n{}",
                     cause, memory.getStatusReport(event));
@@ -160,21 +187,15 @@ public final class ToGerritRunListener extends RunListener<Run> {
      * @param p   the Gerrit project being checked.
      * @return true if so.
      */
-    public synchronized boolean isProjectTriggeredAndIncomplete(Job p, GerritTriggeredEvent event) {
-        if (!memory.isTriggered(event, p)) {
-            return false;
-        }
-        //misnomer: the project is considered "building", even if the build hasn't been created
-        //for that project yet. As long as the project exists, and does not have a completed
-        //build, it is "building".
-        if (memory.isBuilding(event, p)) {
-            return true;
-        }
-        return false;
+    public boolean isProjectTriggeredAndIncomplete(Job p, GerritTriggeredEvent event) {
+        //the project is considered incomplete even if the build hasn't been created for that
+        //project yet. As long as the project is triggered, and does not have a completed build,
+        //it is incomplete.
+        return memory.isTriggeredAndIncomplete(event, p);
     }
 
     @Override
-    public synchronized void onStarted(Run r, TaskListener listener) {
+    public void onStarted(Run r, TaskListener listener) {
         GerritCause cause = getCause(r);
         logger.debug("Started. Build: {} Cause: {}", r, cause);
         if (cause != null) {
@@ -262,7 +283,7 @@ public final class ToGerritRunListener extends RunListener<Run> {
      * @param project the project that will be built.
      * @param event   the event that caused the build to be scheduled.
      */
-    public synchronized void onTriggered(Job project, GerritTriggeredEvent event) {
+    public void onTriggered(Job project, GerritTriggeredEvent event) {
         //TODO stop builds for earlier patch-sets on same change.
         memory.triggered(event, project);
         if (event instanceof GerritEventLifecycle) {
@@ -283,9 +304,9 @@ public final class ToGerritRunListener extends RunListener<Run> {
      * @param event       the event.
      * @param otherBuilds the list of other builds in the previous context.
      */
-    public synchronized void onRetriggered(Job project,
-                                           GerritTriggeredEvent event,
-                                           List<Run> otherBuilds) {
+    public void onRetriggered(Job project,
+                              GerritTriggeredEvent event,
+                              List<Run> otherBuilds) {
         memory.retriggered(event, project, otherBuilds);
         if (event instanceof GerritEventLifecycle) {
             ((GerritEventLifecycle)event).fireProjectTriggered(project);
@@ -346,6 +367,27 @@ public final class ToGerritRunListener extends RunListener<Run> {
         }
     }
 
+    /**
+     * Updates the memory of a job that has been renamed.
+     *
+     * @param oldFullName the former full name of the job.
+     * @param newFullName the current full name of the job.
+     * @see BuildMemory#onJobRenamed(String, String)
+     */
+    public void onJobRenamed(@Nonnull String oldFullName, @Nonnull String newFullName) {
+        memory.onJobRenamed(oldFullName, newFullName);
+    }
+
+    /**
+     * Updates the memory of a job that has been deleted.
+     *
+     * @param fullName the full name of the job.
+     * @see BuildMemory#onJobDeleted(String)
+     */
+    public void onJobDeleted(@Nonnull String fullName) {
+        memory.onJobDeleted(fullName);
+    }
+
     /**
      * Finds the GerritCause for a build if there is one.
      *
@@ -45,7 +45,7 @@ import java.util.List;
 * A job for the {@link com.sonymobile.tools.gerrit.gerritevents.GerritSendCommandQueue} that
 * sends a build completed message.
 */
-public class BuildCompletedRestCommandJob extends AbstractRestCommandJob {
+public class BuildCompletedRestCommandJob extends AbstractRestCommandJob implements RestReviewJob {
 
     private static final String LABEL_CODEREVIEW = "Code-Review";
     private static final String LABEL_VERIFIED   = "Verified";
@@ -73,7 +73,7 @@ public class BuildCompletedRestCommandJob extends AbstractRestCommandJob {
     }
 
     @Override
-    protected ReviewInput createReview() {
+    public ReviewInput createReview() {
         String message = parameterExpander.getBuildCompletedMessage(memoryImprint, listener);
         Collection<ReviewLabel> scoredLabels = new ArrayList<ReviewLabel>();
         if (memoryImprint.getEvent().isScorable()) {
@@ -105,4 +105,14 @@ public class BuildCompletedRestCommandJob extends AbstractRestCommandJob {
         }
         return new ReviewInput(message, scoredLabels, commentedFiles).setNotify(notificationLevel);
     }
+
+    @Override
+    public ChangeBasedEvent getEvent() {
+        return (ChangeBasedEvent)memoryImprint.getEvent();
+    }
+
+    @Override
+    public TaskListener getListener() {
+        return listener;
+    }
 }
@@ -37,7 +37,7 @@ import hudson.model.TaskListener;
  * A job for the {@link com.sonymobile.tools.gerrit.gerritevents.GerritSendCommandQueue} that
  * sends a build started message.
  */
-public class BuildStartedRestCommandJob extends AbstractRestCommandJob {
+public class BuildStartedRestCommandJob extends AbstractRestCommandJob implements RestReviewJob {
 
     private final Run build;
     private final BuildsStartedStats stats;
@@ -68,9 +68,19 @@ public class BuildStartedRestCommandJob extends AbstractRestCommandJob {
      *
      * @return ReviewInput
      */
-    protected ReviewInput createReview() {
+    @Override
+    public ReviewInput createReview() {
         String message = parameterExpander.getBuildStartedMessage(build, listener, event, stats);
         return new ReviewInput(message);
     }
 
+    @Override
+    public ChangeBasedEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public TaskListener getListener() {
+        return listener;
+    }
 }
@@ -0,0 +1,578 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.rest;
+
+import com.google.gson.Gson;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.PluginConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLaneQueue;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLaneQueue.Lane;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLaneStatistics;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.HttpUtils;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Posts reviews to the REST API of Gerrit without holding up the send command queue.
+ *
+ * Each server has its own pool of threads, sized by the in-flight limit, so a slow server only delays its own
+ * reviews. Reviews that fail with a server error, 429 Too Many Requests or a connection problem are retried
+ * with exponential backoff and jitter. Reviews that can't be delivered end up in a bounded dead letter list.
+ * The reviews waiting for a server are held in a
+ * {@link NotificationLaneQueue}, so verdicts are posted before build started messages.
+ */
+public final class RestReviewNotifier {
+
+    /**
+     * Default number of reviews posted to the same server at the same time.
+     */
+    public static final int DEFAULT_IN_FLIGHT_PER_SERVER = 2;
+    /**
+     * The number of attempts to post a review.
+     */
+    static final int MAX_ATTEMPTS = 5;
+    /**
+     * The backoff before the first retry, doubled for each following one.
+     */
+    static final long BASE_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    /**
+     * The longest backoff.
+     */
+    static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    /**
+     * The number of reviews that can wait for a free thread of a server.
+     */
+    static final int QUEUE_CAPACITY = 1000;
+    /**
+     * The number of dead letters kept.
+     */
+    static final int MAX_DEAD_LETTERS = 100;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    private static final Logger logger = LoggerFactory.getLogger(RestReviewNotifier.class);
+    private static final Gson GSON = new Gson();
+    private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "Gerrit REST notifier retry"));
+    private static RestReviewNotifier instance;
+
+    private final ConcurrentMap<String, ThreadPoolExecutor> lanes = new ConcurrentHashMap<String, ThreadPoolExecutor>();
+    private final LinkedList<DeadLetter> deadLetters = new LinkedList<DeadLetter>();
+    private final Random random = new Random();
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param maxAttempts       the number of attempts to post a review.
+     * @param baseBackoffMillis the backoff before the first retry.
+     * @param maxBackoffMillis  the longest backoff.
+     */
+    RestReviewNotifier(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis) {
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Gets the singleton instance of the RestReviewNotifier.
+     *
+     * @return the instance.
+     */
+    public static synchronized RestReviewNotifier getInstance() {
+        if (instance == null) {
+            instance = new RestReviewNotifier(MAX_ATTEMPTS, BASE_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a review to be posted.
+     *
+     * @param serverName the name of the server.
+     * @param config     the config of the server.
+     * @param job        the review.
+     * @param lane       the lane of the review.
+     */
+    public void queue(String serverName, IGerritHudsonTriggerConfig config, RestReviewJob job, Lane lane) {
+        submit(new Attempt(serverName, config, job, lane));
+    }
+
+    /**
+     * Applies a new in-flight limit to the servers already posted to.
+     *
+     * @param pluginConfig the global configuration.
+     */
+    public void configure(PluginConfig pluginConfig) {
+        int inFlight = pluginConfig.getRestInFlightPerServer();
+        for (ThreadPoolExecutor lane : lanes.values()) {
+            ((NotificationLaneQueue)lane.getQueue()).setMaxStartedBacklog(pluginConfig.getMaxStartedBacklog());
+            if (inFlight > lane.getMaximumPoolSize()) {
+                lane.setMaximumPoolSize(inFlight);
+                lane.setCorePoolSize(inFlight);
+            } else {
+                lane.setCorePoolSize(inFlight);
+                lane.setMaximumPoolSize(inFlight);
+            }
+        }
+    }
+
+    /**
+     * Hands an attempt to the threads of its server.
+     *
+     * @param attempt the attempt.
+     */
+    private void submit(Attempt attempt) {
+        try {
+            getLane(attempt.serverName).execute(attempt);
+        } catch (RejectedExecutionException e) {
+            deadLetter(attempt, 0, "Too many reviews waiting to be posted");
+        }
+    }
+
+    /**
+     * Gets the threads of a server, creating them if needed.
+     *
+     * @param serverName the name of the server.
+     * @return the executor.
+     */
+    private ThreadPoolExecutor getLane(String serverName) {
+        ThreadPoolExecutor lane = lanes.get(serverName);
+        if (lane == null) {
+            int inFlight = getInFlightPerServer();
+            ThreadPoolExecutor newLane = new ThreadPoolExecutor(inFlight, inFlight, 1, TimeUnit.MINUTES,
+                    new NotificationLaneQueue(QUEUE_CAPACITY, NotificationLaneQueue.DEFAULT_VERDICT_WEIGHT,
+                            getMaxStartedBacklog(), NotificationLaneStatistics.getInstance()),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Gerrit REST notifier " + serverName));
+            newLane.allowCoreThreadTimeOut(true);
+            lane = lanes.putIfAbsent(serverName, newLane);
+            if (lane == null) {
+                lane = newLane;
+            } else {
+                newLane.shutdown();
+            }
+        }
+        return lane;
+    }
+
+    /**
+     * The in-flight limit from the global configuration.
+     *
+     * @return the number of reviews posted to the same server at the same time.
+     */
+    private int getInFlightPerServer() {
+        PluginConfig pluginConfig = PluginImpl.getPluginConfig_();
+        if (pluginConfig == null) {
+            return DEFAULT_IN_FLIGHT_PER_SERVER;
+        }
+        return pluginConfig.getRestInFlightPerServer();
+    }
+
+    /**
+     * The build started backlog limit from the global configuration.
+     *
+     * @return the number of build started reviews that can wait for a server.
+     */
+    private int getMaxStartedBacklog() {
+        PluginConfig pluginConfig = PluginImpl.getPluginConfig_();
+        if (pluginConfig == null) {
+            return NotificationLaneQueue.DEFAULT_MAX_STARTED_BACKLOG;
+        }
+        return pluginConfig.getMaxStartedBacklog();
+    }
+
+    /**
+     * The time to wait before the next attempt, exponential in the number of attempts made,
+     * with a random half to spread out retries from many builds.
+     *
+     * @param attempts          the number of attempts made.
+     * @param retryAfterSeconds the wait the server asked for, or 0.
+     * @return the time in ms.
+     */
+    long getBackoffMillis(int attempts, int retryAfterSeconds) {
+        long backoff = maxBackoffMillis;
+        if (attempts - 1 < Long.SIZE - 2) {
+            backoff = Math.min(baseBackoffMillis << (attempts - 1), maxBackoffMillis);
+        }
+        long half = backoff / 2;
+        long delay;
+        synchronized (random) {
+            delay = half + (long)(random.nextDouble() * (backoff - half));
+        }
+        return Math.max(delay, Math.min(TimeUnit.SECONDS.toMillis(retryAfterSeconds), maxBackoffMillis));
+    }
+
+    /**
+     * Records a review that could not be posted.
+     *
+     * @param attempt    the last attempt.
+     * @param statusCode the status of the last response, 0 if there was none.
+     * @param reason     why it failed.
+     */
+    private void deadLetter(Attempt attempt, int statusCode, String reason) {
+        failed.incrementAndGet();
+        ChangeBasedEvent event = attempt.job.getEvent();
+        String change = null;
+        if (event != null && event.getChange() != null && event.getPatchSet() != null) {
+            change = event.getChange().getNumber() + "," + event.getPatchSet().getNumber();
+        }
+        logger.error("Failed to post review of {} to {} after {} attempts: {}",
+                new Object[]{change, attempt.serverName, attempt.attempts, reason});
+        TaskListener listener = attempt.job.getListener();
+        if (listener != null) {
+            listener.error("[gerrit-trigger] Failed to post review to Gerrit: " + reason);
+        }
+        synchronized (deadLetters) {
+            deadLetters.addFirst(new DeadLetter(attempt.serverName, change, statusCode, reason, attempt.attempts));
+            if (deadLetters.size() > MAX_DEAD_LETTERS) {
+                deadLetters.removeLast();
+            }
+        }
+    }
+
+    /**
+     * The most recent reviews that could not be posted, newest first.
+     *
+     * @return the dead letters.
+     */
+    public List<DeadLetter> getDeadLetters() {
+        synchronized (deadLetters) {
+            return new ArrayList<DeadLetter>(deadLetters);
+        }
+    }
+
+    /**
+     * Forgets the dead letters.
+     */
+    public void clearDeadLetters() {
+        synchronized (deadLetters) {
+            deadLetters.clear();
+        }
+    }
+
+    /**
+     * The number of reviews posted.
+     *
+     * @return the number of reviews.
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * The number of retries.
+     *
+     * @return the number of retries.
+     */
+    public long getRetriedCount() {
+        return retried.get();
+    }
+
+    /**
+     * The number of reviews that could not be posted.
+     *
+     * @return the number of reviews.
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * The number of reviews posted or waiting to be posted to a server.
+     *
+     * @param serverName the name of the server.
+     * @return the number of reviews.
+     */
+    public int getQueueSize(String serverName) {
+        ThreadPoolExecutor lane = lanes.get(serverName);
+        if (lane == null) {
+            return 0;
+        }
+        return lane.getQueue().size() + lane.getActiveCount();
+    }
+
+    /**
+     * The review endpoint of the patch set of an event.
+     *
+     * @param config the config of the server.
+     * @param event  the event.
+     * @return the url.
+     * @throws UnsupportedEncodingException if UTF-8 isn't supported.
+     */
+    static String getReviewUrl(IGerritHudsonTriggerConfig config, ChangeBasedEvent event)
+            throws UnsupportedEncodingException {
+        String url = config.getGerritFrontEndUrl();
+        if (!url.endsWith("/")) {
+            url = url + "/";
+        }
+        return url + "a/changes/"
+                + URLEncoder.encode(event.getChange().getProject(), "UTF-8") + "~"
+                + URLEncoder.encode(event.getChange().getBranch(), "UTF-8") + "~"
+                + event.getChange().getId()
+                + "/revisions/" + event.getPatchSet().getRevision() + "/review";
+    }
+
+    /**
+     * An attempt to post a review, resubmitted for each retry.
+     */
+    private final class Attempt implements NotificationLaneQueue.Item {
+        private final String serverName;
+        private final IGerritHudsonTriggerConfig config;
+        private final RestReviewJob job;
+        private final Lane lane;
+        private String json;
+        private int attempts = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param serverName the name of the server.
+         * @param config     the config of the server.
+         * @param job        the review.
+         * @param lane       the lane of the review.
+         */
+        private Attempt(String serverName, IGerritHudsonTriggerConfig config, RestReviewJob job, Lane lane) {
+            this.serverName = serverName;
+            this.config = config;
+            this.job = job;
+            this.lane = lane;
+        }
+
+        @Override
+        public Lane getLane() {
+            return lane;
+        }
+
+        @Override
+        public ChangeBasedEvent getEvent() {
+            return job.getEvent();
+        }
+
+        @Override
+        public String getChangeKey() {
+            ChangeBasedEvent event = job.getEvent();
+            if (event == null || event.getChange() == null) {
+                return null;
+            }
+            return serverName + "/" + event.getChange().getNumber();
+        }
+
+        @Override
+        public int getPatchSetNumber() {
+            ChangeBasedEvent event = job.getEvent();
+            if (event == null || event.getPatchSet() == null) {
+                return 0;
+            }
+            try {
+                return Integer.parseInt(event.getPatchSet().getNumber());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public void run() {
+            attempts++;
+            int statusCode = 0;
+            int retryAfterSeconds = 0;
+            String reason;
+            try {
+                if (json == null) {
+                    json = GSON.toJson(job.createReview());
+                }
+                HttpResponse response = HttpUtils.performHTTPPost(config, getReviewUrl(config, job.getEvent()), json);
+                try {
+                    statusCode = response.getStatusLine().getStatusCode();
+                    retryAfterSeconds = getRetryAfterSeconds(response);
+                } finally {
+                    HttpUtils.release(response);
+                }
+                if (statusCode == HttpURLConnection.HTTP_OK) {
+                    sent.incrementAndGet();
+                    return;
+                }
+                reason = "HTTP " + statusCode;
+            } catch (IOException e) {
+                logger.debug("Failed to post review to " + serverName, e);
+                reason = e.getMessage();
+            }
+            if (isRetryable(statusCode) && attempts < maxAttempts) {
+                retried.incrementAndGet();
+                long delay = getBackoffMillis(attempts, retryAfterSeconds);
+                logger.warn("Failed to post review to {}: {}, retrying in {} ms",
+                        new Object[]{serverName, reason, delay});
+                RETRY_SCHEDULER.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        submit(Attempt.this);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } else {
+                deadLetter(this, statusCode, reason);
+            }
+        }
+
+        /**
+         * Checks if a failed post should be retried.
+         *
+         * @param statusCode the status of the response, 0 if there was none.
+         * @return true if so.
+         */
+        private boolean isRetryable(int statusCode) {
+            return statusCode == 0 || statusCode == HTTP_TOO_MANY_REQUESTS || statusCode >= HTTP_SERVER_ERROR;
+        }
+
+        /**
+         * The Retry-After header of a response, if given in seconds.
+         *
+         * @param response the response.
+         * @return the seconds, or 0.
+         */
+        private int getRetryAfterSeconds(HttpResponse response) {
+            Header header = response.getFirstHeader("Retry-After");
+            if (header != null) {
+                try {
+                    return Math.max(0, Integer.parseInt(header.getValue().trim()));
+                } catch (NumberFormatException e) {
+                    logger.debug("Retry-After is not in seconds: {}", header.getValue());
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * A review that could not be posted.
+     */
+    public static final class DeadLetter {
+        private final Date time;
+        private final String serverName;
+        private final String change;
+        private final int statusCode;
+        private final String reason;
+        private final int attempts;
+
+        /**
+         * Constructor.
+         *
+         * @param serverName the name of the server.
+         * @param change     the change and patch set numbers.
+         * @param statusCode the status of the last response, 0 if there was none.
+         * @param reason     why it failed.
+         * @param attempts   the number of attempts made.
+         */
+        DeadLetter(String serverName, String change, int statusCode, String reason, int attempts) {
+            this.time = new Date();
+            this.serverName = serverName;
+            this.change = change;
+            this.statusCode = statusCode;
+            this.reason = reason;
+            this.attempts = attempts;
+        }
+
+        /**
+         * When the review was given up on.
+         *
+         * @return the time.
+         */
+        public Date getTime() {
+            return new Date(time.getTime());
+        }
+
+        /**
+         * The name of the server.
+         *
+         * @return the name.
+         */
+        public String getServerName() {
+            return serverName;
+        }
+
+        /**
+         * The change and patch set numbers, like 1000,1.
+         *
+         * @return the change.
+         */
+        public String getChange() {
+            return change;
+        }
+
+        /**
+         * The status of the last response.
+         *
+         * @return the status code, 0 if there was no response.
+         */
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        /**
+         * Why it failed.
+         *
+         * @return the reason.
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        /**
+         * The number of attempts made.
+         *
+         * @return the number of attempts.
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+}
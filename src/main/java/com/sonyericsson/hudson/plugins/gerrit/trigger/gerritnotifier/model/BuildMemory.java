@@ -42,46 +42,57 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.sonyericsson.hudson.plugins.gerrit.trigger.utils.Logic.shouldSkip;
 
 /**
  * Keeps track of what builds have been triggered and if all builds are done for specific events.
  *
+ * The memory is a concurrent map where each {@link MemoryImprint} guards its own entries, so builds for different
+ * events never wait on each other. Events are keyed by identity, every event received from Gerrit is kept track of
+ * individually even when two of them happen to share a hash code.
+ *
  * @author Robert Sandell &lt;robert.sandell@sonyericsson.com&gt;
  */
 public class BuildMemory {
 
     /**
-     * Compares GerritTriggeredEvents using the Object.hashCode() method. This ensures that every event received from
-     * Gerrit is kept track of individually.
-     *
-     * @author James E. Blair &lt;jeblair@hp.com&gt;
+     * Wraps a {@link GerritTriggeredEvent} so that it is compared by identity. This ensures that every event received
+     * from Gerrit is kept track of individually.
      */
-    static class GerritTriggeredEventComparator implements Comparator<GerritTriggeredEvent> {
+    static final class EventKey {
+        private final GerritTriggeredEvent event;
+
+        /**
+         * Constructor.
+         *
+         * @param event the event.
+         */
+        EventKey(GerritTriggeredEvent event) {
+            this.event = event;
+        }
+
         @Override
-        public int compare(GerritTriggeredEvent o1, GerritTriggeredEvent o2) {
-            if (o1 == null && o2 == null) {
-                return 0;
-            }
-            if (o1 != null && o2 == null) {
-                return 1;
-            }
-            if (o1 == null && o2 != null) {
-                return -1;
-            }
-            return Integer.valueOf(o1.hashCode()).compareTo(o2.hashCode());
+        public boolean equals(Object o) {
+            return o instanceof EventKey && ((EventKey)o).event == event;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(event);
         }
     }
 
-    private TreeMap<GerritTriggeredEvent, MemoryImprint> memory =
-            new TreeMap<GerritTriggeredEvent, MemoryImprint>(
-                    new GerritTriggeredEventComparator());
+    private final ConcurrentMap<EventKey, MemoryImprint> memory = new ConcurrentHashMap<EventKey, MemoryImprint>();
     private static final Logger logger = LoggerFactory.getLogger(BuildMemory.class);
 
     /**
@@ -90,8 +101,28 @@ public class BuildMemory {
      * @param event the event.
      * @return the memory.
      */
-    public synchronized MemoryImprint getMemoryImprint(GerritTriggeredEvent event) {
-        return memory.get(event);
+    public MemoryImprint getMemoryImprint(GerritTriggeredEvent event) {
+        return memory.get(new EventKey(event));
+    }
+
+    /**
+     * Gets the memory of a specific event, creating it if there is none.
+     *
+     * @param event the event.
+     * @return the memory.
+     */
+    @Nonnull
+    private MemoryImprint getOrCreateMemoryImprint(GerritTriggeredEvent event) {
+        EventKey key = new EventKey(event);
+        MemoryImprint pb = memory.get(key);
+        if (pb == null) {
+            MemoryImprint created = new MemoryImprint(event);
+            pb = memory.putIfAbsent(key, created);
+            if (pb == null) {
+                pb = created;
+            }
+        }
+        return pb;
     }
 
     /**
@@ -100,8 +131,8 @@ public class BuildMemory {
      * @param event the event.
      * @return true if it is so.
      */
-    public synchronized boolean isAllBuildsCompleted(GerritTriggeredEvent event) {
-        MemoryImprint pb = memory.get(event);
+    public boolean isAllBuildsCompleted(GerritTriggeredEvent event) {
+        MemoryImprint pb = getMemoryImprint(event);
         if (pb != null) {
             return pb.isAllBuildsCompleted();
         } else {
@@ -115,8 +146,8 @@ public class BuildMemory {
      * @param event the event.
      * @return the statistics.
      */
-    public synchronized BuildsStartedStats getBuildsStartedStats(GerritTriggeredEvent event) {
-        MemoryImprint pb = memory.get(event);
+    public BuildsStartedStats getBuildsStartedStats(GerritTriggeredEvent event) {
+        MemoryImprint pb = getMemoryImprint(event);
         if (pb != null) {
             return pb.getBuildsStartedStats();
         } else {
@@ -132,8 +163,8 @@ public class BuildMemory {
      *
      * @see MemoryImprint#getStatusReport()
      */
-    public synchronized String getStatusReport(GerritTriggeredEvent event) {
-        MemoryImprint pb = memory.get(event);
+    public String getStatusReport(GerritTriggeredEvent event) {
+        MemoryImprint pb = getMemoryImprint(event);
         if (pb != null) {
             return pb.getStatusReport();
         } else {
@@ -147,8 +178,8 @@ public class BuildMemory {
      * @param event the event.
      * @return true if it is so.
      */
-    public synchronized boolean isAllBuildsStarted(GerritTriggeredEvent event) {
-        MemoryImprint pb = memory.get(event);
+    public boolean isAllBuildsStarted(GerritTriggeredEvent event) {
+        MemoryImprint pb = getMemoryImprint(event);
         if (pb != null) {
             return pb.isAllBuildsSet();
         } else {
@@ -162,14 +193,17 @@ public class BuildMemory {
      * @param event the event
      * @param build the build.
      */
-    public synchronized void completed(GerritTriggeredEvent event, Run build) {
-        MemoryImprint pb = memory.get(event);
-        if (pb == null) {
-            //Shoudn't happen but just in case, keep the memory.
-            pb = new MemoryImprint(event);
-            memory.put(event, pb);
+    public void completed(GerritTriggeredEvent event, Run build) {
+        //Shoudn't need to create it but just in case, keep the memory.
+        while (true) {
+            MemoryImprint pb = getOrCreateMemoryImprint(event);
+            synchronized (pb) {
+                if (!pb.retired) {
+                    pb.set(build.getParent(), build, true);
+                    return;
+                }
+            }
         }
-        pb.set(build.getParent(), build, true);
     }
 
     /**
@@ -178,15 +212,20 @@ public class BuildMemory {
      * @param event the event.
      * @param build the build.
      */
-    public synchronized void started(GerritTriggeredEvent event, Run build) {
-        MemoryImprint pb = memory.get(event);
-        if (pb == null) {
+    public void started(GerritTriggeredEvent event, Run build) {
+        if (getMemoryImprint(event) == null) {
             //A build should not start for a job that hasn't been registered. Keep the memory anyway.
-            pb = new MemoryImprint(event);
             logger.warn("Build started without being registered first.");
-            memory.put(event, pb);
         }
-        pb.set(build.getParent(), build);
+        while (true) {
+            MemoryImprint pb = getOrCreateMemoryImprint(event);
+            synchronized (pb) {
+                if (!pb.retired) {
+                    pb.set(build.getParent(), build);
+                    return;
+                }
+            }
+        }
     }
 
     /**
@@ -195,13 +234,16 @@ public class BuildMemory {
      * @param event   the event that triggered it.
      * @param project the project that was triggered.
      */
-    public synchronized void triggered(GerritTriggeredEvent event, Job project) {
-        MemoryImprint pb = memory.get(event);
-        if (pb == null) {
-            pb = new MemoryImprint(event);
-            memory.put(event, pb);
+    public void triggered(GerritTriggeredEvent event, Job project) {
+        while (true) {
+            MemoryImprint pb = getOrCreateMemoryImprint(event);
+            synchronized (pb) {
+                if (!pb.retired) {
+                    pb.set(project);
+                    return;
+                }
+            }
         }
-        pb.set(project);
     }
 
     /**
@@ -213,22 +255,35 @@ public class BuildMemory {
      * @param project     the project that has been retriggered.
      * @param otherBuilds the list of other builds that was in the "old" memory.
      */
-    public synchronized void retriggered(
+    public void retriggered(
             GerritTriggeredEvent event,
             Job project,
             List<Run> otherBuilds) {
-        MemoryImprint pb = memory.get(event);
-        if (pb == null) {
-            pb = new MemoryImprint(event);
-            memory.put(event, pb);
-            if (otherBuilds != null) {
-                //It is a new memory so it wasn't building, let's populate with old build info
-                for (Run build : otherBuilds) {
-                    pb.set(build.getParent(), build, !build.isBuilding());
+        EventKey key = new EventKey(event);
+        while (true) {
+            MemoryImprint pb = memory.get(key);
+            if (pb == null) {
+                MemoryImprint created = new MemoryImprint(event);
+                synchronized (created) {
+                    pb = memory.putIfAbsent(key, created);
+                    if (pb == null) {
+                        pb = created;
+                        if (otherBuilds != null) {
+                            //It is a new memory so it wasn't building, let's populate with old build info
+                            for (Run build : otherBuilds) {
+                                pb.set(build.getParent(), build, !build.isBuilding());
+                            }
+                        }
+                    }
+                }
+            }
+            synchronized (pb) {
+                if (!pb.retired) {
+                    pb.reset(project);
+                    return;
                 }
             }
         }
-        pb.reset(project);
     }
 
     /**
@@ -236,8 +291,38 @@ public class BuildMemory {
      *
      * @param event the event.
      */
-    public synchronized void forget(GerritTriggeredEvent event) {
-        memory.remove(event);
+    public void forget(GerritTriggeredEvent event) {
+        MemoryImprint pb = memory.remove(new EventKey(event));
+        if (pb != null) {
+            synchronized (pb) {
+                pb.retired = true;
+            }
+        }
+    }
+
+    /**
+     * Removes the memory for the event if all of its builds have completed. Checking and removing is done as one
+     * step, so when several builds of the same event complete at the same time only one caller gets the memory back.
+     * The removed memory is retired under its lock, so a build triggered for the event at the same time is
+     * remembered in a new memory instead of in the removed one.
+     *
+     * @param event the event.
+     * @return the removed memory, or null if there was no memory or not all builds are completed yet.
+     */
+    @CheckForNull
+    public MemoryImprint forgetIfAllBuildsCompleted(GerritTriggeredEvent event) {
+        EventKey key = new EventKey(event);
+        MemoryImprint pb = memory.get(key);
+        if (pb == null) {
+            return null;
+        }
+        synchronized (pb) {
+            if (pb.isAllBuildsCompleted() && memory.remove(key, pb)) {
+                pb.retired = true;
+                return pb;
+            }
+        }
+        return null;
     }
 
     /**
@@ -248,19 +333,23 @@ public class BuildMemory {
      * @param cause the cause.
      * @param r     the build the cause is in.
      */
-    public synchronized void updateTriggerContext(GerritCause cause, Run r) {
+    public void updateTriggerContext(GerritCause cause, Run r) {
         MemoryImprint imprint = getMemoryImprint(cause.getEvent());
         TriggerContext context = cause.getContext();
         context.setThisBuild(r);
-        for (MemoryImprint.Entry entry : imprint.getEntries()) {
-            Run build = entry.getBuild();
-            if (build != null && !build.equals(r)) {
-                context.addOtherBuild(build);
-                updateTriggerContext(entry, imprint);
-            } else {
-                Job project = entry.getProject();
-                if (build == null && project != null && !project.equals(r.getParent())) {
-                    context.addOtherProject(project);
+        if (imprint != null) {
+            synchronized (imprint) {
+                for (MemoryImprint.Entry entry : imprint.getEntries()) {
+                    Run build = entry.getBuild();
+                    if (build != null && !build.equals(r)) {
+                        context.addOtherBuild(build);
+                        updateTriggerContext(entry, imprint);
+                    } else {
+                        Job project = entry.getProject();
+                        if (build == null && project != null && !project.equals(r.getParent())) {
+                            context.addOtherProject(project);
+                        }
+                    }
                 }
             }
         }
@@ -275,11 +364,12 @@ public class BuildMemory {
 
     /**
      * Updates the {@link TriggerContext} for the provided entry.
+     * Must be called while holding the lock of the imprint.
      *
      * @param entryToUpdate the entry to update.
      * @param imprint       the information for the update.
      */
-    private synchronized void updateTriggerContext(@Nonnull Entry entryToUpdate, @Nonnull MemoryImprint imprint) {
+    private void updateTriggerContext(@Nonnull Entry entryToUpdate, @Nonnull MemoryImprint imprint) {
         Run build = entryToUpdate.getBuild();
         if (build != null) {
             GerritCause cause = (GerritCause)build.getCause(GerritCause.class);
@@ -314,8 +404,8 @@ public class BuildMemory {
      * @param project the project.
      * @return true if so.
      */
-    public synchronized boolean isTriggered(@Nonnull GerritTriggeredEvent event, @Nonnull Job project) {
-        MemoryImprint pb = memory.get(event);
+    public boolean isTriggered(@Nonnull GerritTriggeredEvent event, @Nonnull Job project) {
+        MemoryImprint pb = getMemoryImprint(event);
         if (pb == null) {
             return false;
         } else {
@@ -335,33 +425,36 @@ public class BuildMemory {
      * @param project the project.
      * @return true if so.
      */
-    public synchronized boolean isBuilding(GerritTriggeredEvent event, Job project) {
-        MemoryImprint pb = memory.get(event);
+    public boolean isBuilding(GerritTriggeredEvent event, Job project) {
+        MemoryImprint pb = getMemoryImprint(event);
         if (pb == null) {
             return false;
         } else {
-            for (Entry entry : pb.getEntries()) {
-                if (entry.isProject(project)) {
-                    if (entry.getBuild() != null) {
-                        return !entry.isBuildCompleted();
-                    } else {
-                        return true;
-                    }
-                }
-            }
-            return false;
+            return pb.isBuilding(project);
         }
     }
 
+    /**
+     * Checks in memory if the project has been triggered for the event and has not completed its build yet.
+     * The answer is read from the completion state the memory keeps up to date, so no lock is taken.
+     *
+     * @param event   the event.
+     * @param project the project.
+     * @return true if so.
+     */
+    public boolean isTriggeredAndIncomplete(@Nonnull GerritTriggeredEvent event, @Nonnull Job project) {
+        MemoryImprint pb = getMemoryImprint(event);
+        return pb != null && pb.isIncomplete(project);
+    }
+
     /**
      * Checks if the provided event exists in this memory.
      *
      * @param event the event to look for.
      * @return true if so.
      */
-    public synchronized boolean isBuilding(GerritTriggeredEvent event) {
-        MemoryImprint pb = memory.get(event);
-        return pb != null;
+    public boolean isBuilding(GerritTriggeredEvent event) {
+        return memory.containsKey(new EventKey(event));
     }
 
     /**
@@ -370,8 +463,8 @@ public class BuildMemory {
      * @param event the event.
      * @return the list of builds, or null if there is no memory.
      */
-    public synchronized List<Run> getBuilds(GerritTriggeredEvent event) {
-        MemoryImprint pb = memory.get(event);
+    public List<Run> getBuilds(GerritTriggeredEvent event) {
+        MemoryImprint pb = getMemoryImprint(event);
         if (pb != null) {
             List<Run> list = new LinkedList<Run>();
             for (Entry entry : pb.getEntries()) {
@@ -385,6 +478,29 @@ public class BuildMemory {
         }
     }
 
+    /**
+     * Updates the memory of a job that has been renamed.
+     *
+     * @param oldFullName the former full name of the job.
+     * @param newFullName the current full name of the job.
+     */
+    public void onJobRenamed(@Nonnull String oldFullName, @Nonnull String newFullName) {
+        for (MemoryImprint pb : memory.values()) {
+            pb.onJobRenamed(oldFullName, newFullName);
+        }
+    }
+
+    /**
+     * Forgets the resolved job and builds of a job that has been deleted.
+     *
+     * @param fullName the full name of the job.
+     */
+    public void onJobDeleted(@Nonnull String fullName) {
+        for (MemoryImprint pb : memory.values()) {
+            pb.onJobDeleted(fullName);
+        }
+    }
+
     /**
      * Records the failure message for the given build.
      *
@@ -393,14 +509,15 @@ public class BuildMemory {
      * @param failureMessage the failure message
      */
     public void setEntryFailureMessage(GerritTriggeredEvent event, Run r, String failureMessage) {
-        MemoryImprint pb = getMemoryImprint(event);
-
-        if (pb != null) {
-            Entry entry = pb.getEntry(r.getParent());
-
-            if (entry != null) {
-                logger.info("Recording unsuccessful message for {}: {}", event, failureMessage);
-                entry.setUnsuccessfulMessage(failureMessage);
+        //Like when completed, keep the memory of a build that wasn't registered.
+        while (true) {
+            MemoryImprint pb = getOrCreateMemoryImprint(event);
+            synchronized (pb) {
+                if (!pb.retired) {
+                    pb.setUnsuccessfulMessage(r.getParent(), r, failureMessage);
+                    logger.info("Recording unsuccessful message for {}: {}", event, failureMessage);
+                    return;
+                }
             }
         }
     }
@@ -410,8 +527,13 @@ public class BuildMemory {
      */
     public static class MemoryImprint {
 
-        private GerritTriggeredEvent event;
-        private List<Entry> list = new ArrayList<Entry>();
+        private final GerritTriggeredEvent event;
+        private final List<Entry> list = new ArrayList<Entry>();
+        private volatile Set<String> incompleteProjects = Collections.emptySet();
+        /**
+         * Set under the lock of this imprint when it is removed from the memory, it must not be changed after that.
+         */
+        private boolean retired;
 
         /**
          * Constructor.
@@ -465,6 +587,7 @@ public class BuildMemory {
             } else {
                 entry.setBuild(build);
             }
+            updateIncompleteProjects();
         }
 
         /**
@@ -478,6 +601,7 @@ public class BuildMemory {
                 entry = new Entry(project);
                 list.add(entry);
             }
+            updateIncompleteProjects();
         }
 
         /**
@@ -495,6 +619,7 @@ public class BuildMemory {
                 entry.setBuild(null);
                 entry.setBuildCompleted(false);
             }
+            updateIncompleteProjects();
         }
 
         /**
@@ -516,6 +641,77 @@ public class BuildMemory {
                 }
                 entry.setBuildCompleted(buildCompleted);
             }
+            updateIncompleteProjects();
+        }
+
+        /**
+         * Recounts the projects that have not completed their build yet.
+         * Must be called while holding the lock of this imprint, after every change to the entries.
+         */
+        private void updateIncompleteProjects() {
+            Set<String> incomplete = new HashSet<String>();
+            for (Entry entry : list) {
+                if (entry != null && !entry.isBuildCompleted()) {
+                    incomplete.add(entry.project);
+                }
+            }
+            incompleteProjects = Collections.unmodifiableSet(incomplete);
+        }
+
+        /**
+         * Tells if the project has been triggered but its build has not completed yet, without taking the lock.
+         *
+         * @param project the project.
+         * @return true if so.
+         */
+        boolean isIncomplete(@Nonnull Job project) {
+            return incompleteProjects.contains(project.getFullName());
+        }
+
+        /**
+         * The number of triggered projects that have not completed their build yet.
+         *
+         * @return the count.
+         */
+        public int getIncompleteCount() {
+            return incompleteProjects.size();
+        }
+
+        /**
+         * Tells if the project is building, i.e. it has been triggered but its build has not completed yet.
+         *
+         * @param project the project.
+         * @return true if so.
+         */
+        private synchronized boolean isBuilding(Job project) {
+            for (Entry entry : list) {
+                if (entry.isProject(project)) {
+                    if (entry.getBuild() != null) {
+                        return !entry.isBuildCompleted();
+                    } else {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Sets the unsuccessful message of the entry for the project, adding the entry with the build
+         * if the project has not been added before.
+         *
+         * @param project        the project.
+         * @param build          the build.
+         * @param failureMessage the message.
+         */
+        private synchronized void setUnsuccessfulMessage(@Nonnull Job project, Run build, String failureMessage) {
+            Entry entry = getEntry(project);
+            if (entry == null) {
+                entry = new Entry(project, build);
+                list.add(entry);
+                updateIncompleteProjects();
+            }
+            entry.setUnsuccessfulMessage(failureMessage);
         }
 
         /**
@@ -537,13 +733,8 @@ public class BuildMemory {
          *
          * @return true if it is so.
          */
-        public synchronized boolean isAllBuildsCompleted() {
-            for (Entry entry : list) {
-                if (!entry.isBuildCompleted()) {
-                    return false;
-                }
-            }
-            return true;
+        public boolean isAllBuildsCompleted() {
+            return incompleteProjects.isEmpty();
         }
 
         /**
@@ -579,6 +770,7 @@ public class BuildMemory {
 
         /**
          * Searches the internal list for an entry with the specified project.
+         * Must be called while holding the lock of this imprint.
          *
          * @param project the project.
          * @return the entry or null if nothing is found.
@@ -634,87 +826,94 @@ public class BuildMemory {
         }
 
         /**
-         * Tells if all builds in the memory were successful.
+         * Computes the aggregated outcome of all builds in the memory in one pass over the entries.
          *
-         * @return true if it is so, false if not all builds have started or not completed or have any different result
-         *         than {@link Result#SUCCESS}.
+         * @return the verdict as it is now.
          */
-        public synchronized boolean wereAllBuildsSuccessful() {
-            if (areAllBuildResultsSkipped()) {
-                for (Entry entry : list) {
-                    if (entry == null) {
-                        continue;
-                    }
-                    Run build = entry.getBuild();
-                    if (build == null) {
-                        return false;
-                    } else if (!entry.isBuildCompleted()) {
-                        return false;
-                    }
-                    Result buildResult = build.getResult();
-                    if (buildResult != Result.SUCCESS) {
-                        return false;
-                    }
+        @Nonnull
+        public synchronized BuildsVerdict getVerdict() {
+            int total = 0;
+            int started = 0;
+            int completed = 0;
+            boolean allDone = true;
+            boolean allSuccess = true;
+            boolean allSuccessOrSkipped = true;
+            boolean allSkipped = true;
+            boolean anyFailed = false;
+            boolean anyUnstable = false;
+            boolean allNotBuilt = true;
+            for (Entry entry : list) {
+                if (entry == null) {
+                    continue;
                 }
-            } else {
-                for (Entry entry : list) {
-                    if (entry == null) {
-                        continue;
-                    }
-                    Run build = entry.getBuild();
-                    if (build == null) {
-                        return false;
-                    } else if (!entry.isBuildCompleted()) {
-                        return false;
-                    }
-                    Result buildResult = build.getResult();
-                    if (buildResult != Result.SUCCESS) {
-                        GerritTrigger trigger = GerritTrigger.getTrigger(entry.getProject());
-                        if (!shouldSkip(trigger.getSkipVote(), buildResult)) {
-                            return false;
-                        }
+                total++;
+                boolean buildCompleted = entry.isBuildCompleted();
+                if (buildCompleted) {
+                    completed++;
+                }
+                Run build = entry.getBuild();
+                if (build == null || !buildCompleted) {
+                    if (build != null) {
+                        started++;
                     }
+                    allDone = false;
+                    continue;
                 }
+                started++;
+                Result buildResult = build.getResult();
+                boolean skipped = false;
+                GerritTrigger trigger = GerritTrigger.getTrigger(entry.getProject());
+                if (trigger != null) {
+                    skipped = shouldSkip(trigger.getSkipVote(), buildResult);
+                }
+                allSkipped &= skipped;
+                if (buildResult != Result.SUCCESS) {
+                    allSuccess = false;
+                    allSuccessOrSkipped &= skipped;
+                }
+                anyFailed |= buildResult == Result.FAILURE;
+                anyUnstable |= buildResult == Result.UNSTABLE;
+                allNotBuilt &= buildResult == Result.NOT_BUILT;
             }
-            return true;
+            boolean successful;
+            if (allSkipped) {
+                successful = allDone && allSuccess;
+            } else {
+                successful = allDone && allSuccessOrSkipped;
+            }
+            return new BuildsVerdict(total, started, completed, successful, anyFailed, anyUnstable,
+                    allDone && allNotBuilt);
+        }
+
+        /**
+         * Tells if all builds in the memory were successful.
+         *
+         * @return true if it is so, false if not all builds have started or not completed or have any different result
+         *         than {@link Result#SUCCESS}.
+         * @see #getVerdict()
+         */
+        public boolean wereAllBuildsSuccessful() {
+            return getVerdict().isAllBuildsSuccessful();
         }
 
         /**
          * Returns if any started and completed build has the result {@link Result#FAILURE}.
          *
          * @return true if it is so.
+         * @see #getVerdict()
          */
-        public synchronized boolean wereAnyBuildsFailed() {
-            for (Entry entry : list) {
-                if (entry == null) {
-                    continue;
-                }
-                Run build = entry.getBuild();
-                if (build != null && entry.isBuildCompleted()
-                        && build.getResult() == Result.FAILURE) {
-                    return true;
-                }
-            }
-            return false;
+        public boolean wereAnyBuildsFailed() {
+            return getVerdict().isAnyBuildsFailed();
         }
 
         /**
          * Returns if any started and completed build has the result {@link Result#UNSTABLE}.
          *
          * @return true if it is so.
+         * @see #getVerdict()
          */
-        public synchronized boolean wereAnyBuildsUnstable() {
-            for (Entry entry : list) {
-                if (entry == null) {
-                    continue;
-                }
-                Run build = entry.getBuild();
-                if (build != null && entry.isBuildCompleted()
-                        && build.getResult() == Result.UNSTABLE) {
-                    return true;
-                }
-            }
-            return false;
+        public boolean wereAnyBuildsUnstable() {
+            return getVerdict().isAnyBuildsUnstable();
         }
 
         /**
@@ -722,37 +921,56 @@ public class BuildMemory {
          *
          * @return true if it is so, false if not all builds have started or not completed or have any different result
          *         than {@link Result#NOT_BUILT}.
+         * @see #getVerdict()
          */
-        public synchronized boolean wereAllBuildsNotBuilt() {
+        public boolean wereAllBuildsNotBuilt() {
+            return getVerdict().isAllBuildsNotBuilt();
+        }
+
+        /**
+         * Updates the entries of a job that has been renamed.
+         *
+         * @param oldFullName the former full name of the job.
+         * @param newFullName the current full name of the job.
+         */
+        private synchronized void onJobRenamed(@Nonnull String oldFullName, @Nonnull String newFullName) {
             for (Entry entry : list) {
-                if (entry == null) {
-                    continue;
-                }
-                Run build = entry.getBuild();
-                if (build == null) {
-                    return false;
-                } else if (!entry.isBuildCompleted()) {
-                    return false;
+                if (entry != null && oldFullName.equals(entry.project)) {
+                    //The job instance stays the same, so the resolved references are still valid.
+                    entry.project = newFullName;
                 }
-                Result buildResult = build.getResult();
-                if (buildResult != Result.NOT_BUILT) {
-                    return false;
+            }
+            updateIncompleteProjects();
+        }
+
+        /**
+         * Forgets the resolved references of the entries of a job that has been deleted.
+         *
+         * @param fullName the full name of the job.
+         */
+        private synchronized void onJobDeleted(@Nonnull String fullName) {
+            for (Entry entry : list) {
+                if (entry != null && fullName.equals(entry.project)) {
+                    entry.clearReferences();
                 }
             }
-            return true;
         }
 
-        //CS IGNORE FinalClass FOR NEXT 5 LINES. REASON: Testability.
+        //CS IGNORE FinalClass FOR NEXT 7 LINES. REASON: Testability.
 
         /**
          * A project-build entry in the list of a MemoryImprint.
+         * The resolved job and build are cached as weak references, so they are looked up
+         * at most once while Jenkins keeps them loaded.
          */
         public static class Entry {
 
-            private String project;
-            private String build;
-            private boolean buildCompleted;
-            private String unsuccessfulMessage;
+            private volatile String project;
+            private volatile String build;
+            private volatile boolean buildCompleted;
+            private volatile String unsuccessfulMessage;
+            private transient volatile WeakReference<Job> projectRef;
+            private transient volatile WeakReference<Run> buildRef;
 
             /**
              * Constructor.
@@ -762,7 +980,8 @@ public class BuildMemory {
              */
             private Entry(Job project, Run build) {
                 this.project = project.getFullName();
-                this.build = build.getId();
+                this.projectRef = new WeakReference<Job>(project);
+                setBuild(build);
                 buildCompleted = false;
             }
 
@@ -773,6 +992,7 @@ public class BuildMemory {
              */
             private Entry(Job project) {
                 this.project = project.getFullName();
+                this.projectRef = new WeakReference<Job>(project);
                 buildCompleted = false;
             }
 
@@ -784,12 +1004,21 @@ public class BuildMemory {
             @CheckForNull
             @WithBridgeMethods(AbstractProject.class)
             public Job getProject() {
-                Jenkins jenkins = Jenkins.getInstance();
-                if (jenkins != null) {
-                    return jenkins.getItemByFullName(project, Job.class);
-                } else {
-                    return null;
+                WeakReference<Job> ref = projectRef;
+                Job p = null;
+                if (ref != null) {
+                    p = ref.get();
+                }
+                if (p == null) {
+                    Jenkins jenkins = Jenkins.getInstance();
+                    if (jenkins != null) {
+                        p = jenkins.getItemByFullName(project, Job.class);
+                        if (p != null) {
+                            projectRef = new WeakReference<Job>(p);
+                        }
+                    }
                 }
+                return p;
             }
 
             /**
@@ -800,12 +1029,25 @@ public class BuildMemory {
             @CheckForNull
             @WithBridgeMethods(AbstractBuild.class)
             public Run getBuild() {
-                Job p = getProject();
-                if (p != null && build != null) {
-                    return p.getBuild(build);
-                } else {
+                String id = build;
+                if (id == null) {
                     return null;
                 }
+                WeakReference<Run> ref = buildRef;
+                Run b = null;
+                if (ref != null) {
+                    b = ref.get();
+                }
+                if (b == null) {
+                    Job p = getProject();
+                    if (p != null) {
+                        b = p.getBuild(id);
+                        if (b != null) {
+                            buildRef = new WeakReference<Run>(b);
+                        }
+                    }
+                }
+                return b;
             }
 
             /**
@@ -815,12 +1057,22 @@ public class BuildMemory {
              */
             private void setBuild(Run build) {
                 if (build != null) {
+                    this.buildRef = new WeakReference<Run>(build);
                     this.build = build.getId();
                 } else {
                     this.build = null;
+                    this.buildRef = null;
                 }
             }
 
+            /**
+             * Forgets the resolved job and build, so they are looked up again on next access.
+             */
+            private void clearReferences() {
+                projectRef = null;
+                buildRef = null;
+            }
+
             /**
              * Sets the unsuccessful message for an entry.
              *
@@ -0,0 +1,177 @@
+/*
+ *  The MIT License
+ *
+ *  Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model;
+
+import hudson.model.Result;
+
+/**
+ * Bean holding the aggregated outcome of all builds for a specific event.
+ * All values are computed in one pass over the entries of a memory imprint.
+ *
+ * @see BuildMemory.MemoryImprint#getVerdict()
+ */
+public class BuildsVerdict {
+    private final int totalBuilds;
+    private final int startedBuilds;
+    private final int completedBuilds;
+    private final boolean allBuildsSuccessful;
+    private final boolean anyBuildsFailed;
+    private final boolean anyBuildsUnstable;
+    private final boolean allBuildsNotBuilt;
+
+    //CS IGNORE ParameterNumber FOR NEXT 15 LINES. REASON: bean constructor.
+
+    /**
+     * The Constructor.
+     *
+     * @param totalBuilds         the total amount of builds that have been triggered.
+     * @param startedBuilds       the amount of builds that have been started.
+     * @param completedBuilds     the amount of builds that have completed.
+     * @param allBuildsSuccessful if all builds were successful, see {@link #isAllBuildsSuccessful()}.
+     * @param anyBuildsFailed     if any build failed.
+     * @param anyBuildsUnstable   if any build was unstable.
+     * @param allBuildsNotBuilt   if all builds were not built.
+     */
+    public BuildsVerdict(int totalBuilds, int startedBuilds, int completedBuilds, boolean allBuildsSuccessful,
+                         boolean anyBuildsFailed, boolean anyBuildsUnstable, boolean allBuildsNotBuilt) {
+        this.totalBuilds = totalBuilds;
+        this.startedBuilds = startedBuilds;
+        this.completedBuilds = completedBuilds;
+        this.allBuildsSuccessful = allBuildsSuccessful;
+        this.anyBuildsFailed = anyBuildsFailed;
+        this.anyBuildsUnstable = anyBuildsUnstable;
+        this.allBuildsNotBuilt = allBuildsNotBuilt;
+    }
+
+    /**
+     * The total amount of builds that have been triggered.
+     *
+     * @return the amount.
+     */
+    public int getTotalBuilds() {
+        return totalBuilds;
+    }
+
+    /**
+     * The amount of builds that have been started.
+     *
+     * @return the amount.
+     */
+    public int getStartedBuilds() {
+        return startedBuilds;
+    }
+
+    /**
+     * The amount of builds that have completed.
+     *
+     * @return the amount.
+     */
+    public int getCompletedBuilds() {
+        return completedBuilds;
+    }
+
+    /**
+     * If all builds have been started.
+     *
+     * @return true if so.
+     */
+    public boolean isAllBuildsStarted() {
+        return startedBuilds == totalBuilds;
+    }
+
+    /**
+     * If all builds have completed.
+     *
+     * @return true if so.
+     */
+    public boolean isAllBuildsCompleted() {
+        return completedBuilds == totalBuilds;
+    }
+
+    /**
+     * If all builds were successful, taking the skip vote configuration of each job into account.
+     *
+     * @return true if so.
+     * @see BuildMemory.MemoryImprint#wereAllBuildsSuccessful()
+     */
+    public boolean isAllBuildsSuccessful() {
+        return allBuildsSuccessful;
+    }
+
+    /**
+     * If any started and completed build has the result {@link Result#FAILURE}.
+     *
+     * @return true if so.
+     */
+    public boolean isAnyBuildsFailed() {
+        return anyBuildsFailed;
+    }
+
+    /**
+     * If any started and completed build has the result {@link Result#UNSTABLE}.
+     *
+     * @return true if so.
+     */
+    public boolean isAnyBuildsUnstable() {
+        return anyBuildsUnstable;
+    }
+
+    /**
+     * If all builds have the result {@link Result#NOT_BUILT}.
+     *
+     * @return true if so.
+     */
+    public boolean isAllBuildsNotBuilt() {
+        return allBuildsNotBuilt;
+    }
+
+    /**
+     * The overall result of the builds, in the order successful, failed, unstable and not built.
+     * Anything else is considered as bad as a failure.
+     *
+     * @return the result.
+     */
+    public Result getResult() {
+        if (allBuildsSuccessful) {
+            return Result.SUCCESS;
+        } else if (anyBuildsFailed) {
+            return Result.FAILURE;
+        } else if (anyBuildsUnstable) {
+            return Result.UNSTABLE;
+        } else if (allBuildsNotBuilt) {
+            return Result.NOT_BUILT;
+        } else {
+            return Result.FAILURE;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder("(");
+        str.append(getCompletedBuilds()).append("/").append(getTotalBuilds()).append(" completed: ");
+        str.append(getResult()).append(")");
+        return str.toString();
+    }
+}
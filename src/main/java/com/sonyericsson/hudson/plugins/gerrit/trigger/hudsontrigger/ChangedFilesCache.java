@@ -0,0 +1,227 @@
+/*
+ *  The MIT License
+ *
+ *  Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.sonymobile.tools.gerrit.gerritevents.GerritQueryHandler;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the files changed in a patch set, shared by all triggers.
+ * <p>
+ * When file triggering is enabled every interested trigger needs the list of changed files of the event,
+ * which is a {@code gerrit query} over SSH. The cache is keyed on server, change and patch set so that the
+ * query is done once per patch set no matter how many jobs or events ask for it. Concurrent requests for the
+ * same patch set wait for the one query in flight instead of starting their own.
+ */
+public final class ChangedFilesCache {
+
+    /**
+     * The maximum number of patch sets to keep the files of.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    /**
+     * How long to keep the files of a patch set, in minutes.
+     */
+    public static final int DEFAULT_EXPIRATION_IN_MINUTES = 60;
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangedFilesCache.class);
+    private static final ChangedFilesCache INSTANCE =
+            new ChangedFilesCache(DEFAULT_MAXIMUM_SIZE, DEFAULT_EXPIRATION_IN_MINUTES, TimeUnit.MINUTES);
+
+    private final Cache<PatchSetKey, List<String>> cache;
+
+    /**
+     * Constructor, also used by unit tests.
+     *
+     * @param maximumSize the maximum number of patch sets to keep.
+     * @param expiration how long to keep the files of a patch set.
+     * @param unit the unit of expiration.
+     */
+    ChangedFilesCache(long maximumSize, long expiration, TimeUnit unit) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expiration, unit)
+                .build();
+    }
+
+    /**
+     * The shared instance.
+     *
+     * @return the instance.
+     */
+    public static ChangedFilesCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The files changed in the patch set of the event.
+     * Queries Gerrit if the files of the patch set are not known yet.
+     *
+     * @param event the event.
+     * @param config the config of the server that the event came from.
+     * @return the files, or null if Gerrit couldn't tell.
+     */
+    public List<String> getFiles(final ChangeBasedEvent event, final IGerritHudsonTriggerConfig config) {
+        if (event.getChange() == null || event.getPatchSet() == null) {
+            return event.getFiles(new GerritQueryHandler(config));
+        }
+        PatchSetKey key = new PatchSetKey(getServerName(event), event.getChange().getNumber(),
+                event.getPatchSet().getNumber());
+        try {
+            return cache.get(key, new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws Exception {
+                    List<String> files = event.getFiles(new GerritQueryHandler(config));
+                    if (files == null) {
+                        return null;
+                    }
+                    return Collections.unmodifiableList(files);
+                }
+            });
+        } catch (InvalidCacheLoadException e) {
+            logger.debug("No files found for {}", key);
+            return null;
+        } catch (UncheckedExecutionException e) {
+            throw propagate(e.getCause());
+        } catch (ExecutionError e) {
+            throw (Error)e.getCause();
+        } catch (ExecutionException e) {
+            throw propagate(e.getCause());
+        }
+    }
+
+    /**
+     * The hit, miss and load time statistics of the cache.
+     *
+     * @return the statistics.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * The number of patch sets that the files are known of.
+     *
+     * @return the size.
+     */
+    public long getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Forgets all files.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * The server name of the event.
+     *
+     * @param event the event.
+     * @return the name or an empty string if the event has no provider.
+     */
+    private static String getServerName(GerritTriggeredEvent event) {
+        if (event.getProvider() != null && event.getProvider().getName() != null) {
+            return event.getProvider().getName();
+        }
+        return "";
+    }
+
+    /**
+     * Wraps the cause of a failed load in a RuntimeException, unless it already is one.
+     *
+     * @param cause the cause.
+     * @return the exception to throw.
+     */
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException)cause;
+        }
+        return new RuntimeException(cause);
+    }
+
+    /**
+     * Identifies a patch set on a server.
+     */
+    private static final class PatchSetKey {
+        private final String server;
+        private final String change;
+        private final String patchSet;
+
+        /**
+         * Standard constructor.
+         *
+         * @param server the server name.
+         * @param change the change number.
+         * @param patchSet the patch set number.
+         */
+        PatchSetKey(String server, String change, String patchSet) {
+            this.server = server;
+            this.change = change;
+            this.patchSet = patchSet;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PatchSetKey)) {
+                return false;
+            }
+            PatchSetKey that = (PatchSetKey)o;
+            return Objects.equal(server, that.server) && Objects.equal(change, that.change)
+                    && Objects.equal(patchSet, that.patchSet);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(server, change, patchSet);
+        }
+
+        @Override
+        public String toString() {
+            return server + " " + change + "/" + patchSet;
+        }
+    }
+}
@@ -37,10 +37,7 @@ import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefUpdated;
 import hudson.model.CauseAction;
 import hudson.model.Job;
-import hudson.model.ParameterDefinition;
-import hudson.model.ParameterValue;
 import hudson.model.ParametersAction;
-import hudson.model.ParametersDefinitionProperty;
 import jenkins.model.Jenkins;
 import jenkins.model.ParameterizedJobMixIn;
 import org.slf4j.Logger;
@@ -48,12 +45,9 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.Future;
 
 import static com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl.getServerConfig;
-import static com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTriggerParameters.setOrCreateParameters;
 
 /**
  * Event listener and scheduling for {@link GerritTrigger}.
@@ -92,6 +86,17 @@ public final class EventListener implements GerritEventListener {
             logger.warn("Couldn't find a configured trigger for {}", job);
             return;
         }
+        gerritEvent(t, event);
+    }
+
+    /**
+     * Handles the event for an already resolved trigger.
+     * Used by {@link GerritProjectList} that routes the events to the triggers.
+     *
+     * @param t the trigger config of {@link #job}.
+     * @param event the event.
+     */
+    void gerritEvent(@Nonnull GerritTrigger t, GerritEvent event) {
         if (event instanceof GerritTriggeredEvent) {
             GerritTriggeredEvent triggeredEvent = (GerritTriggeredEvent)event;
             if (t.isInteresting(triggeredEvent)) {
@@ -114,6 +119,16 @@ public final class EventListener implements GerritEventListener {
             logger.warn("Couldn't find a configured trigger for {}", job);
             return;
         }
+        gerritEvent(t, event);
+    }
+
+    /**
+     * Handles a ManualPatchsetCreated event for an already resolved trigger.
+     *
+     * @param t the trigger config of {@link #job}.
+     * @param event the event.
+     */
+    void gerritEvent(@Nonnull GerritTrigger t, ManualPatchsetCreated event) {
         if (t.isInteresting(event)) {
             logger.trace("The event is interesting.");
             notifyOnTriggered(t, event);
@@ -133,6 +148,21 @@ public final class EventListener implements GerritEventListener {
             logger.warn("Couldn't find a configured trigger for {}", job);
             return;
         }
+        gerritEvent(t, event);
+    }
+
+    /**
+     * Handles a CommentAdded event for an already resolved trigger.
+     *
+     * @param t the trigger config of {@link #job}.
+     * @param event the event.
+     */
+    void gerritEvent(@Nonnull GerritTrigger t, CommentAdded event) {
+        //Most comments match no configured approval or text, so that is checked before anything is locked.
+        if (!t.commentAddedMatch(event)) {
+            logger.trace("The comment doesn't match.");
+            return;
+        }
         ToGerritRunListener listener = ToGerritRunListener.getInstance();
         if (listener != null) {
             if (listener.isBuilding(t.getJob(), event)) {
@@ -140,7 +170,7 @@ public final class EventListener implements GerritEventListener {
                 return;
             }
         }
-        if (t.isInteresting(event) && t.commentAddedMatch(event)) {
+        if (t.isInteresting(event)) {
             logger.trace("The event is interesting.");
             notifyOnTriggered(t, event);
             schedule(t, new GerritCause(event, t.isSilentMode()), event);
@@ -249,41 +279,7 @@ public final class EventListener implements GerritEventListener {
      * @return the ParameterAction.
      */
     protected ParametersAction createParameters(GerritTriggeredEvent event, Job project) {
-        List<ParameterValue> parameters = getDefaultParametersValues(project);
-        setOrCreateParameters(event, project, parameters);
-        return new ParametersAction(parameters);
-    }
-
-    /**
-     * Retrieves all default parameter values for a project.
-     * Copied from {@link hudson.model.AbstractProject#getDefaultParametersValues()}
-     * version 1.362. TODO: This is not a good way to solve the problem.
-     *
-     * @param project the project.
-     * @return the default parameter values.
-     */
-    private List<ParameterValue> getDefaultParametersValues(Job project) {
-        ParametersDefinitionProperty paramDefProp =
-                (ParametersDefinitionProperty)project.getProperty(ParametersDefinitionProperty.class);
-        List<ParameterValue> defValues = new ArrayList<ParameterValue>();
-
-        /*
-         * This check is made ONLY if someone calls this method even if isParametrized() is false.
-         */
-        if (paramDefProp == null) {
-            return defValues;
-        }
-
-        /* Scan for all parameters with an associated default value */
-        for (ParameterDefinition paramDefinition : paramDefProp.getParameterDefinitions()) {
-            ParameterValue defaultValue = paramDefinition.getDefaultParameterValue();
-
-            if (defaultValue != null) {
-                defValues.add(defaultValue);
-            }
-        }
-
-        return defValues;
+        return new ParametersAction(GerritParameterTemplate.forJob(project).createParameters(event, project));
     }
 
     /**
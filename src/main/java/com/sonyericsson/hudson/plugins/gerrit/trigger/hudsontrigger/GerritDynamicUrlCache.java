@@ -0,0 +1,355 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.GerritProject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches the dynamic trigger configurations, sharing the fetch of each URL between all the jobs that use it.
+ * The content is requested with the ETag and Last-Modified of the previous response, and it is only parsed
+ * again when it has changed. As long as it is unchanged the same parsed projects are handed out, so the
+ * matchers already compiled for them are kept.
+ */
+public final class GerritDynamicUrlCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GerritDynamicUrlCache.class);
+    private static final int SOCKET_READ_TIMEOUT = 10000;
+    private static final int BUFFER_SIZE = 4096;
+    private static final GerritDynamicUrlCache INSTANCE = new GerritDynamicUrlCache();
+
+    private final ConcurrentMap<String, Source> sources = new ConcurrentHashMap<String, Source>();
+
+    /**
+     * Constructor, package private for tests.
+     */
+    GerritDynamicUrlCache() {
+    }
+
+    /**
+     * The cache shared by all jobs.
+     *
+     * @return the instance.
+     */
+    public static GerritDynamicUrlCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the projects configured at the URL. The URL is only requested if it has not been fetched within the
+     * given time, otherwise the outcome of that fetch is shared. The same list is returned for as long as the
+     * content is unchanged.
+     *
+     * @param gerritTriggerConfigUrl the URL to fetch.
+     * @param maxAgeMillis           for how long the outcome of a fetch is shared.
+     * @return the list of GerritProjects.
+     * @throws ParseException when the fetched content couldn't be parsed
+     * @throws IOException for all other kinds of fetch errors
+     */
+    public List<GerritProject> fetch(String gerritTriggerConfigUrl, long maxAgeMillis)
+            throws IOException, ParseException {
+        if (gerritTriggerConfigUrl == null) {
+            throw new MalformedURLException("The gerritTriggerConfigUrl is null");
+        }
+        if (gerritTriggerConfigUrl.isEmpty()) {
+            throw new MalformedURLException("The gerritTriggerConfigUrl is empty");
+        }
+        Source source = sources.get(gerritTriggerConfigUrl);
+        if (source == null) {
+            Source created = new Source(gerritTriggerConfigUrl);
+            source = sources.putIfAbsent(gerritTriggerConfigUrl, created);
+            if (source == null) {
+                source = created;
+            }
+        }
+        return source.fetch(maxAgeMillis);
+    }
+
+    /**
+     * The fetch statistics of every URL, sorted by URL.
+     *
+     * @return the sources.
+     */
+    public List<Source> getSources() {
+        List<Source> list = new ArrayList<Source>(sources.values());
+        Collections.sort(list, new Comparator<Source>() {
+            @Override
+            public int compare(Source o1, Source o2) {
+                return o1.getUrl().compareTo(o2.getUrl());
+            }
+        });
+        return list;
+    }
+
+    /**
+     * One dynamic trigger configuration URL, its last fetched content and fetch statistics.
+     */
+    public static final class Source {
+        private final String url;
+        private final AtomicLong lookups = new AtomicLong();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong notModified = new AtomicLong();
+        private final AtomicLong unchanged = new AtomicLong();
+        private final AtomicLong parsed = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalFetchMillis = new AtomicLong();
+        private volatile long lastFetchMillis;
+        private long fetchedAt;
+        private List<GerritProject> projects;
+        private byte[] content;
+        private String etag;
+        private long lastModified;
+        private IOException ioFailure;
+        private ParseException parseFailure;
+
+        /**
+         * Constructor.
+         *
+         * @param url the URL.
+         */
+        private Source(String url) {
+            this.url = url;
+        }
+
+        /**
+         * Gets the projects, requesting the URL if it has not been fetched within the given time.
+         *
+         * @param maxAgeMillis for how long the outcome of a fetch is shared.
+         * @return the list of GerritProjects.
+         * @throws ParseException when the fetched content couldn't be parsed
+         * @throws IOException for all other kinds of fetch errors
+         */
+        private synchronized List<GerritProject> fetch(long maxAgeMillis) throws IOException, ParseException {
+            lookups.incrementAndGet();
+            long now = System.currentTimeMillis();
+            if (fetchedAt == 0 || now - fetchedAt >= maxAgeMillis) {
+                fetchedAt = now;
+                ioFailure = null;
+                parseFailure = null;
+                long start = System.nanoTime();
+                try {
+                    projects = request();
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                    ioFailure = e;
+                } catch (ParseException e) {
+                    failures.incrementAndGet();
+                    parseFailure = e;
+                } finally {
+                    lastFetchMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    totalFetchMillis.addAndGet(lastFetchMillis);
+                }
+            }
+            if (ioFailure != null) {
+                throw ioFailure;
+            }
+            if (parseFailure != null) {
+                throw parseFailure;
+            }
+            return projects;
+        }
+
+        /**
+         * Requests the URL, conditionally if there is a previous response, and parses the content if it changed.
+         * Must be called while holding the lock of this source.
+         *
+         * @return the list of GerritProjects.
+         * @throws ParseException when the fetched content couldn't be parsed
+         * @throws IOException for all other kinds of fetch errors
+         */
+        private List<GerritProject> request() throws IOException, ParseException {
+            URLConnection connection = new URL(url).openConnection();
+            connection.setReadTimeout(SOCKET_READ_TIMEOUT);
+            connection.setDoInput(true);
+            if (projects != null) {
+                if (etag != null) {
+                    connection.setRequestProperty("If-None-Match", etag);
+                }
+                if (lastModified > 0) {
+                    connection.setIfModifiedSince(lastModified);
+                }
+            }
+            requests.incrementAndGet();
+            InputStream instream = null;
+            byte[] fetched;
+            try {
+                if (projects != null && connection instanceof HttpURLConnection
+                        && ((HttpURLConnection)connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    notModified.incrementAndGet();
+                    logger.debug("Dynamic trigger configuration not modified: {}", url);
+                    return projects;
+                }
+                instream = connection.getInputStream();
+                fetched = readFully(instream);
+            } finally {
+                if (instream != null) {
+                    instream.close();
+                }
+            }
+            if (projects != null && Arrays.equals(fetched, content)) {
+                unchanged.incrementAndGet();
+                logger.debug("Dynamic trigger configuration unchanged: {}", url);
+            } else {
+                projects = GerritDynamicUrlProcessor.parse(fetched);
+                parsed.incrementAndGet();
+                content = fetched;
+                logger.debug("Dynamic trigger configuration parsed: {}", url);
+            }
+            etag = connection.getHeaderField("ETag");
+            lastModified = connection.getLastModified();
+            return projects;
+        }
+
+        /**
+         * Reads everything from the stream.
+         *
+         * @param instream the stream.
+         * @return the content.
+         * @throws IOException if the stream could not be read.
+         */
+        private static byte[] readFully(InputStream instream) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = instream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+
+        /**
+         * The URL.
+         *
+         * @return the URL.
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * The number of times the projects of this URL were asked for.
+         *
+         * @return the count.
+         */
+        public long getLookupCount() {
+            return lookups.get();
+        }
+
+        /**
+         * The number of requests sent to the URL.
+         *
+         * @return the count.
+         */
+        public long getRequestCount() {
+            return requests.get();
+        }
+
+        /**
+         * The number of requests answered with 304 Not Modified.
+         *
+         * @return the count.
+         */
+        public long getNotModifiedCount() {
+            return notModified.get();
+        }
+
+        /**
+         * The number of requests that returned the same content as before.
+         *
+         * @return the count.
+         */
+        public long getUnchangedCount() {
+            return unchanged.get();
+        }
+
+        /**
+         * The number of times the content was parsed.
+         *
+         * @return the count.
+         */
+        public long getParseCount() {
+            return parsed.get();
+        }
+
+        /**
+         * The number of failed fetches.
+         *
+         * @return the count.
+         */
+        public long getFailureCount() {
+            return failures.get();
+        }
+
+        /**
+         * The percentage of lookups that were answered without parsing the content.
+         *
+         * @return the hit rate.
+         */
+        public long getHitRatePercent() {
+            long total = lookups.get();
+            if (total == 0) {
+                return 0;
+            }
+            //CS IGNORE MagicNumber FOR NEXT 1 LINES. REASON: Percentage.
+            return (total - parsed.get() - failures.get()) * 100 / total;
+        }
+
+        /**
+         * The average time of the requests.
+         *
+         * @return the time in milliseconds.
+         */
+        public long getAverageFetchMillis() {
+            return totalFetchMillis.get() / Math.max(1, requests.get());
+        }
+
+        /**
+         * The time of the last request.
+         *
+         * @return the time in milliseconds.
+         */
+        public long getLastFetchMillis() {
+            return lastFetchMillis;
+        }
+    }
+}
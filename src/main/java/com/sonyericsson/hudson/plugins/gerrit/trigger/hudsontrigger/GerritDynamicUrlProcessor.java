@@ -34,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -216,6 +217,25 @@ public final class GerritDynamicUrlProcessor {
       return dynamicGerritProjects;
     }
 
+    /**
+     * Parses already fetched dynamic trigger configuration.
+     *
+     * @param content the fetched content.
+     * @return List of Gerrit projects
+     * @throws ParseException when the content couldn't be parsed
+     * @throws IOException if the content couldn't be read
+     * @see GerritDynamicUrlCache
+     */
+    static List<GerritProject> parse(byte[] content) throws IOException, ParseException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content),
+                Charset.forName("UTF-8")));
+        try {
+            return readAndParseTriggerConfig(reader, null);
+        } finally {
+            reader.close();
+        }
+    }
+
     /**
      * This is where the actual fetching is done. If everything goes well,
      * it returns a list of GerritProjects. If the fetched content hasn't changed
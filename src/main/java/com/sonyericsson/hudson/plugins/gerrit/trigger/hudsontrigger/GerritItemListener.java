@@ -28,6 +28,8 @@ import org.slf4j.LoggerFactory;
 
 import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.dependency.DependencyQueueTaskDispatcher;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.ToGerritRunListener;
 
 import hudson.Extension;
 import hudson.model.Job;
@@ -36,7 +38,8 @@ import hudson.model.listeners.ItemListener;
 
 /**
  * Listens for onDeleted and onLoaded events.
- * If the deleted project has a Gerrit trigger, it will be stopped
+ * If the deleted project has a Gerrit trigger, it will be stopped.
+ * Deleted and renamed projects are also reported to the build memory of {@link ToGerritRunListener}.
  * If all project have been loaded, start the connections to Gerrit servers.
  * Since this class has no member variables, and doesn't need any
  * initialization, there is no constructor.
@@ -67,6 +70,37 @@ public class GerritItemListener extends ItemListener {
             if (gerritTrigger != null) {
                 gerritTrigger.stop();
             }
+            ToGerritRunListener runListener = ToGerritRunListener.getInstance();
+            if (runListener != null) {
+                runListener.onJobDeleted(project.getFullName());
+            }
+            GerritParameterTemplate.invalidate(project);
+            invalidateDependencyGraph();
+        }
+    }
+
+    /**
+     * A new job may be the dependency of other jobs that could not be resolved before.
+     *
+     * @param item the item that was created.
+     */
+    @Override
+    public void onCreated(Item item) {
+        if (item instanceof Job<?, ?>) {
+            invalidateDependencyGraph();
+        }
+    }
+
+    /**
+     * Called by Jenkins when an item has been saved.
+     * The compiled Gerrit parameter template of a job is dropped, since its parameters might have changed.
+     *
+     * @param item the saved item.
+     */
+    @Override
+    public void onUpdated(Item item) {
+        if (item instanceof Job<?, ?>) {
+            GerritParameterTemplate.invalidate((Job<?, ?>)item);
         }
     }
 
@@ -88,6 +122,21 @@ public class GerritItemListener extends ItemListener {
             if (gerritTrigger != null) {
                 gerritTrigger.onJobRenamed(oldFullName, newFullName);
             }
+            ToGerritRunListener runListener = ToGerritRunListener.getInstance();
+            if (runListener != null) {
+                runListener.onJobRenamed(oldFullName, newFullName);
+            }
+            invalidateDependencyGraph();
+        }
+    }
+
+    /**
+     * Makes the dependencies between jobs be resolved again.
+     */
+    private static void invalidateDependencyGraph() {
+        DependencyQueueTaskDispatcher dispatcher = DependencyQueueTaskDispatcher.getInstance();
+        if (dispatcher != null) {
+            dispatcher.invalidateDependencyGraph();
         }
     }
 
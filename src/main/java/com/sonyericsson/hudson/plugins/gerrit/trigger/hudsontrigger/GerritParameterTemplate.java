@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
+
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+
+import hudson.model.Job;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersDefinitionProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The parameter definitions of a job compiled for building Gerrit parameters.
+ * Knows up front which definitions are overridden by a {@link GerritTriggerParameters}
+ * so that each Gerrit parameter is set without searching the parameter list.
+ * Templates are cached per job until the job is saved or its parameter definitions are replaced.
+ */
+final class GerritParameterTemplate {
+
+    /**
+     * Compiled templates, weakly keyed on the job.
+     */
+    private static final Map<Job, GerritParameterTemplate> TEMPLATES =
+            Collections.synchronizedMap(new WeakHashMap<Job, GerritParameterTemplate>());
+
+    private final ParametersDefinitionProperty property;
+    private final ParameterDefinition[] definitions;
+    private final GerritTriggerParameters[] overrides;
+
+    /**
+     * Compiles the template.
+     *
+     * @param property the parameter definitions of the job, or null if it isn't parameterized.
+     */
+    private GerritParameterTemplate(ParametersDefinitionProperty property) {
+        this.property = property;
+        if (property == null) {
+            definitions = new ParameterDefinition[0];
+        } else {
+            List<ParameterDefinition> list = property.getParameterDefinitions();
+            definitions = list.toArray(new ParameterDefinition[list.size()]);
+        }
+        overrides = new GerritTriggerParameters[definitions.length];
+        for (int i = 0; i < definitions.length; i++) {
+            overrides[i] = GerritTriggerParameters.fromParameterName(definitions[i].getName());
+        }
+    }
+
+    /**
+     * Gets the template of a job, compiling it if there is none or if the parameter definitions have changed.
+     *
+     * @param project the job.
+     * @return the template.
+     */
+    static GerritParameterTemplate forJob(Job project) {
+        ParametersDefinitionProperty property =
+                (ParametersDefinitionProperty)project.getProperty(ParametersDefinitionProperty.class);
+        GerritParameterTemplate template = TEMPLATES.get(project);
+        if (template == null || template.property != property) {
+            template = new GerritParameterTemplate(property);
+            TEMPLATES.put(project, template);
+        }
+        return template;
+    }
+
+    /**
+     * Drops the compiled template of a job.
+     *
+     * @param project the job.
+     */
+    static void invalidate(Job project) {
+        TEMPLATES.remove(project);
+    }
+
+    /**
+     * The number of definitions overridden by a Gerrit parameter.
+     *
+     * @return the count.
+     */
+    int getOverrideCount() {
+        int count = 0;
+        for (GerritTriggerParameters override : overrides) {
+            if (override != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Creates the parameters of a build: the default values of the job's definitions
+     * with the Gerrit parameters of the event set or added.
+     *
+     * @param event the event.
+     * @param project the job, the same as the template was compiled for.
+     * @return the parameter values.
+     */
+    List<ParameterValue> createParameters(GerritTriggeredEvent event, Job project) {
+        ParameterValue[] slots = GerritTriggerParameters.createSlots();
+        List<ParameterValue> parameters = new ArrayList<ParameterValue>(definitions.length + slots.length);
+        for (int i = 0; i < definitions.length; i++) {
+            ParameterValue defaultValue = definitions[i].getDefaultParameterValue();
+            if (defaultValue != null) {
+                parameters.add(defaultValue);
+                GerritTriggerParameters override = overrides[i];
+                if (override != null && slots[override.ordinal()] == null) {
+                    slots[override.ordinal()] = defaultValue;
+                }
+            }
+        }
+        GerritTriggerParameters.setOrCreateParameters(event, project, parameters, slots);
+        return parameters;
+    }
+}
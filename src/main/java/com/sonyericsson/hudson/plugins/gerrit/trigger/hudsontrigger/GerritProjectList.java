@@ -23,34 +23,76 @@
  */
 package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
 
+import com.sonyericsson.hudson.plugins.gerrit.trigger.events.ManualPatchsetCreated;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.GerritProject;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.CompareType;
 
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.events.PluginGerritEvent;
+import com.sonymobile.tools.gerrit.gerritevents.GerritEventListener;
+import com.sonymobile.tools.gerrit.gerritevents.dto.GerritEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Provider;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.CommentAdded;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefUpdated;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.util.Map;
-import java.util.HashMap;
+
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer.ANY_SERVER;
 
 /**
- * A sigleton class that keeps list of Jenkin's Gerrit projects.
- *
- * TODO: Support to other project formats (At the moment only plain text is supported).
- *
+ * A singleton that keeps an index of all started {@link GerritTrigger}s and routes the incoming
+ * Gerrit events to them.
+ * <p>
+ * Instead of every triggered job listening on the {@link com.sonymobile.tools.gerrit.gerritevents.GerritHandler}
+ * this class is registered as the only listener on behalf of all the triggers. The triggers are indexed by
+ * server, by the event types they trigger on and by their project rules, so that an event is only handed
+ * to the triggers that could possibly be interested in it. Plain project names are looked up directly, Ant
+ * patterns on their first path segment, and only regular expressions (or Ant patterns starting with a
+ * wildcard) are scanned linearly. The final decision is still made by
+ * {@link GerritTrigger#isInteresting(GerritTriggeredEvent)}.
  */
-public final class GerritProjectList {
+public final class GerritProjectList implements GerritEventListener {
 
     private static GerritProjectList instance = new GerritProjectList();
     private static final Logger logger = LoggerFactory.getLogger(GerritProjectList.class);
 
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
     /**
-     * Data structure, which holds Project data from jenkins.
-     *
-     * projectList data structure has Gerrit project's pattern as key value
-     * and as content a ArrayList of Jenkins jobs related to that Gerrit project.
+     * server name -&gt; event class -&gt; project index.
+     * Triggers configured for any server are kept under {@link com.sonyericsson.hudson.plugins.gerrit.trigger
+     * .GerritServer#ANY_SERVER}.
      */
-    private Map<String, ArrayList<GerritTrigger>> projectList = new HashMap<String, ArrayList<GerritTrigger>>();
+    private final Map<String, Map<Class, ProjectIndex>> servers = new HashMap<String, Map<Class, ProjectIndex>>();
+
+    /**
+     * Reverse index used to remove a trigger without looking through all entries.
+     * Keyed on identity since {@link GerritTrigger#equals(Object)} is based on the job name.
+     */
+    private final Map<GerritTrigger, List<Registration>> registrations =
+            new IdentityHashMap<GerritTrigger, List<Registration>>();
+
+    /**
+     * Incremented every time the index changes, so that snapshots taken of it can tell if they are stale.
+     */
+    private final AtomicInteger revision = new AtomicInteger();
 
     /**
      * A private Constructor prevents any other class from instantiating.
@@ -67,18 +109,54 @@ public final class GerritProjectList {
     }
 
     /**
-     * Function returns projects name.
-     * @param project the GerritProject
-     * @return null if parameter project is null or if its type is not PLAIN text.
-     *         Otherwise method will return project's pattern.
+     * Adds or replaces all the project rules of the trigger in the index,
+     * both the static and the dynamically configured ones.
+     * A trigger without any rules is scanned for every event, its rules might not be known yet.
+     *
+     * @param trigger the GerritTrigger.
      */
-    private String createKeyString(GerritProject project) {
-        if (project != null) {
-            if (project.getCompareType() == CompareType.PLAIN) {
-                return project.getPattern();
+    public static void addTrigger(GerritTrigger trigger) {
+        GerritProjectList inst = getInstance();
+        inst.lock.writeLock().lock();
+        try {
+            inst.remove(trigger);
+            boolean added = false;
+            if (trigger.getGerritProjects() != null) {
+                for (GerritProject project : trigger.getGerritProjects()) {
+                    inst.add(project, trigger);
+                    added = true;
+                }
+            }
+            if (trigger.getDynamicGerritProjects() != null) {
+                for (GerritProject project : trigger.getDynamicGerritProjects()) {
+                    inst.add(project, trigger);
+                    added = true;
+                }
             }
+            if (!added) {
+                inst.add(null, trigger);
+            }
+        } finally {
+            inst.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-indexes the trigger if it has been added before, e.g. when its project rules have changed.
+     *
+     * @param trigger the GerritTrigger.
+     * @see #addTrigger(GerritTrigger)
+     */
+    public static void updateTrigger(GerritTrigger trigger) {
+        GerritProjectList inst = getInstance();
+        inst.lock.writeLock().lock();
+        try {
+            if (inst.registrations.containsKey(trigger)) {
+                addTrigger(trigger);
+            }
+        } finally {
+            inst.lock.writeLock().unlock();
         }
-        return null;
     }
 
     /**
@@ -87,49 +165,513 @@ public final class GerritProjectList {
      */
     public static void removeTriggerFromProjectList(GerritTrigger trigger) {
         GerritProjectList inst = getInstance();
-        Iterator entries = inst.projectList.entrySet().iterator();
-        while (entries.hasNext()) {
-            Map.Entry entry = (Map.Entry)entries.next();
-            String projectName = (String)entry.getKey();
-            ArrayList<GerritTrigger> triggers = (ArrayList<GerritTrigger>)entry.getValue();
-            if (triggers == null || projectName == null || projectName.isEmpty()) {
-                logger.warn("Invalid parameters: Triggers: " + triggers + " ProjectName: " + projectName);
+        inst.lock.writeLock().lock();
+        try {
+            inst.remove(trigger);
+        } finally {
+            inst.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     *  Adds project to project list.
+     *  @param project the GerritProject
+     *  @param trigger the GerritTrigger
+     */
+    public static void addProject(GerritProject project, GerritTrigger trigger) {
+        GerritProjectList inst = getInstance();
+        inst.lock.writeLock().lock();
+        try {
+            inst.add(project, trigger);
+        } finally {
+            inst.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     *  Returns a snapshot of the plain text project rules.
+     *  @return gerrit project patterns and the triggers that have a rule for them.
+     */
+    public static Map<String, ArrayList<GerritTrigger>> getGerritProjects() {
+        GerritProjectList inst = getInstance();
+        Map<String, ArrayList<GerritTrigger>> projects = new HashMap<String, ArrayList<GerritTrigger>>();
+        inst.lock.readLock().lock();
+        try {
+            for (List<Registration> list : inst.registrations.values()) {
+                for (Registration r : list) {
+                    if (r.kind == Kind.PLAIN) {
+                        ArrayList<GerritTrigger> triggers = projects.get(r.project.getPattern());
+                        if (triggers == null) {
+                            triggers = new ArrayList<GerritTrigger>();
+                            projects.put(r.project.getPattern(), triggers);
+                        }
+                        triggers.add(r.trigger);
+                    }
+                }
+            }
+        } finally {
+            inst.lock.readLock().unlock();
+        }
+        return projects;
+    }
+
+    /**
+     * Returns a snapshot of all the triggers in the index.
+     *
+     * @return the triggers.
+     */
+    public static Collection<GerritTrigger> getTriggers() {
+        GerritProjectList inst = getInstance();
+        inst.lock.readLock().lock();
+        try {
+            return new ArrayList<GerritTrigger>(inst.registrations.keySet());
+        } finally {
+            inst.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The revision of the index, which changes every time a trigger is added, updated or removed.
+     *
+     * @return the revision.
+     * @see #getSubscribedEventTypes(String)
+     */
+    public static int getRevision() {
+        return getInstance().revision.get();
+    }
+
+    /**
+     * The event classes that the triggers of a server, or of any server, are configured to trigger on.
+     *
+     * @param serverName the name of the server.
+     * @return the event classes.
+     */
+    public static Set<Class> getSubscribedEventTypes(String serverName) {
+        GerritProjectList inst = getInstance();
+        Set<Class> types = new HashSet<Class>();
+        inst.lock.readLock().lock();
+        try {
+            addSubscribed(inst.servers.get(serverName), types);
+            addSubscribed(inst.servers.get(ANY_SERVER), types);
+        } finally {
+            inst.lock.readLock().unlock();
+        }
+        return types;
+    }
+
+    /**
+     * Adds the event classes that have at least one trigger in their index.
+     *
+     * @param indexes the indexes per event type, can be null.
+     * @param types where to put the event classes.
+     */
+    private static void addSubscribed(Map<Class, ProjectIndex> indexes, Set<Class> types) {
+        if (indexes == null) {
+            return;
+        }
+        for (Map.Entry<Class, ProjectIndex> entry : indexes.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                types.add(entry.getKey());
+            }
+        }
+    }
+
+    @Override
+    public void gerritEvent(GerritEvent event) {
+        if (!(event instanceof GerritTriggeredEvent)) {
+            return;
+        }
+        Collection<GerritTrigger> candidates = getCandidates((GerritTriggeredEvent)event);
+        logger.trace("Routing event {} to {} triggers", event, candidates.size());
+        for (GerritTrigger trigger : candidates) {
+            if (trigger.getJob() == null) {
                 continue;
             }
+            try {
+                EventListener listener = GerritTrigger.createListener(trigger.getJob());
+                if (event instanceof ManualPatchsetCreated) {
+                    listener.gerritEvent(trigger, (ManualPatchsetCreated)event);
+                } else if (event instanceof CommentAdded) {
+                    listener.gerritEvent(trigger, (CommentAdded)event);
+                } else {
+                    listener.gerritEvent(trigger, event);
+                }
+            } catch (Exception e) {
+                logger.error("Exception thrown during event handling for " + trigger.getJob(), e);
+            }
+        }
+    }
 
-            for (Iterator i = triggers.iterator(); i.hasNext();) {
-                GerritTrigger trig = (GerritTrigger)i.next();
-                if (trig == trigger) {
-                   i.remove();
+    /**
+     * Finds the triggers that might be interested in the event.
+     *
+     * @param event the event.
+     * @return the candidate triggers, each one only once.
+     */
+    Collection<GerritTrigger> getCandidates(GerritTriggeredEvent event) {
+        String project = null;
+        if (event instanceof ChangeBasedEvent) {
+            ChangeBasedEvent changeBasedEvent = (ChangeBasedEvent)event;
+            if (changeBasedEvent.getChange() != null) {
+                project = changeBasedEvent.getChange().getProject();
+            }
+        } else if (event instanceof RefUpdated) {
+            RefUpdated refUpdated = (RefUpdated)event;
+            if (refUpdated.getRefUpdate() != null) {
+                project = refUpdated.getRefUpdate().getProject();
+            }
+        }
+        String serverName = null;
+        Provider provider = event.getProvider();
+        if (provider != null) {
+            serverName = provider.getName();
+        }
+
+        Map<GerritTrigger, Boolean> found = new IdentityHashMap<GerritTrigger, Boolean>();
+        lock.readLock().lock();
+        try {
+            if (serverName == null) {
+                // the trigger decides which server an event without a provider belongs to
+                for (Map<Class, ProjectIndex> types : servers.values()) {
+                    collect(types, event, project, found);
+                }
+            } else {
+                collect(servers.get(serverName), event, project, found);
+                if (!ANY_SERVER.equals(serverName)) {
+                    collect(servers.get(ANY_SERVER), event, project, found);
                 }
             }
-            if (triggers == null || triggers.isEmpty()) {
-                entries.remove();
+        } finally {
+            lock.readLock().unlock();
+        }
+        return found.keySet();
+    }
+
+    /**
+     * Collects the candidate triggers from the project indexes of the event types that the event is an instance of.
+     *
+     * @param types the indexes per event type, can be null.
+     * @param event the event.
+     * @param project the project of the event or null if it doesn't have one.
+     * @param found where to put the candidates.
+     */
+    private void collect(Map<Class, ProjectIndex> types, GerritTriggeredEvent event, String project,
+                         Map<GerritTrigger, Boolean> found) {
+        if (types == null) {
+            return;
+        }
+        for (Map.Entry<Class, ProjectIndex> entry : types.entrySet()) {
+            if (entry.getKey().isInstance(event)) {
+                entry.getValue().collect(project, found);
             }
         }
     }
 
     /**
-     *  Adds project to project list.
-     *  @param project the GerritProject
-     *  @param trigger the GerritTrigger
+     * Adds a project rule for the trigger to the index. Must be called with the write lock held.
+     *
+     * @param project the rule or null if the trigger should be scanned for all projects.
+     * @param trigger the trigger.
      */
-    public static void addProject(GerritProject project, GerritTrigger trigger) {
-        GerritProjectList inst = getInstance();
-        String key = inst.createKeyString(project);
-        if (key != null) {
-            if (inst.projectList.get(key) == null) {
-                inst.projectList.put(key, new ArrayList<GerritTrigger>());
+    private void add(GerritProject project, GerritTrigger trigger) {
+        Registration registration = new Registration(trigger, project);
+        String serverName = trigger.getServerName();
+        if (serverName == null || serverName.isEmpty()) {
+            serverName = ANY_SERVER;
+        }
+        Map<Class, ProjectIndex> types = servers.get(serverName);
+        if (types == null) {
+            types = new LinkedHashMap<Class, ProjectIndex>();
+            servers.put(serverName, types);
+        }
+        for (Class type : getEventTypes(trigger)) {
+            ProjectIndex index = types.get(type);
+            if (index == null) {
+                index = new ProjectIndex();
+                types.put(type, index);
             }
-            inst.projectList.get(key).add(trigger);
+            index.add(registration);
+            registration.indexes.add(index);
         }
+        List<Registration> list = registrations.get(trigger);
+        if (list == null) {
+            list = new ArrayList<Registration>();
+            registrations.put(trigger, list);
+        }
+        list.add(registration);
+        revision.incrementAndGet();
     }
 
     /**
-     *  Returns project list.
-     *  @return gerrit projects that are stored into map.
+     * Removes all the rules of the trigger from the index. Must be called with the write lock held.
+     *
+     * @param trigger the trigger.
      */
-    public static Map<String, ArrayList<GerritTrigger>> getGerritProjects() {
-        return getInstance().projectList;
+    private void remove(GerritTrigger trigger) {
+        List<Registration> list = registrations.remove(trigger);
+        if (list == null) {
+            return;
+        }
+        for (Registration registration : list) {
+            for (ProjectIndex index : registration.indexes) {
+                index.remove(registration);
+            }
+        }
+        revision.incrementAndGet();
+    }
+
+    /**
+     * The event classes that the trigger is configured to trigger on.
+     *
+     * @param trigger the trigger.
+     * @return the event classes.
+     */
+    private static Set<Class> getEventTypes(GerritTrigger trigger) {
+        Map<Class, Boolean> types = new LinkedHashMap<Class, Boolean>();
+        List<PluginGerritEvent> events = trigger.getTriggerOnEvents();
+        if (events != null) {
+            for (PluginGerritEvent e : events) {
+                Class type = e.getCorrespondingEventClass();
+                if (type == null) {
+                    type = GerritTriggeredEvent.class;
+                }
+                types.put(type, Boolean.TRUE);
+            }
+        }
+        return types.keySet();
+    }
+
+    /**
+     * Folds the case of a string so that two strings are equal after folding
+     * if and only if {@link String#equalsIgnoreCase(String)} says they are.
+     *
+     * @param str the string.
+     * @return the folded string.
+     */
+    static String foldCase(String str) {
+        char[] chars = new char[str.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(str.charAt(i)));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * The first path segment of a string the same way as it is tokenized by
+     * {@link org.apache.tools.ant.types.selectors.SelectorUtils#matchPath(String, String)}.
+     *
+     * @param str the string.
+     * @return the first segment or an empty string if there are none.
+     */
+    static String firstPathSegment(String str) {
+        StringTokenizer tokenizer = new StringTokenizer(str.replace('/', File.separatorChar), File.separator);
+        if (tokenizer.hasMoreTokens()) {
+            return tokenizer.nextToken();
+        }
+        return "";
+    }
+
+    /**
+     * How a project rule is indexed.
+     */
+    private enum Kind {
+        /**
+         * Looked up on the case folded project name.
+         */
+        PLAIN,
+        /**
+         * Looked up on the first path segment of the project name.
+         */
+        PREFIX,
+        /**
+         * Always a candidate.
+         */
+        SCAN
+    }
+
+    /**
+     * One project rule of a trigger and the indexes it has been added to.
+     */
+    private static final class Registration {
+        private final GerritTrigger trigger;
+        private final GerritProject project;
+        private final Kind kind;
+        private final String key;
+        private final List<ProjectIndex> indexes = new ArrayList<ProjectIndex>();
+
+        /**
+         * Standard constructor.
+         *
+         * @param trigger the trigger.
+         * @param project the rule, null means that the trigger should always be a candidate.
+         */
+        Registration(GerritTrigger trigger, GerritProject project) {
+            this.trigger = trigger;
+            this.project = project;
+            if (project == null || project.getCompareType() == null || project.getPattern() == null) {
+                kind = Kind.SCAN;
+                key = null;
+            } else if (project.getCompareType() == CompareType.PLAIN) {
+                kind = Kind.PLAIN;
+                key = foldCase(project.getPattern());
+            } else if (project.getCompareType() == CompareType.ANT) {
+                String segment = firstPathSegment(project.getPattern());
+                if (segment.length() > 0 && !project.getPattern().startsWith("/")
+                        && segment.indexOf('*') < 0 && segment.indexOf('?') < 0) {
+                    kind = Kind.PREFIX;
+                    key = segment;
+                } else {
+                    kind = Kind.SCAN;
+                    key = null;
+                }
+            } else {
+                kind = Kind.SCAN;
+                key = null;
+            }
+        }
+    }
+
+    /**
+     * The project rules for one server and event type.
+     */
+    private static final class ProjectIndex {
+        private final Map<String, List<Registration>> plain = new HashMap<String, List<Registration>>();
+        private final Map<String, List<Registration>> prefix = new HashMap<String, List<Registration>>();
+        private final List<Registration> scan = new ArrayList<Registration>();
+
+        /**
+         * Adds the registration.
+         *
+         * @param registration the registration.
+         */
+        void add(Registration registration) {
+            switch (registration.kind) {
+                case PLAIN:
+                    put(plain, registration);
+                    break;
+                case PREFIX:
+                    put(prefix, registration);
+                    break;
+                default:
+                    scan.add(registration);
+            }
+        }
+
+        /**
+         * Removes the registration.
+         *
+         * @param registration the registration.
+         */
+        void remove(Registration registration) {
+            switch (registration.kind) {
+                case PLAIN:
+                    remove(plain, registration);
+                    break;
+                case PREFIX:
+                    remove(prefix, registration);
+                    break;
+                default:
+                    removeIdentity(scan, registration);
+            }
+        }
+
+        /**
+         * If there are no registrations in the index.
+         *
+         * @return true if so.
+         */
+        boolean isEmpty() {
+            return plain.isEmpty() && prefix.isEmpty() && scan.isEmpty();
+        }
+
+        /**
+         * Collects the triggers that might be interested in the project.
+         *
+         * @param project the project or null if the event doesn't have one, then all triggers are collected.
+         * @param found where to put the triggers.
+         */
+        void collect(String project, Map<GerritTrigger, Boolean> found) {
+            if (project == null) {
+                collectAll(plain.values(), found);
+                collectAll(prefix.values(), found);
+            } else {
+                collect(plain.get(foldCase(project)), found);
+                collect(prefix.get(firstPathSegment(project)), found);
+            }
+            collect(scan, found);
+        }
+
+        /**
+         * Puts the triggers of all the lists in found.
+         *
+         * @param lists the lists.
+         * @param found the result.
+         */
+        private static void collectAll(Collection<List<Registration>> lists, Map<GerritTrigger, Boolean> found) {
+            for (List<Registration> list : lists) {
+                collect(list, found);
+            }
+        }
+
+        /**
+         * Puts the triggers of the list in found.
+         *
+         * @param list the list, can be null.
+         * @param found the result.
+         */
+        private static void collect(List<Registration> list, Map<GerritTrigger, Boolean> found) {
+            if (list != null) {
+                for (Registration registration : list) {
+                    found.put(registration.trigger, Boolean.TRUE);
+                }
+            }
+        }
+
+        /**
+         * Adds the registration to the list for its key.
+         *
+         * @param map the map.
+         * @param registration the registration.
+         */
+        private static void put(Map<String, List<Registration>> map, Registration registration) {
+            List<Registration> list = map.get(registration.key);
+            if (list == null) {
+                list = new ArrayList<Registration>();
+                map.put(registration.key, list);
+            }
+            list.add(registration);
+        }
+
+        /**
+         * Removes the registration from the list for its key and the key if the list becomes empty.
+         *
+         * @param map the map.
+         * @param registration the registration.
+         */
+        private static void remove(Map<String, List<Registration>> map, Registration registration) {
+            List<Registration> list = map.get(registration.key);
+            if (list != null) {
+                removeIdentity(list, registration);
+                if (list.isEmpty()) {
+                    map.remove(registration.key);
+                }
+            }
+        }
+
+        /**
+         * Removes the registration instance from the list.
+         *
+         * @param list the list.
+         * @param registration the registration.
+         */
+        private static void removeIdentity(List<Registration> list, Registration registration) {
+            Iterator<Registration> it = list.iterator();
+            while (it.hasNext()) {
+                if (it.next() == registration) {
+                    it.remove();
+                    return;
+                }
+            }
+        }
     }
 }
@@ -55,10 +55,9 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.events.Plugi
 import com.sonyericsson.hudson.plugins.gerrit.trigger.version.GerritVersionChecker;
 
 import static com.sonymobile.tools.gerrit.gerritevents.GerritDefaultValues.DEFAULT_BUILD_SCHEDULE_DELAY;
+import static com.sonymobile.tools.gerrit.gerritevents.GerritDefaultValues.DEFAULT_DYNAMIC_CONFIG_REFRESH_INTERVAL;
 import static jenkins.model.ParameterizedJobMixIn.ParameterizedJob;
 
-import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
-import com.sonymobile.tools.gerrit.gerritevents.GerritQueryHandler;
 import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Approval;
 import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Provider;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
@@ -73,7 +72,6 @@ import hudson.Util;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
 import hudson.model.AutoCompletionCandidates;
-import hudson.model.Cause;
 import hudson.model.Computer;
 import hudson.model.Executor;
 import hudson.model.Hudson;
@@ -99,16 +97,15 @@ import java.net.URL;
 import java.text.MessageFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.PatternSyntaxException;
 
 import jenkins.model.Jenkins;
@@ -361,14 +358,8 @@ public class GerritTrigger extends Trigger<Job> {
      * @param newFullName the current {@link Item#getFullName}
      */
     void onJobRenamed(String oldFullName, String newFullName) {
-        PluginImpl plugin = PluginImpl.getInstance();
-        if (plugin != null) {
-            GerritHandler handler = plugin.getHandler();
-            if (handler != null) {
-                handler.removeListener(new EventListener(oldFullName));
-                handler.addListener(createListener());
-            }
-        }
+        // the listener is looked up from the job when the event is routed, so only the index needs a refresh
+        GerritProjectList.updateTrigger(this);
     }
 
 
@@ -407,27 +398,6 @@ public class GerritTrigger extends Trigger<Job> {
         }
     }
 
-    /**
-    * Adds this trigger as listener to the Gerrit server.
-    *
-    * @param project the project associated with the trigger.
-    */
-    private void addThisTriggerAsListener(Job project) {
-        PluginImpl plugin = PluginImpl.getInstance();
-        if (plugin != null) {
-            GerritHandler handler = plugin.getHandler();
-            if (handler != null) {
-                handler.addListener(createListener(project));
-            } else {
-                logger.warn("The plugin has no handler instance (BUG)! Project {} will not be triggered!",
-                        project.getFullDisplayName());
-            }
-        } else {
-            logger.warn("The plugin instance could not be found! Project {} will not be triggered!",
-                    project.getFullDisplayName());
-        }
-    }
-
     /**
      * Creates an {@link EventListener} for the provided project.
      * @param project the project
@@ -452,18 +422,12 @@ public class GerritTrigger extends Trigger<Job> {
         super.start(project, newInstance);
         initializeServerName();
         initializeTriggerOnEvents();
-        try {
-            addThisTriggerAsListener(project);
-        } catch (IllegalStateException e) {
-            logger.error("I am too early!", e);
-        }
+        GerritProjectList.addTrigger(this);
 
         // Create a new timer task if there is a URL
         if (dynamicTriggerConfiguration) {
             gerritTriggerTimerTask = new GerritTriggerTimerTask(this);
         }
-
-        GerritProjectList.removeTriggerFromProjectList(this);
     }
 
     @Override
@@ -471,29 +435,10 @@ public class GerritTrigger extends Trigger<Job> {
         logger.debug("Stop");
         GerritProjectList.removeTriggerFromProjectList(this);
         super.stop();
-        try {
-            removeListener();
-        } catch (IllegalStateException e) {
-            logger.error("I am too late!", e);
-        }
 
         cancelTimer();
     }
 
-    /**
-     * Removes listener from the server.
-     */
-    private void removeListener() {
-        GerritHandler handler = PluginImpl.getHandler_();
-        if (handler != null) {
-            if (job != null) {
-                handler.removeListener(createListener());
-            }
-        } else {
-            logger.error("The Gerrit handler has not been initialized. BUG!");
-        }
-    }
-
     /**
      * Initializes the event's provider and pass it the server name info if necessary.
      *
@@ -828,8 +773,8 @@ public class GerritTrigger extends Trigger<Job> {
                                  && p.isInteresting(changeBasedEvent.getChange().getProject(),
                                                     changeBasedEvent.getChange().getBranch(),
                                                     changeBasedEvent.getChange().getTopic(),
-                                                    changeBasedEvent.getFiles(
-                                                        new GerritQueryHandler(getServerConfig(event))))) {
+                                                    ChangedFilesCache.getInstance().getFiles(
+                                                        changeBasedEvent, getServerConfig(event)))) {
                                 logger.trace("According to {} the event is interesting.", p);
                                 return true;
                             }
@@ -877,10 +822,12 @@ public class GerritTrigger extends Trigger<Job> {
      * @return true if the event matches the approval category and value configured.
      */
     /*package*/ boolean commentAddedMatch(CommentAdded event) {
-        PluginCommentAddedEvent commentAdded = null;
+        if (triggerOnEvents == null) {
+            return false;
+        }
         for (PluginGerritEvent e : triggerOnEvents) {
             if (e instanceof PluginCommentAddedEvent) {
-                commentAdded = (PluginCommentAddedEvent)e;
+                PluginCommentAddedEvent commentAdded = (PluginCommentAddedEvent)e;
                 for (Approval approval : event.getApprovals()) {
                     /** Ensure that this trigger is backwards compatible.
                      * Gerrit stream events changed to append approval info to
@@ -888,25 +835,11 @@ public class GerritTrigger extends Trigger<Job> {
                      * new `updated` attribute to indicate whether the score
                      * was changed.
                      **/
-                    if (approval.getUpdated() != null) {
-                        if (approval.getUpdated()
-                            && approval.getType().equals(
-                                commentAdded.getVerdictCategory())
-                            && (approval.getValue().equals(
-                                commentAdded.getCommentAddedTriggerApprovalValue())
-                            || ("+" + approval.getValue()).equals(
-                                commentAdded.getCommentAddedTriggerApprovalValue()))) {
-                            return true;
-                         }
-                    } else {
-                        if (approval.getType().equals(
-                                commentAdded.getVerdictCategory())
-                            && (approval.getValue().equals(
-                                commentAdded.getCommentAddedTriggerApprovalValue())
-                            || ("+" + approval.getValue()).equals(
-                                commentAdded.getCommentAddedTriggerApprovalValue()))) {
-                            return true;
-                        }
+                    if (approval.getUpdated() != null && !approval.getUpdated()) {
+                        continue;
+                    }
+                    if (commentAdded.match(approval)) {
+                        return true;
                     }
                 }
             }
@@ -946,6 +879,7 @@ public class GerritTrigger extends Trigger<Job> {
      */
     public void setGerritProjects(List<GerritProject> gerritProjects) {
         this.gerritProjects = gerritProjects;
+        GerritProjectList.updateTrigger(this);
     }
 
     /**
@@ -1454,6 +1388,9 @@ public class GerritTrigger extends Trigger<Job> {
      * This method is called by the timer thread at regular intervals. It fetches the URL,
      * determines if the result is different than from the last fetch, and if so, replaces
      * the current URL trigger configuration with the fetched one.
+     * The fetch is shared with the other jobs using the same URL within one refresh interval.
+     *
+     * @see GerritDynamicUrlCache
      */
     public void updateTriggerConfigURL() {
         if (triggerInformationAction == null) {
@@ -1465,8 +1402,12 @@ public class GerritTrigger extends Trigger<Job> {
                 triggerInformationAction.setErrorMessage("Dynamic trigger configuration needs "
                         + "a specific configured server");
             } else {
-                List<GerritProject> fetchedProjects = GerritDynamicUrlProcessor.fetch(triggerConfigURL, serverName);
-                dynamicGerritProjects = fetchedProjects;
+                List<GerritProject> fetchedProjects = GerritDynamicUrlCache.getInstance().fetch(triggerConfigURL,
+                        getDynamicConfigRefreshMillis());
+                if (fetchedProjects != dynamicGerritProjects) {
+                    dynamicGerritProjects = fetchedProjects;
+                    GerritProjectList.updateTrigger(this);
+                }
             }
         } catch (ParseException pe) {
             String logErrorMessage = MessageFormat.format(
@@ -1504,6 +1445,20 @@ public class GerritTrigger extends Trigger<Job> {
         }
     }
 
+    /**
+     * The dynamic trigger configuration refresh interval of the configured server.
+     *
+     * @return the interval in milliseconds.
+     */
+    private long getDynamicConfigRefreshMillis() {
+        GerritServer server = PluginImpl.getServer_(serverName);
+        if (server != null) {
+            return TimeUnit.SECONDS.toMillis(server.getConfig().getDynamicConfigRefreshInterval());
+        } else {
+            return TimeUnit.SECONDS.toMillis(DEFAULT_DYNAMIC_CONFIG_REFRESH_INTERVAL);
+        }
+    }
+
     /**
      * Convenience method for finding it out if triggering on draft published is enabled in the Gerrit version.
      * @return true if triggering on draft published is enabled in the Gerrit version.
@@ -1886,6 +1841,12 @@ public class GerritTrigger extends Trigger<Job> {
     public class RunningJobs {
         private final HashMap<GerritTriggeredEvent, ParametersAction> runningJobs =
                 new HashMap<GerritTriggeredEvent, ParametersAction>();
+        /**
+         * The events in {@link #runningJobs} by the Change-Id of their change,
+         * so the builds of the same change are found without going through all of them.
+         */
+        private final HashMap<String, Set<ChangeBasedEvent>> runningJobsByChange =
+                new HashMap<String, Set<ChangeBasedEvent>>();
 
         /**
          * Does the needful after a build has been scheduled.
@@ -1898,23 +1859,21 @@ public class GerritTrigger extends Trigger<Job> {
         public synchronized void scheduled(ChangeBasedEvent event, ParametersAction parameters, String projectName) {
             IGerritHudsonTriggerConfig serverConfig = getServerConfig(event);
             if (serverConfig == null) {
-                runningJobs.put(event, parameters);
+                put(event, parameters);
                 return;
             }
             BuildCancellationPolicy buildCurrentPatchesOnly = serverConfig.getBuildCurrentPatchesOnly();
             if (!buildCurrentPatchesOnly.isEnabled()
                     || (event instanceof ManualPatchsetCreated && !buildCurrentPatchesOnly.isAbortManualPatchsets())) {
-                runningJobs.put(event, parameters);
+                put(event, parameters);
                 return;
             }
-            Iterator<Entry<GerritTriggeredEvent, ParametersAction>> it = runningJobs.entrySet().iterator();
-            while (it.hasNext()) {
-                Entry<GerritTriggeredEvent, ParametersAction> pairs = it.next();
-                // Find all entries in runningJobs with the same Change #.
-                // Optionally, ignore all manual patchsets and don't cancel builds due to
-                // a retrigger of an older build.
-                if (pairs.getKey() instanceof ChangeBasedEvent) {
-                    ChangeBasedEvent runningChangeBasedEvent = ((ChangeBasedEvent)pairs.getKey());
+            Set<ChangeBasedEvent> sameChange = runningJobsByChange.get(getChangeKey(event));
+            if (sameChange != null) {
+                for (ChangeBasedEvent runningChangeBasedEvent : new ArrayList<ChangeBasedEvent>(sameChange)) {
+                    // Find all entries in runningJobs with the same Change #.
+                    // Optionally, ignore all manual patchsets and don't cancel builds due to
+                    // a retrigger of an older build.
                     if (!runningChangeBasedEvent.getChange().equals(event.getChange())) {
                         continue;
                     }
@@ -1935,18 +1894,18 @@ public class GerritTrigger extends Trigger<Job> {
                         continue;
                     }
 
-                    logger.debug("Cancelling build for " + pairs.getKey());
+                    logger.debug("Cancelling build for " + runningChangeBasedEvent);
                     try {
-                        cancelJob(pairs.getKey());
+                        cancelJob(runningChangeBasedEvent);
                     } catch (Exception e) {
                         // Ignore any problems with canceling the job.
                         logger.error("Error canceling job", e);
                     }
-                    it.remove();
+                    removeEntry(runningChangeBasedEvent);
                 }
             }
             // add our new job
-            runningJobs.put(event, parameters);
+            put(event, parameters);
         }
 
         /**
@@ -1961,6 +1920,8 @@ public class GerritTrigger extends Trigger<Job> {
          * This extra work is required due to race conditions when calling
          * Future.cancel() - see
          * https://issues.jenkins-ci.org/browse/JENKINS-13829
+         * <p>
+         * The queue items and builds of the event are looked up in the {@link TriggeredBuildIndex}.
          *
          * @param event
          *            The event that originally triggered the build.
@@ -1970,11 +1931,11 @@ public class GerritTrigger extends Trigger<Job> {
                 logger.error("Error canceling job. The job is not of type Task. Job name: " + job.getName());
                 return;
             }
+            TriggeredBuildIndex index = TriggeredBuildIndex.getInstance();
 
             // Remove any jobs in the build queue.
-            List<hudson.model.Queue.Item> itemsInQueue = Queue.getInstance().getItems((Queue.Task)job);
-            for (hudson.model.Queue.Item item : itemsInQueue) {
-                if (checkCausedByGerrit(event, item.getCauses())) {
+            for (hudson.model.Queue.Item item : index.getQueueItems(event)) {
+                if (item.task == job) {
                     Queue.getInstance().cancel(item);
                 }
             }
@@ -1985,6 +1946,32 @@ public class GerritTrigger extends Trigger<Job> {
             }
 
             // Interrupt any currently running jobs.
+            for (Entry<Run, Executor> entry : index.getRuns(event).entrySet()) {
+                Run<?, ?> run = entry.getKey();
+                if (run.getParent() != job) {
+                    continue;
+                }
+                Executor e = entry.getValue();
+                if (e == null || e.getCurrentExecutable() != run) {
+                    e = findExecutor(run);
+                }
+                if (e != null) {
+                    e.interrupt(
+                            Result.ABORTED,
+                            new NewPatchSetInterruption()
+                    );
+                }
+            }
+        }
+
+        /**
+         * Finds the executor of a build whose executor wasn't known when it started,
+         * like a build running on a one-off executor.
+         *
+         * @param run the build.
+         * @return the executor, or null if the build isn't running.
+         */
+        private Executor findExecutor(Run<?, ?> run) {
             Jenkins jenkins = Jenkins.getInstance();
             assert jenkins != null;
             for (Computer c : jenkins.getComputers()) {
@@ -1992,51 +1979,72 @@ public class GerritTrigger extends Trigger<Job> {
                 executors.addAll(c.getOneOffExecutors());
                 executors.addAll(c.getExecutors());
                 for (Executor e : executors) {
-                    Queue.Executable currentExecutable = e.getCurrentExecutable();
-                    if (currentExecutable != null && currentExecutable instanceof Run<?, ?>) {
-                        Run<?, ?> run = (Run<?, ?>)currentExecutable;
-                        if (checkCausedByGerrit(event, run.getCauses())) {
-                            e.interrupt(
-                                    Result.ABORTED,
-                                    new NewPatchSetInterruption()
-                            );
-                        }
+                    if (e.getCurrentExecutable() == run) {
+                        return e;
                     }
                 }
             }
+            return null;
         }
 
         /**
-         * Checks if any of the given causes references the given event.
+         * Removes any reference to the current build for this change.
          *
-         * @param event The event to check for. Checks for <i>identity</i>, not
-         * <i>equality</i>!
-         * @param causes the list of causes. Only {@link GerritCause}s are considered.
-         * @return true if the list of causes contains a {@link GerritCause}.
+         * @param event the event which started the build we want to remove.
+         * @return the build that was removed.
          */
-        private boolean checkCausedByGerrit(GerritTriggeredEvent event, Collection<Cause> causes) {
-            for (Cause c : causes) {
-                if (!(c instanceof GerritCause)) {
-                    continue;
-                }
-                GerritCause gc = (GerritCause)c;
-                if (gc.getEvent() == event) {
-                    return true;
-                }
-            }
-            return false;
+        public synchronized ParametersAction remove(ChangeBasedEvent event) {
+            logger.debug("Removing future job " + event.getPatchSet().getNumber());
+            return removeEntry(event);
         }
 
+        /**
+         * Stores the parameters of a scheduled build and indexes its event by change.
+         *
+         * @param event the event triggering the build.
+         * @param parameters the parameters for the build.
+         */
+        private void put(ChangeBasedEvent event, ParametersAction parameters) {
+            runningJobs.put(event, parameters);
+            String key = getChangeKey(event);
+            Set<ChangeBasedEvent> sameChange = runningJobsByChange.get(key);
+            if (sameChange == null) {
+                sameChange = new HashSet<ChangeBasedEvent>();
+                runningJobsByChange.put(key, sameChange);
+            }
+            sameChange.add(event);
+        }
 
         /**
-         * Removes any reference to the current build for this change.
+         * Removes the parameters of a build and its event from the change index.
          *
-         * @param event the event which started the build we want to remove.
-         * @return the build that was removed.
+         * @param event the event which started the build.
+         * @return the parameters of the build.
          */
-        public synchronized ParametersAction remove(ChangeBasedEvent event) {
-            logger.debug("Removing future job " + event.getPatchSet().getNumber());
+        private ParametersAction removeEntry(ChangeBasedEvent event) {
+            String key = getChangeKey(event);
+            Set<ChangeBasedEvent> sameChange = runningJobsByChange.get(key);
+            if (sameChange != null) {
+                sameChange.remove(event);
+                if (sameChange.isEmpty()) {
+                    runningJobsByChange.remove(key);
+                }
+            }
             return runningJobs.remove(event);
         }
+
+        /**
+         * The key of the change of an event in {@link #runningJobsByChange}.
+         * Changes that are equal have the same Change-Id, so they end up with the same key.
+         *
+         * @param event the event.
+         * @return the Change-Id.
+         */
+        private String getChangeKey(ChangeBasedEvent event) {
+            if (event.getChange() == null) {
+                return null;
+            }
+            return event.getChange().getId();
+        }
     }
 }
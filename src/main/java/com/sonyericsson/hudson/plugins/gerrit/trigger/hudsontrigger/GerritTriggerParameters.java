@@ -43,9 +43,11 @@ import hudson.model.StringParameterValue;
 import hudson.model.TextParameterValue;
 
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.Constructor;
 import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
@@ -217,23 +219,124 @@ public enum GerritTriggerParameters {
 
     private static final Logger logger = LoggerFactory.getLogger(GerritTriggerParameters.class);
 
+    /**
+     * All parameters, indexed by their name.
+     */
+    private static final Map<String, GerritTriggerParameters> BY_NAME;
+
+    static {
+        Map<String, GerritTriggerParameters> byName = new HashMap<String, GerritTriggerParameters>();
+        for (GerritTriggerParameters parameter : values()) {
+            byName.put(parameter.name(), parameter);
+        }
+        BY_NAME = Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * The type of value a Gerrit parameter is created as.
+     */
+    private enum ValueType {
+        /**
+         * A {@link StringParameterValue}.
+         */
+        STRING {
+            @Override
+            StringParameterValue create(String name, String value, String description) {
+                return new StringParameterValue(name, value, description);
+            }
+        },
+        /**
+         * A {@link TextParameterValue}.
+         */
+        TEXT {
+            @Override
+            StringParameterValue create(String name, String value, String description) {
+                return new TextParameterValue(name, value, description);
+            }
+        },
+        /**
+         * A {@link Base64EncodedStringParameterValue}.
+         */
+        BASE64 {
+            @Override
+            StringParameterValue create(String name, String value, String description) {
+                return new Base64EncodedStringParameterValue(name, value, description);
+            }
+        };
+
+        /**
+         * Creates the parameter value.
+         *
+         * @param name        the name of the parameter.
+         * @param value       the value.
+         * @param description the description, or null.
+         * @return the new parameter value.
+         */
+        abstract StringParameterValue create(String name, String value, String description);
+    }
+
+    /**
+     * Finds the Gerrit parameter with the given name, ignoring case.
+     *
+     * @param name the parameter name.
+     * @return the Gerrit parameter, or null if the name isn't one.
+     */
+    static GerritTriggerParameters fromParameterName(String name) {
+        if (name == null) {
+            return null;
+        }
+        return BY_NAME.get(name.toUpperCase());
+    }
+
+    /**
+     * Creates an empty array of slots, one per Gerrit parameter indexed by ordinal.
+     *
+     * @return the slots.
+     * @see #setOrCreateParameters(GerritTriggeredEvent, Job, List, ParameterValue[])
+     */
+    static ParameterValue[] createSlots() {
+        return new ParameterValue[BY_NAME.size()];
+    }
+
+    /**
+     * Finds the first parameter in the list for each Gerrit parameter.
+     *
+     * @param parameters the list of existing parameters.
+     * @return the slots, indexed by ordinal.
+     */
+    private static ParameterValue[] findSlots(List<ParameterValue> parameters) {
+        ParameterValue[] slots = createSlots();
+        for (ParameterValue p : parameters) {
+            GerritTriggerParameters gerritParameter = fromParameterName(p.getName());
+            if (gerritParameter != null && slots[gerritParameter.ordinal()] == null) {
+                slots[gerritParameter.ordinal()] = p;
+            }
+        }
+        return slots;
+    }
+
     /**
      * Creates a {@link hudson.model.ParameterValue} and adds it to the provided list.
      * If the parameter with the same name already exists in the list it will be replaced by the new parameter,
      * but its description will be used, unless the parameter type is something else than a StringParameterValue.
      *
      * @param parameters   the list of existing parameters.
+     * @param slots        the existing parameter of each Gerrit parameter, null to search the list.
      * @param value        the value.
      * @param escapeQuotes if quote characters should be escaped.
-     * @param clazz        the class which extends {@link hudson.model.ParameterValue}.
+     * @param type         the type of value to create.
      */
-    private void setOrCreateParameterValue(List<ParameterValue> parameters, String value, boolean escapeQuotes,
-            Class<? extends StringParameterValue> clazz) {
+    private void setOrCreateParameterValue(List<ParameterValue> parameters, ParameterValue[] slots, String value,
+            boolean escapeQuotes, ValueType type) {
         ParameterValue parameter = null;
-        for (ParameterValue p : parameters) {
-            if (p.getName().toUpperCase().equals(this.name())) {
-                parameter = p;
-                break;
+        if (slots != null) {
+            parameter = slots[ordinal()];
+        } else {
+            for (ParameterValue p : parameters) {
+                if (p.getName().toUpperCase().equals(this.name())) {
+                    parameter = p;
+                    break;
+                }
             }
         }
         String description = null;
@@ -254,15 +357,10 @@ public enum GerritTriggerParameters {
             stringValue = "";
         }
 
-        Class<?>[] types = { String.class, String.class, String.class };
-        Object[] args = { this.name(), stringValue, description };
-        Constructor<? extends StringParameterValue> constructor;
-        try {
-            constructor = clazz.getConstructor(types);
-            parameter = constructor.newInstance(args);
-            parameters.add(parameter);
-        } catch (ReflectiveOperationException ex) {
-            parameter = null;
+        parameter = type.create(this.name(), stringValue, description);
+        parameters.add(parameter);
+        if (slots != null) {
+            slots[ordinal()] = parameter;
         }
     }
 
@@ -276,7 +374,7 @@ public enum GerritTriggerParameters {
      * @param escapeQuotes if quote characters should be escaped.
      */
     public void setOrCreateStringParameterValue(List<ParameterValue> parameters, String value, boolean escapeQuotes) {
-        setOrCreateParameterValue(parameters, value, escapeQuotes, StringParameterValue.class);
+        setOrCreateParameterValue(parameters, null, value, escapeQuotes, ValueType.STRING);
     }
 
     /**
@@ -289,7 +387,7 @@ public enum GerritTriggerParameters {
      * @param escapeQuotes if quote characters should be escaped.
      */
     public void setOrCreateTextParameterValue(List<ParameterValue> parameters, String value, boolean escapeQuotes) {
-        setOrCreateParameterValue(parameters, value, escapeQuotes, TextParameterValue.class);
+        setOrCreateParameterValue(parameters, null, value, escapeQuotes, ValueType.TEXT);
     }
 
     /**
@@ -306,7 +404,7 @@ public enum GerritTriggerParameters {
             List<ParameterValue> parameters,
             String value,
             boolean escapeQuotes) {
-        setOrCreateParameterValue(parameters, value, escapeQuotes, Base64EncodedStringParameterValue.class);
+        setOrCreateParameterValue(parameters, null, value, escapeQuotes, ValueType.BASE64);
     }
 
     /**
@@ -329,6 +427,21 @@ public enum GerritTriggerParameters {
      */
     public static void setOrCreateParameters(GerritTriggeredEvent gerritEvent, Job project,
             List<ParameterValue> parameters) {
+        setOrCreateParameters(gerritEvent, project, parameters, findSlots(parameters));
+    }
+
+    /**
+     * Adds or sets all the Gerrit-parameter values to the provided list,
+     * using already known slots instead of searching the list for each parameter.
+     * @param gerritEvent the event.
+     * @param project the project for which the parameters are being set
+     * @param parameters the default parameters
+     * @param slots the parameter in the list for each Gerrit parameter, indexed by ordinal.
+     *              Updated as parameters are replaced.
+     * @see #createSlots()
+     */
+    static void setOrCreateParameters(GerritTriggeredEvent gerritEvent, Job project,
+            List<ParameterValue> parameters, ParameterValue[] slots) {
 
         boolean noNameAndEmailParameters = false;
         boolean escapeQuotes = false;
@@ -342,125 +455,133 @@ public enum GerritTriggerParameters {
             }
         }
 
-        GERRIT_EVENT_TYPE.setOrCreateStringParameterValue(
-                parameters, gerritEvent.getEventType().getTypeValue(), escapeQuotes);
-        GERRIT_EVENT_HASH.setOrCreateStringParameterValue(
-                parameters, String.valueOf(((java.lang.Object)gerritEvent).hashCode()), escapeQuotes);
+        GERRIT_EVENT_TYPE.setOrCreateParameterValue(
+                parameters, slots, gerritEvent.getEventType().getTypeValue(), escapeQuotes, ValueType.STRING);
+        GERRIT_EVENT_HASH.setOrCreateParameterValue(
+                parameters, slots, String.valueOf(((java.lang.Object)gerritEvent).hashCode()),
+                escapeQuotes, ValueType.STRING);
         if (gerritEvent instanceof ChangeBasedEvent) {
             ChangeBasedEvent event = (ChangeBasedEvent)gerritEvent;
-            GERRIT_BRANCH.setOrCreateStringParameterValue(
-                    parameters, event.getChange().getBranch(), escapeQuotes);
-            GERRIT_TOPIC.setOrCreateStringParameterValue(
-                    parameters, event.getChange().getTopic(), escapeQuotes);
-            GERRIT_CHANGE_NUMBER.setOrCreateStringParameterValue(
-                    parameters, event.getChange().getNumber(), escapeQuotes);
-            GERRIT_CHANGE_ID.setOrCreateStringParameterValue(
-                    parameters, event.getChange().getId(), escapeQuotes);
+            GERRIT_BRANCH.setOrCreateParameterValue(
+                    parameters, slots, event.getChange().getBranch(), escapeQuotes, ValueType.STRING);
+            GERRIT_TOPIC.setOrCreateParameterValue(
+                    parameters, slots, event.getChange().getTopic(), escapeQuotes, ValueType.STRING);
+            GERRIT_CHANGE_NUMBER.setOrCreateParameterValue(
+                    parameters, slots, event.getChange().getNumber(), escapeQuotes, ValueType.STRING);
+            GERRIT_CHANGE_ID.setOrCreateParameterValue(
+                    parameters, slots, event.getChange().getId(), escapeQuotes, ValueType.STRING);
             String pNumber = null;
             if (null != event.getPatchSet()) {
                 pNumber = event.getPatchSet().getNumber();
-                GERRIT_PATCHSET_NUMBER.setOrCreateStringParameterValue(
-                        parameters, pNumber, escapeQuotes);
-                GERRIT_PATCHSET_REVISION.setOrCreateStringParameterValue(
-                        parameters, event.getPatchSet().getRevision(), escapeQuotes);
-                GERRIT_REFSPEC.setOrCreateStringParameterValue(
-                        parameters, StringUtil.makeRefSpec(event), escapeQuotes);
+                GERRIT_PATCHSET_NUMBER.setOrCreateParameterValue(
+                        parameters, slots, pNumber, escapeQuotes, ValueType.STRING);
+                GERRIT_PATCHSET_REVISION.setOrCreateParameterValue(
+                        parameters, slots, event.getPatchSet().getRevision(), escapeQuotes, ValueType.STRING);
+                GERRIT_REFSPEC.setOrCreateParameterValue(
+                        parameters, slots, StringUtil.makeRefSpec(event), escapeQuotes, ValueType.STRING);
             }
-            GERRIT_PROJECT.setOrCreateStringParameterValue(
-                    parameters, event.getChange().getProject(), escapeQuotes);
+            GERRIT_PROJECT.setOrCreateParameterValue(
+                    parameters, slots, event.getChange().getProject(), escapeQuotes, ValueType.STRING);
             if (event instanceof ChangeRestored) {
                 if (!noNameAndEmailParameters) {
-                    GERRIT_CHANGE_RESTORER.setOrCreateStringParameterValue(
-                            parameters, getNameAndEmail(((ChangeRestored)event).getRestorer()), escapeQuotes);
+                    GERRIT_CHANGE_RESTORER.setOrCreateParameterValue(
+                            parameters, slots, getNameAndEmail(((ChangeRestored)event).getRestorer()),
+                            escapeQuotes, ValueType.STRING);
                 }
-                GERRIT_CHANGE_RESTORER_NAME.setOrCreateStringParameterValue(
-                        parameters, getName(((ChangeRestored)event).getRestorer()), escapeQuotes);
-                GERRIT_CHANGE_RESTORER_EMAIL.setOrCreateStringParameterValue(
-                        parameters, getEmail(((ChangeRestored)event).getRestorer()), escapeQuotes);
+                GERRIT_CHANGE_RESTORER_NAME.setOrCreateParameterValue(
+                        parameters, slots, getName(((ChangeRestored)event).getRestorer()),
+                        escapeQuotes, ValueType.STRING);
+                GERRIT_CHANGE_RESTORER_EMAIL.setOrCreateParameterValue(
+                        parameters, slots, getEmail(((ChangeRestored)event).getRestorer()),
+                        escapeQuotes, ValueType.STRING);
             }
-            GERRIT_CHANGE_SUBJECT.setOrCreateStringParameterValue(
-                    parameters, event.getChange().getSubject(), escapeQuotes);
+            GERRIT_CHANGE_SUBJECT.setOrCreateParameterValue(
+                    parameters, slots, event.getChange().getSubject(), escapeQuotes, ValueType.STRING);
 
             String url = getURL(event, project);
 
             String commitMessage = event.getChange().getCommitMessage();
             if (commitMessage != null) {
                 if (readableMessage) {
-                    GERRIT_CHANGE_COMMIT_MESSAGE.setOrCreateTextParameterValue(
-                            parameters, commitMessage, escapeQuotes);
+                    GERRIT_CHANGE_COMMIT_MESSAGE.setOrCreateParameterValue(
+                            parameters, slots, commitMessage, escapeQuotes, ValueType.TEXT);
                 } else {
                     try {
                         byte[] encodedBytes = Base64.encodeBase64(commitMessage.getBytes("UTF-8"));
-                        GERRIT_CHANGE_COMMIT_MESSAGE.setOrCreateBase64EncodedStringParameterValue(
-                            parameters, new String(encodedBytes, Charset.forName("UTF-8")), escapeQuotes);
+                        GERRIT_CHANGE_COMMIT_MESSAGE.setOrCreateParameterValue(
+                            parameters, slots, new String(encodedBytes, Charset.forName("UTF-8")),
+                            escapeQuotes, ValueType.BASE64);
                     } catch (UnsupportedEncodingException uee) {
                         logger.error("Failed to encode commit message as Base64: ", uee);
                     }
                 }
             }
-            GERRIT_CHANGE_URL.setOrCreateStringParameterValue(
-                    parameters, url, escapeQuotes);
+            GERRIT_CHANGE_URL.setOrCreateParameterValue(
+                    parameters, slots, url, escapeQuotes, ValueType.STRING);
             if (event instanceof ChangeAbandoned) {
                 if (!noNameAndEmailParameters) {
-                    GERRIT_CHANGE_ABANDONER.setOrCreateStringParameterValue(
-                            parameters, getNameAndEmail(((ChangeAbandoned)event).getAbandoner()), escapeQuotes);
+                    GERRIT_CHANGE_ABANDONER.setOrCreateParameterValue(
+                            parameters, slots, getNameAndEmail(((ChangeAbandoned)event).getAbandoner()),
+                            escapeQuotes, ValueType.STRING);
                 }
-                GERRIT_CHANGE_ABANDONER_NAME.setOrCreateStringParameterValue(
-                        parameters, getName(((ChangeAbandoned)event).getAbandoner()), escapeQuotes);
-                GERRIT_CHANGE_ABANDONER_EMAIL.setOrCreateStringParameterValue(
-                        parameters, getEmail(((ChangeAbandoned)event).getAbandoner()), escapeQuotes);
+                GERRIT_CHANGE_ABANDONER_NAME.setOrCreateParameterValue(
+                        parameters, slots, getName(((ChangeAbandoned)event).getAbandoner()),
+                        escapeQuotes, ValueType.STRING);
+                GERRIT_CHANGE_ABANDONER_EMAIL.setOrCreateParameterValue(
+                        parameters, slots, getEmail(((ChangeAbandoned)event).getAbandoner()),
+                        escapeQuotes, ValueType.STRING);
             }
             if (!noNameAndEmailParameters) {
-                GERRIT_CHANGE_OWNER.setOrCreateStringParameterValue(
-                    parameters, getNameAndEmail(event.getChange().getOwner()), escapeQuotes);
+                GERRIT_CHANGE_OWNER.setOrCreateParameterValue(
+                    parameters, slots, getNameAndEmail(event.getChange().getOwner()), escapeQuotes, ValueType.STRING);
             }
-            GERRIT_CHANGE_OWNER_NAME.setOrCreateStringParameterValue(
-                    parameters, getName(event.getChange().getOwner()), escapeQuotes);
-            GERRIT_CHANGE_OWNER_EMAIL.setOrCreateStringParameterValue(
-                    parameters, getEmail(event.getChange().getOwner()), escapeQuotes);
+            GERRIT_CHANGE_OWNER_NAME.setOrCreateParameterValue(
+                    parameters, slots, getName(event.getChange().getOwner()), escapeQuotes, ValueType.STRING);
+            GERRIT_CHANGE_OWNER_EMAIL.setOrCreateParameterValue(
+                    parameters, slots, getEmail(event.getChange().getOwner()), escapeQuotes, ValueType.STRING);
             Account uploader = findUploader(event);
             if (!noNameAndEmailParameters) {
-                GERRIT_PATCHSET_UPLOADER.setOrCreateStringParameterValue(
-                    parameters, getNameAndEmail(uploader), escapeQuotes);
+                GERRIT_PATCHSET_UPLOADER.setOrCreateParameterValue(
+                    parameters, slots, getNameAndEmail(uploader), escapeQuotes, ValueType.STRING);
             }
-            GERRIT_PATCHSET_UPLOADER_NAME.setOrCreateStringParameterValue(
-                    parameters, getName(uploader), escapeQuotes);
-            GERRIT_PATCHSET_UPLOADER_EMAIL.setOrCreateStringParameterValue(
-                    parameters, getEmail(uploader), escapeQuotes);
+            GERRIT_PATCHSET_UPLOADER_NAME.setOrCreateParameterValue(
+                    parameters, slots, getName(uploader), escapeQuotes, ValueType.STRING);
+            GERRIT_PATCHSET_UPLOADER_EMAIL.setOrCreateParameterValue(
+                    parameters, slots, getEmail(uploader), escapeQuotes, ValueType.STRING);
         } else if (gerritEvent instanceof RefUpdated) {
             RefUpdated event = (RefUpdated)gerritEvent;
-            GERRIT_REFNAME.setOrCreateStringParameterValue(
-                    parameters, event.getRefUpdate().getRefName(), escapeQuotes);
-            GERRIT_PROJECT.setOrCreateStringParameterValue(
-                    parameters, event.getRefUpdate().getProject(), escapeQuotes);
-            GERRIT_OLDREV.setOrCreateStringParameterValue(
-                    parameters, event.getRefUpdate().getOldRev(), escapeQuotes);
-            GERRIT_NEWREV.setOrCreateStringParameterValue(
-                    parameters, event.getRefUpdate().getNewRev(), escapeQuotes);
+            GERRIT_REFNAME.setOrCreateParameterValue(
+                    parameters, slots, event.getRefUpdate().getRefName(), escapeQuotes, ValueType.STRING);
+            GERRIT_PROJECT.setOrCreateParameterValue(
+                    parameters, slots, event.getRefUpdate().getProject(), escapeQuotes, ValueType.STRING);
+            GERRIT_OLDREV.setOrCreateParameterValue(
+                    parameters, slots, event.getRefUpdate().getOldRev(), escapeQuotes, ValueType.STRING);
+            GERRIT_NEWREV.setOrCreateParameterValue(
+                    parameters, slots, event.getRefUpdate().getNewRev(), escapeQuotes, ValueType.STRING);
         }
         Account account = gerritEvent.getAccount();
         if (account != null) {
             if (!noNameAndEmailParameters) {
-                GERRIT_EVENT_ACCOUNT.setOrCreateStringParameterValue(
-                        parameters, getNameAndEmail(account), escapeQuotes);
+                GERRIT_EVENT_ACCOUNT.setOrCreateParameterValue(
+                        parameters, slots, getNameAndEmail(account), escapeQuotes, ValueType.STRING);
             }
-            GERRIT_EVENT_ACCOUNT_NAME.setOrCreateStringParameterValue(
-                    parameters, getName(account), escapeQuotes);
-            GERRIT_EVENT_ACCOUNT_EMAIL.setOrCreateStringParameterValue(
-                    parameters, getEmail(account), escapeQuotes);
+            GERRIT_EVENT_ACCOUNT_NAME.setOrCreateParameterValue(
+                    parameters, slots, getName(account), escapeQuotes, ValueType.STRING);
+            GERRIT_EVENT_ACCOUNT_EMAIL.setOrCreateParameterValue(
+                    parameters, slots, getEmail(account), escapeQuotes, ValueType.STRING);
         }
         Provider provider = gerritEvent.getProvider();
         if (provider != null) {
-            GERRIT_NAME.setOrCreateStringParameterValue(
-                    parameters, provider.getName(), escapeQuotes);
-            GERRIT_HOST.setOrCreateStringParameterValue(
-                    parameters, provider.getHost(), escapeQuotes);
-            GERRIT_PORT.setOrCreateStringParameterValue(
-                    parameters, provider.getPort(), escapeQuotes);
-            GERRIT_SCHEME.setOrCreateStringParameterValue(
-                    parameters, provider.getScheme(), escapeQuotes);
-            GERRIT_VERSION.setOrCreateStringParameterValue(
-                    parameters, provider.getVersion(), escapeQuotes);
+            GERRIT_NAME.setOrCreateParameterValue(
+                    parameters, slots, provider.getName(), escapeQuotes, ValueType.STRING);
+            GERRIT_HOST.setOrCreateParameterValue(
+                    parameters, slots, provider.getHost(), escapeQuotes, ValueType.STRING);
+            GERRIT_PORT.setOrCreateParameterValue(
+                    parameters, slots, provider.getPort(), escapeQuotes, ValueType.STRING);
+            GERRIT_SCHEME.setOrCreateParameterValue(
+                    parameters, slots, provider.getScheme(), escapeQuotes, ValueType.STRING);
+            GERRIT_VERSION.setOrCreateParameterValue(
+                    parameters, slots, provider.getVersion(), escapeQuotes, ValueType.STRING);
         }
     }
 
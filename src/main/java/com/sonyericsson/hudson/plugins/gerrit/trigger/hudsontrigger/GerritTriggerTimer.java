@@ -26,16 +26,28 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
 import com.sonymobile.tools.gerrit.gerritevents.GerritDefaultValues;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import hudson.util.TimeUnit2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.List;
-import java.util.Timer;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Manages the timer that is used for each GerritTrigger TimerTask that
- * is active.
+ * Manages the scheduling of each GerritTrigger TimerTask that is active.
+ * The tasks run on a small thread pool, so one slow URL does not hold back the others,
+ * and each task is started at a random point of its first interval, so the refreshes of
+ * jobs that are started at the same time are spread over the interval.
  *
  * @author Fredrik Abrahamson &lt;fredrik.abrahamson@sonymobile.com&gt;
  */
@@ -45,35 +57,57 @@ public final class GerritTriggerTimer {
      * Wait this many milliseconds before the first call to a TimerTask
      */
     private static final long DELAY_MILLISECONDS  =  5000;
+    /**
+     * The number of threads refreshing the dynamic trigger configurations.
+     */
+    private static final int THREAD_POOL_SIZE = 4;
     private static final Logger logger = LoggerFactory.getLogger(GerritTriggerTimer.class);
 
     /**
      * The instance used by the singleton mechanism.
      */
-    private static GerritTriggerTimer instance = null;
+    private static final GerritTriggerTimer INSTANCE = new GerritTriggerTimer();
 
     /**
-     * The timer that is doing the actual scheduling.
+     * The thread pool that is doing the actual scheduling.
      */
-    private Timer timer = null;
+    private final ScheduledThreadPoolExecutor executor;
+    private final long delayMillis;
+    private final Map<GerritTriggerTimerTask, ScheduledFuture<?>> scheduled =
+            new ConcurrentHashMap<GerritTriggerTimerTask, ScheduledFuture<?>>();
+    private final Set<String> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Random random = new Random();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong skippedInFlightCount = new AtomicLong();
+    private final AtomicLong skippedBehindCount = new AtomicLong();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private volatile long maxLagMillis;
 
     /**
      * The private constructor (this is a singleton class).
      */
     private GerritTriggerTimer() {
-        timer = new Timer(true);
+        this(DELAY_MILLISECONDS);
+    }
+
+    /**
+     * Constructor for a timer with its own initial delay, for tests.
+     *
+     * @param delayMillis the time in ms to wait before the first run of a TimerTask.
+     */
+    GerritTriggerTimer(long delayMillis) {
+        this.delayMillis = delayMillis;
+        executor = new ScheduledThreadPoolExecutor(THREAD_POOL_SIZE,
+                new NamingThreadFactory(new DaemonThreadFactory(), "Gerrit dynamic trigger configuration refresh"));
     }
 
     /**
-     * Returns the instance, and creates it first if needed.
+     * Returns the instance.
      *
      * @return the instance of this class
      */
     public static GerritTriggerTimer getInstance() {
-        if (instance == null) {
-            instance = new GerritTriggerTimer();
-        }
-        return instance;
+        return INSTANCE;
     }
 
     //CS IGNORE LineLength FOR NEXT 5 LINES. REASON: JavaDoc
@@ -132,18 +166,156 @@ public final class GerritTriggerTimer {
     }
 
     /**
-     * Schedule a TimerTask according to the two constants above.
+     * Schedule a TimerTask at the refresh interval, starting after the initial delay
+     * and a random part of the interval.
      *
      * @param timerTask the TimerTask to be scheduled
      */
     public void schedule(GerritTriggerTimerTask timerTask) {
-        long timerPeriod = TimeUnit2.SECONDS.toMillis(calculateDynamicConfigRefreshInterval(timerTask));
-        try {
-            timer.schedule(timerTask, DELAY_MILLISECONDS, timerPeriod);
-        } catch (IllegalArgumentException iae) {
-            logger.error("Attempted use of negative delay", iae);
-        } catch (IllegalStateException ise) {
-            logger.error("Attempted re-use of TimerTask", ise);
+        schedule(timerTask, TimeUnit2.SECONDS.toMillis(calculateDynamicConfigRefreshInterval(timerTask)));
+    }
+
+    /**
+     * Schedule a TimerTask at a refresh interval, starting after the initial delay
+     * and a random part of the interval.
+     *
+     * @param timerTask   the TimerTask to be scheduled
+     * @param timerPeriod the refresh interval in ms.
+     */
+    void schedule(GerritTriggerTimerTask timerTask, long timerPeriod) {
+        if (timerPeriod <= 0) {
+            logger.error("Attempted use of non-positive refresh interval {} ms", timerPeriod);
+            return;
+        }
+        long jitter;
+        synchronized (random) {
+            jitter = (long)(random.nextDouble() * timerPeriod);
+        }
+        long delay = delayMillis + jitter;
+        timerTask.setSchedule(this, System.currentTimeMillis() + delay, timerPeriod);
+        ScheduledFuture<?> future = executor.scheduleAtFixedRate(timerTask, delay, timerPeriod, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> previous = scheduled.put(timerTask, future);
+        if (previous != null) {
+            logger.error("Attempted re-use of TimerTask");
+            previous.cancel(false);
         }
     }
+
+    /**
+     * Stops the scheduling of a TimerTask.
+     *
+     * @param timerTask the TimerTask to stop.
+     */
+    void cancel(GerritTriggerTimerTask timerTask) {
+        ScheduledFuture<?> future = scheduled.remove(timerTask);
+        if (future != null) {
+            future.cancel(false);
+            executor.purge();
+        }
+    }
+
+    /**
+     * Records the lag of a TimerTask run against its schedule.
+     *
+     * @param timerTask the TimerTask.
+     * @param lagMillis the time in ms between when the run was scheduled and when it started.
+     */
+    void onRun(GerritTriggerTimerTask timerTask, long lagMillis) {
+        totalLagMillis.addAndGet(lagMillis);
+        refreshCount.incrementAndGet();
+        if (lagMillis > maxLagMillis) {
+            maxLagMillis = lagMillis;
+        }
+        logger.debug("Dynamic trigger configuration refresh of {} started {} ms late", timerTask.getJob(), lagMillis);
+    }
+
+    /**
+     * Records that a run was skipped because it was more than one interval behind its schedule.
+     *
+     * @param timerTask the TimerTask.
+     * @param lagMillis the time in ms between when the run was scheduled and when it started.
+     */
+    void onBehind(GerritTriggerTimerTask timerTask, long lagMillis) {
+        skippedBehindCount.incrementAndGet();
+        logger.warn("Skipping dynamic trigger configuration refresh of {}, it is {} ms behind its schedule",
+                timerTask.getJob(), lagMillis);
+    }
+
+    /**
+     * Marks the refresh of a job as in flight.
+     *
+     * @param job the full name of the job.
+     * @return false if a refresh of the job is already in flight, and this one should be skipped.
+     */
+    boolean startRefresh(String job) {
+        if (inFlight.add(job)) {
+            return true;
+        }
+        skippedInFlightCount.incrementAndGet();
+        logger.debug("Skipping dynamic trigger configuration refresh of {}, the previous is still in flight", job);
+        return false;
+    }
+
+    /**
+     * Marks the refresh of a job as done.
+     *
+     * @param job the full name of the job.
+     */
+    void refreshDone(String job) {
+        inFlight.remove(job);
+    }
+
+    /**
+     * The number of scheduled TimerTasks.
+     *
+     * @return the count.
+     */
+    public int getTaskCount() {
+        return scheduled.size();
+    }
+
+    /**
+     * The number of runs of the TimerTasks.
+     *
+     * @return the count.
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * The number of refreshes skipped because the previous refresh of the same job was still in flight.
+     *
+     * @return the count.
+     */
+    public long getSkippedInFlightCount() {
+        return skippedInFlightCount.get();
+    }
+
+    /**
+     * The number of refreshes skipped because they were more than one interval behind their schedule.
+     *
+     * @return the count.
+     */
+    public long getSkippedBehindCount() {
+        return skippedBehindCount.get();
+    }
+
+    /**
+     * The average lag of the runs against their schedule.
+     *
+     * @return the lag in ms.
+     */
+    public long getAverageLagMillis() {
+        return totalLagMillis.get() / Math.max(1, refreshCount.get());
+    }
+
+    /**
+     * The maximum lag of a run against its schedule.
+     *
+     * @return the lag in ms.
+     */
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
 }
@@ -27,16 +27,25 @@ import hudson.model.Job;
 import java.util.TimerTask;
 import javax.annotation.CheckForNull;
 import jenkins.model.Jenkins;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * TimerTasks that are created from a GerritTrigger and periodically calls
  * GerritTrigger.updateTriggerConfigURL().
+ * The task is scheduled by the {@link GerritTriggerTimer}, it still extends TimerTask
+ * so that it can be read from the job configurations saved by older versions.
  *
  * @author Fredrik Abrahamson &lt;fredrik.abrahamson@sonymobile.com&gt;
  */
 public class GerritTriggerTimerTask extends TimerTask {
+    private static final Logger logger = LoggerFactory.getLogger(GerritTriggerTimerTask.class);
     //TODO possible need to handle renames
     private String job;
+    private transient volatile GerritTriggerTimer timer;
+    private transient volatile long nextRunMillis;
+    private transient volatile long periodMillis;
+    private transient volatile long lastLagMillis;
 
     /**
      * Constructor
@@ -44,20 +53,106 @@ public class GerritTriggerTimerTask extends TimerTask {
      * @param gerritTrigger the GerritTrigger that created this timerTask
      */
     GerritTriggerTimerTask(GerritTrigger gerritTrigger) {
-        job = gerritTrigger.getJob().getFullName();
+        this(gerritTrigger.getJob().getFullName());
         GerritTriggerTimer.getInstance().schedule(this);
     }
 
+    /**
+     * Constructor for a task that is not scheduled yet.
+     *
+     * @param job the full name of the job.
+     */
+    GerritTriggerTimerTask(String job) {
+        this.job = job;
+    }
+
+    /**
+     * Sets when the task is scheduled to run, so that its lag can be measured.
+     *
+     * @param scheduledBy    the timer that runs the task.
+     * @param firstRunMillis the time of the first run.
+     * @param period         the time in ms between the runs.
+     */
+    void setSchedule(GerritTriggerTimer scheduledBy, long firstRunMillis, long period) {
+        this.timer = scheduledBy;
+        this.nextRunMillis = firstRunMillis;
+        this.periodMillis = period;
+    }
+
     /**
      * Called periodically by the GerritTriggerTimer according to its schedule.
+     * A run that is more than one interval behind, or that would overlap the still running refresh
+     * of the same job, is skipped.
      */
     @Override
     public void run() {
+        GerritTriggerTimer scheduledBy = getTimer();
+        long lag = System.currentTimeMillis() - nextRunMillis;
+        nextRunMillis += periodMillis;
+        lastLagMillis = lag;
+        if (lag >= periodMillis) {
+            scheduledBy.onBehind(this, lag);
+            return;
+        }
+        scheduledBy.onRun(this, lag);
         GerritTrigger trigger = getGerritTrigger();
         if (trigger == null) {
             return;
         }
-        trigger.updateTriggerConfigURL();
+        String name = job;
+        if (!scheduledBy.startRefresh(name)) {
+            return;
+        }
+        try {
+            trigger.updateTriggerConfigURL();
+        } catch (RuntimeException e) {
+            //An exception would stop the scheduling of this task.
+            logger.error("Failed to refresh the dynamic trigger configuration of " + name, e);
+        } finally {
+            scheduledBy.refreshDone(name);
+        }
+    }
+
+    /**
+     * Stops the scheduling of this task.
+     *
+     * @return true if the task was scheduled.
+     */
+    @Override
+    public boolean cancel() {
+        getTimer().cancel(this);
+        return super.cancel();
+    }
+
+    /**
+     * The timer that runs this task.
+     *
+     * @return the timer.
+     */
+    private GerritTriggerTimer getTimer() {
+        GerritTriggerTimer scheduledBy = timer;
+        if (scheduledBy == null) {
+            return GerritTriggerTimer.getInstance();
+        }
+        return scheduledBy;
+    }
+
+    /**
+     * The full name of the job.
+     *
+     * @return the name.
+     */
+    public String getJob() {
+        return job;
+    }
+
+    /**
+     * The time between when the last run was scheduled and when it started.
+     *
+     * @return the lag in ms.
+     */
+    public long getLastLagMillis() {
+        return lastLagMillis;
     }
 
     /**
@@ -0,0 +1,268 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
+
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import hudson.Extension;
+import hudson.model.Cause;
+import hudson.model.Executor;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.QueueListener;
+
+import javax.annotation.CheckForNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the queue items and running builds that each Gerrit event has caused,
+ * so builds of an outdated patch set can be cancelled without scanning the whole queue and every executor.
+ *
+ * Events are compared by identity, the same way {@link GerritCause}s of a build refer to them.
+ * The index is maintained by the {@link QueueListenerImpl} and {@link RunListenerImpl} below.
+ */
+public final class TriggeredBuildIndex {
+
+    private static final TriggeredBuildIndex INSTANCE = new TriggeredBuildIndex();
+
+    private final Map<GerritTriggeredEvent, List<Queue.Item>> queueItems =
+            new IdentityHashMap<GerritTriggeredEvent, List<Queue.Item>>();
+    private final Map<GerritTriggeredEvent, Map<Run, Executor>> runs =
+            new IdentityHashMap<GerritTriggeredEvent, Map<Run, Executor>>();
+
+    /**
+     * Constructor.
+     */
+    TriggeredBuildIndex() {
+    }
+
+    /**
+     * The index of this Jenkins.
+     *
+     * @return the instance.
+     */
+    public static TriggeredBuildIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a queue item of the events that caused it, replacing the item in its previous state.
+     *
+     * @param item the item.
+     */
+    synchronized void queued(Queue.Item item) {
+        for (GerritTriggeredEvent event : getEvents(item.getCauses())) {
+            List<Queue.Item> items = queueItems.get(event);
+            if (items == null) {
+                items = new LinkedList<Queue.Item>();
+                queueItems.put(event, items);
+            }
+            remove(items, item);
+            items.add(item);
+        }
+    }
+
+    /**
+     * Forgets a queue item that has left the queue.
+     *
+     * @param item the item.
+     */
+    synchronized void left(Queue.Item item) {
+        for (GerritTriggeredEvent event : getEvents(item.getCauses())) {
+            List<Queue.Item> items = queueItems.get(event);
+            if (items != null) {
+                remove(items, item);
+                if (items.isEmpty()) {
+                    queueItems.remove(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a started build of the events that caused it.
+     *
+     * @param run      the build.
+     * @param executor the executor of the build, or null if it isn't known.
+     */
+    synchronized void started(Run run, @CheckForNull Executor executor) {
+        for (GerritTriggeredEvent event : getEvents(run.getCauses())) {
+            Map<Run, Executor> executors = runs.get(event);
+            if (executors == null) {
+                executors = new HashMap<Run, Executor>();
+                runs.put(event, executors);
+            }
+            executors.put(run, executor);
+        }
+    }
+
+    /**
+     * Forgets a build that has finished.
+     *
+     * @param run the build.
+     */
+    synchronized void finished(Run run) {
+        for (GerritTriggeredEvent event : getEvents(run.getCauses())) {
+            Map<Run, Executor> executors = runs.get(event);
+            if (executors != null) {
+                executors.remove(run);
+                if (executors.isEmpty()) {
+                    runs.remove(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * The queue items that an event has caused, in their current state.
+     *
+     * @param event the event.
+     * @return the items.
+     */
+    public synchronized List<Queue.Item> getQueueItems(GerritTriggeredEvent event) {
+        List<Queue.Item> items = queueItems.get(event);
+        if (items == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<Queue.Item>(items);
+    }
+
+    /**
+     * The running builds that an event has caused, with the executors they run on if known.
+     *
+     * @param event the event.
+     * @return the builds and their executors.
+     */
+    public synchronized Map<Run, Executor> getRuns(GerritTriggeredEvent event) {
+        Map<Run, Executor> executors = runs.get(event);
+        if (executors == null) {
+            return Collections.emptyMap();
+        }
+        return new HashMap<Run, Executor>(executors);
+    }
+
+    /**
+     * The number of events with queued items or running builds.
+     *
+     * @return the number of events.
+     */
+    public synchronized int size() {
+        Map<GerritTriggeredEvent, Boolean> events = new IdentityHashMap<GerritTriggeredEvent, Boolean>();
+        for (GerritTriggeredEvent event : queueItems.keySet()) {
+            events.put(event, Boolean.TRUE);
+        }
+        for (GerritTriggeredEvent event : runs.keySet()) {
+            events.put(event, Boolean.TRUE);
+        }
+        return events.size();
+    }
+
+    /**
+     * Removes the item with the same id as another from a list.
+     *
+     * @param items the list.
+     * @param item  the other item.
+     */
+    private static void remove(List<Queue.Item> items, Queue.Item item) {
+        Iterator<Queue.Item> it = items.iterator();
+        while (it.hasNext()) {
+            if (it.next().getId() == item.getId()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * The events referred to by the {@link GerritCause}s among some causes.
+     *
+     * @param causes the causes.
+     * @return the events.
+     */
+    private static List<GerritTriggeredEvent> getEvents(Collection<? extends Cause> causes) {
+        List<GerritTriggeredEvent> events = new ArrayList<GerritTriggeredEvent>(1);
+        for (Cause cause : causes) {
+            if (cause instanceof GerritCause) {
+                GerritTriggeredEvent event = ((GerritCause)cause).getEvent();
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Updates the index as items move through the build queue.
+     */
+    @Extension
+    public static class QueueListenerImpl extends QueueListener {
+
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            INSTANCE.queued(wi);
+        }
+
+        @Override
+        public void onEnterBlocked(Queue.BlockedItem bi) {
+            INSTANCE.queued(bi);
+        }
+
+        @Override
+        public void onEnterBuildable(Queue.BuildableItem bi) {
+            INSTANCE.queued(bi);
+        }
+
+        @Override
+        public void onLeft(Queue.LeftItem li) {
+            INSTANCE.left(li);
+        }
+    }
+
+    /**
+     * Updates the index as builds start and finish.
+     */
+    @Extension
+    public static class RunListenerImpl extends RunListener<Run> {
+
+        @Override
+        public void onStarted(Run run, TaskListener listener) {
+            INSTANCE.started(run, Executor.currentExecutor());
+        }
+
+        @Override
+        public void onFinalized(Run run) {
+            INSTANCE.finished(run);
+        }
+    }
+}
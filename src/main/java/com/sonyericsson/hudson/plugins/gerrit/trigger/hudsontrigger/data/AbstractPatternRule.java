@@ -0,0 +1,99 @@
+/*
+ *  The MIT License
+ *
+ *  Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data;
+
+import hudson.model.AbstractDescribableImpl;
+
+/**
+ * A rule that matches a pattern with a {@link CompareType}. The pattern is compiled when the rule is created or
+ * loaded from XML and kept until the pattern or the compare type is changed.
+ *
+ * @param <T> the type of the rule.
+ */
+public abstract class AbstractPatternRule<T extends AbstractPatternRule<T>> extends AbstractDescribableImpl<T> {
+
+    private transient CompiledPattern compiledPattern;
+
+    /**
+     * The CompareType used.
+     * @return the CompareType
+     */
+    public abstract CompareType getCompareType();
+
+    /**
+     * The pattern to match on.
+     * @return the pattern
+     */
+    public abstract String getPattern();
+
+    /**
+     * The pattern compiled by the CompareType, an invalid pattern never matches.
+     * @return the compiled pattern.
+     */
+    public CompiledPattern getCompiledPattern() {
+        CompiledPattern compiled = compiledPattern;
+        if (compiled == null) {
+            compiled = compile();
+            compiledPattern = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * Compiles the pattern and keeps it, to be called once the pattern and the compare type are set.
+     */
+    protected void compilePattern() {
+        compiledPattern = compile();
+    }
+
+    /**
+     * Drops the compiled pattern, to be called when the pattern or the compare type is changed.
+     * The pattern is compiled again the next time it is needed.
+     */
+    protected void resetCompiledPattern() {
+        compiledPattern = null;
+    }
+
+    /**
+     * Compiles the pattern.
+     * @return the compiled pattern or null if there is nothing to compile yet.
+     */
+    private CompiledPattern compile() {
+        CompareType compareType = getCompareType();
+        String pattern = getPattern();
+        if (compareType == null || pattern == null) {
+            return null;
+        }
+        return compareType.compileOrNone(pattern);
+    }
+
+    /**
+     * Compiles the pattern when loaded from XML.
+     * @return this.
+     */
+    Object readResolve() {
+        compilePattern();
+        return this;
+    }
+}
@@ -24,15 +24,16 @@
 package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data;
 
 import hudson.Extension;
-import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
+import hudson.util.FormValidation;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
 
 /**
  * Represents a rule for triggering on a branch of a GerritProject.
  * @author Robert Sandell &lt;robert.sandell@sonyericsson.com&gt;
  */
-public class Branch extends AbstractDescribableImpl<Branch> {
+public class Branch extends AbstractPatternRule<Branch> {
 
     private CompareType compareType;
     private String pattern;
@@ -53,6 +54,7 @@ public class Branch extends AbstractDescribableImpl<Branch> {
     public Branch(CompareType compareType, String pattern) {
         this.compareType = compareType;
         this.pattern = pattern;
+        compilePattern();
     }
 
     /**
@@ -69,6 +71,7 @@ public class Branch extends AbstractDescribableImpl<Branch> {
      */
     public void setCompareType(CompareType compareType) {
         this.compareType = compareType;
+        resetCompiledPattern();
     }
 
     /**
@@ -85,6 +88,7 @@ public class Branch extends AbstractDescribableImpl<Branch> {
      */
     public void setPattern(String pattern) {
         this.pattern = pattern;
+        resetCompiledPattern();
     }
 
     /**
@@ -93,7 +97,7 @@ public class Branch extends AbstractDescribableImpl<Branch> {
      * @return true if the branch matches.
      */
     public boolean isInteresting(String branch) {
-        return compareType.matches(pattern, branch);
+        return getCompiledPattern().matches(branch);
     }
 
     /**
@@ -101,6 +105,17 @@ public class Branch extends AbstractDescribableImpl<Branch> {
      */
     @Extension
     public static class DescriptorImpl extends Descriptor<Branch> {
+        /**
+         * Validates the pattern so that an invalid pattern is reported when the job is saved.
+         * @param compareType the name of the selected CompareType.
+         * @param value the pattern.
+         * @return ok or an error.
+         */
+        public FormValidation doCheckPattern(@QueryParameter("compareType") String compareType,
+                                             @QueryParameter("value") String value) {
+            return CompareType.checkPattern(compareType, value);
+        }
+
         @Override
         public String getDisplayName() {
             return "";
@@ -26,8 +26,13 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.CompareUtil.AntCompareUtil;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.CompareUtil.PlainCompareUtil;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.CompareUtil.RegExpCompareUtil;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.Messages;
+import hudson.util.FormValidation;
+import org.slf4j.LoggerFactory;
+
 import java.util.LinkedList;
 import java.util.List;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Enum of different ways of comparing a pattern.
@@ -108,6 +113,57 @@ public enum CompareType {
         return util.matches(pattern, str);
     }
 
+    /**
+     * Compiles the pattern based on the algorithm of this CompareType instance.
+     * Matching with the result is the same as {@link #matches(String, String)} but without parsing the pattern again.
+     * @param pattern the pattern
+     * @return the compiled pattern.
+     * @throws PatternSyntaxException if the pattern is invalid.
+     */
+    public CompiledPattern compile(String pattern) throws PatternSyntaxException {
+        return util.compile(pattern);
+    }
+
+    /**
+     * Compiles the pattern like {@link #compile(String)} but logs an invalid pattern
+     * and returns {@link CompiledPattern#NONE} for it, so that the rule is reported once instead of on every event.
+     * @param pattern the pattern
+     * @return the compiled pattern.
+     */
+    CompiledPattern compileOrNone(String pattern) {
+        try {
+            return compile(pattern);
+        } catch (PatternSyntaxException e) {
+            LoggerFactory.getLogger(CompareType.class).warn("The {} pattern {} is invalid and will never match: {}",
+                    new Object[]{getDisplayName(), pattern, e.getDescription()});
+            return CompiledPattern.NONE;
+        }
+    }
+
+    /**
+     * Form validation of a pattern for the CompareType with the given name.
+     * @param compareType the name of the CompareType.
+     * @param pattern the pattern.
+     * @return ok, or an error if the pattern can't be compiled.
+     */
+    public static FormValidation checkPattern(String compareType, String pattern) {
+        if (pattern == null || pattern.isEmpty()) {
+            return FormValidation.ok();
+        }
+        CompareType type = PLAIN;
+        for (CompareType t : values()) {
+            if (t.name().equals(compareType)) {
+                type = t;
+            }
+        }
+        try {
+            type.compile(pattern);
+            return FormValidation.ok();
+        } catch (PatternSyntaxException e) {
+            return FormValidation.error(Messages.InvalidPattern(type.getDisplayName(), e.getDescription()));
+        }
+    }
+
     /**
      * Returns a "human readable" name of the instance.
      * @return the display name
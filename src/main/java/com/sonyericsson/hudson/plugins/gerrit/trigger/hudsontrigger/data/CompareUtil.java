@@ -24,7 +24,11 @@
 package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data;
 
 import java.io.File;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import org.apache.tools.ant.types.selectors.SelectorUtils;
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.apache.tools.ant.types.selectors.TokenizedPattern;
 
 /**
  * Base interface for the compare-algorithms.
@@ -40,6 +44,15 @@ public interface CompareUtil {
      */
     boolean matches(String pattern, String str);
 
+    /**
+     * Compiles the pattern so that it can be matched against many strings
+     * with the same result as {@link #matches(String, String)}.
+     * @param pattern the pattern to compile.
+     * @return the compiled pattern.
+     * @throws PatternSyntaxException if the pattern is invalid.
+     */
+    CompiledPattern compile(String pattern) throws PatternSyntaxException;
+
     /**
      * Returns the human-readable name of the util.
      * @return the name.
@@ -68,6 +81,17 @@ public interface CompareUtil {
             return SelectorUtils.matchPath(safePattern, safeStr);
         }
 
+        @Override
+        public CompiledPattern compile(String pattern) {
+            final TokenizedPattern tokenizedPattern = new TokenizedPattern(pattern.replace('/', File.separatorChar));
+            return new CompiledPattern() {
+                @Override
+                public boolean matches(String str) {
+                    return tokenizedPattern.matchPath(new TokenizedPath(str.replace('/', File.separatorChar)), true);
+                }
+            };
+        }
+
         @Override
         public String getName() {
             return "Path";
@@ -89,6 +113,16 @@ public interface CompareUtil {
             return pattern.equalsIgnoreCase(str);
         }
 
+        @Override
+        public CompiledPattern compile(final String pattern) {
+            return new CompiledPattern() {
+                @Override
+                public boolean matches(String str) {
+                    return pattern.equalsIgnoreCase(str);
+                }
+            };
+        }
+
         @Override
         public String getName() {
             return "Plain";
@@ -112,6 +146,17 @@ public interface CompareUtil {
             return str.matches(pattern);
         }
 
+        @Override
+        public CompiledPattern compile(String pattern) {
+            final Pattern compiled = Pattern.compile(pattern);
+            return new CompiledPattern() {
+                @Override
+                public boolean matches(String str) {
+                    return compiled.matcher(str).matches();
+                }
+            };
+        }
+
         @Override
         public String getName() {
             return "RegExp";
@@ -24,9 +24,10 @@
 package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data;
 
 import hudson.Extension;
-import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
+import hudson.util.FormValidation;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
 
 import java.util.List;
 
@@ -34,7 +35,7 @@ import java.util.List;
  * Represents a rule for triggering on a filepath of a GerritProject.
  * @author Tomas Westling &lt;thomas.westling@sonyericsson.com&gt;
  */
-public class FilePath extends AbstractDescribableImpl<FilePath> {
+public class FilePath extends AbstractPatternRule<FilePath> {
 
     private CompareType compareType;
     private String pattern;
@@ -55,6 +56,7 @@ public class FilePath extends AbstractDescribableImpl<FilePath> {
     public FilePath(CompareType compareType, String pattern) {
         this.compareType = compareType;
         this.pattern = pattern;
+        compilePattern();
     }
 
     /**
@@ -71,6 +73,7 @@ public class FilePath extends AbstractDescribableImpl<FilePath> {
      */
     public void setCompareType(CompareType compareType) {
         this.compareType = compareType;
+        resetCompiledPattern();
     }
 
     /**
@@ -87,6 +90,7 @@ public class FilePath extends AbstractDescribableImpl<FilePath> {
      */
     public void setPattern(String pattern) {
         this.pattern = pattern;
+        resetCompiledPattern();
     }
 
     /**
@@ -95,8 +99,9 @@ public class FilePath extends AbstractDescribableImpl<FilePath> {
      * @return true if the files match.
      */
     public boolean isInteresting(List<String> files) {
+        CompiledPattern compiled = getCompiledPattern();
         for (String file : files) {
-            if (compareType.matches(pattern, file)) {
+            if (compiled.matches(file)) {
                 return true;
             }
         }
@@ -108,6 +113,17 @@ public class FilePath extends AbstractDescribableImpl<FilePath> {
      */
     @Extension
     public static class DescriptorImpl extends Descriptor<FilePath> {
+        /**
+         * Validates the pattern so that an invalid pattern is reported when the job is saved.
+         * @param compareType the name of the selected CompareType.
+         * @param value the pattern.
+         * @return ok or an error.
+         */
+        public FormValidation doCheckPattern(@QueryParameter("compareType") String compareType,
+                                             @QueryParameter("value") String value) {
+            return CompareType.checkPattern(compareType, value);
+        }
+
         @Override
         public String getDisplayName() {
             return "";
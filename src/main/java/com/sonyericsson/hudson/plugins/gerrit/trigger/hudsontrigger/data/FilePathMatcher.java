@@ -0,0 +1,297 @@
+/*
+ *  The MIT License
+ *
+ *  Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Answers if any of a list of files is matched by any of a list of {@link FilePath} rules,
+ * in one pass over the files instead of one pass per rule.
+ * <p>
+ * Plain rules are looked up in a set, Ant rules are kept in a trie on their leading literal path segments so that
+ * only the rules that share the directories of a file are tried, and regular expressions are combined into one
+ * alternation when that doesn't change their meaning. The result is the same as asking each rule with
+ * {@link FilePath#isInteresting(List)}.
+ */
+final class FilePathMatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilePathMatcher.class);
+
+    private final List<FilePath> rules;
+    private final int size;
+    private final Set<String> plain = new HashSet<String>();
+    private final Node antRoot = new Node();
+    private final List<CompiledPattern> antScan = new ArrayList<CompiledPattern>();
+    private final List<CompiledPattern> regExps = new ArrayList<CompiledPattern>();
+    private final boolean antTrie;
+
+    /**
+     * Builds the matcher for the rules.
+     *
+     * @param rules the rules.
+     */
+    FilePathMatcher(List<FilePath> rules) {
+        this.rules = rules;
+        this.size = rules.size();
+        boolean hasAntTrie = false;
+        List<String> combinable = new ArrayList<String>();
+        for (FilePath rule : rules) {
+            CompareType type = rule.getCompareType();
+            String pattern = rule.getPattern();
+            if (type == CompareType.PLAIN && pattern != null) {
+                plain.add(foldCase(pattern));
+            } else if (type == CompareType.ANT && pattern != null) {
+                hasAntTrie |= addAnt(pattern, rule.getCompiledPattern());
+            } else if (type == CompareType.REG_EXP && pattern != null && isCombinable(pattern)
+                    && rule.getCompiledPattern() != CompiledPattern.NONE) {
+                combinable.add(pattern);
+            } else {
+                regExps.add(rule.getCompiledPattern());
+            }
+        }
+        antTrie = hasAntTrie;
+        if (combinable.size() == 1) {
+            regExps.add(CompareType.REG_EXP.compileOrNone(combinable.get(0)));
+        } else if (combinable.size() > 1) {
+            StringBuilder alternation = new StringBuilder();
+            for (String pattern : combinable) {
+                if (alternation.length() > 0) {
+                    alternation.append('|');
+                }
+                alternation.append("(?:").append(pattern).append(')');
+            }
+            try {
+                regExps.add(CompareType.REG_EXP.compile(alternation.toString()));
+            } catch (PatternSyntaxException e) {
+                logger.debug("Could not combine the file path patterns, matching them one by one.", e);
+                for (String pattern : combinable) {
+                    regExps.add(CompareType.REG_EXP.compileOrNone(pattern));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells if the matcher was built from the rules as they are now.
+     *
+     * @param list the rules.
+     * @return true if the matcher can be used for the rules.
+     */
+    boolean isFor(List<FilePath> list) {
+        return list == rules && list.size() == size;
+    }
+
+    /**
+     * Tells if any of the files is matched by any of the rules.
+     *
+     * @param files the files.
+     * @return true if there is a match.
+     */
+    boolean matchesAny(List<String> files) {
+        for (String file : files) {
+            if (matches(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells if the file is matched by any of the rules.
+     *
+     * @param file the file.
+     * @return true if there is a match.
+     */
+    private boolean matches(String file) {
+        if (!plain.isEmpty() && plain.contains(foldCase(file))) {
+            return true;
+        }
+        if (antTrie) {
+            String safeFile = file.replace('/', File.separatorChar);
+            if (safeFile.startsWith(File.separator)) {
+                // the leading root is a segment of its own, only the rules that are always scanned can tell
+                if (antRoot.matchesAll(file)) {
+                    return true;
+                }
+            } else {
+                Node node = antRoot;
+                StringTokenizer tokenizer = new StringTokenizer(safeFile, File.separator);
+                while (node != null) {
+                    if (node.matches(file)) {
+                        return true;
+                    }
+                    if (!tokenizer.hasMoreTokens()) {
+                        break;
+                    }
+                    node = node.children.get(tokenizer.nextToken());
+                }
+            }
+        }
+        for (CompiledPattern pattern : antScan) {
+            if (pattern.matches(file)) {
+                return true;
+            }
+        }
+        for (CompiledPattern pattern : regExps) {
+            if (pattern.matches(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds an Ant rule to the trie under its leading literal path segments.
+     * Rules that start with a wildcard or the root are scanned for every file instead.
+     *
+     * @param pattern the pattern.
+     * @param compiled the compiled pattern.
+     * @return true if the rule was put in the trie.
+     */
+    private boolean addAnt(String pattern, CompiledPattern compiled) {
+        String safePattern = pattern.replace('/', File.separatorChar);
+        if (safePattern.startsWith(File.separator)) {
+            antScan.add(compiled);
+            return false;
+        }
+        List<String> tokens = new ArrayList<String>();
+        StringTokenizer tokenizer = new StringTokenizer(safePattern, File.separator);
+        while (tokenizer.hasMoreTokens()) {
+            tokens.add(tokenizer.nextToken());
+        }
+        Node node = antRoot;
+        int depth = 0;
+        // the last segment is never used as a key, a file with fewer segments can still match it
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            String token = tokens.get(i);
+            if (token.indexOf('*') >= 0 || token.indexOf('?') >= 0) {
+                break;
+            }
+            Node child = node.children.get(token);
+            if (child == null) {
+                child = new Node();
+                node.children.put(token, child);
+            }
+            node = child;
+            depth++;
+        }
+        if (depth == 0) {
+            antScan.add(compiled);
+            return false;
+        }
+        node.patterns.add(compiled);
+        return true;
+    }
+
+    /**
+     * Tells if the regular expression means the same on its own inside an alternation.
+     * Back references and named groups would change meaning when the groups are renumbered.
+     *
+     * @param pattern the regular expression.
+     * @return true if it can be combined with others.
+     */
+    private static boolean isCombinable(String pattern) {
+        int i = 0;
+        while (i < pattern.length() - 1) {
+            if (pattern.charAt(i) == '\\') {
+                char next = pattern.charAt(i + 1);
+                if (Character.isDigit(next) || next == 'k') {
+                    return false;
+                }
+                // Skip the escaped character.
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        return !pattern.contains("(?<");
+    }
+
+    /**
+     * Folds the case of a string so that two strings are equal after folding
+     * if and only if {@link String#equalsIgnoreCase(String)} says they are.
+     *
+     * @param str the string.
+     * @return the folded string.
+     */
+    private static String foldCase(String str) {
+        char[] chars = new char[str.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(str.charAt(i)));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * A node in the trie of Ant rules, one per literal path segment.
+     */
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<String, Node>();
+        private final List<CompiledPattern> patterns = new ArrayList<CompiledPattern>();
+
+        /**
+         * Tells if any of the rules in this node matches the file.
+         *
+         * @param file the file.
+         * @return true if there is a match.
+         */
+        boolean matches(String file) {
+            for (CompiledPattern pattern : patterns) {
+                if (pattern.matches(file)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Tells if any of the rules in this node or below matches the file.
+         *
+         * @param file the file.
+         * @return true if there is a match.
+         */
+        boolean matchesAll(String file) {
+            if (matches(file)) {
+                return true;
+            }
+            for (Node child : children.values()) {
+                if (child.matchesAll(file)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -26,15 +26,13 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data;
 
 import static com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer.ANY_SERVER;
 import hudson.Extension;
-import hudson.RelativePath;
-import hudson.model.Describable;
 import hudson.model.Descriptor;
+import hudson.model.AutoCompletionCandidates;
 import hudson.model.Hudson;
-import hudson.util.ComboBoxModel;
+import hudson.util.FormValidation;
 
-import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
+import java.util.TreeSet;
 
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
@@ -46,7 +44,7 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
  * Base settings for one matcher rule of a Gerrit project.
  * @author Robert Sandell &lt;robert.sandell@sonyericsson.com&gt;
  */
-public class GerritProject implements Describable<GerritProject> {
+public class GerritProject extends AbstractPatternRule<GerritProject> {
 
     private CompareType compareType;
     private String pattern;
@@ -55,6 +53,8 @@ public class GerritProject implements Describable<GerritProject> {
     private List<Topic> topics;
     private List<FilePath> forbiddenFilePaths;
     private boolean disableStrictForbiddenFileVerification;
+    private transient FilePathMatcher filePathMatcher;
+    private transient FilePathMatcher forbiddenFilePathMatcher;
 
     /**
      * Default empty constructor.
@@ -90,6 +90,7 @@ public class GerritProject implements Describable<GerritProject> {
         this.filePaths = filePaths;
         this.forbiddenFilePaths = forbiddenFilePaths;
         this.disableStrictForbiddenFileVerification = disableStrictForbiddenFileVerification;
+        compilePattern();
     }
 
     /**
@@ -122,6 +123,7 @@ public class GerritProject implements Describable<GerritProject> {
      */
     public void setCompareType(CompareType compareType) {
         this.compareType = compareType;
+        resetCompiledPattern();
     }
 
     /**
@@ -138,6 +140,7 @@ public class GerritProject implements Describable<GerritProject> {
      */
     public void setPattern(String pattern) {
         this.pattern = pattern;
+        resetCompiledPattern();
     }
 
     /**
@@ -213,34 +216,22 @@ public class GerritProject implements Describable<GerritProject> {
      * @return true is the rules match.
      */
     public boolean isInteresting(String project, String branch, String topic, List<String> files) {
-        if (compareType.matches(pattern, project)) {
+        if (getCompiledPattern().matches(project)) {
             for (Branch b : branches) {
-                boolean foundInterestingForbidden = false;
-                boolean foundInterestingTopicOrFile = false;
                 if (b.isInteresting(branch)) {
-                    if (forbiddenFilePaths != null) {
-                        for (FilePath ffp : forbiddenFilePaths) {
-                            if (ffp.isInteresting(files)) {
-                                foundInterestingForbidden = true;
-                                break;
-                            }
-                        }
-                    }
-                    if (isInterestingTopic(topic) && isInterestingFile(files)) {
-                        foundInterestingTopicOrFile = true;
-                    }
+                    // the verdict doesn't depend on which branch rule matched, so the files are only looked at once
+                    boolean foundInterestingForbidden = isInterestingForbiddenFile(files);
+                    boolean foundInterestingTopicOrFile = isInterestingTopic(topic) && isInterestingFile(files);
                     if (disableStrictForbiddenFileVerification) {
                         // Here we want to be able to trigger a build if the event contains
                         // wanted topics or file paths even though there may be a forbidden file
                         return foundInterestingTopicOrFile;
+                    } else if (foundInterestingForbidden) {
+                        // we have a forbidden file and a wanted file path.
+                        return false;
                     } else {
-                        if (foundInterestingForbidden) {
-                            // we have a forbidden file and a wanted file path.
-                            return false;
-                        } else if (foundInterestingTopicOrFile) {
-                            // we DO not have a forbidden file and but we have a wanted file path.
-                            return true;
-                        }
+                        // we DO not have a forbidden file, so it's up to if we have a wanted file path.
+                        return foundInterestingTopicOrFile;
                     }
                 }
             }
@@ -256,7 +247,7 @@ public class GerritProject implements Describable<GerritProject> {
      * @return true is the rules match.
      */
     public boolean isInteresting(String project, String branch, String topic) {
-        if (compareType.matches(pattern, project)) {
+        if (getCompiledPattern().matches(project)) {
             for (Branch b : branches) {
                 if (b.isInteresting(branch)) {
                     return isInterestingTopic(topic);
@@ -292,16 +283,34 @@ public class GerritProject implements Describable<GerritProject> {
      */
     private boolean isInterestingFile(List<String> files) {
         if (filePaths != null && filePaths.size() > 0) {
-            for (FilePath f : filePaths) {
-                if (f.isInteresting(files)) {
-                    return true;
-                }
+            FilePathMatcher matcher = filePathMatcher;
+            if (matcher == null || !matcher.isFor(filePaths)) {
+                matcher = new FilePathMatcher(filePaths);
+                filePathMatcher = matcher;
             }
-            return false;
+            return matcher.matchesAny(files);
         }
         return true;
     }
 
+    /**
+     * Compare files to see if any of them is forbidden.
+     *
+     * @param files the files.
+     * @return true if a forbidden file is found, false if none or no rules.
+     */
+    private boolean isInterestingForbiddenFile(List<String> files) {
+        if (forbiddenFilePaths != null && forbiddenFilePaths.size() > 0) {
+            FilePathMatcher matcher = forbiddenFilePathMatcher;
+            if (matcher == null || !matcher.isFor(forbiddenFilePaths)) {
+                matcher = new FilePathMatcher(forbiddenFilePaths);
+                forbiddenFilePathMatcher = matcher;
+            }
+            return matcher.matchesAny(files);
+        }
+        return false;
+    }
+
     @Override
     public Descriptor<GerritProject> getDescriptor() {
         return Hudson.getInstance().getDescriptor(getClass());
@@ -309,39 +318,112 @@ public class GerritProject implements Describable<GerritProject> {
 
     /**
      * Descriptor allowing for communication within the Repeatable.
-     * Necessary for editable combobox.
+     * Necessary for the auto-completion of the project pattern.
      */
     @Extension
     public static final class DescriptorImpl extends Descriptor<GerritProject> {
 
         /**
-         * Used to fill the project pattern combobox with AJAX.
-         * The filled values will depend on the server that the user has chosen from the dropdown.
+         * The maximum number of projects suggested by the auto-completion.
+         */
+        static final int MAX_AUTO_COMPLETION_CANDIDATES = 30;
+
+        /**
+         * Provides auto-completion candidates for the project pattern from the projects of all servers.
+         *
+         * @param value the typed value.
+         * @return {@link AutoCompletionCandidates}
+         * @see #getProjectsOf(String)
+         */
+        public AutoCompletionCandidates doAutoCompletePattern(@QueryParameter final String value) {
+            return autoCompletePattern(ANY_SERVER, value);
+        }
+
+        /**
+         * The projects of a server, for the auto-completion of the project pattern.
+         * Jenkins only sends the typed value to an auto-completion URL, so the server is part of the URL,
+         * as in <code>projectsOf/serverName/autoCompletePattern</code>.
          *
-         * @param serverName the name of the server that the user has chosen.
-         * @return ComboBoxModels containing a list of all Gerrit Projects found on that server.
+         * @param serverName the name of the server, or {@link GerritServer#ANY_SERVER} for all servers.
+         * @return the projects of the server.
          */
-        public ComboBoxModel doFillPatternItems(@QueryParameter("serverName")
-                @RelativePath("..") final String serverName) {
-            Collection<String> projects = new HashSet<String>();
-
-            if (serverName != null && !serverName.isEmpty()) {
-                if (ANY_SERVER.equals(serverName)) {
-                    for (GerritServer server : PluginImpl.getServers_()) {
-                        projects.addAll(server.getGerritProjects());
+        public ServerProjects getProjectsOf(String serverName) {
+            return new ServerProjects(serverName);
+        }
+
+        /**
+         * Provides auto-completion candidates for the project pattern, the first projects in sorted order that
+         * start with the typed value.
+         *
+         * @param serverName the name of the server, or {@link GerritServer#ANY_SERVER} for all servers.
+         * @param value the typed value.
+         * @return {@link AutoCompletionCandidates}
+         */
+        static AutoCompletionCandidates autoCompletePattern(String serverName, String value) {
+            AutoCompletionCandidates candidates = new AutoCompletionCandidates();
+            if (serverName != null && !serverName.isEmpty() && !ANY_SERVER.equals(serverName)) {
+                GerritServer server = PluginImpl.getServer_(serverName);
+                if (server != null) {
+                    for (String project : server.getGerritProjects(value, MAX_AUTO_COMPLETION_CANDIDATES)) {
+                        candidates.add(project);
                     }
-                } else {
-                    GerritServer server = PluginImpl.getServer_(serverName);
-                    if (server != null) {
-                        projects.addAll(server.getGerritProjects());
+                }
+            } else {
+                TreeSet<String> projects = new TreeSet<String>();
+                for (GerritServer server : PluginImpl.getServers_()) {
+                    projects.addAll(server.getGerritProjects(value, MAX_AUTO_COMPLETION_CANDIDATES));
+                }
+                int count = 0;
+                for (String project : projects) {
+                    if (count++ >= MAX_AUTO_COMPLETION_CANDIDATES) {
+                        break;
                     }
+                    candidates.add(project);
                 }
             }
-            return new ComboBoxModel(projects);
+            return candidates;
+        }
+
+        /**
+         * Validates the project pattern so that an invalid pattern is reported when the job is saved.
+         * @param compareType the name of the selected CompareType.
+         * @param value the pattern.
+         * @return ok or an error.
+         */
+        public FormValidation doCheckPattern(@QueryParameter("compareType") String compareType,
+                                             @QueryParameter("value") String value) {
+            return CompareType.checkPattern(compareType, value);
         }
+
         @Override
         public String getDisplayName() {
             return null;
         }
     }
+
+    /**
+     * The projects of one server, bound to <code>projectsOf/serverName</code> under the descriptor.
+     */
+    public static final class ServerProjects {
+        private final String serverName;
+
+        /**
+         * Constructor.
+         *
+         * @param serverName the name of the server.
+         */
+        ServerProjects(String serverName) {
+            this.serverName = serverName;
+        }
+
+        /**
+         * Provides auto-completion candidates for the project pattern from the projects of the server.
+         *
+         * @param value the typed value.
+         * @return {@link AutoCompletionCandidates}
+         */
+        public AutoCompletionCandidates doAutoCompletePattern(@QueryParameter final String value) {
+            return DescriptorImpl.autoCompletePattern(serverName, value);
+        }
+    }
 }
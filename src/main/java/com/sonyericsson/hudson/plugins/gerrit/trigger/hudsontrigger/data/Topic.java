@@ -24,15 +24,16 @@
 package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data;
 
 import hudson.Extension;
-import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
+import hudson.util.FormValidation;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
 
 /**
  * Represents a rule for triggering on a topic of a GerritProject.
  * @author rinrinne &lt;rinrin.ne@gmail.com&gt;
  */
-public class Topic extends AbstractDescribableImpl<Topic> {
+public class Topic extends AbstractPatternRule<Topic> {
 
     private CompareType compareType;
     private String pattern;
@@ -52,6 +53,7 @@ public class Topic extends AbstractDescribableImpl<Topic> {
     public Topic(CompareType compareType, String pattern) {
         this.compareType = compareType;
         this.pattern = pattern;
+        compilePattern();
     }
 
     /**
@@ -68,6 +70,7 @@ public class Topic extends AbstractDescribableImpl<Topic> {
      */
     public void setCompareType(CompareType compareType) {
         this.compareType = compareType;
+        resetCompiledPattern();
     }
 
     /**
@@ -84,6 +87,7 @@ public class Topic extends AbstractDescribableImpl<Topic> {
      */
     public void setPattern(String pattern) {
         this.pattern = pattern;
+        resetCompiledPattern();
     }
 
     /**
@@ -95,7 +99,7 @@ public class Topic extends AbstractDescribableImpl<Topic> {
         if (topic == null) {
             topic = "";
         }
-        if (compareType.matches(pattern, topic)) {
+        if (getCompiledPattern().matches(topic)) {
             return true;
         }
         return false;
@@ -106,6 +110,17 @@ public class Topic extends AbstractDescribableImpl<Topic> {
      */
     @Extension
     public static class DescriptorImpl extends Descriptor<Topic> {
+        /**
+         * Validates the pattern so that an invalid pattern is reported when the job is saved.
+         * @param compareType the name of the selected CompareType.
+         * @param value the pattern.
+         * @return ok or an error.
+         */
+        public FormValidation doCheckPattern(@QueryParameter("compareType") String compareType,
+                                             @QueryParameter("value") String value) {
+            return CompareType.checkPattern(compareType, value);
+        }
+
         @Override
         public String getDisplayName() {
             return "";
@@ -61,6 +61,7 @@ public class PluginCommentAddedContainsEvent extends PluginGerritEvent
     private static final long serialVersionUID = -1190562081236235820L;
 
     private String commentAddedCommentContains;
+    private transient volatile Pattern commentAddedCommentPattern;
 
     private static final Logger logger = LoggerFactory
             .getLogger(PluginCommentAddedContainsEvent.class);
@@ -108,9 +109,21 @@ public class PluginCommentAddedContainsEvent extends PluginGerritEvent
         if (!super.shouldTriggerOn(event)) {
             return false;
         }
-        Pattern p = Pattern
-                .compile(commentAddedCommentContains, Pattern.DOTALL);
         CommentAdded ca = (CommentAdded)event;
-        return p.matcher(ca.getComment()).find();
+        return getCommentAddedCommentPattern().matcher(ca.getComment()).find();
+    }
+
+    /**
+     * The compiled regular expression to match against comment.
+     * It is compiled the first time it is needed and then kept for as long as this configuration.
+     * @return the pattern.
+     */
+    private Pattern getCommentAddedCommentPattern() {
+        Pattern p = commentAddedCommentPattern;
+        if (p == null) {
+            p = Pattern.compile(commentAddedCommentContains, Pattern.DOTALL);
+            commentAddedCommentPattern = p;
+        }
+        return p;
     }
 }
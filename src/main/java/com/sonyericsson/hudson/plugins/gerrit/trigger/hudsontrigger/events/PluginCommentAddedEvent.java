@@ -26,6 +26,7 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.events;
 import static com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer.ANY_SERVER;
 
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Approval;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.CommentAdded;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.Messages;
@@ -54,6 +55,7 @@ public class PluginCommentAddedEvent extends PluginGerritEvent implements Serial
     private static final long serialVersionUID = -1190562081236235819L;
     private String verdictCategory;
     private String commentAddedTriggerApprovalValue;
+    private transient Integer approvalThreshold;
 
     /**
      * Standard DataBoundConstructor.
@@ -64,6 +66,7 @@ public class PluginCommentAddedEvent extends PluginGerritEvent implements Serial
     public PluginCommentAddedEvent(String verdictCategory, String commentAddedTriggerApprovalValue) {
         this.verdictCategory = verdictCategory;
         this.commentAddedTriggerApprovalValue = commentAddedTriggerApprovalValue;
+        this.approvalThreshold = parseApprovalValue(commentAddedTriggerApprovalValue);
     }
 
     /**
@@ -88,6 +91,57 @@ public class PluginCommentAddedEvent extends PluginGerritEvent implements Serial
         return verdictCategory;
     }
 
+    /**
+     * Parses the approval value once the configuration has been loaded.
+     * @return the resolved instance.
+     */
+    Object readResolve() {
+        approvalThreshold = parseApprovalValue(commentAddedTriggerApprovalValue);
+        return this;
+    }
+
+    /**
+     * Parses an approval value like "-1", "1" or "+1".
+     * @param value the value.
+     * @return the number, or null if the value isn't one.
+     */
+    static Integer parseApprovalValue(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        if (trimmed.startsWith("+")) {
+            trimmed = trimmed.substring(1);
+        }
+        try {
+            return Integer.valueOf(trimmed);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks if an approval is in the configured category with the configured value.
+     * Values are compared as numbers, so "+1" and "1" are the same.
+     * @param approval the approval.
+     * @return true if so.
+     */
+    public boolean match(Approval approval) {
+        if (approval.getType() == null || !approval.getType().equals(verdictCategory)) {
+            return false;
+        }
+        String value = approval.getValue();
+        if (approvalThreshold != null) {
+            Integer approvalValue = parseApprovalValue(value);
+            if (approvalValue != null) {
+                return approvalThreshold.intValue() == approvalValue.intValue();
+            }
+        }
+        return value != null
+                && (value.equals(commentAddedTriggerApprovalValue)
+                || ("+" + value).equals(commentAddedTriggerApprovalValue));
+    }
+
     /**
      * Getter for the Descriptor.
      * @return the Descriptor for the PluginCommentAddedEvent.
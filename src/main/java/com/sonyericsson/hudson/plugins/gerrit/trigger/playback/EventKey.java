@@ -0,0 +1,169 @@
+/*
+ *  The MIT License
+ *
+ *  Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.playback;
+
+import com.google.common.base.Objects;
+import com.sonymobile.tools.gerrit.gerritevents.GerritEventType;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Account;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.RefUpdate;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ProjectCreated;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefReplicated;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefUpdated;
+
+import java.util.Date;
+
+/**
+ * A stable identity of a received event, made of its type, what it is about and who caused it, and its creation time.
+ * The creation time only has a resolution of seconds, so the change, patch set, project, ref, target node and
+ * account are part of the key to tell apart different events created in the same second.
+ * The same event received from the stream and from the events-log plugin gets the same key, so the events
+ * can be looked up in hash based collections during playback.
+ */
+final class EventKey {
+    private final GerritEventType type;
+    private final String change;
+    private final String patchSet;
+    private final String project;
+    private final String ref;
+    private final String node;
+    private final String account;
+    private final long createdOn;
+
+    /**
+     * Constructor.
+     *
+     * @param type      the event type.
+     * @param change    the change number, or null if the event is not about a change.
+     * @param patchSet  the patch set number, or null if the event is not about a change.
+     * @param project   the project, or null if the event has none.
+     * @param ref       the branch or ref, or null if the event has none.
+     * @param node      the node the ref was replicated to, or null if the event is not about replication.
+     * @param account   the account that caused the event, or null if the event has none.
+     * @param createdOn when the event was created in Gerrit.
+     */
+    //CS IGNORE ParameterNumber FOR NEXT 2 LINES. REASON: The parts of the key.
+    private EventKey(GerritEventType type, String change, String patchSet, String project, String ref, String node,
+                     String account, long createdOn) {
+        this.type = type;
+        this.change = change;
+        this.patchSet = patchSet;
+        this.project = project;
+        this.ref = ref;
+        this.node = node;
+        this.account = account;
+        this.createdOn = createdOn;
+    }
+
+    /**
+     * Creates the key of an event.
+     *
+     * @param event the event.
+     * @return the key.
+     */
+    static EventKey of(GerritTriggeredEvent event) {
+        String change = null;
+        String patchSet = null;
+        String project = null;
+        String ref = null;
+        String node = null;
+        if (event instanceof ChangeBasedEvent) {
+            ChangeBasedEvent changeBasedEvent = (ChangeBasedEvent)event;
+            if (changeBasedEvent.getChange() != null) {
+                change = changeBasedEvent.getChange().getNumber();
+                project = changeBasedEvent.getChange().getProject();
+                ref = changeBasedEvent.getChange().getBranch();
+            }
+            if (changeBasedEvent.getPatchSet() != null) {
+                patchSet = changeBasedEvent.getPatchSet().getNumber();
+            }
+        } else if (event instanceof RefUpdated) {
+            RefUpdate refUpdate = ((RefUpdated)event).getRefUpdate();
+            if (refUpdate != null) {
+                project = refUpdate.getProject();
+                ref = refUpdate.getRefName();
+            }
+        } else if (event instanceof RefReplicated) {
+            RefReplicated refReplicated = (RefReplicated)event;
+            project = refReplicated.getProject();
+            ref = refReplicated.getRef();
+            node = refReplicated.getTargetNode();
+        } else if (event instanceof ProjectCreated) {
+            project = ((ProjectCreated)event).getProjectName();
+        }
+        long createdOn = 0;
+        Date date = event.getEventCreatedOn();
+        if (date != null) {
+            createdOn = date.getTime();
+        }
+        return new EventKey(event.getEventType(), change, patchSet, project, ref, node,
+                getAccountId(event.getAccount()), createdOn);
+    }
+
+    /**
+     * The identity of an account.
+     *
+     * @param account the account.
+     * @return the email, or the name if there is no email, or null if there is no account.
+     */
+    private static String getAccountId(Account account) {
+        if (account == null) {
+            return null;
+        } else if (account.getEmail() != null) {
+            return account.getEmail();
+        }
+        return account.getName();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EventKey)) {
+            return false;
+        }
+        EventKey that = (EventKey)o;
+        return createdOn == that.createdOn
+                && type == that.type
+                && Objects.equal(change, that.change)
+                && Objects.equal(patchSet, that.patchSet)
+                && Objects.equal(project, that.project)
+                && Objects.equal(ref, that.ref)
+                && Objects.equal(node, that.node)
+                && Objects.equal(account, that.account);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(type, change, patchSet, project, ref, node, account, createdOn);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + project + " " + ref + " " + change + "/" + patchSet + " " + node + " by " + account
+                + " @" + createdOn;
+    }
+}
@@ -28,7 +28,9 @@ import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This class holds events that were processed by the MissedEventPlaybackManager
@@ -47,6 +49,10 @@ public class EventTimeSlice {
      * events to persist.
      */
     protected List<GerritTriggeredEvent> events = Collections.synchronizedList(new ArrayList<GerritTriggeredEvent>());
+    /**
+     * Keys of the events, guarded by the events list. Rebuilt lazily after being read from disk.
+     */
+    private transient Set<EventKey> eventKeys;
 
     /**
      *
@@ -64,11 +70,53 @@ public class EventTimeSlice {
         return timeSlice;
     }
     /**
-     * Add an event to the list.
+     * Add an event to the list, unless an event with the same identity is already in it.
      * @param evt Event to be persisted.
      */
     public void addEvent(GerritTriggeredEvent evt) {
-        events.add(evt);
+        synchronized (events) {
+            if (getEventKeys().add(EventKey.of(evt))) {
+                events.add(evt);
+            }
+        }
+    }
+
+    /**
+     * Checks if an event with the same type, change, patch set and creation time is in this time slice.
+     * @param evt the event to look for.
+     * @return true if it is.
+     */
+    public boolean containsEvent(GerritTriggeredEvent evt) {
+        synchronized (events) {
+            return getEventKeys().contains(EventKey.of(evt));
+        }
+    }
+
+    /**
+     * The keys of the events, built from the list the first time they are needed.
+     * Must be called while holding the lock of the events list.
+     * @return the keys.
+     */
+    private Set<EventKey> getEventKeys() {
+        if (eventKeys == null) {
+            eventKeys = new HashSet<EventKey>();
+            for (GerritTriggeredEvent evt : events) {
+                eventKeys.add(EventKey.of(evt));
+            }
+        }
+        return eventKeys;
+    }
+
+    /**
+     * Creates a copy of this time slice, with its own list of events.
+     * @return the copy.
+     */
+    public EventTimeSlice copy() {
+        EventTimeSlice slice = new EventTimeSlice(timeSlice);
+        synchronized (events) {
+            slice.events.addAll(events);
+        }
+        return slice;
     }
 
     /**
@@ -27,6 +27,7 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.playback;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.PluginConfig;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.GerritPluginChecker;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.HttpUtils;
 import com.sonymobile.tools.gerrit.gerritevents.ConnectionListener;
@@ -48,9 +49,10 @@ import org.apache.http.entity.ContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URLEncoder;
@@ -59,9 +61,15 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.CheckForNull;
 
@@ -86,6 +94,28 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Ge
     static final String EVENTS_LOG_PLUGIN_NAME = "events-log";
     private static final String EVENTS_LOG_PLUGIN_URL = "a/plugins/" + EVENTS_LOG_PLUGIN_NAME + "/events/";
     private static final String GERRIT_TRIGGER_SERVER_TIMESTAMPS_XML = "gerrit-trigger-server-timestamps.xml";
+    /**
+     * Default number of seconds that timestamp updates are coalesced before they are written to disk.
+     */
+    public static final int DEFAULT_PERSIST_INTERVAL_IN_SECONDS = 5;
+    /**
+     * Length of the time windows that missed events are requested in, so that a long outage
+     * does not have to be fetched in one response.
+     */
+    static final long PLAYBACK_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Writes the timestamps of all servers in the background.
+     */
+    private static final ScheduledExecutorService PERSIST_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Gerrit missed events timestamp writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
 
     private String serverName;
     /**
@@ -93,14 +123,25 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Ge
      */
     protected EventTimeSlice serverTimestamp = null;
     /**
-     * List that contains received Gerrit Events.
+     * Keys of the Gerrit Events received while the playback is in progress.
      */
-    protected List<GerritTriggeredEvent> receivedEventCache
-        = Collections.synchronizedList(new ArrayList<GerritTriggeredEvent>());
+    protected Set<EventKey> receivedEventCache
+        = Collections.newSetFromMap(new ConcurrentHashMap<EventKey, Boolean>());
 
     private boolean isSupported = false;
     private boolean playBackComplete = false;
 
+    /**
+     * Serializes the writes of the timestamp file.
+     */
+    private final Object writeLock = new Object();
+    private boolean dirty = false;
+    private boolean flushScheduled = false;
+    private final AtomicLong coalescedWrites = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private volatile long lastFlushNanos = 0;
+
     /**
      * @param name Gerrit Server Name
      */
@@ -184,44 +225,13 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Ge
             return;
         }
         try {
-            List<GerritTriggeredEvent> events = getEventsFromDateRange(timeStampDate);
-            logger.info("({}) missed events to process for server: {} ...", events.size(), serverName);
-            for (GerritTriggeredEvent evt: events) {
-                logger.debug("({}) Processing missed event {}", serverName, evt);
-                boolean receivedEvtFound = false;
-                synchronized (receivedEventCache) {
-                  Iterator<GerritTriggeredEvent> i = receivedEventCache.iterator(); // Must be in synchronized block
-                  while (i.hasNext()) {
-                      GerritTriggeredEvent rEvt = i.next();
-                      if (rEvt.equals(evt)) {
-                        receivedEvtFound = true;
-                        break;
-                      }
-                  }
+            int count = playBackEventsFromDateRange(timeStampDate, new MissedEventHandler() {
+                @Override
+                public void handle(GerritTriggeredEvent evt) {
+                    processMissedEvent(evt);
                 }
-                if (receivedEvtFound) {
-                    logger.debug("({}) Event already triggered...skipping trigger.", serverName);
-                } else {
-
-                    //do we have this event in the time slice?
-                    long currentEventCreatedTime = ((GerritTriggeredEvent)evt).getEventCreatedOn().getTime();
-                    if (serverTimestamp.getTimeSlice() == currentEventCreatedTime) {
-                        if (serverTimestamp.getEvents().contains(evt)) {
-                            logger.debug("({}) Event already triggered from time slice...skipping trigger.", serverName);
-                            continue;
-                        }
-                    }
-                    logger.info("({}) Triggering: {}", serverName, evt);
-                    GerritServer server = PluginImpl.getServer_(serverName);
-                    if (server == null) {
-                        logger.error("Server for {} could not be found. Skipping this event", serverName);
-                        continue;
-                    }
-                    server.triggerEvent(evt);
-                    receivedEventCache.add(evt);
-                    logger.debug("Added event {} to received cache for server: {}", evt, serverName);
-                }
-            }
+            });
+            logger.info("({}) missed events processed for server: {}", count, serverName);
         } catch (UnsupportedEncodingException e) {
             logger.error("Error building URL for playback query: " + e.getMessage(), e);
         } catch (IOException e) {
@@ -232,11 +242,42 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Ge
     }
 
     /**
-     * Log when the connection goes down.
+     * Triggers a missed event, unless it was already received from the stream or is in the persisted time slice.
+     * @param evt the missed event.
+     */
+    private void processMissedEvent(GerritTriggeredEvent evt) {
+        logger.debug("({}) Processing missed event {}", serverName, evt);
+        EventKey key = EventKey.of(evt);
+        if (receivedEventCache.contains(key)) {
+            logger.debug("({}) Event already triggered...skipping trigger.", serverName);
+            return;
+        }
+        //do we have this event in the time slice?
+        long currentEventCreatedTime = evt.getEventCreatedOn().getTime();
+        if (serverTimestamp != null && serverTimestamp.getTimeSlice() == currentEventCreatedTime) {
+            if (serverTimestamp.containsEvent(evt)) {
+                logger.debug("({}) Event already triggered from time slice...skipping trigger.", serverName);
+                return;
+            }
+        }
+        logger.info("({}) Triggering: {}", serverName, evt);
+        GerritServer server = PluginImpl.getServer_(serverName);
+        if (server == null) {
+            logger.error("Server for {} could not be found. Skipping this event", serverName);
+            return;
+        }
+        server.triggerEvent(evt);
+        receivedEventCache.add(key);
+        logger.debug("Added event {} to received cache for server: {}", evt, serverName);
+    }
+
+    /**
+     * Log when the connection goes down and write any pending timestamp to disk.
      */
     @Override
     public void connectionDown() {
         logger.info("connectionDown for server: {}", serverName);
+        flush();
     }
 
     /**
@@ -256,25 +297,15 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Ge
             persist(triggeredEvent);
             //add to cache
             if (!playBackComplete) {
-                boolean receivedEvtFound = false;
-                synchronized (receivedEventCache) {
-                  Iterator<GerritTriggeredEvent> i = receivedEventCache.iterator(); // Must be in synchronized block
-                  while (i.hasNext()) {
-                      GerritTriggeredEvent rEvt = i.next();
-                      if (rEvt.equals(triggeredEvent)) {
-                        receivedEvtFound = true;
-                        break;
-                      }
-                  }
-                }
-                if (!receivedEvtFound) {
-                    receivedEventCache.add(triggeredEvent);
+                if (receivedEventCache.add(EventKey.of(triggeredEvent))) {
                     logger.debug("Added event {} to received cache for server: {}", event, serverName);
                 } else {
                     logger.debug("Event {} ALREADY in received cache for server: {}", event, serverName);
                 }
             } else {
-                receivedEventCache = Collections.synchronizedList(new ArrayList<GerritTriggeredEvent>());
+                if (!receivedEventCache.isEmpty()) {
+                    receivedEventCache.clear();
+                }
                 logger.debug("Playback complete...will NOT add event {} to received cache for server: {}"
                         , event, serverName);
             }
@@ -288,59 +319,92 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Ge
      * @throws IOException if HTTP errors occur
      */
     protected List<GerritTriggeredEvent> getEventsFromDateRange(Date lowerDate) throws IOException {
+        final List<GerritTriggeredEvent> events = new ArrayList<GerritTriggeredEvent>();
+        final Set<EventKey> keys = new HashSet<EventKey>();
+        playBackEventsFromDateRange(lowerDate, new MissedEventHandler() {
+            @Override
+            public void handle(GerritTriggeredEvent evt) {
+                if (keys.add(EventKey.of(evt))) {
+                    events.add(evt);
+                }
+            }
+        });
+        return Collections.synchronizedList(events);
+    }
 
+    /**
+     * Requests the events from a given lower bound date until now, one time window at a time,
+     * and hands each event to the handler as soon as it has been read.
+     * An event on the border between two windows can be handed over twice.
+     *
+     * @param lowerDate lower bound for which to request missed events.
+     * @param handler the handler of the events.
+     * @return the number of events handed to the handler.
+     * @throws IOException if HTTP errors occur
+     */
+    protected int playBackEventsFromDateRange(Date lowerDate, MissedEventHandler handler) throws IOException {
         GerritServer server = PluginImpl.getServer_(serverName);
         if (server == null) {
             logger.error("Server for {} could not be found.", serverName);
-            return Collections.synchronizedList(new ArrayList<GerritTriggeredEvent>());
+            return 0;
         }
         IGerritHudsonTriggerConfig config = server.getConfig();
 
-        String events = getEventsFromEventsLogPlugin(config, buildEventsLogURL(config, lowerDate));
-
-        return createEventsFromString(events);
+        long now = System.currentTimeMillis();
+        long from = lowerDate.getTime();
+        int count = 0;
+        do {
+            Date upperDate = null;
+            long to = from + PLAYBACK_WINDOW_MILLIS;
+            if (to < now) {
+                upperDate = new Date(to);
+            }
+            count += getEventsFromEventsLogPlugin(config, buildEventsLogURL(config, new Date(from), upperDate),
+                    handler);
+            from = to;
+        } while (from < now);
+        return count;
     }
 
     /**
-     * Takes a string of json events and creates a collection.
-     * @param eventsString Events in json in a string.
-     * @return collection of events.
+     * Creates an event from a line of json.
+     * @param line the line.
+     * @return the event, or null if the line is not an event that can be played back.
      */
-    private List<GerritTriggeredEvent> createEventsFromString(String eventsString) {
-        List<GerritTriggeredEvent> events = Collections.synchronizedList(new ArrayList<GerritTriggeredEvent>());
-        Scanner scanner = new Scanner(eventsString);
-        while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
-            logger.debug("found line: {}", line);
-            JSONObject jsonObject = null;
-            try {
-                jsonObject = GerritJsonEventFactory.getJsonObjectIfInterestingAndUsable(line);
-                if (jsonObject == null) {
-                    continue;
-                }
-            } catch (Exception ex) {
-                logger.warn("Unanticipated error when creating DTO representation of JSON string.", ex);
-                continue;
-            }
-            GerritEvent evt = GerritJsonEventFactory.getEvent(jsonObject);
-            if (evt instanceof ChangeBasedEvent) {
-                Provider provider = new Provider();
-                provider.setName(serverName);
-                ((GerritTriggeredEvent)evt).setProvider(provider);
-                events.add((ChangeBasedEvent)evt);
+    @CheckForNull
+    private GerritTriggeredEvent createEventFromLine(String line) {
+        logger.debug("found line: {}", line);
+        JSONObject jsonObject = null;
+        try {
+            jsonObject = GerritJsonEventFactory.getJsonObjectIfInterestingAndUsable(line);
+            if (jsonObject == null) {
+                return null;
             }
+        } catch (Exception ex) {
+            logger.warn("Unanticipated error when creating DTO representation of JSON string.", ex);
+            return null;
         }
-        scanner.close();
-        return events;
+        GerritEvent evt = GerritJsonEventFactory.getEvent(jsonObject);
+        if (evt instanceof ChangeBasedEvent) {
+            Provider provider = new Provider();
+            provider.setName(serverName);
+            ((GerritTriggeredEvent)evt).setProvider(provider);
+            return (ChangeBasedEvent)evt;
+        }
+        return null;
     }
 
     /**
+     * Reads the response of the events-log plugin line by line, handing each event to the handler
+     * before the next line is read.
      *
      * @param config Gerrit config for server.
      * @param url URL to use.
-     * @return String of gerrit events.
+     * @param handler the handler of the events.
+     * @return the number of events handed to the handler.
      */
-    protected String getEventsFromEventsLogPlugin(IGerritHudsonTriggerConfig config, String url) {
+    protected int getEventsFromEventsLogPlugin(IGerritHudsonTriggerConfig config, String url,
+                                               MissedEventHandler handler) {
         logger.debug("({}) Going to GET: {}", serverName, url);
 
         HttpResponse execute = null;
@@ -348,50 +412,69 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Ge
             execute = HttpUtils.performHTTPGet(config, url);
         } catch (IOException e) {
             logger.warn(e.getMessage(), e);
-            return "";
+            return 0;
         }
 
         int statusCode = execute.getStatusLine().getStatusCode();
         logger.debug("Received status code: {} for server: {}", statusCode, serverName);
 
-        if (statusCode == HttpURLConnection.HTTP_OK) {
-            try {
-                HttpEntity entity = execute.getEntity();
-                if (entity != null) {
-                    ContentType contentType = ContentType.get(entity);
-                    if (contentType == null) {
-                        contentType = ContentType.DEFAULT_TEXT;
-                    }
-                    Charset charset = contentType.getCharset();
-                    if (charset == null) {
-                        charset = Charset.defaultCharset();
-                    }
-                    InputStream bodyStream = entity.getContent();
-                    String body = IOUtils.toString(bodyStream, charset.name());
-                    logger.debug(body);
-                    return body;
+        int count = 0;
+        BufferedReader reader = null;
+        try {
+            if (statusCode != HttpURLConnection.HTTP_OK) {
+                logger.warn("Not successful at requesting missed events from {} plugin. (errorcode: {})",
+                        EVENTS_LOG_PLUGIN_NAME, statusCode);
+                return count;
+            }
+            HttpEntity entity = execute.getEntity();
+            if (entity == null) {
+                logger.debug("({}) No missed events in the response", serverName);
+                return count;
+            }
+            ContentType contentType = ContentType.get(entity);
+            if (contentType == null) {
+                contentType = ContentType.DEFAULT_TEXT;
+            }
+            Charset charset = contentType.getCharset();
+            if (charset == null) {
+                charset = Charset.defaultCharset();
+            }
+            reader = new BufferedReader(new InputStreamReader(entity.getContent(), charset));
+            String line = reader.readLine();
+            while (line != null) {
+                GerritTriggeredEvent evt = createEventFromLine(line);
+                if (evt != null) {
+                    handler.handle(evt);
+                    count++;
                 }
-            } catch (IOException ioe) {
-                logger.warn(ioe.getMessage(), ioe);
+                line = reader.readLine();
             }
+        } catch (IOException ioe) {
+            logger.warn("Not successful at reading missed events from {} plugin after {} events.",
+                    EVENTS_LOG_PLUGIN_NAME, count, ioe);
+        } finally {
+            IOUtils.closeQuietly(reader);
+            HttpUtils.release(execute);
         }
-        logger.warn("Not successful at requesting missed events from {} plugin. (errorcode: {})",
-                EVENTS_LOG_PLUGIN_NAME, statusCode);
-        return "";
+        return count;
     }
 
     /**
      *
      * @param config Gerrit Config for server.
      * @param date1 lower bound for date range,
+     * @param date2 upper bound for date range, or null for no upper bound.
      * @return url to use to request missed events.
      * @throws UnsupportedEncodingException if URL encoding not supported.
      */
-    protected String buildEventsLogURL(IGerritHudsonTriggerConfig config, Date date1)
+    protected String buildEventsLogURL(IGerritHudsonTriggerConfig config, Date date1, @CheckForNull Date date2)
             throws UnsupportedEncodingException {
         SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
         String url = EVENTS_LOG_PLUGIN_URL + "?t1=" + URLEncoder.encode(df.format(date1), "UTF-8");
+        if (date2 != null) {
+            url += "&t2=" + URLEncoder.encode(df.format(date2), "UTF-8");
+        }
 
         String gerritFrontEndUrl = config.getGerritFrontEndUrl();
         String restUrl = gerritFrontEndUrl;
@@ -402,7 +485,8 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Ge
     }
 
     /**
-     * Takes a timestamp and persists to xml file.
+     * Takes a timestamp and schedules it to be persisted to the xml file.
+     * Updates arriving before the scheduled write has run are coalesced into that write.
      * @param evt Gerrit Event to persist.
      * @return true if was able to persist event.
      */
@@ -440,20 +524,117 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Ge
             }
         }
 
-        try {
-            XmlFile config = getConfigXml(serverName);
-            config.write(serverTimestamp);
-        } catch (IOException e) {
-            logger.error(e.getMessage(), e);
-            return false;
+        dirty = true;
+        if (flushScheduled) {
+            coalescedWrites.incrementAndGet();
+        } else {
+            flushScheduled = true;
+            PERSIST_EXECUTOR.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, getPersistIntervalInSeconds(), TimeUnit.SECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the latest time slice to disk if it has changed since the last write.
+     * Called periodically after events are received, when the connection goes down and on shutdown.
+     *
+     * @return true if the time slice is persisted.
+     */
+    public boolean flush() {
+        synchronized (writeLock) {
+            EventTimeSlice slice;
+            synchronized (this) {
+                flushScheduled = false;
+                if (!dirty || serverTimestamp == null) {
+                    return true;
+                }
+                dirty = false;
+                slice = serverTimestamp.copy();
+            }
+            long start = System.nanoTime();
+            try {
+                XmlFile config = getConfigXml(serverName);
+                if (config != null) {
+                    config.write(slice);
+                }
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+                synchronized (this) {
+                    dirty = true;
+                }
+                return false;
+            }
+            lastFlushNanos = System.nanoTime() - start;
+            flushNanos.addAndGet(lastFlushNanos);
+            flushCount.incrementAndGet();
+            logger.debug("Persisted time slice {} for server {}", slice.getTimeSlice(), serverName);
         }
         return true;
     }
 
     /**
-     * Shutdown the listener.
+     * The configured number of seconds to coalesce timestamp updates before writing them to disk.
+     *
+     * @return the interval in seconds.
+     */
+    private int getPersistIntervalInSeconds() {
+        PluginConfig config = PluginImpl.getPluginConfig_();
+        if (config == null) {
+            return DEFAULT_PERSIST_INTERVAL_IN_SECONDS;
+        }
+        return config.getMissedEventsPersistIntervalInSeconds();
+    }
+
+    /**
+     * The number of timestamp updates that were merged into an already scheduled write.
+     *
+     * @return the number of writes saved.
+     */
+    public long getCoalescedWrites() {
+        return coalescedWrites.get();
+    }
+
+    /**
+     * The number of times the timestamp file has been written.
+     *
+     * @return the number of writes.
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * The time it took to write the timestamp file the last time.
+     *
+     * @return the latency in milliseconds.
+     */
+    public long getLastFlushLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastFlushNanos);
+    }
+
+    /**
+     * The average time it takes to write the timestamp file.
+     *
+     * @return the latency in milliseconds.
+     */
+    public long getAverageFlushLatencyMillis() {
+        long count = flushCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(flushNanos.get() / count);
+    }
+
+    /**
+     * Shutdown the listener and write any pending timestamp to disk.
      */
     public void shutdown() {
+        flush();
         GerritServer server = PluginImpl.getServer_(serverName);
         if (server != null) {
             server.removeListener((GerritEventListener)this);
@@ -497,4 +678,14 @@ public class GerritMissedEventsPlaybackManager implements ConnectionListener, Ge
         return new XmlFile(Jenkins.XSTREAM, xmlFile);
     }
 
+    /**
+     * Receives the missed events one at a time, as they are read from the events-log plugin.
+     */
+    protected interface MissedEventHandler {
+        /**
+         * Handles a missed event.
+         * @param evt the event.
+         */
+        void handle(GerritTriggeredEvent evt);
+    }
 }
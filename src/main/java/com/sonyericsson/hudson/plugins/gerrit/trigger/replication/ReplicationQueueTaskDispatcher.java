@@ -31,13 +31,23 @@ import hudson.model.Queue;
 import hudson.model.Queue.Item;
 import hudson.model.queue.QueueTaskDispatcher;
 import hudson.model.queue.CauseOfBlockage;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -63,13 +73,23 @@ import javax.annotation.Nonnull;
 /**
  * Block builds until replication is completed if configured to wait for replication.
  *
+ * Blocked items are indexed by server, project and ref, so a RefReplicated event only updates the items
+ * waiting for it. Items are unblocked by the event or by a scheduled timeout, which then asks the queue
+ * for a maintenance, so {@link #canRun(Item)} only has to look at a flag.
+ *
  * @author Hugo Arès &lt;hugo.ares@ericsson.com&gt;
  */
 @Extension
 public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implements GerritEventListener {
 
     private static final Logger logger = LoggerFactory.getLogger(ReplicationQueueTaskDispatcher.class);
+    /**
+     * Unblocks items when a Gerrit slave has reached its replication timeout.
+     */
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "Gerrit replication timeout"));
     private final Map<Integer, BlockedItem> blockedItems;
+    private final Map<String, Set<BlockedItem>> blockedItemsByRef = new HashMap<String, Set<BlockedItem>>();
     private final ReplicationCache replicationCache;
 
     /**
@@ -126,7 +146,7 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
         Integer itemId = Integer.valueOf(item.id);
         if (blockedItems.containsKey(itemId)) {
             BlockedItem blockedItem = blockedItems.get(itemId);
-            if (blockedItem.canRunWithTimeoutCheck()) {
+            if (blockedItem.canRun) {
                 if (blockedItem.replicationFailedMessage != null) {
                     item.addAction(new ReplicationFailedAction(blockedItem.replicationFailedMessage));
                     logger.trace("{} -> {}", blockedItem.getEventDescription(), blockedItem.replicationFailedMessage);
@@ -134,6 +154,8 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
                     logger.trace("{} can now run with no timeout check.", blockedItem.getEventDescription());
                 }
                 blockedItems.remove(itemId);
+                unindex(blockedItem);
+                blockedItem.cancelTimeout();
                 return null;
             } else {
                 logger.trace(blockedItem.getEventDescription()
@@ -150,6 +172,10 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
                 // store the info to be able to unblock the build
                 // later without having to iterate through all the builds in the queue
                 blockedItems.put(itemId, blockedItem);
+                if (!blockedItem.canRun) {
+                    index(blockedItem);
+                    scheduleTimeout(blockedItem);
+                }
                 return canRun(item);
             } else {
                 logger.debug("blockedItem null for {}!", item.id);
@@ -158,6 +184,98 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
         return null;
     }
 
+    /**
+     * The key of the blocked items waiting for a ref to be replicated.
+     *
+     * @param gerritServer  the name of the server.
+     * @param gerritProject the project.
+     * @param ref           the ref.
+     * @return the key.
+     */
+    private static String getRefKey(String gerritServer, String gerritProject, String ref) {
+        return gerritServer + "\n" + gerritProject + "\n" + ref;
+    }
+
+    /**
+     * Adds a blocked item to the index of the ref it waits for.
+     *
+     * @param blockedItem the blocked item.
+     */
+    private void index(BlockedItem blockedItem) {
+        String key = getRefKey(blockedItem.gerritServer, blockedItem.gerritProject, blockedItem.ref);
+        synchronized (blockedItemsByRef) {
+            Set<BlockedItem> items = blockedItemsByRef.get(key);
+            if (items == null) {
+                items = new HashSet<BlockedItem>();
+                blockedItemsByRef.put(key, items);
+            }
+            items.add(blockedItem);
+        }
+    }
+
+    /**
+     * Removes a blocked item from the index of the ref it waits for.
+     *
+     * @param blockedItem the blocked item.
+     */
+    private void unindex(BlockedItem blockedItem) {
+        String key = getRefKey(blockedItem.gerritServer, blockedItem.gerritProject, blockedItem.ref);
+        synchronized (blockedItemsByRef) {
+            Set<BlockedItem> items = blockedItemsByRef.get(key);
+            if (items != null) {
+                items.remove(blockedItem);
+                if (items.isEmpty()) {
+                    blockedItemsByRef.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * The blocked items waiting for a ref to be replicated.
+     *
+     * @param gerritServer  the name of the server.
+     * @param gerritProject the project.
+     * @param ref           the ref.
+     * @return a copy of the items.
+     */
+    private List<BlockedItem> getBlockedItems(String gerritServer, String gerritProject, String ref) {
+        synchronized (blockedItemsByRef) {
+            Set<BlockedItem> items = blockedItemsByRef.get(getRefKey(gerritServer, gerritProject, ref));
+            if (items == null) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<BlockedItem>(items);
+        }
+    }
+
+    /**
+     * Schedules the unblocking of an item when the first of the Gerrit slaves it still waits for reaches its timeout.
+     * If that slave has replicated by then, the check is scheduled again for the next slave still waited for.
+     *
+     * @param blockedItem the blocked item.
+     */
+    private void scheduleTimeout(final BlockedItem blockedItem) {
+        long delay = blockedItem.getMillisToTimeout();
+        if (delay < 0) {
+            return;
+        } else if (delay == 0 && blockedItem.timeout()) {
+            unindex(blockedItem);
+            return;
+        }
+        blockedItem.timeoutFuture = TIMEOUT_SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (blockedItem.timeout()) {
+                    unindex(blockedItem);
+                    Queue.getInstance().maintain();
+                } else if (!blockedItem.canRun) {
+                    scheduleTimeout(blockedItem);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Update the blocked item with any cached RefReplicated that are interesting to that item.
      * @param blockedItem The blocked item to update
@@ -297,11 +415,17 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
      */
     public void gerritEvent(RefReplicated refReplicated) {
         replicationCache.put(refReplicated);
+        if (refReplicated.getProvider() == null) {
+            return;
+        }
         boolean queueMaintenanceRequired = false;
-        for (BlockedItem blockedItem : blockedItems.values()) {
+        for (BlockedItem blockedItem : getBlockedItems(refReplicated.getProvider().getName(),
+                refReplicated.getProject(), refReplicated.getRef())) {
             if (!blockedItem.canRun) {
                 blockedItem.processRefReplicatedEvent(refReplicated);
                 if (blockedItem.canRun) {
+                    unindex(blockedItem);
+                    blockedItem.cancelTimeout();
                     queueMaintenanceRequired = true;
                 }
             }
@@ -321,10 +445,11 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
         private String ref;
         private String gerritServer;
         private ConcurrentMap<String, GerritSlave> slavesWaitingFor;
-        private boolean canRun = false;
+        private volatile boolean canRun = false;
         private long eventTimeStamp;
         private String eventDescription;
-        private String replicationFailedMessage;
+        private volatile String replicationFailedMessage;
+        private volatile ScheduledFuture<?> timeoutFuture;
         private boolean useTimestampWhenProcessingRefReplicatedEvent = false;
 
         /**
@@ -362,28 +487,60 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
         }
 
         /**
-         * Return if this block item is ready to run.
+         * The time until the first Gerrit slave with a timeout reaches it.
          *
-         * Item can be ready to run if the replication events are received for all the slaves, if a replication failed
-         * or if we reached the wait time out for a slave. If a replication failed or if time out is reached,
-         * replicationFailedMessage will be set with message.
+         * @return the time in ms, 0 if already reached, or -1 if no slave has a timeout.
+         */
+        public long getMillisToTimeout() {
+            long first = -1;
+            for (GerritSlave slave : slavesWaitingFor.values()) {
+                if (slave.getTimeoutInSeconds() != GerritSlave.DISABLED_TIMEOUT_VALUE) {
+                    long millis = Math.max(0, eventTimeStamp + TimeUnit.SECONDS.toMillis(slave.getTimeoutInSeconds())
+                            - System.currentTimeMillis());
+                    if (first < 0 || millis < first) {
+                        first = millis;
+                    }
+                }
+            }
+            return first;
+        }
+
+        /**
+         * Lets this blocked item run if a Gerrit slave it still waits for has reached its timeout,
+         * replicationFailedMessage is set with a message.
          *
-         * @return true if ready to run, otherwise false
+         * @return true if the item was unblocked, false if it could already run or no slave has reached its timeout.
          */
-        public boolean canRunWithTimeoutCheck() {
+        public synchronized boolean timeout() {
             if (canRun) {
-                return true;
+                return false;
             }
-            // check if any Gerrit Slave reached its timeout
+            long now = System.currentTimeMillis();
+            GerritSlave first = null;
             for (GerritSlave slave : slavesWaitingFor.values()) {
                 if (slave.getTimeoutInSeconds() != GerritSlave.DISABLED_TIMEOUT_VALUE
-                        && TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - eventTimeStamp) > slave
-                        .getTimeoutInSeconds()) {
-                    replicationFailedMessage = Messages.WaitingForReplicationTimeout(ref, slave.getName());
-                    return true;
+                        && eventTimeStamp + TimeUnit.SECONDS.toMillis(slave.getTimeoutInSeconds()) <= now
+                        && (first == null || slave.getTimeoutInSeconds() < first.getTimeoutInSeconds())) {
+                    first = slave;
                 }
             }
-            return false;
+            if (first == null) {
+                return false;
+            }
+            replicationFailedMessage = Messages.WaitingForReplicationTimeout(ref, first.getName());
+            canRun = true;
+            logger.debug("{} reached the replication timeout of {}", getEventDescription(), first.getName());
+            return true;
+        }
+
+        /**
+         * Cancels the scheduled timeout, if any.
+         */
+        public void cancelTimeout() {
+            ScheduledFuture<?> future = timeoutFuture;
+            if (future != null) {
+                future.cancel(false);
+            }
         }
 
         /**
@@ -391,7 +548,7 @@ public class ReplicationQueueTaskDispatcher extends QueueTaskDispatcher implemen
          * list and canRun flag accordingly.
          * @param refReplicated The refReplicated
          */
-        public void processRefReplicatedEvent(RefReplicated refReplicated) {
+        public synchronized void processRefReplicatedEvent(RefReplicated refReplicated) {
             if (canRun || refReplicated.getProvider() == null) {
                 return;
             }
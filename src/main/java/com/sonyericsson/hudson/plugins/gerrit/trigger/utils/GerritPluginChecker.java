@@ -126,6 +126,7 @@ public final class GerritPluginChecker {
         }
 
         int statusCode = execute.getStatusLine().getStatusCode();
+        HttpUtils.release(execute);
         logger.debug("status code: {}", statusCode);
         return decodeStatus(statusCode, pluginName);
     }
@@ -21,31 +21,65 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
-
 package com.sonyericsson.hudson.plugins.gerrit.trigger.utils;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
 
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.conn.params.ConnRoutePNames;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.PluginConfig;
 
 /**
  * Helper class for HTTP operations.
+ *
+ * Requests to the same Gerrit front end share a client with a pool of persistent connections,
+ * so the TCP and TLS handshakes are only paid when the pool has no idle connection.
+ * The entity of every response must be consumed or closed, for example with {@link #release(HttpResponse)},
+ * to give the connection back to the pool.
  */
 public final class HttpUtils {
 
+    /**
+     * Default maximum number of open connections to one Gerrit server.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_SERVER = 10;
+    /**
+     * Default connect, read and pool wait timeout in seconds.
+     */
+    public static final int DEFAULT_TIMEOUT_IN_SECONDS = 30;
+
     private static final Logger logger = LoggerFactory.getLogger(HttpUtils.class);
 
+    private static final ConcurrentMap<String, PooledClient> CLIENTS = new ConcurrentHashMap<String, PooledClient>();
+
     /**
      * Helper methods for Http operations.
      */
@@ -59,21 +93,180 @@ public final class HttpUtils {
      * @throws IOException if found.
      */
     public static HttpResponse performHTTPGet(IGerritHudsonTriggerConfig config, String url) throws IOException {
-        DefaultHttpClient httpclient = new DefaultHttpClient();
         HttpGet httpGet = new HttpGet(url);
-        if (config.getGerritProxy() != null && !config.getGerritProxy().isEmpty()) {
+        PooledClient pooledClient = getClient(config);
+        pooledClient.requests.incrementAndGet();
+        return pooledClient.client.execute(httpGet, createContext(config));
+    }
+
+    /**
+     * Posts json to a url.
+     *
+     * @param config Gerrit Server Configuration.
+     * @param url URL to post to.
+     * @param json the content to post.
+     * @return httpresponse.
+     * @throws IOException if found.
+     */
+    public static HttpResponse performHTTPPost(IGerritHudsonTriggerConfig config, String url, String json)
+            throws IOException {
+        HttpPost httpPost = new HttpPost(url);
+        httpPost.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        PooledClient pooledClient = getClient(config);
+        pooledClient.requests.incrementAndGet();
+        return pooledClient.client.execute(httpPost, createContext(config));
+    }
+
+    /**
+     * Creates a context with the credentials of the server.
+     *
+     * @param config Gerrit Server Configuration.
+     * @return the context.
+     */
+    private static HttpClientContext createContext(IGerritHudsonTriggerConfig config) {
+        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        credentialsProvider.setCredentials(new AuthScope(null, -1), config.getHttpCredentials());
+        HttpClientContext context = HttpClientContext.create();
+        context.setCredentialsProvider(credentialsProvider);
+        return context;
+    }
+
+    /**
+     * Consumes what is left of the response, so that its connection can be reused.
+     *
+     * @param response the response, can be null.
+     */
+    public static void release(@CheckForNull HttpResponse response) {
+        if (response != null) {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+    }
+
+    /**
+     * The statistics of the connection pool used for a server.
+     *
+     * @param config Gerrit Server Configuration.
+     * @return the statistics, or null if no request has been made to the server.
+     */
+    @CheckForNull
+    public static PoolStats getPoolStats(IGerritHudsonTriggerConfig config) {
+        PooledClient pooledClient = CLIENTS.get(getKey(config));
+        if (pooledClient == null) {
+            return null;
+        }
+        return pooledClient.connectionManager.getTotalStats();
+    }
+
+    /**
+     * The number of requests made through the connection pool used for a server.
+     *
+     * @param config Gerrit Server Configuration.
+     * @return the number of requests.
+     */
+    public static long getRequestCount(IGerritHudsonTriggerConfig config) {
+        PooledClient pooledClient = CLIENTS.get(getKey(config));
+        if (pooledClient == null) {
+            return 0;
+        }
+        return pooledClient.requests.get();
+    }
+
+    /**
+     * Closes the client used for a server and all of its connections.
+     * A new client is created by the next request.
+     *
+     * @param config Gerrit Server Configuration.
+     */
+    public static void closeClient(IGerritHudsonTriggerConfig config) {
+        PooledClient pooledClient = CLIENTS.remove(getKey(config));
+        if (pooledClient != null) {
             try {
-                URL proxyUrl = new URL(config.getGerritProxy());
-                HttpHost proxy = new HttpHost(proxyUrl.getHost(), proxyUrl.getPort(), proxyUrl.getProtocol());
-                httpclient.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
-            } catch (MalformedURLException e) {
-                logger.error("Could not parse proxy URL, attempting without proxy.", e);
+                pooledClient.client.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the HTTP client for " + config.getGerritFrontEndUrl(), e);
+            }
+        }
+    }
+
+    /**
+     * Gets the client for a server, creating it if needed.
+     *
+     * @param config Gerrit Server Configuration.
+     * @return the client.
+     */
+    private static PooledClient getClient(IGerritHudsonTriggerConfig config) {
+        String key = getKey(config);
+        PooledClient pooledClient = CLIENTS.get(key);
+        if (pooledClient == null) {
+            PooledClient newClient = new PooledClient(config);
+            pooledClient = CLIENTS.putIfAbsent(key, newClient);
+            if (pooledClient == null) {
+                pooledClient = newClient;
+            } else {
+                try {
+                    newClient.client.close();
+                } catch (IOException e) {
+                    logger.debug("Could not close unused HTTP client.", e);
+                }
             }
         }
+        return pooledClient;
+    }
+
+    /**
+     * The clients are shared by servers with the same front end and proxy.
+     *
+     * @param config Gerrit Server Configuration.
+     * @return the key of the client.
+     */
+    private static String getKey(IGerritHudsonTriggerConfig config) {
+        return config.getGerritFrontEndUrl() + " " + config.getGerritProxy();
+    }
+
+    /**
+     * A client and the pool of connections it uses.
+     */
+    private static final class PooledClient {
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private final CloseableHttpClient client;
+        private final AtomicLong requests = new AtomicLong();
+
+        /**
+         * Constructor.
+         *
+         * @param config Gerrit Server Configuration.
+         */
+        private PooledClient(IGerritHudsonTriggerConfig config) {
+            int maxConnections = DEFAULT_MAX_CONNECTIONS_PER_SERVER;
+            int timeout = (int)TimeUnit.SECONDS.toMillis(DEFAULT_TIMEOUT_IN_SECONDS);
+            PluginConfig pluginConfig = PluginImpl.getPluginConfig_();
+            if (pluginConfig != null) {
+                maxConnections = pluginConfig.getHttpMaxConnectionsPerServer();
+                timeout = (int)TimeUnit.SECONDS.toMillis(pluginConfig.getHttpTimeoutInSeconds());
+            }
 
-        httpclient.getCredentialsProvider().setCredentials(new AuthScope(null, -1),
-                config.getHttpCredentials());
-        HttpResponse execute;
-        return httpclient.execute(httpGet);
+            connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(maxConnections);
+            connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+            RequestConfig requestConfig = RequestConfig.custom()
+                    .setConnectTimeout(timeout)
+                    .setSocketTimeout(timeout)
+                    .setConnectionRequestTimeout(timeout)
+                    .build();
+            HttpClientBuilder builder = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(requestConfig);
+
+            if (config.getGerritProxy() != null && !config.getGerritProxy().isEmpty()) {
+                try {
+                    URL proxyUrl = new URL(config.getGerritProxy());
+                    builder.setProxy(new HttpHost(proxyUrl.getHost(), proxyUrl.getPort(), proxyUrl.getProtocol()));
+                } catch (MalformedURLException e) {
+                    logger.error("Could not parse proxy URL, attempting without proxy.", e);
+                }
+            }
+            client = builder.build();
+        }
     }
 }
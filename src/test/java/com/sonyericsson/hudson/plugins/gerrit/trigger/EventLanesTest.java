@@ -0,0 +1,362 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link EventLanes}.
+ */
+//CS IGNORE MagicNumber FOR NEXT 400 LINES. REASON: Test data.
+public class EventLanesTest {
+
+    private static final long TIMEOUT = 10;
+
+    /**
+     * Tests that a task handed to an idle lane schedules the lane on the executor,
+     * and that a task without a key is handed to the executor as it is.
+     */
+    @Test
+    public void testIdleLaneIsScheduledOnExecutor() {
+        List<Runnable> scheduled = new ArrayList<Runnable>();
+        EventLanes lanes = new EventLanes(3, new RecordingExecutor(scheduled));
+        final List<Integer> order = new ArrayList<Integer>();
+        lanes.execute("change", new Adder(order, 1));
+        lanes.execute("change", new Adder(order, 2));
+
+        assertTrue(order.isEmpty());
+        assertEquals(1, scheduled.size());
+        assertEquals(2, lanes.getDepth());
+        assertEquals(1, lanes.getDeferredCount());
+
+        scheduled.remove(0).run();
+        assertEquals(2, order.size());
+        assertEquals(Integer.valueOf(1), order.get(0));
+        assertEquals(Integer.valueOf(2), order.get(1));
+        assertEquals(0, lanes.getDepth());
+
+        Runnable unkeyed = new Adder(order, 3);
+        lanes.execute(null, unkeyed);
+        assertEquals(1, scheduled.size());
+        assertSame(unkeyed, scheduled.get(0));
+    }
+
+    /**
+     * Tests that events of the same change, or of the same ref, share a key and other events do not.
+     */
+    @Test
+    public void testKeyOf() {
+        PatchsetCreated first = Setup.createPatchsetCreated("server", "project", "refs/changes/00/1000/1");
+        PatchsetCreated second = Setup.createPatchsetCreated("server", "project", "refs/changes/00/1000/2");
+        assertEquals(EventLanes.keyOf(first), EventLanes.keyOf(second));
+        assertNotEquals(EventLanes.keyOf(first),
+                EventLanes.keyOf(Setup.createPatchsetCreated("other", "project", "refs/changes/00/1000/1")));
+
+        assertEquals(EventLanes.keyOf(Setup.createRefUpdated("server", "project", "master")),
+                EventLanes.keyOf(Setup.createRefUpdated("server", "project", "master")));
+        assertNotEquals(EventLanes.keyOf(Setup.createRefUpdated("server", "project", "master")),
+                EventLanes.keyOf(Setup.createRefUpdated("server", "project", "stable")));
+
+        assertNull(EventLanes.keyOf(null));
+    }
+
+    /**
+     * Tests that tasks handed to a busy lane wait in order, are counted in its depth,
+     * and that a failing task does not stop the lane.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testBusyLaneQueuesInOrder() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final EventLanes lanes = new EventLanes(2, executor);
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch finished = new CountDownLatch(1);
+            final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+            lanes.execute("change", new Blocker(started, release, new Adder(order, 1)));
+            assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+
+            lanes.execute("change", new Runnable() {
+                @Override
+                public void run() {
+                    throw new IllegalStateException("Failing task");
+                }
+            });
+            lanes.execute("change", new Runnable() {
+                @Override
+                public void run() {
+                    order.add(2);
+                    finished.countDown();
+                }
+            });
+            assertTrue(order.isEmpty());
+            int[] depths = new int[2];
+            depths[lanes.indexOf("change")] = 2;
+            assertArrayEquals(depths, lanes.getDepths());
+            assertEquals(2, lanes.getDepth());
+            assertEquals(2, lanes.getDeferredCount());
+
+            release.countDown();
+            assertTrue(finished.await(TIMEOUT, TimeUnit.SECONDS));
+            assertEquals(2, order.size());
+            assertEquals(Integer.valueOf(1), order.get(0));
+            assertEquals(Integer.valueOf(2), order.get(1));
+            assertEquals(0, lanes.getDepth());
+            assertEquals(2, lanes.getMaxDepth());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a busy lane does not hold back a task of a key in another lane.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testOtherLaneRunsInParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final EventLanes lanes = new EventLanes(4, executor);
+            String other = null;
+            for (int i = 0; other == null; i++) {
+                if (lanes.indexOf("change" + i) != lanes.indexOf("busy")) {
+                    other = "change" + i;
+                }
+            }
+            final CountDownLatch started = new CountDownLatch(1);
+            lanes.execute("busy", new Blocker(started, release, null));
+            assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+
+            final CountDownLatch ran = new CountDownLatch(1);
+            lanes.execute(other, new Runnable() {
+                @Override
+                public void run() {
+                    ran.countDown();
+                }
+            });
+            assertTrue(ran.await(TIMEOUT, TimeUnit.SECONDS));
+            assertEquals(0, lanes.getDeferredCount());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stress tests that the tasks of every key run one at a time and in the order they were handed over,
+     * while many threads hand over tasks for many keys sharing few lanes that are run by more executor threads
+     * than there are lanes.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testOrderPerKeyUnderContention() throws Exception {
+        final int threadCount = 8;
+        final int keysPerThread = 16;
+        final int tasksPerKey = 200;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        final EventLanes lanes = new EventLanes(4, executor);
+        final int keyCount = threadCount * keysPerThread;
+        final int[] lastSeen = new int[keyCount];
+        final AtomicBoolean[] busy = new AtomicBoolean[keyCount];
+        for (int k = 0; k < keyCount; k++) {
+            lastSeen[k] = -1;
+            busy[k] = new AtomicBoolean();
+        }
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final AtomicInteger executed = new AtomicInteger();
+        final CountDownLatch go = new CountDownLatch(1);
+        final CountDownLatch allExecuted = new CountDownLatch(keyCount * tasksPerKey);
+
+        List<Thread> producers = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++) {
+            final int firstKey = t * keysPerThread;
+            final Random random = new Random(t);
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    int[] next = new int[keysPerThread];
+                    int remaining = keysPerThread * tasksPerKey;
+                    while (remaining > 0) {
+                        int local = random.nextInt(keysPerThread);
+                        if (next[local] == tasksPerKey) {
+                            continue;
+                        }
+                        final int key = firstKey + local;
+                        final int seq = next[local]++;
+                        remaining--;
+                        lanes.execute("change" + key, new Runnable() {
+                            @Override
+                            public void run() {
+                                if (!busy[key].compareAndSet(false, true)) {
+                                    failure.compareAndSet(null, "Key " + key + " processed in parallel");
+                                }
+                                if (lastSeen[key] != seq - 1) {
+                                    failure.compareAndSet(null, "Key " + key + " got " + seq
+                                            + " after " + lastSeen[key]);
+                                }
+                                lastSeen[key] = seq;
+                                if (seq % 7 == 0) {
+                                    Thread.yield();
+                                }
+                                busy[key].set(false);
+                                executed.incrementAndGet();
+                                allExecuted.countDown();
+                            }
+                        });
+                    }
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        try {
+            go.countDown();
+            for (Thread producer : producers) {
+                producer.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+            }
+
+            assertTrue(allExecuted.await(TIMEOUT, TimeUnit.SECONDS));
+            assertNull(failure.get());
+            assertEquals(keyCount * tasksPerKey, executed.get());
+            for (int k = 0; k < keyCount; k++) {
+                assertEquals(tasksPerKey - 1, lastSeen[k]);
+            }
+            assertEquals(0, lanes.getDepth());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Collects the tasks handed to it without running them.
+     */
+    private static final class RecordingExecutor implements Executor {
+        private final List<Runnable> scheduled;
+
+        /**
+         * Constructor.
+         *
+         * @param scheduled the list to add the tasks to.
+         */
+        private RecordingExecutor(List<Runnable> scheduled) {
+            this.scheduled = scheduled;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            scheduled.add(command);
+        }
+    }
+
+    /**
+     * Adds a number to a list when run.
+     */
+    private static final class Adder implements Runnable {
+        private final List<Integer> order;
+        private final int number;
+
+        /**
+         * Constructor.
+         *
+         * @param order  the list.
+         * @param number the number.
+         */
+        private Adder(List<Integer> order, int number) {
+            this.order = order;
+            this.number = number;
+        }
+
+        @Override
+        public void run() {
+            order.add(number);
+        }
+    }
+
+    /**
+     * Blocks the lane it runs in until released.
+     */
+    private static final class Blocker implements Runnable {
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+        private final Runnable then;
+
+        /**
+         * Constructor.
+         *
+         * @param started counted down when the blocker runs.
+         * @param release awaited before returning.
+         * @param then    run once released, or null.
+         */
+        private Blocker(CountDownLatch started, CountDownLatch release, Runnable then) {
+            this.started = started;
+            this.release = release;
+            this.then = then;
+        }
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await(TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (then != null) {
+                then.run();
+            }
+        }
+    }
+}
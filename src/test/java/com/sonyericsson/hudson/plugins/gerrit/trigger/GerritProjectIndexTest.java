@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link GerritProjectIndex}.
+ */
+//CS IGNORE MagicNumber FOR NEXT 50 LINES. REASON: Test data.
+public class GerritProjectIndexTest {
+
+    /**
+     * Tests that the projects are kept sorted and without duplicates.
+     */
+    @Test
+    public void testSetProjects() {
+        GerritProjectIndex index = new GerritProjectIndex();
+        index.setProjects(Arrays.asList("tools/gerrit", "platform/build", "tools/gerrit", "kernel"));
+
+        assertEquals(Arrays.asList("kernel", "platform/build", "tools/gerrit"), index.getProjects());
+        assertEquals(3, index.size());
+    }
+
+    /**
+     * Tests that the projects starting with a prefix are found, up to the limit.
+     */
+    @Test
+    public void testFindByPrefix() {
+        GerritProjectIndex index = new GerritProjectIndex();
+        index.setProjects(Arrays.asList("tools/repo", "tool", "tools/gerrit", "tools/jenkins", "toolz", "platform"));
+
+        assertEquals(Arrays.asList("tools/gerrit", "tools/jenkins", "tools/repo"), index.findByPrefix("tools/", 10));
+        assertEquals(Arrays.asList("tool", "tools/gerrit"), index.findByPrefix("tool", 2));
+        assertEquals(Arrays.asList("platform", "tool"), index.findByPrefix(null, 2));
+        assertEquals(Collections.<String>emptyList(), index.findByPrefix("x", 10));
+        assertEquals(Collections.<String>emptyList(), index.findByPrefix("tools/gerrit/", 10));
+    }
+
+    /**
+     * Tests that a created project is inserted in sorted order and interned.
+     */
+    @Test
+    public void testAdd() {
+        GerritProjectIndex index = new GerritProjectIndex();
+        index.setProjects(Arrays.asList("a", "c"));
+        index.add(new String("b"));
+        index.add("c");
+        index.add("d");
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), index.getProjects());
+        assertSame("b", index.findByPrefix("b", 1).get(0));
+    }
+}
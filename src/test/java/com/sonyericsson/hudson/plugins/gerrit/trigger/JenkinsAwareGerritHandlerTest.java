@@ -26,28 +26,60 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger;
 
 //CS IGNORE LineLength FOR NEXT 1 LINES. REASON: static import.
 import static com.sonymobile.tools.gerrit.gerritevents.GerritDefaultValues.DEFAULT_NR_OF_RECEIVING_WORKER_THREADS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import jenkins.model.Jenkins;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
 import org.mockito.InOrder;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
 
 import com.sonymobile.tools.gerrit.gerritevents.GerritEventListener;
+import com.sonymobile.tools.gerrit.gerritevents.dto.GerritEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Provider;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefReplicated;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.events.ManualPatchsetCreated;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.events.lifecycle.GerritEventLifecycleListener;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Tests for {@link JenkinsAwareGerritHandler}.
  *
  * @author Hugo Arès &lt;hugo.ares@ericsson.com&gt;
  */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Jenkins.class, PluginImpl.class })
 public class JenkinsAwareGerritHandlerTest {
 
+    private static final int CHANGES = 20;
+    private static final int PATCHSETS = 50;
+    private static final int FIRST_CHANGE = 1000;
+    private static final int YIELD_EVERY = 7;
+    private static final long TIMEOUT = 30;
+    private static final int NOTIFY_MILLIS = 500;
+
     private JenkinsAwareGerritHandler gerritHandler;
 
     /**
@@ -99,4 +131,132 @@ public class JenkinsAwareGerritHandlerTest {
         inOrder.verify(lifecycleListenerMock).triggerScanDone(manualPatchset);
     }
 
+    /**
+     * Tests that the events of a change posted as lines from the stream reach the listeners in the order
+     * they were posted, while the receiving worker threads process the events of many changes.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void shouldNotifyEventsOfAChangeInPostedOrder() throws Exception {
+        final Map<String, List<Integer>> received = new HashMap<String, List<Integer>>();
+        final CountDownLatch allReceived = new CountDownLatch(CHANGES * PATCHSETS);
+        gerritHandler.addListener(new GerritEventListener() {
+            @Override
+            public void gerritEvent(GerritEvent event) {
+                PatchsetCreated created = (PatchsetCreated)event;
+                String change = created.getChange().getNumber();
+                List<Integer> patchSets;
+                synchronized (received) {
+                    patchSets = received.get(change);
+                    if (patchSets == null) {
+                        patchSets = new ArrayList<Integer>();
+                        received.put(change, patchSets);
+                    }
+                }
+                if (Integer.parseInt(created.getPatchSet().getNumber()) % YIELD_EVERY == 0) {
+                    Thread.yield();
+                }
+                synchronized (patchSets) {
+                    patchSets.add(Integer.parseInt(created.getPatchSet().getNumber()));
+                }
+                allReceived.countDown();
+            }
+        });
+        Provider provider = createProvider("server");
+        for (int patchSet = 1; patchSet <= PATCHSETS; patchSet++) {
+            for (int change = 0; change < CHANGES; change++) {
+                gerritHandler.post(createPatchsetCreatedJson(FIRST_CHANGE + change, patchSet), provider);
+            }
+        }
+
+        assertTrue(allReceived.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(CHANGES, received.size());
+        for (Map.Entry<String, List<Integer>> entry : received.entrySet()) {
+            List<Integer> patchSets = entry.getValue();
+            assertEquals(PATCHSETS, patchSets.size());
+            for (int i = 0; i < PATCHSETS; i++) {
+                assertEquals("Order of change " + entry.getKey(), Integer.valueOf(i + 1), patchSets.get(i));
+            }
+        }
+    }
+
+    /**
+     * Tests that an event posted from the stream is dropped before it is queued
+     * when the server says that no trigger is configured for its type.
+     */
+    @Test
+    public void shouldDropUnsubscribedEventWhenPosted() {
+        GerritServer server = mockServer("server");
+        when(server.dropIfUnsubscribed(any(GerritTriggeredEvent.class))).thenReturn(true);
+        GerritEventListener eventListenerMock = mock(GerritEventListener.class);
+        gerritHandler.addListener(eventListenerMock);
+
+        gerritHandler.post(createPatchsetCreatedJson(FIRST_CHANGE, 1), createProvider("server"));
+
+        verify(server).dropIfUnsubscribed(any(PatchsetCreated.class));
+        verify(eventListenerMock, after(NOTIFY_MILLIS).never()).gerritEvent(any(GerritEvent.class));
+    }
+
+    /**
+     * Tests that a replication event posted from the stream reaches the listeners
+     * even though no trigger is configured for its type.
+     */
+    @Test
+    public void shouldNotDropReplicationEventWhenPosted() {
+        GerritServer server = mockServer("server");
+        when(server.dropIfUnsubscribed(any(GerritTriggeredEvent.class))).thenReturn(true);
+        GerritEventListener eventListenerMock = mock(GerritEventListener.class);
+        gerritHandler.addListener(eventListenerMock);
+
+        gerritHandler.post("{\"type\":\"ref-replicated\",\"project\":\"testProject\","
+                + "\"ref\":\"refs/changes/35/1000/1\",\"status\":\"" + RefReplicated.SUCCEEDED_STATUS + "\","
+                + "\"targetNode\":\"slaveA\"}", createProvider("server"));
+
+        verify(eventListenerMock, timeout(NOTIFY_MILLIS)).gerritEvent(any(RefReplicated.class));
+        verify(server, never()).dropIfUnsubscribed(any(GerritTriggeredEvent.class));
+    }
+
+    /**
+     * Mocks a running Jenkins with a server of the given name.
+     *
+     * @param name the name of the server.
+     * @return the server mock.
+     */
+    private static GerritServer mockServer(String name) {
+        PowerMockito.mockStatic(Jenkins.class);
+        when(Jenkins.getInstance()).thenReturn(mock(Jenkins.class));
+        PowerMockito.mockStatic(PluginImpl.class);
+        GerritServer server = mock(GerritServer.class);
+        when(PluginImpl.getServer_(name)).thenReturn(server);
+        return server;
+    }
+
+    /**
+     * A provider of events from a server.
+     *
+     * @param name the name of the server.
+     * @return the provider.
+     */
+    private static Provider createProvider(String name) {
+        return new Provider(name, "localhost", "29418", "ssh", "http://localhost/", "2.9");
+    }
+
+    /**
+     * A patchset-created line as sent by the stream of events.
+     *
+     * @param change   the change number.
+     * @param patchSet the patch set number.
+     * @return the line.
+     */
+    private static String createPatchsetCreatedJson(int change, int patchSet) {
+        return "{\"type\":\"patchset-created\",\"change\":{\"project\":\"testProject\",\"branch\":\"develop\","
+                + "\"id\":\"Icae2322236e0e521950a0232effda08d6ffcdab7\",\"number\":\"" + change + "\","
+                + "\"subject\":\"subject\",\"owner\":{\"name\":\"Name\",\"email\":\"name@abc.com\"},"
+                + "\"url\":\"https://abc.aaa.se/" + change + "\",\"status\":\"NEW\"},"
+                + "\"patchSet\":{\"number\":\"" + patchSet + "\",\"revision\":\"607eea8f472235b3ee47483b6\","
+                + "\"ref\":\"refs/changes/35/" + change + "/" + patchSet + "\",\"uploader\":{\"name\":\"Name\","
+                + "\"email\":\"name@abc.com\"},\"createdOn\":1413448337},"
+                + "\"uploader\":{\"name\":\"Name\",\"email\":\"name@abc.com\"},\"eventCreatedOn\":1413448337}";
+    }
 }
@@ -44,11 +44,23 @@ public class PluginConfigTest {
     public void testSetValues() {
         String formString = "{"
                 + "\"numberOfSendingWorkerThreads\":\"4\","
-                + "\"numberOfReceivingWorkerThreads\":\"6\"}";
+                + "\"numberOfReceivingWorkerThreads\":\"6\","
+                + "\"missedEventsPersistIntervalInSeconds\":\"30\","
+                + "\"httpMaxConnectionsPerServer\":\"20\","
+                + "\"httpTimeoutInSeconds\":\"15\","
+                + "\"buildStartedCoalesceWindowInSeconds\":\"3\","
+                + "\"restInFlightPerServer\":\"5\","
+                + "\"maxStartedBacklog\":\"50\"}";
         JSONObject form = (JSONObject)JSONSerializer.toJSON(formString);
         PluginConfig config = new PluginConfig(form);
         assertEquals(6, config.getNumberOfReceivingWorkerThreads());
         assertEquals(4, config.getNumberOfSendingWorkerThreads());
+        assertEquals(30, config.getMissedEventsPersistIntervalInSeconds());
+        assertEquals(20, config.getHttpMaxConnectionsPerServer());
+        assertEquals(15, config.getHttpTimeoutInSeconds());
+        assertEquals(3, config.getBuildStartedCoalesceWindowInSeconds());
+        assertEquals(5, config.getRestInFlightPerServer());
+        assertEquals(50, config.getMaxStartedBacklog());
     }
 
     //CS IGNORE MagicNumber FOR NEXT 100 LINES. REASON: Mocks tests.
@@ -60,11 +72,23 @@ public class PluginConfigTest {
     public void testCopyConfig() {
         String formString = "{"
                 + "\"numberOfSendingWorkerThreads\":\"4\","
-                + "\"numberOfReceivingWorkerThreads\":\"6\"}";
+                + "\"numberOfReceivingWorkerThreads\":\"6\","
+                + "\"missedEventsPersistIntervalInSeconds\":\"30\","
+                + "\"httpMaxConnectionsPerServer\":\"20\","
+                + "\"httpTimeoutInSeconds\":\"15\","
+                + "\"buildStartedCoalesceWindowInSeconds\":\"3\","
+                + "\"restInFlightPerServer\":\"5\","
+                + "\"maxStartedBacklog\":\"50\"}";
         JSONObject form = (JSONObject)JSONSerializer.toJSON(formString);
         PluginConfig initialConfig = new PluginConfig(form);
         PluginConfig config = new PluginConfig(initialConfig);
         assertEquals(6, config.getNumberOfReceivingWorkerThreads());
         assertEquals(4, config.getNumberOfSendingWorkerThreads());
+        assertEquals(30, config.getMissedEventsPersistIntervalInSeconds());
+        assertEquals(20, config.getHttpMaxConnectionsPerServer());
+        assertEquals(15, config.getHttpTimeoutInSeconds());
+        assertEquals(3, config.getBuildStartedCoalesceWindowInSeconds());
+        assertEquals(5, config.getRestInFlightPerServer());
+        assertEquals(50, config.getMaxStartedBacklog());
     }
 }
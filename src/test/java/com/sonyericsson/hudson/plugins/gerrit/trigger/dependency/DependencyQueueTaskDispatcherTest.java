@@ -24,6 +24,7 @@
 package com.sonyericsson.hudson.plugins.gerrit.trigger.dependency;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.any;
@@ -50,7 +51,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 import hudson.triggers.Trigger;
 import hudson.triggers.TriggerDescriptor;
@@ -64,7 +64,6 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
-import com.sonymobile.tools.gerrit.gerritevents.GerritDefaultValues;
 import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
@@ -273,6 +272,50 @@ public class DependencyQueueTaskDispatcherTest {
         assertNull("Build should not be blocked", cause);
     }
 
+    /**
+     * Test that an item is blocked while its event is dispatched to the triggers, and is
+     * only waiting for its dependency once all builds for the event are scheduled.
+     */
+    @Test
+    public void shouldBlockWhileEventIsScheduling() {
+        PatchsetCreated patchsetCreated = Setup.createPatchsetCreated("someGerritServer", "someProject",
+            "refs/changes/1/1/1");
+        Queue.Item item = createItem(patchsetCreated, "upstream");
+        dispatcher.onSchedulingEvent(patchsetCreated);
+        CauseOfBlockage cause = dispatcher.canRun(item);
+        assertTrue("Build should wait for the scheduling",
+                cause instanceof BecauseWaitingToEnsureOtherJobsAreInQueue);
+        dispatcher.onDoneSchedulingEvent(patchsetCreated);
+        //Setting the dependency as "triggered but not built"
+        doReturn(true).when(toGerritRunListenerMock).
+            isProjectTriggeredAndIncomplete(abstractProjectDependencyMock, patchsetCreated);
+        cause = dispatcher.canRun(item);
+        assertTrue("Build should wait for the dependency", cause instanceof BecauseDependentBuildIsBuilding);
+        //Setting the dependency as "triggered and built"
+        doReturn(false).when(toGerritRunListenerMock).
+            isProjectTriggeredAndIncomplete(abstractProjectDependencyMock, patchsetCreated);
+        assertNull("Build should not be blocked", dispatcher.canRun(item));
+    }
+
+    /**
+     * Test that the dependencies are resolved once, until the dependency graph is invalidated.
+     */
+    @Test
+    public void shouldResolveDependenciesOnceUntilInvalidated() {
+        PatchsetCreated patchsetCreated = Setup.createPatchsetCreated("someGerritServer", "someProject",
+            "refs/changes/1/1/1");
+        Queue.Item item = createItem(patchsetCreated, "upstream");
+        //Setting the dependency as "triggered but not built"
+        doReturn(true).when(toGerritRunListenerMock).
+            isProjectTriggeredAndIncomplete(abstractProjectDependencyMock, patchsetCreated);
+        assertNotNull("Build should be blocked", dispatcher.canRun(item));
+        //The dependency can no longer be resolved, but the graph still has it
+        when(jenkinsMock.getItem(eq("upstream"), any(Item.class), Item.class)).thenReturn(null);
+        assertNotNull("Build should be blocked", dispatcher.canRun(item));
+        dispatcher.invalidateDependencyGraph();
+        assertNull("Build should not be blocked", dispatcher.canRun(item));
+    }
+
     /**
      * Create a queue item caused by the specified gerritEvent.
      * @param gerritEvent The gerritEvent
@@ -307,11 +350,7 @@ public class DependencyQueueTaskDispatcherTest {
         when(abstractProjectDependencyMock.getTrigger(GerritTrigger.class)).thenReturn(gerritTriggerMock);
         when(gerritTriggerMock.getDependencyJobsNames()).thenReturn(dependency);
         when(jenkinsMock.getItem(eq("upstream"), any(Item.class), Item.class)).thenReturn(abstractProjectDependencyMock);
-        WaitingItem waitingItem = PowerMockito.spy(new WaitingItem(Calendar.getInstance(),
-                abstractProjectMock, actions));
-        when(waitingItem.getInQueueSince()).thenReturn(System.currentTimeMillis()
-                - TimeUnit.SECONDS.toMillis(GerritDefaultValues.DEFAULT_BUILD_SCHEDULE_DELAY));
-        return waitingItem;
+        return new WaitingItem(Calendar.getInstance(), abstractProjectMock, actions);
     }
 
 }
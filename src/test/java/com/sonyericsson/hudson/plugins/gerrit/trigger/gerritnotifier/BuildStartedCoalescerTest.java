@@ -0,0 +1,199 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link BuildStartedCoalescer}.
+ */
+public class BuildStartedCoalescerTest {
+
+    private static final long LONG_WINDOW = TimeUnit.MINUTES.toMillis(10);
+    private static final long SHORT_WINDOW = 100;
+
+    private BuildStartedCoalescer coalescer;
+    private List<String> sent;
+    private PatchsetCreated event;
+    private PatchsetCreated otherEvent;
+
+    /**
+     * Creates the coalescer.
+     */
+    @Before
+    public void setUp() {
+        coalescer = new BuildStartedCoalescer();
+        sent = Collections.synchronizedList(new ArrayList<String>());
+        event = Setup.createPatchsetCreated();
+        otherEvent = Setup.createPatchsetCreated();
+    }
+
+    /**
+     * A notification that records that it was sent.
+     *
+     * @param name the name of the notification.
+     * @return the notification.
+     */
+    private Runnable notification(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                sent.add(name);
+            }
+        };
+    }
+
+    /**
+     * Tests that only the last of several notifications of the same event is sent.
+     */
+    @Test
+    public void testOnlyLastNotificationIsSent() {
+        coalescer.add(event, notification("first"), LONG_WINDOW);
+        coalescer.add(event, notification("second"), LONG_WINDOW);
+        coalescer.add(event, notification("third"), LONG_WINDOW);
+        coalescer.add(otherEvent, notification("other"), LONG_WINDOW);
+        assertTrue(sent.isEmpty());
+
+        coalescer.flush(event);
+        coalescer.flush(otherEvent);
+        coalescer.flush(event);
+
+        assertEquals(2, sent.size());
+        assertEquals("third", sent.get(0));
+        assertEquals("other", sent.get(1));
+        assertEquals(2, coalescer.getSavedCommands());
+        assertEquals(1, coalescer.getCoalescedEvents());
+        assertEquals(2.0, coalescer.getAverageSavedCommandsPerEvent(), 0.0);
+    }
+
+    /**
+     * Tests that a pending notification is dropped when the verdict is sent.
+     */
+    @Test
+    public void testDiscard() {
+        coalescer.add(event, notification("first"), LONG_WINDOW);
+        coalescer.discard(event);
+        coalescer.flush(event);
+
+        assertTrue(sent.isEmpty());
+        assertEquals(1, coalescer.getSavedCommands());
+        assertEquals(1, coalescer.getCoalescedEvents());
+    }
+
+    /**
+     * Tests that the notification is sent when the window has passed.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    @Test
+    public void testSentAfterWindow() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        coalescer.add(event, notification("first"), SHORT_WINDOW);
+        coalescer.add(event, new Runnable() {
+            @Override
+            public void run() {
+                sent.add("second");
+                latch.countDown();
+            }
+        }, SHORT_WINDOW);
+
+        assertTrue(latch.await(LONG_WINDOW, TimeUnit.MILLISECONDS));
+        assertEquals(Collections.singletonList("second"), sent);
+    }
+
+    /**
+     * Tests that the verdict of an event does not drop the notification of another event of the same patch set.
+     */
+    @Test
+    public void testDiscardOfOtherEventOfSamePatchSet() {
+        coalescer.add(event, notification("first"), LONG_WINDOW);
+        coalescer.discard(otherEvent);
+        coalescer.flush(event);
+
+        assertEquals(Collections.singletonList("first"), sent);
+        assertEquals(0, coalescer.getSavedCommands());
+    }
+
+    /**
+     * Tests that a verdict queued while a pending notification is being queued waits for it,
+     * so the notification is not queued after the verdict.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    @Test
+    public void testDiscardWaitsForNotificationBeingQueued() throws InterruptedException {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        coalescer.add(event, new Runnable() {
+            @Override
+            public void run() {
+                sending.countDown();
+                try {
+                    release.await(LONG_WINDOW, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                sent.add("started");
+            }
+        }, LONG_WINDOW);
+        Thread flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                coalescer.flush(event);
+            }
+        });
+        flusher.start();
+        assertTrue(sending.await(LONG_WINDOW, TimeUnit.MILLISECONDS));
+
+        Thread verdict = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                coalescer.discard(event);
+                sent.add("verdict");
+            }
+        });
+        verdict.start();
+        verdict.join(SHORT_WINDOW);
+        release.countDown();
+        flusher.join(LONG_WINDOW);
+        verdict.join(LONG_WINDOW);
+
+        assertEquals(2, sent.size());
+        assertEquals("started", sent.get(0));
+        assertEquals("verdict", sent.get(1));
+        assertEquals(0, coalescer.getSavedCommands());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import hudson.EnvVars;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MessageTemplate}.
+ */
+public class MessageTemplateTest {
+
+    /**
+     * Tests that parameters are replaced and that unknown parameters and other brackets are left as they are.
+     */
+    @Test
+    public void testExpandParameters() {
+        MessageTemplate template = MessageTemplate.compile(
+                "gerrit review <CHANGE>,<PATCHSET> --message '<BUILDS_STATS>' <UNKNOWN> <<<a>b> <> x<y");
+        //CS IGNORE MagicNumber FOR NEXT 1 LINES. REASON: Test data.
+        assertEquals(5, template.getParameterCount());
+        assertFalse(template.hasEnvironmentVariables());
+
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("CHANGE", "1000");
+        values.put("PATCHSET", "1");
+        values.put("BUILDS_STATS", "FAILURE <<<\nThe <CHANGE> failed\n>>>");
+        values.put("a", "A");
+
+        assertEquals("gerrit review 1000,1 --message 'FAILURE <<<\nThe <CHANGE> failed\n>>>' <UNKNOWN> <<Ab> <> x<y",
+                template.expand(values, null));
+    }
+
+    /**
+     * Tests that environment variables are expanded in the literal text but not in the values.
+     */
+    @Test
+    public void testExpandEnvironmentVariables() {
+        MessageTemplate template = MessageTemplate.compile("${BUILD_URL}console <CHANGE> $BRANCH");
+        assertTrue(template.hasEnvironmentVariables());
+
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("CHANGE", "$BRANCH");
+        EnvVars env = new EnvVars();
+        env.put("BUILD_URL", "http://localhost/job/1/");
+        env.put("BRANCH", "master");
+
+        assertEquals("http://localhost/job/1/console $BRANCH master", template.expand(values, env));
+        assertEquals("${BUILD_URL}console $BRANCH $BRANCH", template.expand(values, null));
+    }
+
+    /**
+     * Tests that a template is only parsed once.
+     */
+    @Test
+    public void testCompileIsCached() {
+        String command = "gerrit review <CHANGE>,<PATCHSET>";
+        assertSame(MessageTemplate.compile(command), MessageTemplate.compile(new String(command)));
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLaneQueue.Lane;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.CommentAdded;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link NotificationLaneQueue}.
+ */
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: Test data.
+public class NotificationLaneQueueTest {
+
+    private NotificationLaneStatistics statistics;
+    private NotificationLaneQueue queue;
+
+    /**
+     * Creates a queue with room for 10 notifications, at most 3 of them build started messages.
+     */
+    @Before
+    public void setUp() {
+        statistics = new NotificationLaneStatistics();
+        queue = new NotificationLaneQueue(10, 2, 3, statistics);
+    }
+
+    /**
+     * Tests that verdicts are taken first, but that a build started message gets its turn after the weight.
+     */
+    @Test
+    public void testVerdictsAreWeighted() {
+        TestItem s1 = started("a", 1);
+        TestItem s2 = started("b", 1);
+        queue.offer(s1);
+        queue.offer(s2);
+        TestItem v1 = verdict("c", 1);
+        TestItem v2 = verdict("d", 1);
+        TestItem v3 = verdict("e", 1);
+        queue.offer(v1);
+        queue.offer(v2);
+        queue.offer(v3);
+
+        assertSame(v1, queue.poll());
+        assertSame(v2, queue.poll());
+        assertSame(s1, queue.poll());
+        assertSame(v3, queue.poll());
+        assertSame(s2, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    /**
+     * Tests that a full build started lane drops the messages of superseded patch sets first.
+     */
+    @Test
+    public void testSupersededStartedAreDropped() {
+        TestItem old = started("a", 1);
+        TestItem other = started("b", 1);
+        TestItem otherOld = started("a", 2);
+        queue.offer(old);
+        queue.offer(other);
+        queue.offer(otherOld);
+        TestItem newest = started("a", 3);
+        queue.offer(newest);
+
+        assertEquals(2, queue.size(Lane.STARTED));
+        assertSame(other, queue.poll());
+        assertSame(newest, queue.poll());
+        assertEquals(2, statistics.getDroppedSuperseded());
+        assertEquals(0, statistics.getDroppedOldest());
+    }
+
+    /**
+     * Tests that the build started messages of an event are dropped when its verdict is queued,
+     * and that one offered after the verdict is dropped at once, so none can be sent after the verdict.
+     */
+    @Test
+    public void testStartedAreDroppedByVerdictOfSameEvent() {
+        GerritTriggeredEvent event = new PatchsetCreated();
+        TestItem started1 = new TestItem(Lane.STARTED, event, "a", 1);
+        TestItem otherPatchSet = started("a", 2);
+        TestItem otherChange = started("b", 1);
+        queue.offer(started1);
+        queue.offer(otherPatchSet);
+        queue.offer(otherChange);
+        TestItem verdict = new TestItem(Lane.VERDICT, event, "a", 1);
+        queue.offer(verdict);
+        assertTrue(queue.offer(new TestItem(Lane.STARTED, event, "a", 1)));
+
+        assertFalse(queue.contains(started1));
+        assertEquals(2, queue.size(Lane.STARTED));
+        assertEquals(2, statistics.getDroppedSuperseded());
+        assertEquals(2, statistics.getDepth(Lane.STARTED));
+        assertSame(verdict, queue.poll());
+        assertSame(otherPatchSet, queue.poll());
+        assertSame(otherChange, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    /**
+     * Tests that the verdict of one event doesn't drop the build started messages of another event
+     * of the same patch set, queued before or after the verdict.
+     */
+    @Test
+    public void testStartedOfOtherEventOfSamePatchSetAreKept() {
+        GerritTriggeredEvent created = new PatchsetCreated();
+        GerritTriggeredEvent commented = new CommentAdded();
+        TestItem startedCreated = new TestItem(Lane.STARTED, created, "a", 1);
+        TestItem startedCommented = new TestItem(Lane.STARTED, commented, "a", 1);
+        queue.offer(startedCreated);
+        queue.offer(startedCommented);
+        TestItem verdict = new TestItem(Lane.VERDICT, created, "a", 1);
+        queue.offer(verdict);
+        TestItem laterCommented = new TestItem(Lane.STARTED, commented, "a", 1);
+        assertTrue(queue.offer(laterCommented));
+
+        assertEquals(2, queue.size(Lane.STARTED));
+        assertEquals(1, statistics.getDroppedSuperseded());
+        assertSame(verdict, queue.poll());
+        assertSame(startedCommented, queue.poll());
+        assertSame(laterCommented, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    /**
+     * Tests that the oldest build started message is dropped when none is superseded.
+     */
+    @Test
+    public void testOldestStartedIsDropped() {
+        TestItem first = started("a", 1);
+        queue.offer(first);
+        queue.offer(started("b", 1));
+        queue.offer(started("c", 1));
+        queue.offer(started("d", 1));
+
+        assertEquals(3, queue.size(Lane.STARTED));
+        assertFalse(queue.contains(first));
+        assertEquals(1, statistics.getDroppedOldest());
+        assertEquals(3, statistics.getDepth(Lane.STARTED));
+    }
+
+    /**
+     * Tests that verdicts are never dropped, only rejected when the queue is full.
+     */
+    @Test
+    public void testVerdictsAreRejectedWhenFull() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer(verdict("a", i)));
+        }
+        assertFalse(queue.offer(verdict("a", 11)));
+        assertFalse(queue.offer(started("a", 11)));
+        assertEquals(10, queue.size(Lane.VERDICT));
+        assertEquals(0, statistics.getDroppedOldest());
+    }
+
+    /**
+     * Tests that the wait time and depth of the lanes are measured.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    @Test
+    public void testStatistics() throws InterruptedException {
+        queue.offer(verdict("a", 1));
+        queue.offer(started("b", 1));
+        assertEquals(1, statistics.getDepth(Lane.VERDICT));
+        assertEquals(1, statistics.getDepth(Lane.STARTED));
+        Thread.sleep(60);
+        queue.take();
+        queue.take();
+        assertEquals(0, statistics.getDepth(Lane.VERDICT));
+        assertEquals(0, statistics.getDepth(Lane.STARTED));
+        assertTrue(statistics.getAverageWaitMillis(Lane.VERDICT) >= 50);
+        assertTrue(statistics.getMaxWaitMillis(Lane.STARTED) >= 50);
+    }
+
+    /**
+     * Tests that an executor backed by the queue runs a verdict queued after build started messages
+     * before them.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    @Test
+    public void testExecutorRunsVerdictFirst() throws InterruptedException {
+        final List<String> order = new ArrayList<String>();
+        final Object gate = new Object();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, queue);
+        synchronized (gate) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (gate) {
+                        order.add("blocker");
+                    }
+                }
+            });
+            executor.execute(new RecordingItem(Lane.STARTED, "started", order));
+            executor.execute(new RecordingItem(Lane.VERDICT, "verdict", order));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals("blocker", order.get(0));
+        assertEquals("verdict", order.get(1));
+        assertEquals("started", order.get(2));
+    }
+
+    /**
+     * A build started message.
+     *
+     * @param change   the change.
+     * @param patchSet the patch set.
+     * @return the item.
+     */
+    private static TestItem started(String change, int patchSet) {
+        return new TestItem(Lane.STARTED, new PatchsetCreated(), change, patchSet);
+    }
+
+    /**
+     * A verdict.
+     *
+     * @param change   the change.
+     * @param patchSet the patch set.
+     * @return the item.
+     */
+    private static TestItem verdict(String change, int patchSet) {
+        return new TestItem(Lane.VERDICT, new PatchsetCreated(), change, patchSet);
+    }
+
+    /**
+     * A notification that does nothing.
+     */
+    private static class TestItem implements NotificationLaneQueue.Item {
+        private final Lane lane;
+        private final GerritTriggeredEvent event;
+        private final String change;
+        private final int patchSet;
+
+        /**
+         * Constructor.
+         *
+         * @param lane     the lane.
+         * @param event    the event.
+         * @param change   the change.
+         * @param patchSet the patch set.
+         */
+        TestItem(Lane lane, GerritTriggeredEvent event, String change, int patchSet) {
+            this.lane = lane;
+            this.event = event;
+            this.change = change;
+            this.patchSet = patchSet;
+        }
+
+        @Override
+        public Lane getLane() {
+            return lane;
+        }
+
+        @Override
+        public GerritTriggeredEvent getEvent() {
+            return event;
+        }
+
+        @Override
+        public String getChangeKey() {
+            return change;
+        }
+
+        @Override
+        public int getPatchSetNumber() {
+            return patchSet;
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    /**
+     * A notification that records that it ran.
+     */
+    private static class RecordingItem extends TestItem {
+        private final String name;
+        private final List<String> order;
+
+        /**
+         * Constructor.
+         *
+         * @param lane  the lane.
+         * @param name  what to record.
+         * @param order where to record it.
+         */
+        RecordingItem(Lane lane, String name, List<String> order) {
+            super(lane, null, name, 1);
+            this.name = name;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            synchronized (order) {
+                order.add(name);
+            }
+        }
+    }
+}
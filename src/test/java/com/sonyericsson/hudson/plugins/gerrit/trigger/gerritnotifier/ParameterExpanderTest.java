@@ -26,6 +26,7 @@ package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier;
 
 import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildMemory.MemoryImprint;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildsVerdict;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.model.BuildsStartedStats;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.SkipVote;
@@ -466,10 +467,12 @@ public class ParameterExpanderTest {
         MemoryImprint memoryImprint = mock(MemoryImprint.class);
         when(memoryImprint.getEvent()).thenReturn(event);
 
-        when(memoryImprint.wereAllBuildsSuccessful()).thenReturn(allAreOfType(Result.SUCCESS, expectedBuildResults));
-        when(memoryImprint.wereAllBuildsNotBuilt()).thenReturn(allAreOfType(Result.NOT_BUILT, expectedBuildResults));
-        when(memoryImprint.wereAnyBuildsFailed()).thenReturn(anyIsOfType(Result.FAILURE, expectedBuildResults));
-        when(memoryImprint.wereAnyBuildsUnstable()).thenReturn(anyIsOfType(Result.UNSTABLE, expectedBuildResults));
+        int builds = expectedBuildResults.length;
+        when(memoryImprint.getVerdict()).thenReturn(new BuildsVerdict(builds, builds, builds,
+                allAreOfType(Result.SUCCESS, expectedBuildResults),
+                anyIsOfType(Result.FAILURE, expectedBuildResults),
+                anyIsOfType(Result.UNSTABLE, expectedBuildResults),
+                allAreOfType(Result.NOT_BUILT, expectedBuildResults)));
 
         when(memoryImprint.getEntries()).thenReturn(entries);
 
@@ -547,9 +550,7 @@ public class ParameterExpanderTest {
         MemoryImprint memoryImprint = mock(MemoryImprint.class);
         when(memoryImprint.getEvent()).thenReturn(event);
 
-        when(memoryImprint.wereAllBuildsSuccessful()).thenReturn(true);
-        when(memoryImprint.wereAnyBuildsFailed()).thenReturn(false);
-        when(memoryImprint.wereAnyBuildsUnstable()).thenReturn(false);
+        when(memoryImprint.getVerdict()).thenReturn(new BuildsVerdict(1, 1, 1, true, false, false, false));
 
         MemoryImprint.Entry[] entries = { Setup.createImprintEntry(project, r) };
 
@@ -49,6 +49,7 @@ import jenkins.model.Jenkins;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -62,6 +63,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.same;
@@ -270,6 +272,8 @@ public class ToGerritRunListenerTest {
         memory.started(event, build);
         toGerritRunListener.onCompleted(build, mock(TaskListener.class));
 
+        verify(mockNotificationFactory).queueBuildCompleted(
+                any(BuildMemory.MemoryImprint.class), any(TaskListener.class));
         verify(toGerritRunListener, times(1)).getMatchingWorkspaceFiles(any(FilePath.class), eq(filepath));
         verify(toGerritRunListener, never()).getExpandedContent(any(FilePath.class), any(EnvVars.class));
     }
@@ -298,10 +302,72 @@ public class ToGerritRunListenerTest {
         memory.started(event, build);
         toGerritRunListener.onCompleted(build, mock(TaskListener.class));
 
+        verify(mockNotificationFactory).queueBuildCompleted(
+                any(BuildMemory.MemoryImprint.class), any(TaskListener.class));
         verify(toGerritRunListener, times(1)).getMatchingWorkspaceFiles(any(FilePath.class), eq(filepath));
         verify(toGerritRunListener, times(1)).getExpandedContent(any(FilePath.class), any(EnvVars.class));
     }
 
+    /**
+     * Tests that {@link ToGerritRunListener#onCompleted(hudson.model.Run, hudson.model.TaskListener)} reads the
+     * failure message before it returns, while the build's listener and workspace are still the build's,
+     * and that the verdict is queued with it.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testOnCompletedQueuesVerdictWithFailureMessage() throws Exception {
+        AbstractBuild build = mockBuild("projectX", 2);
+        String filepath = "error-file*.txt";
+        String message = "This is the failure";
+        FilePath[] fileList = {new FilePath(File.createTempFile("error-file", ".txt"))};
+
+        PatchsetCreated event = spy(Setup.createPatchsetCreated());
+
+        ToGerritRunListener toGerritRunListener = Setup.createFailureMessageRunListener(build, event, filepath);
+
+        doReturn(fileList).when(toGerritRunListener).getMatchingWorkspaceFiles(any(FilePath.class), eq(filepath));
+        doReturn(message).when(toGerritRunListener).getExpandedContent(eq(fileList[0]), any(EnvVars.class));
+
+        BuildMemory memory = Whitebox.getInternalState(toGerritRunListener, BuildMemory.class);
+        memory.started(event, build);
+        toGerritRunListener.onCompleted(build, mock(TaskListener.class));
+
+        ArgumentCaptor<BuildMemory.MemoryImprint> imprint = ArgumentCaptor.forClass(BuildMemory.MemoryImprint.class);
+        verify(mockNotificationFactory).queueBuildCompleted(imprint.capture(), any(TaskListener.class));
+        assertEquals(message, imprint.getValue().getEntries()[0].getUnsuccessfulMessage());
+    }
+
+    /**
+     * Tests that the failure message of a build that was never registered in the memory
+     * reaches the verdict, since it is recorded before the build is marked as completed.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testOnCompletedQueuesVerdictWithFailureMessageOfUnregisteredBuild() throws Exception {
+        AbstractBuild build = mockBuild("projectX", 2);
+        String filepath = "error-file*.txt";
+        String message = "This is the failure";
+        FilePath[] fileList = {new FilePath(File.createTempFile("error-file", ".txt"))};
+
+        PatchsetCreated event = spy(Setup.createPatchsetCreated());
+
+        ToGerritRunListener toGerritRunListener = Setup.createFailureMessageRunListener(build, event, filepath);
+
+        doReturn(fileList).when(toGerritRunListener).getMatchingWorkspaceFiles(any(FilePath.class), eq(filepath));
+        doReturn(message).when(toGerritRunListener).getExpandedContent(eq(fileList[0]), any(EnvVars.class));
+
+        toGerritRunListener.onCompleted(build, mock(TaskListener.class));
+
+        ArgumentCaptor<BuildMemory.MemoryImprint> imprint = ArgumentCaptor.forClass(BuildMemory.MemoryImprint.class);
+        verify(mockNotificationFactory).queueBuildCompleted(imprint.capture(), any(TaskListener.class));
+        BuildMemory.MemoryImprint.Entry[] entries = imprint.getValue().getEntries();
+        assertEquals(1, entries.length);
+        assertTrue(entries[0].isBuildCompleted());
+        assertEquals(message, entries[0].getUnsuccessfulMessage());
+    }
+
     /**
      * Tests {@link ToGerritRunListener#onStarted(hudson.model.Run, hudson.model.TaskListener)}. With a
      * trigger in normal/non-silent mode.
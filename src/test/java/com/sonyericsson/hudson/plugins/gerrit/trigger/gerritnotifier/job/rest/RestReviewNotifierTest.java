@@ -0,0 +1,268 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.job.rest;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.gerritnotifier.NotificationLaneQueue.Lane;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.HttpUtils;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.utils.MockPluginCheckerConfig;
+import com.sonymobile.tools.gerrit.gerritevents.dto.rest.ReviewInput;
+import hudson.model.TaskListener;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.matching;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link RestReviewNotifier} against a local HTTP stub that injects errors and latency.
+ */
+//CS IGNORE MagicNumber FOR NEXT 250 LINES. REASON: Test data.
+public class RestReviewNotifierTest {
+
+    private static final int PORT = 8091;
+    private static final String REVIEW_PATH = "/a/changes/project~branch~Iddaaddaa123456789/revisions/9999/review";
+    private static final long WAIT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * The local HTTP stub.
+     */
+    // CS IGNORE VisibilityModifier FOR NEXT 2 LINES. REASON: WireMockRule.
+    @Rule
+    public final WireMockRule wireMockRule = new WireMockRule(PORT);
+
+    private final RestReviewNotifier notifier = new RestReviewNotifier(3, 10, 50);
+    private final MockPluginCheckerConfig fast = createConfig("fast");
+    private final MockPluginCheckerConfig slow = createConfig("slow");
+
+    /**
+     * Closes the clients used by the test.
+     */
+    @After
+    public void tearDown() {
+        HttpUtils.closeClient(fast);
+        HttpUtils.closeClient(slow);
+    }
+
+    /**
+     * Tests that a review is posted as JSON to the review endpoint of the patch set.
+     */
+    @Test
+    public void testReviewIsPosted() {
+        stubFor(post(urlEqualTo("/fast" + REVIEW_PATH))
+                .willReturn(aResponse().withStatus(HttpURLConnection.HTTP_OK).withBody("{}")));
+
+        notifier.queue("fast", fast, createJob(null), Lane.VERDICT);
+
+        waitForSent(1);
+        verify(postRequestedFor(urlEqualTo("/fast" + REVIEW_PATH))
+                .withHeader("Content-Type", matching("application/json.*"))
+                .withRequestBody(matching(".*\"message\":\"Build Started\".*")));
+        assertEquals(0, notifier.getRetriedCount());
+        assertTrue(notifier.getDeadLetters().isEmpty());
+    }
+
+    /**
+     * Tests that a review is retried after the server is unavailable for a while.
+     */
+    @Test
+    public void testRetryAfterServiceUnavailable() {
+        stubFor(post(urlEqualTo("/fast" + REVIEW_PATH)).inScenario("unavailable")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(HttpURLConnection.HTTP_UNAVAILABLE))
+                .willSetStateTo("available"));
+        stubFor(post(urlEqualTo("/fast" + REVIEW_PATH)).inScenario("unavailable")
+                .whenScenarioStateIs("available")
+                .willReturn(aResponse().withStatus(HttpURLConnection.HTTP_OK).withBody("{}")));
+
+        notifier.queue("fast", fast, createJob(null), Lane.VERDICT);
+
+        waitForSent(1);
+        verify(2, postRequestedFor(urlEqualTo("/fast" + REVIEW_PATH)));
+        assertEquals(1, notifier.getRetriedCount());
+        assertTrue(notifier.getDeadLetters().isEmpty());
+    }
+
+    /**
+     * Tests that a review the server keeps failing ends up as a dead letter after the last attempt.
+     */
+    @Test
+    public void testDeadLetterAfterLastAttempt() {
+        stubFor(post(urlEqualTo("/fast" + REVIEW_PATH))
+                .willReturn(aResponse().withStatus(HttpURLConnection.HTTP_INTERNAL_ERROR)));
+        TaskListener listener = mock(TaskListener.class);
+
+        notifier.queue("fast", fast, createJob(listener), Lane.VERDICT);
+
+        org.mockito.Mockito.verify(listener, timeout((int)WAIT_MILLIS)).error(anyString());
+        verify(3, postRequestedFor(urlEqualTo("/fast" + REVIEW_PATH)));
+        List<RestReviewNotifier.DeadLetter> deadLetters = notifier.getDeadLetters();
+        assertEquals(1, deadLetters.size());
+        assertEquals("fast", deadLetters.get(0).getServerName());
+        assertEquals(HttpURLConnection.HTTP_INTERNAL_ERROR, deadLetters.get(0).getStatusCode());
+        assertEquals(3, deadLetters.get(0).getAttempts());
+        assertEquals(1, notifier.getFailedCount());
+        assertEquals(0, notifier.getSentCount());
+    }
+
+    /**
+     * Tests that a review rejected by the server is not retried.
+     */
+    @Test
+    public void testClientErrorIsNotRetried() {
+        stubFor(post(urlEqualTo("/fast" + REVIEW_PATH))
+                .willReturn(aResponse().withStatus(HttpURLConnection.HTTP_FORBIDDEN)));
+
+        notifier.queue("fast", fast, createJob(null), Lane.VERDICT);
+
+        waitForFailed(1);
+        verify(1, postRequestedFor(urlEqualTo("/fast" + REVIEW_PATH)));
+        assertEquals(0, notifier.getRetriedCount());
+    }
+
+    /**
+     * Tests that a slow server with all its reviews in flight doesn't delay the reviews of another server.
+     */
+    @Test
+    public void testSlowServerDoesNotBlockOtherServer() {
+        stubFor(post(urlMatching("/slow/.*"))
+                .willReturn(aResponse().withStatus(HttpURLConnection.HTTP_OK).withFixedDelay(3000)));
+        stubFor(post(urlEqualTo("/fast" + REVIEW_PATH))
+                .willReturn(aResponse().withStatus(HttpURLConnection.HTTP_OK).withBody("{}")));
+
+        for (int i = 0; i < RestReviewNotifier.DEFAULT_IN_FLIGHT_PER_SERVER + 1; i++) {
+            notifier.queue("slow", slow, createJob(null), Lane.VERDICT);
+        }
+        notifier.queue("fast", fast, createJob(null), Lane.VERDICT);
+
+        long start = System.currentTimeMillis();
+        waitForSent(1);
+        assertTrue("The fast server waited for the slow one", System.currentTimeMillis() - start < 2000);
+        assertEquals(RestReviewNotifier.DEFAULT_IN_FLIGHT_PER_SERVER + 1, notifier.getQueueSize("slow"));
+        assertEquals(0, notifier.getQueueSize("fast"));
+    }
+
+    /**
+     * Tests the backoff grows with each attempt, stays within the limit and honors Retry-After.
+     */
+    @Test
+    public void testBackoff() {
+        RestReviewNotifier backoff = new RestReviewNotifier(10, 1000, 60000);
+        for (int i = 0; i < 20; i++) {
+            long first = backoff.getBackoffMillis(1, 0);
+            assertTrue(first >= 500 && first <= 1000);
+            long third = backoff.getBackoffMillis(3, 0);
+            assertTrue(third >= 2000 && third <= 4000);
+            long last = backoff.getBackoffMillis(100, 0);
+            assertTrue(last >= 30000 && last <= 60000);
+            assertTrue(backoff.getBackoffMillis(1, 10) >= 10000);
+            assertTrue(backoff.getBackoffMillis(1, 3600) <= 60000);
+        }
+    }
+
+    /**
+     * Creates a config for a path on the stub.
+     *
+     * @param path the path.
+     * @return the config.
+     */
+    private static MockPluginCheckerConfig createConfig(String path) {
+        MockPluginCheckerConfig config = new MockPluginCheckerConfig();
+        config.setGerritFrontEndURL("http://localhost:" + PORT + "/" + path + "/");
+        config.setUseRestApi(true);
+        config.setGerritHttpUserName("user");
+        config.setGerritHttpPassword("passwd");
+        return config;
+    }
+
+    /**
+     * Creates a review of the standard patch set.
+     *
+     * @param listener the listener of the build.
+     * @return the review.
+     */
+    private static RestReviewJob createJob(TaskListener listener) {
+        RestReviewJob job = mock(RestReviewJob.class);
+        when(job.getEvent()).thenReturn(Setup.createPatchsetCreated("server"));
+        when(job.createReview()).thenReturn(new ReviewInput("Build Started"));
+        when(job.getListener()).thenReturn(listener);
+        return job;
+    }
+
+    /**
+     * Waits until a number of reviews are posted.
+     *
+     * @param count the number of reviews.
+     */
+    private void waitForSent(long count) {
+        long end = System.currentTimeMillis() + WAIT_MILLIS;
+        while (notifier.getSentCount() < count && System.currentTimeMillis() < end) {
+            sleep();
+        }
+        assertEquals(count, notifier.getSentCount());
+    }
+
+    /**
+     * Waits until a number of reviews have failed.
+     *
+     * @param count the number of reviews.
+     */
+    private void waitForFailed(long count) {
+        long end = System.currentTimeMillis() + WAIT_MILLIS;
+        while (notifier.getFailedCount() < count && System.currentTimeMillis() < end) {
+            sleep();
+        }
+        assertEquals(count, notifier.getFailedCount());
+    }
+
+    /**
+     * Sleeps a little while waiting.
+     */
+    private static void sleep() {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -42,13 +42,23 @@ import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.same;
@@ -57,7 +67,7 @@ import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
 
-//CS IGNORE MagicNumber FOR NEXT 700 LINES. REASON: test-data.
+//CS IGNORE MagicNumber FOR NEXT 850 LINES. REASON: test-data.
 
 /**
  * JUnit 4 tests of {@link BuildMemory}.
@@ -341,6 +351,31 @@ public class BuildMemoryTest {
         assertFalse(instance.isAllBuildsCompleted(event));
     }
 
+    /**
+     * Tests that {@link BuildMemory#isTriggeredAndIncomplete(GerritTriggeredEvent, Job)}
+     * follows the project from triggered to completed and back when it is retriggered.
+     */
+    @Test
+    public void testIsTriggeredAndIncomplete() {
+        PatchsetCreated event = Setup.createPatchsetCreated();
+        BuildMemory instance = new BuildMemory();
+        assertFalse(instance.isTriggeredAndIncomplete(event, project));
+
+        instance.triggered(event, project);
+        assertTrue(instance.isTriggeredAndIncomplete(event, project));
+        assertEquals(1, instance.getMemoryImprint(event).getIncompleteCount());
+
+        instance.started(event, build);
+        assertTrue(instance.isTriggeredAndIncomplete(event, project));
+
+        instance.completed(event, build);
+        assertFalse(instance.isTriggeredAndIncomplete(event, project));
+        assertEquals(0, instance.getMemoryImprint(event).getIncompleteCount());
+
+        instance.retriggered(event, project, null);
+        assertTrue(instance.isTriggeredAndIncomplete(event, project));
+    }
+
     /**
      * test.
      */
@@ -356,6 +391,271 @@ public class BuildMemoryTest {
         assertNull(instance.getMemoryImprint(event));
     }
 
+    /**
+     * Tests that two different events with the same hash code are kept track of individually.
+     */
+    @Test
+    public void testEventsWithSameHashCodeAreKeptApart() {
+        PatchsetCreated event = new PatchsetCreated() {
+            @Override
+            public int hashCode() {
+                return 42;
+            }
+        };
+        PatchsetCreated event2 = new PatchsetCreated() {
+            @Override
+            public int hashCode() {
+                return 42;
+            }
+        };
+
+        BuildMemory instance = new BuildMemory();
+        instance.started(event, build);
+        assertFalse(instance.isBuilding(event2));
+
+        AbstractProject project1 = project;
+        setup();
+        instance.completed(event2, build);
+
+        assertFalse(instance.isAllBuildsCompleted(event));
+        assertTrue(instance.isAllBuildsCompleted(event2));
+        assertFalse(instance.isTriggered(event, project));
+        assertFalse(instance.isTriggered(event2, project1));
+        instance.forget(event2);
+        assertTrue(instance.isBuilding(event));
+    }
+
+    /**
+     * Tests {@link MemoryImprint#getVerdict()} with one failed, one successful and one running build.
+     */
+    @Test
+    public void testGetVerdict() {
+        PatchsetCreated event = Setup.createPatchsetCreated();
+        BuildMemory instance = new BuildMemory();
+        AbstractBuild build1 = build;
+        when(build1.getResult()).thenReturn(Result.FAILURE);
+        instance.started(event, build1);
+        setup();
+        AbstractBuild build2 = build;
+        when(build2.getResult()).thenReturn(Result.SUCCESS);
+        instance.started(event, build2);
+        setup();
+        instance.started(event, build);
+
+        MemoryImprint imprint = instance.getMemoryImprint(event);
+        BuildsVerdict verdict = imprint.getVerdict();
+        assertEquals(3, verdict.getTotalBuilds());
+        assertEquals(3, verdict.getStartedBuilds());
+        assertEquals(0, verdict.getCompletedBuilds());
+        assertFalse(verdict.isAnyBuildsFailed());
+
+        instance.completed(event, build1);
+        instance.completed(event, build2);
+        verdict = imprint.getVerdict();
+        assertEquals(2, verdict.getCompletedBuilds());
+        assertFalse(verdict.isAllBuildsCompleted());
+        assertFalse(verdict.isAllBuildsSuccessful());
+        assertTrue(verdict.isAnyBuildsFailed());
+        assertFalse(verdict.isAnyBuildsUnstable());
+        assertFalse(verdict.isAllBuildsNotBuilt());
+        assertEquals(Result.FAILURE, verdict.getResult());
+        assertEquals(imprint.wereAnyBuildsFailed(), verdict.isAnyBuildsFailed());
+        assertEquals(imprint.isAllBuildsCompleted(), verdict.isAllBuildsCompleted());
+    }
+
+    /**
+     * Tests that the memory follows a job that is renamed.
+     */
+    @Test
+    public void testOnJobRenamed() {
+        PatchsetCreated event = Setup.createPatchsetCreated();
+        BuildMemory instance = new BuildMemory();
+        instance.started(event, build);
+
+        String oldName = project.getFullName();
+        doReturn("RenamedProject").when(project).getFullName();
+        assertFalse(instance.isBuilding(event, project));
+
+        instance.onJobRenamed(oldName, "RenamedProject");
+        assertTrue(instance.isBuilding(event, project));
+        assertSame(build, instance.getBuilds(event).get(0));
+    }
+
+    /**
+     * Tests that the memory does not keep handing out a job that is deleted.
+     */
+    @Test
+    public void testOnJobDeleted() {
+        PatchsetCreated event = Setup.createPatchsetCreated();
+        BuildMemory instance = new BuildMemory();
+        instance.started(event, build);
+        assertSame(project, instance.getMemoryImprint(event).getEntries()[0].getProject());
+
+        when(jenkins.getItemByFullName(eq(project.getFullName()), same(Job.class))).thenReturn(null);
+        instance.onJobDeleted(project.getFullName());
+        assertNull(instance.getMemoryImprint(event).getEntries()[0].getProject());
+        assertTrue(instance.getBuilds(event).isEmpty());
+    }
+
+    /**
+     * Tests {@link BuildMemory#forgetIfAllBuildsCompleted(GerritTriggeredEvent)}.
+     */
+    @Test
+    public void testForgetIfAllBuildsCompleted() {
+        PatchsetCreated event = Setup.createPatchsetCreated();
+        BuildMemory instance = new BuildMemory();
+
+        AbstractBuild build1 = build;
+        instance.started(event, build1);
+        setup();
+        instance.started(event, build);
+
+        instance.completed(event, build1);
+        assertNull(instance.forgetIfAllBuildsCompleted(event));
+        assertTrue(instance.isBuilding(event));
+
+        instance.completed(event, build);
+        MemoryImprint imprint = instance.forgetIfAllBuildsCompleted(event);
+        assertNotNull(imprint);
+        assertEquals(2, imprint.getEntries().length);
+        assertFalse(instance.isBuilding(event));
+        assertNull(instance.forgetIfAllBuildsCompleted(event));
+    }
+
+    /**
+     * Runs the lifecycle of many events concurrently on 32 executors, one project per executor, and verifies
+     * that every build is accounted for and that exactly one executor gets to report each event.
+     *
+     * @throws Exception if so
+     */
+    @Test(timeout = 60000)
+    public void testConcurrentExecutors() throws Exception {
+        final int executors = 32;
+        final int eventCount = 200;
+        final AbstractProject[] projects = new AbstractProject[executors];
+        final AbstractBuild[] builds = new AbstractBuild[executors];
+        for (int i = 0; i < executors; i++) {
+            setup();
+            projects[i] = project;
+            builds[i] = build;
+        }
+        final PatchsetCreated[] events = new PatchsetCreated[eventCount];
+        for (int i = 0; i < eventCount; i++) {
+            events[i] = Setup.createPatchsetCreated();
+        }
+        final BuildMemory instance = new BuildMemory();
+        final AtomicInteger[] reported = new AtomicInteger[eventCount];
+        for (int i = 0; i < eventCount; i++) {
+            reported[i] = new AtomicInteger();
+        }
+        final CyclicBarrier allTriggered = new CyclicBarrier(executors);
+
+        ExecutorService pool = Executors.newFixedThreadPool(executors);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < executors; i++) {
+                final int executor = i;
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (PatchsetCreated event : events) {
+                            instance.triggered(event, projects[executor]);
+                        }
+                        allTriggered.await();
+                        for (int e = 0; e < eventCount; e++) {
+                            instance.started(events[e], builds[executor]);
+                            instance.isBuilding(events[e], projects[executor]);
+                            instance.completed(events[e], builds[executor]);
+                            if (instance.forgetIfAllBuildsCompleted(events[e]) != null) {
+                                reported[e].incrementAndGet();
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (int i = 0; i < eventCount; i++) {
+            assertEquals("Event " + i + " reported", 1, reported[i].get());
+            assertFalse(instance.isBuilding(events[i]));
+        }
+    }
+
+    /**
+     * Tests that a project triggered for an event after its memory was forgotten is remembered in a new memory.
+     */
+    @Test
+    public void testTriggeredAfterForgetIfAllBuildsCompleted() {
+        PatchsetCreated event = Setup.createPatchsetCreated();
+        BuildMemory instance = new BuildMemory();
+        instance.triggered(event, project);
+        instance.completed(event, build);
+        MemoryImprint forgotten = instance.forgetIfAllBuildsCompleted(event);
+        assertNotNull(forgotten);
+
+        setup();
+        instance.triggered(event, project);
+        MemoryImprint imprint = instance.getMemoryImprint(event);
+        assertNotNull(imprint);
+        assertNotSame(forgotten, imprint);
+        assertEquals(1, forgotten.getEntries().length);
+        assertTrue(instance.isBuilding(event, project));
+    }
+
+    /**
+     * Triggers a project for an event at the same time as the memory of the event is forgotten,
+     * and verifies that the triggered project is never lost in the forgotten memory.
+     *
+     * @throws Exception if so
+     */
+    @Test(timeout = 60000)
+    public void testTriggeredConcurrentlyWithForgetIfAllBuildsCompleted() throws Exception {
+        final int rounds = 500;
+        final AbstractProject firstProject = project;
+        final AbstractBuild firstBuild = build;
+        setup();
+        final AbstractProject secondProject = project;
+        final BuildMemory instance = new BuildMemory();
+        final CyclicBarrier bothReady = new CyclicBarrier(2);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < rounds; i++) {
+                final PatchsetCreated event = Setup.createPatchsetCreated();
+                instance.triggered(event, firstProject);
+                instance.completed(event, firstBuild);
+                Future<?> forget = pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        bothReady.await();
+                        instance.forgetIfAllBuildsCompleted(event);
+                        return null;
+                    }
+                });
+                Future<?> trigger = pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        bothReady.await();
+                        instance.triggered(event, secondProject);
+                        return null;
+                    }
+                });
+                forget.get();
+                trigger.get();
+                assertTrue("Round " + i, instance.isBuilding(event, secondProject));
+                instance.forget(event);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
     /**
      * Tests the isBuilding method of the class {@link BuildMemory}.
      * With one memories.
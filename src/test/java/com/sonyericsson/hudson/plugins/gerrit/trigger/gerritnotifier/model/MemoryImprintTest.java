@@ -38,12 +38,16 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.same;
 import static org.powermock.api.mockito.PowerMockito.doReturn;
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 
 /**
@@ -171,4 +175,19 @@ public class MemoryImprintTest {
         assertNull(imprint.getEntries()[1].getBuild());
         assertFalse(imprint.getEntries()[0].isBuildCompleted());
     }
+
+    /**
+     * Tests that an entry keeps the resolved project and build instead of looking them up on every call.
+     */
+    @Test
+    public void testEntryKeepsResolvedReferences() {
+        BuildMemory.MemoryImprint imprint = new BuildMemory.MemoryImprint(Setup.createPatchsetCreated());
+        imprint.set(project, build);
+        BuildMemory.MemoryImprint.Entry entry = imprint.getEntries()[0];
+        assertSame(project, entry.getProject());
+        assertSame(build, entry.getBuild());
+        assertSame(build, entry.getBuild());
+        verify(jenkins, never()).getItemByFullName(anyString(), same(Job.class));
+        verify(project, never()).getBuild(anyString());
+    }
 }
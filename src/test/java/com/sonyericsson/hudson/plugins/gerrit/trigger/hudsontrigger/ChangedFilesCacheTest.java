@@ -0,0 +1,164 @@
+/*
+ *  The MIT License
+ *
+ *  Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.config.IGerritHudsonTriggerConfig;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
+import com.sonymobile.tools.gerrit.gerritevents.GerritQueryHandler;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: Test data.
+
+/**
+ * Tests for {@link ChangedFilesCache}.
+ */
+public class ChangedFilesCacheTest {
+
+    private final IGerritHudsonTriggerConfig config = mock(IGerritHudsonTriggerConfig.class);
+
+    /**
+     * Creates an event that answers the given files when queried.
+     *
+     * @param change the change number.
+     * @param patchSet the patch set number.
+     * @param files the files.
+     * @return the event.
+     */
+    private PatchsetCreated createEvent(String change, String patchSet, List<String> files) {
+        PatchsetCreated event = spy(Setup.createPatchsetCreated(PluginImpl.DEFAULT_SERVER_NAME, "project", "ref"));
+        event.getChange().setNumber(change);
+        event.getPatchSet().setNumber(patchSet);
+        doReturn(files).when(event).getFiles(any(GerritQueryHandler.class));
+        return event;
+    }
+
+    /**
+     * Tests that the files of a patch set are only queried once for different events and that
+     * the statistics are counted.
+     */
+    @Test
+    public void testQueriedOncePerPatchSet() {
+        ChangedFilesCache cache = new ChangedFilesCache(10, 1, TimeUnit.HOURS);
+        List<String> files = Arrays.asList("a.txt", "b.txt");
+        PatchsetCreated first = createEvent("1000", "1", files);
+        PatchsetCreated second = createEvent("1000", "1", Arrays.asList("other.txt"));
+        PatchsetCreated next = createEvent("1000", "2", Arrays.asList("c.txt"));
+
+        assertEquals(files, cache.getFiles(first, config));
+        assertEquals(files, cache.getFiles(second, config));
+        assertEquals(Arrays.asList("c.txt"), cache.getFiles(next, config));
+
+        verify(first, times(1)).getFiles(any(GerritQueryHandler.class));
+        verify(second, times(0)).getFiles(any(GerritQueryHandler.class));
+        assertEquals(1, cache.getStats().hitCount());
+        assertEquals(2, cache.getStats().missCount());
+        assertEquals(2, cache.getSize());
+    }
+
+    /**
+     * Tests that a patch set without files is not cached.
+     */
+    @Test
+    public void testNullFilesNotCached() {
+        ChangedFilesCache cache = new ChangedFilesCache(10, 1, TimeUnit.HOURS);
+        assertNull(cache.getFiles(createEvent("1000", "1", null), config));
+        assertEquals(0, cache.getSize());
+    }
+
+    /**
+     * Tests that concurrent requests for the same patch set wait for the one query in flight.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testSingleFlight() throws Exception {
+        final ChangedFilesCache cache = new ChangedFilesCache(10, 1, TimeUnit.HOURS);
+        final List<String> files = Arrays.asList("a.txt");
+        final AtomicInteger queries = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        int threads = 8;
+        List<PatchsetCreated> events = new ArrayList<PatchsetCreated>();
+        for (int i = 0; i < threads; i++) {
+            PatchsetCreated event = createEvent("1000", "1", files);
+            doAnswer(new Answer<List<String>>() {
+                @Override
+                public List<String> answer(InvocationOnMock invocation) throws Throwable {
+                    queries.incrementAndGet();
+                    started.countDown();
+                    release.await();
+                    return files;
+                }
+            }).when(event).getFiles(any(GerritQueryHandler.class));
+            events.add(event);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+            for (final PatchsetCreated event : events) {
+                results.add(executor.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() throws Exception {
+                        return cache.getFiles(event, config);
+                    }
+                }));
+            }
+            started.await(10, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<List<String>> result : results) {
+                assertEquals(files, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, queries.get());
+    }
+}
@@ -21,6 +21,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.doNothing;
 import static org.powermock.api.mockito.PowerMockito.doReturn;
@@ -126,6 +127,24 @@ public class EventListenerTest {
         verify(listener).schedule(same(trigger), isExactClass(GerritCause.class), same(commentAdded));
     }
 
+    /**
+     * Tests that {@link EventListener#gerritEvent(com.sonymobile.tools.gerrit.gerritevents.dto.events.CommentAdded)}
+     * stops at the comment match, before the trigger is asked if the event is interesting.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testGerritEventCommentAddedNoMatch() throws Exception {
+        CommentAdded commentAdded = Setup.createCommentAdded();
+        when(trigger.commentAddedMatch(same(commentAdded))).thenReturn(false);
+
+        handler.notifyListeners(commentAdded);
+        verify(listener).gerritEvent(same(commentAdded));
+        verify(trigger).commentAddedMatch(same(commentAdded));
+        verify(trigger, never()).isInteresting(same(commentAdded));
+        verify(listener, never()).schedule(same(trigger), any(GerritCause.class), same(commentAdded));
+    }
+
     /**
      * Matcher that tests the exact class name of a method argument.
      *
@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.GerritProject;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.text.ParseException;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link GerritDynamicUrlCache}.
+ */
+//CS IGNORE MagicNumber FOR NEXT 200 LINES. REASON: Test data.
+public class GerritDynamicUrlCacheTest {
+
+    private static final int PORT = 8092;
+    private static final String PATH = "/trigger.config";
+    private static final String URL = "http://localhost:" + PORT + PATH;
+    private static final String ETAG = "\"v1\"";
+
+    /**
+     * The local HTTP stub.
+     */
+    // CS IGNORE VisibilityModifier FOR NEXT 2 LINES. REASON: WireMockRule.
+    @Rule
+    public final WireMockRule wireMockRule = new WireMockRule(PORT);
+
+    private final GerritDynamicUrlCache cache = new GerritDynamicUrlCache();
+
+    /**
+     * Tests that the jobs fetching the same URL within the max age share one request.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testFetchIsShared() throws Exception {
+        stubConfig("p=project\nb=master\n");
+
+        List<GerritProject> first = cache.fetch(URL, 60000);
+        List<GerritProject> second = cache.fetch(URL, 60000);
+
+        assertSame(first, second);
+        assertEquals(1, first.size());
+        verify(1, getRequestedFor(urlEqualTo(PATH)));
+        GerritDynamicUrlCache.Source source = cache.getSources().get(0);
+        assertEquals(2, source.getLookupCount());
+        assertEquals(1, source.getRequestCount());
+        assertEquals(50, source.getHitRatePercent());
+    }
+
+    /**
+     * Tests that the ETag is sent back and the content is not parsed again when it is not modified.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testNotModifiedKeepsProjects() throws Exception {
+        stubConfig("p=project\nb=master\n");
+        stubFor(get(urlEqualTo(PATH)).withHeader("If-None-Match", equalTo(ETAG))
+                .willReturn(aResponse().withStatus(HttpURLConnection.HTTP_NOT_MODIFIED)));
+
+        List<GerritProject> first = cache.fetch(URL, 0);
+        List<GerritProject> second = cache.fetch(URL, 0);
+
+        assertSame(first, second);
+        verify(2, getRequestedFor(urlEqualTo(PATH)));
+        verify(1, getRequestedFor(urlEqualTo(PATH)).withHeader("If-None-Match", equalTo(ETAG)));
+        GerritDynamicUrlCache.Source source = cache.getSources().get(0);
+        assertEquals(1, source.getNotModifiedCount());
+        assertEquals(1, source.getParseCount());
+    }
+
+    /**
+     * Tests that the projects are kept when the same content is returned, and replaced when it changes.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testContentChanged() throws Exception {
+        stubFor(get(urlEqualTo(PATH)).willReturn(aResponse().withStatus(HttpURLConnection.HTTP_OK)
+                .withBody("p=project\n")));
+
+        List<GerritProject> first = cache.fetch(URL, 0);
+        assertSame(first, cache.fetch(URL, 0));
+
+        stubFor(get(urlEqualTo(PATH)).willReturn(aResponse().withStatus(HttpURLConnection.HTTP_OK)
+                .withBody("p=project\np=other\n")));
+        List<GerritProject> changed = cache.fetch(URL, 0);
+
+        assertNotSame(first, changed);
+        assertEquals(2, changed.size());
+        GerritDynamicUrlCache.Source source = cache.getSources().get(0);
+        assertEquals(1, source.getUnchangedCount());
+        assertEquals(2, source.getParseCount());
+    }
+
+    /**
+     * Tests that a parse failure is shared with the jobs fetching within the max age.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testFailureIsShared() throws Exception {
+        stubConfig("x=broken\n");
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.fetch(URL, 60000);
+                fail("Expected a ParseException");
+            } catch (ParseException e) {
+                assertEquals(1, e.getErrorOffset());
+            }
+        }
+        verify(1, getRequestedFor(urlEqualTo(PATH)));
+        assertEquals(1, cache.getSources().get(0).getFailureCount());
+    }
+
+    /**
+     * Stubs the configuration with an ETag.
+     *
+     * @param body the configuration.
+     */
+    private void stubConfig(String body) {
+        stubFor(get(urlEqualTo(PATH)).willReturn(aResponse().withStatus(HttpURLConnection.HTTP_OK)
+                .withHeader("ETag", ETAG).withBody(body)));
+    }
+}
@@ -25,22 +25,35 @@
 
 package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
 
+import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritEventSubscriptions;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.Branch;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.CompareType;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.GerritProject;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.events.PluginChangeMergedEvent;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.events.PluginGerritEvent;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeMerged;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.powermock.reflect.Whitebox;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Arrays;
 
 /**
@@ -53,6 +66,11 @@ public class GerritProjectListTest {
      */
     private static List<GerritTrigger> gerritTriggers;
 
+    /**
+     * Triggers added with {@link GerritProjectList#addTrigger(GerritTrigger)} by the routing tests.
+     */
+    private List<GerritTrigger> routedTriggers = new ArrayList<GerritTrigger>();
+
     /**
      * Creates GerritProject.
      * @param pattern the Gerrit project pattern.
@@ -119,6 +137,39 @@ public class GerritProjectListTest {
           GerritProjectList.removeTriggerFromProjectList(gerritTrigger);
         }
         gerritTriggers = null;
+        for (GerritTrigger trigger : routedTriggers) {
+            GerritProjectList.removeTriggerFromProjectList(trigger);
+        }
+        routedTriggers.clear();
+    }
+
+    /**
+     * Creates a trigger with one project rule on all branches and adds it to the index.
+     *
+     * @param serverName the server the trigger listens to.
+     * @param compareType the type of the project pattern.
+     * @param pattern the project pattern.
+     * @return the trigger.
+     */
+    private GerritTrigger addRoutedTrigger(String serverName, CompareType compareType, String pattern) {
+        GerritTrigger trigger = Setup.createDefaultTrigger(null);
+        trigger.setServerName(serverName);
+        trigger.setGerritProjects(Collections.singletonList(new GerritProject(compareType, pattern,
+                Collections.singletonList(new Branch(CompareType.ANT, "**")), null, null, null, false)));
+        GerritProjectList.addTrigger(trigger);
+        routedTriggers.add(trigger);
+        return trigger;
+    }
+
+    /**
+     * The triggers that an event on the project of the default server is routed to.
+     *
+     * @param project the Gerrit project of the event.
+     * @return the candidate triggers.
+     */
+    private Collection<GerritTrigger> candidates(String project) {
+        PatchsetCreated event = Setup.createPatchsetCreated(PluginImpl.DEFAULT_SERVER_NAME, project, "ref");
+        return GerritProjectList.getInstance().getCandidates(event);
     }
 
     /**
@@ -216,4 +267,121 @@ public class GerritProjectListTest {
             assertEquals(projectNumbers.get(gerritPattern), (Integer)trigs.size());
         }
     }
+
+    /**
+     * Tests that plain project rules are looked up case insensitively,
+     * the same way as {@link CompareType#PLAIN} matches.
+     */
+    @Test
+    public void testRoutePlainProject() {
+        GerritTrigger trigger = addRoutedTrigger(PluginImpl.DEFAULT_SERVER_NAME, CompareType.PLAIN, "Test/Project1");
+        assertTrue(candidates("test/project1").contains(trigger));
+        assertFalse(candidates("test/project2").contains(trigger));
+    }
+
+    /**
+     * Tests that ant project rules are looked up on their first path segment
+     * and that rules starting with a wildcard are always candidates.
+     */
+    @Test
+    public void testRouteAntProject() {
+        GerritTrigger prefixed = addRoutedTrigger(PluginImpl.DEFAULT_SERVER_NAME, CompareType.ANT, "platform/**");
+        GerritTrigger wildcard = addRoutedTrigger(PluginImpl.DEFAULT_SERVER_NAME, CompareType.ANT, "**/tools");
+        assertTrue(candidates("platform/build").contains(prefixed));
+        assertFalse(candidates("device/build").contains(prefixed));
+        assertTrue(candidates("device/build").contains(wildcard));
+    }
+
+    /**
+     * Tests that regular expression project rules are always candidates.
+     */
+    @Test
+    public void testRouteRegExpProject() {
+        GerritTrigger trigger = addRoutedTrigger(PluginImpl.DEFAULT_SERVER_NAME, CompareType.REG_EXP, "plat.*");
+        assertTrue(candidates("platform/build").contains(trigger));
+        assertTrue(candidates("device/build").contains(trigger));
+    }
+
+    /**
+     * Tests that the triggers are filtered on server and on the event types they trigger on.
+     */
+    @Test
+    public void testRouteServerAndEventType() {
+        GerritTrigger other = addRoutedTrigger("otherServer", CompareType.PLAIN, "project");
+        GerritTrigger any = addRoutedTrigger(GerritServer.ANY_SERVER, CompareType.PLAIN, "project");
+        GerritTrigger merged = Setup.createDefaultTrigger(null);
+        Whitebox.setInternalState(merged, "triggerOnEvents",
+                Collections.<PluginGerritEvent>singletonList(new PluginChangeMergedEvent()));
+        merged.setGerritProjects(any.getGerritProjects());
+        GerritProjectList.addTrigger(merged);
+        routedTriggers.add(merged);
+
+        Collection<GerritTrigger> found = candidates("project");
+        assertFalse(found.contains(other));
+        assertTrue(found.contains(any));
+        assertFalse(found.contains(merged));
+    }
+
+    /**
+     * Tests that a trigger is replaced in the index when it is added again and that it is only a candidate once.
+     */
+    @Test
+    public void testAddTriggerReplaces() {
+        GerritTrigger trigger = addRoutedTrigger(PluginImpl.DEFAULT_SERVER_NAME, CompareType.PLAIN, "project");
+        trigger.setGerritProjects(Arrays.asList(
+                new GerritProject(CompareType.PLAIN, "other", null, null, null, null, false),
+                new GerritProject(CompareType.ANT, "other/**", null, null, null, null, false)));
+        assertFalse(candidates("project").contains(trigger));
+        Collection<GerritTrigger> found = candidates("other");
+        assertTrue(found.contains(trigger));
+        assertEquals(1, found.size());
+    }
+
+    /**
+     * Tests that an event is only routed to the few triggers that could be interested in it
+     * and not to every trigger in the index, which was the cost of dispatching an event before.
+     */
+    @Test
+    public void testRouteOnlyToCandidates() {
+        //CS IGNORE MagicNumberCheck FOR NEXT 10 LINES. REASON: Test input
+        for (int i = 0; i < 1000; i++) {
+            addRoutedTrigger(PluginImpl.DEFAULT_SERVER_NAME, CompareType.PLAIN, "project" + i);
+            addRoutedTrigger(PluginImpl.DEFAULT_SERVER_NAME, CompareType.ANT, "path" + i + "/**");
+        }
+        GerritTrigger regexp = addRoutedTrigger(PluginImpl.DEFAULT_SERVER_NAME, CompareType.REG_EXP, "project.*");
+        assertEquals(2, candidates("project42").size());
+        assertEquals(2, candidates("path42/sub").size());
+        assertEquals(Collections.singleton(regexp), new HashSet<GerritTrigger>(candidates("unknown")));
+    }
+
+    /**
+     * Tests that the subscribed event types of a server follow the triggers added to and removed from the index,
+     * and that dropped events are counted per type.
+     */
+    @Test
+    public void testSubscribedEventTypes() {
+        String serverName = "subscriptionServer";
+        GerritEventSubscriptions subscriptions = new GerritEventSubscriptions();
+        ChangeMerged event = Setup.createChangeMerged(serverName, "project", "ref");
+        assertFalse(subscriptions.isSubscribed(serverName, event));
+
+        GerritTrigger trigger = addRoutedTrigger(serverName, CompareType.PLAIN, "project");
+        assertFalse(subscriptions.isSubscribed(serverName, event));
+        Whitebox.setInternalState(trigger, "triggerOnEvents",
+                Collections.<PluginGerritEvent>singletonList(new PluginChangeMergedEvent()));
+        GerritProjectList.updateTrigger(trigger);
+        assertTrue(subscriptions.isSubscribed(serverName, event));
+        assertFalse(subscriptions.isSubscribed("otherServer", event));
+
+        GerritProjectList.removeTriggerFromProjectList(trigger);
+        assertFalse(subscriptions.isSubscribed(serverName, event));
+
+        subscriptions.onDropped(event);
+        subscriptions.onDropped(event);
+        subscriptions.onDropped(Setup.createPatchsetCreated(serverName, "project", "ref"));
+        //CS IGNORE MagicNumber FOR NEXT 3 LINES. REASON: Test data.
+        assertEquals(Long.valueOf(2), subscriptions.getDroppedCounts().get("change-merged"));
+        assertEquals(Long.valueOf(1), subscriptions.getDroppedCounts().get("patchset-created"));
+        assertEquals(3, subscriptions.getDroppedCount());
+    }
 }
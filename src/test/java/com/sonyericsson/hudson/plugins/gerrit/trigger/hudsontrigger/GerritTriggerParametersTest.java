@@ -27,20 +27,28 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.MockGerritHudsonTriggerConfig;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.parameters.Base64EncodedStringParameterValue;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
 import hudson.model.AbstractProject;
 import hudson.model.ParameterValue;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
 import hudson.model.StringParameterValue;
+import org.apache.commons.codec.binary.Base64;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -128,6 +136,75 @@ public class GerritTriggerParametersTest {
         assertTrue(param.value.startsWith(config.getGerritFrontEndUrl()));
     }
 
+    /**
+     * Tests that {@link GerritParameterTemplate#createParameters(GerritTriggeredEvent, hudson.model.Job)}
+     * creates the same parameters as setting them on the default values one by one,
+     * for an event with a large commit message that is Base64 encoded.
+     *
+     * @throws Exception if so
+     */
+    @Test
+    public void templateCreatesSameParametersAsDefaultValues() throws Exception {
+        PatchsetCreated created = Setup.createPatchsetCreated();
+        StringBuilder commitMessage = new StringBuilder("Large change\n\n");
+        //CS IGNORE MagicNumber FOR NEXT 3 LINES. REASON: Test data.
+        for (int i = 0; i < 5000; i++) {
+            commitMessage.append("Line ").append(i).append(" of a \"quoted\" commit message åäö\n");
+        }
+        created.getChange().setCommitMessage(commitMessage.toString());
+        AbstractProject project = j.createFreeStyleProject();
+        Setup.createDefaultTrigger(project);
+        project.addProperty(new ParametersDefinitionProperty(
+                new StringParameterDefinition("OTHER", "other value", "Not a Gerrit parameter"),
+                new StringParameterDefinition("gerrit_branch", "my branch", "The branch")));
+
+        List<ParameterValue> expected = new ArrayList<ParameterValue>();
+        expected.add(new StringParameterValue("OTHER", "other value", "Not a Gerrit parameter"));
+        expected.add(new StringParameterValue("gerrit_branch", "my branch", "The branch"));
+        GerritTriggerParameters.setOrCreateParameters(created, project, expected);
+
+        List<ParameterValue> parameters = GerritParameterTemplate.forJob(project).createParameters(created, project);
+        assertEquals(expected.size(), parameters.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ParameterValue e = expected.get(i);
+            ParameterValue p = parameters.get(i);
+            assertEquals(e.getClass(), p.getClass());
+            assertEquals(e.getName(), p.getName());
+            assertEquals(((StringParameterValue)e).value, ((StringParameterValue)p).value);
+            assertEquals(e.getDescription(), p.getDescription());
+        }
+        StringParameterValue message = findParameter(GerritTriggerParameters.GERRIT_CHANGE_COMMIT_MESSAGE, parameters);
+        assertTrue(message instanceof Base64EncodedStringParameterValue);
+        assertEquals(commitMessage.toString(), new String(Base64.decodeBase64(message.value), "UTF-8"));
+        StringParameterValue branch = findParameter(GerritTriggerParameters.GERRIT_BRANCH, parameters);
+        assertEquals(created.getChange().getBranch(), branch.value);
+        assertEquals("The branch", branch.getDescription());
+    }
+
+    /**
+     * Tests that the compiled {@link GerritParameterTemplate} of a job is reused
+     * until its parameter definitions are replaced or it is invalidated.
+     *
+     * @throws Exception if so
+     */
+    @Test
+    public void templateIsCompiledOncePerDefinitions() throws Exception {
+        AbstractProject project = j.createFreeStyleProject();
+        GerritParameterTemplate template = GerritParameterTemplate.forJob(project);
+        assertSame(template, GerritParameterTemplate.forJob(project));
+        assertEquals(0, template.getOverrideCount());
+
+        project.addProperty(new ParametersDefinitionProperty(
+                new StringParameterDefinition("GERRIT_PROJECT", "", "The project")));
+        GerritParameterTemplate compiled = GerritParameterTemplate.forJob(project);
+        assertNotSame(template, compiled);
+        assertEquals(1, compiled.getOverrideCount());
+        assertSame(compiled, GerritParameterTemplate.forJob(project));
+
+        GerritParameterTemplate.invalidate(project);
+        assertNotSame(compiled, GerritParameterTemplate.forJob(project));
+    }
+
     /**
      * Finds the given parameter in the list.
      *
@@ -0,0 +1,195 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link GerritTriggerTimer} and {@link GerritTriggerTimerTask}.
+ */
+public class GerritTriggerTimerTest {
+
+    private static final String JOB = "project/job";
+    private static final long DELAY = 200;
+    private static final long PERIOD = 1000;
+    private static final long SHORT_PERIOD = 50;
+    private static final long SLACK = 250;
+    private static final long WAIT_SECONDS = 5;
+    private static final int BEHIND_PERIODS = 2;
+    private static final int WAIT_PERIODS = 4;
+
+    /**
+     * Tests that the first run of a scheduled task lands after the initial delay,
+     * within one refresh interval of jitter.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testFirstRunIsDelayedWithinOnePeriod() throws Exception {
+        GerritTriggerTimer timer = new GerritTriggerTimer(DELAY);
+        final CountDownLatch ran = new CountDownLatch(1);
+        final AtomicLong ranAt = new AtomicLong();
+        GerritTrigger trigger = mock(GerritTrigger.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ranAt.set(System.currentTimeMillis());
+                ran.countDown();
+                return null;
+            }
+        }).when(trigger).updateTriggerConfigURL();
+        GerritTriggerTimerTask task = createTask(trigger);
+
+        long scheduledAt = System.currentTimeMillis();
+        timer.schedule(task, PERIOD);
+        assertTrue(ran.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        task.cancel();
+
+        long firstRun = ranAt.get() - scheduledAt;
+        assertTrue("First run after " + firstRun + " ms", firstRun >= DELAY);
+        assertTrue("First run after " + firstRun + " ms", firstRun < DELAY + PERIOD + SLACK);
+        assertEquals(1, timer.getRefreshCount());
+    }
+
+    /**
+     * Tests that a second task for the same job is skipped while the refresh of the first is running,
+     * and runs again once it is done.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testSameJobIsSkippedWhileInFlight() throws Exception {
+        GerritTriggerTimer timer = new GerritTriggerTimer(DELAY);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        GerritTrigger first = mock(GerritTrigger.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                release.await(WAIT_SECONDS, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(first).updateTriggerConfigURL();
+        final GerritTriggerTimerTask firstTask = createTask(first);
+        GerritTrigger second = mock(GerritTrigger.class);
+        GerritTriggerTimerTask secondTask = createTask(second);
+        long now = System.currentTimeMillis();
+        firstTask.setSchedule(timer, now, PERIOD);
+        secondTask.setSchedule(timer, now, PERIOD);
+
+        Thread refresh = new Thread(firstTask);
+        refresh.start();
+        assertTrue(started.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        secondTask.run();
+        verify(second, never()).updateTriggerConfigURL();
+        assertEquals(1, timer.getSkippedInFlightCount());
+
+        release.countDown();
+        refresh.join(TimeUnit.SECONDS.toMillis(WAIT_SECONDS));
+        secondTask.run();
+        verify(second, times(1)).updateTriggerConfigURL();
+        assertEquals(1, timer.getSkippedInFlightCount());
+    }
+
+    /**
+     * Tests that a run that starts one refresh interval or more after it was due is skipped and counted.
+     */
+    @Test
+    public void testRunBehindIsSkipped() {
+        GerritTriggerTimer timer = new GerritTriggerTimer(DELAY);
+        GerritTrigger trigger = mock(GerritTrigger.class);
+        GerritTriggerTimerTask task = createTask(trigger);
+        task.setSchedule(timer, System.currentTimeMillis() - BEHIND_PERIODS * PERIOD, PERIOD);
+
+        task.run();
+        verify(trigger, never()).updateTriggerConfigURL();
+        assertEquals(1, timer.getSkippedBehindCount());
+        assertEquals(0, timer.getRefreshCount());
+        assertTrue(task.getLastLagMillis() >= BEHIND_PERIODS * PERIOD);
+    }
+
+    /**
+     * Tests that a cancelled task is not run again.
+     *
+     * @throws Exception if so.
+     */
+    @Test
+    public void testCancelStopsFurtherRuns() throws Exception {
+        GerritTriggerTimer timer = new GerritTriggerTimer(0);
+        final CountDownLatch ran = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        GerritTrigger trigger = mock(GerritTrigger.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                runs.incrementAndGet();
+                ran.countDown();
+                return null;
+            }
+        }).when(trigger).updateTriggerConfigURL();
+        GerritTriggerTimerTask task = createTask(trigger);
+        timer.schedule(task, SHORT_PERIOD);
+        assertEquals(1, timer.getTaskCount());
+        assertTrue(ran.await(WAIT_SECONDS, TimeUnit.SECONDS));
+
+        task.cancel();
+        assertEquals(0, timer.getTaskCount());
+        //A run that was already started when cancelling may still finish.
+        Thread.sleep(SHORT_PERIOD);
+        int runsAfterCancel = runs.get();
+        Thread.sleep(WAIT_PERIODS * SHORT_PERIOD);
+        assertEquals(runsAfterCancel, runs.get());
+    }
+
+    /**
+     * Creates a task for {@link #JOB} that refreshes the given trigger.
+     *
+     * @param trigger the trigger.
+     * @return the task, not scheduled yet.
+     */
+    private GerritTriggerTimerTask createTask(final GerritTrigger trigger) {
+        return new GerritTriggerTimerTask(JOB) {
+            @Override
+            public GerritTrigger getGerritTrigger() {
+                return trigger;
+            }
+        };
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
+import hudson.model.AbstractBuild;
+import hudson.model.Cause;
+import hudson.model.Executor;
+import hudson.model.Run;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link TriggeredBuildIndex}.
+ */
+public class TriggeredBuildIndexTest {
+
+    private TriggeredBuildIndex index;
+    private PatchsetCreated event;
+
+    /**
+     * Creates an empty index and an event.
+     */
+    @Before
+    public void setUp() {
+        index = new TriggeredBuildIndex();
+        event = Setup.createPatchsetCreated();
+    }
+
+    /**
+     * Tests that a started build is found by the event that caused it, with its executor.
+     */
+    @Test
+    public void testStartedBuildIsFound() {
+        Run run = createRun(new GerritCause(event, false));
+        Executor executor = mock(Executor.class);
+
+        index.started(run, executor);
+
+        Map<Run, Executor> runs = index.getRuns(event);
+        assertEquals(1, runs.size());
+        assertSame(executor, runs.get(run));
+        assertEquals(1, index.size());
+    }
+
+    /**
+     * Tests that events are told apart by identity, like the causes of a build refer to them.
+     */
+    @Test
+    public void testEventsAreComparedByIdentity() {
+        index.started(createRun(new GerritCause(event, false)), null);
+
+        assertTrue(index.getRuns(Setup.createPatchsetCreated()).isEmpty());
+    }
+
+    /**
+     * Tests that a finished build is forgotten.
+     */
+    @Test
+    public void testFinishedBuildIsForgotten() {
+        Run run = createRun(new GerritCause(event, false));
+        index.started(run, null);
+
+        index.finished(run);
+
+        assertTrue(index.getRuns(event).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * Tests that a build caused by several events is found by each of them, and builds without a Gerrit cause
+     * are ignored.
+     */
+    @Test
+    public void testBuildOfSeveralEvents() {
+        PatchsetCreated other = Setup.createPatchsetCreated();
+        Run run = createRun(new GerritCause(event, false), new GerritCause(other, false));
+        index.started(run, null);
+        index.started(createRun(new Cause.RemoteCause("host", "note")), null);
+
+        assertTrue(index.getRuns(event).containsKey(run));
+        assertTrue(index.getRuns(other).containsKey(run));
+        assertEquals(2, index.size());
+    }
+
+    /**
+     * Creates a build with some causes.
+     *
+     * @param causes the causes.
+     * @return the build.
+     */
+    private static Run createRun(Cause... causes) {
+        AbstractBuild run = mock(AbstractBuild.class);
+        when(run.getCauses()).thenReturn(Collections.unmodifiableList(Arrays.asList(causes)));
+        return run;
+    }
+}
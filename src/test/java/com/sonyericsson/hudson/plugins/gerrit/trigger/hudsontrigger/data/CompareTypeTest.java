@@ -0,0 +1,112 @@
+/*
+ *  The MIT License
+ *
+ *  Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data;
+
+import hudson.util.FormValidation;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link CompareType#compile(String)}.
+ */
+public class CompareTypeTest {
+
+    private static final List<String> PATTERNS = Arrays.asList(
+            "platform/build", "Platform/Build", "platform/**", "**/build", "platform/*/src/**",
+            "master", "release/*", "refs/heads/**", "src/main/java/**/*.java", "**/*.xml", "*.txt",
+            "platform/.*", ".*build", "release-[0-9]+", "(master|develop)");
+
+    private static final List<String> STRINGS = Arrays.asList(
+            "platform/build", "PLATFORM/build", "platform/frameworks/base", "device/build", "build",
+            "master", "develop", "release/1.0", "release-42", "refs/heads/master",
+            "src/main/java/com/example/Foo.java", "src/main/resources/config.xml", "pom.xml", "README.txt",
+            "docs/README.txt", "");
+
+    /**
+     * Tests that a compiled pattern gives the same answer as {@link CompareType#matches(String, String)}
+     * for all the compare types over realistic project, branch and file names.
+     */
+    @Test
+    public void testCompiledMatchesSameAsMatches() {
+        for (CompareType type : CompareType.values()) {
+            for (String pattern : PATTERNS) {
+                CompiledPattern compiled = type.compile(pattern);
+                for (String str : STRINGS) {
+                    assertEquals(type + " " + pattern + " " + str,
+                            type.matches(pattern, str), compiled.matches(str));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that an invalid regular expression is reported when compiled.
+     */
+    @Test(expected = PatternSyntaxException.class)
+    public void testCompileInvalidRegExp() {
+        CompareType.REG_EXP.compile("release-[0-9");
+    }
+
+    /**
+     * Tests that a rule with an invalid pattern never matches.
+     */
+    @Test
+    public void testInvalidPatternNeverMatches() {
+        Branch branch = new Branch(CompareType.REG_EXP, "release-[0-9");
+        assertSame(CompiledPattern.NONE, branch.getCompiledPattern());
+        assertFalse(branch.isInteresting("release-[0-9"));
+    }
+
+    /**
+     * Tests that the compiled pattern of a rule follows changes to the pattern.
+     */
+    @Test
+    public void testSetPatternRecompiles() {
+        Branch branch = new Branch(CompareType.PLAIN, "master");
+        assertEquals(true, branch.isInteresting("master"));
+        branch.setPattern("develop");
+        assertEquals(false, branch.isInteresting("master"));
+        branch.setCompareType(CompareType.REG_EXP);
+        branch.setPattern("mas.*");
+        assertEquals(true, branch.isInteresting("master"));
+    }
+
+    /**
+     * Tests {@link CompareType#checkPattern(String, String)}.
+     */
+    @Test
+    public void testCheckPattern() {
+        assertEquals(FormValidation.Kind.OK, CompareType.checkPattern("REG_EXP", "release-[0-9]+").kind);
+        assertEquals(FormValidation.Kind.ERROR, CompareType.checkPattern("REG_EXP", "release-[0-9").kind);
+        assertEquals(FormValidation.Kind.OK, CompareType.checkPattern("PLAIN", "release-[0-9").kind);
+        assertEquals(FormValidation.Kind.OK, CompareType.checkPattern("ANT", "release/**").kind);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *  The MIT License
+ *
+ *  Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link FilePathMatcher}.
+ */
+public class FilePathMatcherTest {
+
+    private static final List<FilePath> RULES = Arrays.asList(
+            new FilePath(CompareType.PLAIN, "README.md"),
+            new FilePath(CompareType.PLAIN, "docs/Index.html"),
+            new FilePath(CompareType.ANT, "src/main/java/**"),
+            new FilePath(CompareType.ANT, "src/main/resources/**/*.jelly"),
+            new FilePath(CompareType.ANT, "src/*/java/**/Test*.java"),
+            new FilePath(CompareType.ANT, "build/pom.xml"),
+            new FilePath(CompareType.ANT, "docs"),
+            new FilePath(CompareType.ANT, "**/*.properties"),
+            new FilePath(CompareType.ANT, "/abs/**"),
+            new FilePath(CompareType.REG_EXP, "tools/.*\\.sh"),
+            new FilePath(CompareType.REG_EXP, ".*/generated/.*"),
+            new FilePath(CompareType.REG_EXP, "(a)\\1/.*"),
+            new FilePath(CompareType.REG_EXP, "broken[regexp"));
+
+    private static final List<String> FILES = Arrays.asList(
+            "README.md", "readme.MD", "docs/index.html", "docs", "docs/other.html",
+            "src/main/java/Foo.java", "src/main/java", "src/test/java/com/TestFoo.java", "src/test/java/Foo.java",
+            "src/main/resources/a/b/config.jelly", "src/main/resources/config.jelly", "src/main/resources/x.xml",
+            "build/pom.xml", "build/other/pom.xml", "pom.xml", "Messages.properties", "a/b/c/Messages.properties",
+            "/abs/file", "abs/file", "tools/run.sh", "tools/sub/run.sh", "x/generated/y", "aa/z", "ab/z", "",
+            "broken[regexp", "src//main/java/Foo.java");
+
+    /**
+     * Tests that each file gives the same answer as asking every rule one by one.
+     */
+    @Test
+    public void testSameAsEachRule() {
+        for (int i = 0; i < RULES.size(); i++) {
+            for (int j = i; j <= RULES.size(); j++) {
+                List<FilePath> rules = RULES.subList(i, j);
+                FilePathMatcher matcher = new FilePathMatcher(rules);
+                for (String file : FILES) {
+                    List<String> files = Collections.singletonList(file);
+                    assertEquals(rules + " " + file, anyRule(rules, files), matcher.matchesAny(files));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests random lists of files against random sets of rules.
+     */
+    @Test
+    public void testRandomFileLists() {
+        //CS IGNORE MagicNumber FOR NEXT 15 LINES. REASON: Test data.
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            List<FilePath> rules = new ArrayList<FilePath>();
+            for (FilePath rule : RULES) {
+                if (random.nextBoolean()) {
+                    rules.add(rule);
+                }
+            }
+            List<String> files = new ArrayList<String>();
+            int count = random.nextInt(5);
+            for (int i = 0; i < count; i++) {
+                files.add(FILES.get(random.nextInt(FILES.size())));
+            }
+            assertEquals(rules + " " + files, anyRule(rules, files), new FilePathMatcher(rules).matchesAny(files));
+        }
+    }
+
+    /**
+     * Tests that the matcher knows when the list of rules has changed.
+     */
+    @Test
+    public void testIsFor() {
+        List<FilePath> rules = new ArrayList<FilePath>(RULES);
+        FilePathMatcher matcher = new FilePathMatcher(rules);
+        assertTrue(matcher.isFor(rules));
+        assertFalse(matcher.isFor(new ArrayList<FilePath>(RULES)));
+        rules.add(new FilePath(CompareType.PLAIN, "new.txt"));
+        assertFalse(matcher.isFor(rules));
+    }
+
+    /**
+     * The answer of the rules one by one.
+     *
+     * @param rules the rules.
+     * @param files the files.
+     * @return true if any rule is interesting.
+     */
+    private static boolean anyRule(List<FilePath> rules, List<String> files) {
+        for (FilePath rule : rules) {
+            if (rule.isInteresting(files)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.events;
+
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Approval;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link PluginCommentAddedEvent}.
+ */
+public class PluginCommentAddedEventTest {
+
+    /**
+     * Tests that approval values are compared as numbers.
+     */
+    @Test
+    public void testMatchNormalizesValues() {
+        PluginCommentAddedEvent plusOne = new PluginCommentAddedEvent("Code-Review", "+1");
+        assertTrue(plusOne.match(createApproval("Code-Review", "1")));
+        assertTrue(plusOne.match(createApproval("Code-Review", "+1")));
+        assertFalse(plusOne.match(createApproval("Code-Review", "2")));
+        assertFalse(plusOne.match(createApproval("Verified", "1")));
+
+        PluginCommentAddedEvent one = new PluginCommentAddedEvent("Code-Review", "1");
+        assertTrue(one.match(createApproval("Code-Review", "+1")));
+        assertFalse(one.match(createApproval("Code-Review", "-1")));
+
+        PluginCommentAddedEvent minusTwo = new PluginCommentAddedEvent("Code-Review", "-2");
+        assertTrue(minusTwo.match(createApproval("Code-Review", "-2")));
+        assertFalse(minusTwo.match(createApproval("Code-Review", "2")));
+    }
+
+    /**
+     * Tests that values that aren't numbers are still compared as text,
+     * also when the configuration was loaded without the constructor.
+     */
+    @Test
+    public void testMatchTextValues() {
+        PluginCommentAddedEvent event = new PluginCommentAddedEvent("Workflow", "+Submit");
+        assertTrue(event.match(createApproval("Workflow", "Submit")));
+        assertFalse(event.match(createApproval("Workflow", "1")));
+        assertFalse(event.match(createApproval(null, "Submit")));
+
+        PluginCommentAddedEvent loaded = (PluginCommentAddedEvent)new PluginCommentAddedEvent("Verified", "1")
+                .readResolve();
+        assertTrue(loaded.match(createApproval("Verified", "+1")));
+    }
+
+    /**
+     * Creates an approval.
+     *
+     * @param type the type.
+     * @param value the value.
+     * @return the approval.
+     */
+    private static Approval createApproval(String type, String value) {
+        Approval approval = new Approval();
+        approval.setType(type);
+        approval.setValue(value);
+        return approval;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.playback;
+
+import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Account;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.CommentAdded;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefReplicated;
+import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefUpdated;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link EventTimeSlice}.
+ */
+public class EventTimeSliceTest {
+
+    private static final long TIME_SLICE = 1418133772000L;
+    private static final int MANY_EVENTS = 50000;
+
+    /**
+     * Tests that two event objects with the same type, change, patch set and creation time
+     * are treated as the same event.
+     */
+    @Test
+    public void testSameEventIsOnlyAddedOnce() {
+        EventTimeSlice slice = new EventTimeSlice(TIME_SLICE);
+        slice.addEvent(Setup.createPatchsetCreated());
+        PatchsetCreated same = Setup.createPatchsetCreated();
+        assertTrue(slice.containsEvent(same));
+        slice.addEvent(same);
+        assertEquals(1, slice.getEvents().size());
+    }
+
+    /**
+     * Tests that events of other patch sets or types are kept apart.
+     */
+    @Test
+    public void testDifferentEventsAreKeptApart() {
+        EventTimeSlice slice = new EventTimeSlice(TIME_SLICE);
+        slice.addEvent(Setup.createPatchsetCreated());
+        PatchsetCreated otherPatchSet = Setup.createPatchsetCreated();
+        otherPatchSet.getPatchSet().setNumber("2");
+        RefUpdated refUpdated = Setup.createRefUpdated("defaultServer", "project", "refs/heads/master");
+        assertFalse(slice.containsEvent(otherPatchSet));
+        assertFalse(slice.containsEvent(refUpdated));
+        slice.addEvent(otherPatchSet);
+        slice.addEvent(refUpdated);
+        //CS IGNORE MagicNumber FOR NEXT 1 LINES. REASON: Test data.
+        assertEquals(3, slice.getEvents().size());
+    }
+
+    /**
+     * Tests that events created in the same second are kept apart when they are about other projects, refs or
+     * replication nodes, or caused by other accounts.
+     */
+    @Test
+    public void testEventsOfTheSameSecondAreKeptApart() {
+        EventTimeSlice slice = new EventTimeSlice(TIME_SLICE);
+        slice.addEvent(Setup.createRefUpdated("defaultServer", "project", "refs/heads/master"));
+        RefUpdated otherProject = Setup.createRefUpdated("defaultServer", "other", "refs/heads/master");
+        RefUpdated otherBranch = Setup.createRefUpdated("defaultServer", "project", "refs/heads/stable");
+        assertFalse(slice.containsEvent(otherProject));
+        assertFalse(slice.containsEvent(otherBranch));
+        assertTrue(slice.containsEvent(Setup.createRefUpdated("defaultServer", "project", "refs/heads/master")));
+
+        slice.addEvent(Setup.createRefReplicatedEvent("project", "refs/heads/master", "defaultServer", "slaveA",
+                RefReplicated.SUCCEEDED_STATUS));
+        assertFalse(slice.containsEvent(Setup.createRefReplicatedEvent("project", "refs/heads/master",
+                "defaultServer", "slaveB", RefReplicated.SUCCEEDED_STATUS)));
+
+        CommentAdded comment = Setup.createCommentAdded();
+        slice.addEvent(comment);
+        CommentAdded otherAccount = Setup.createCommentAdded();
+        Account account = new Account();
+        account.setEmail("other@domain.com");
+        account.setName("Other");
+        otherAccount.setAccount(account);
+        assertFalse(slice.containsEvent(otherAccount));
+        assertTrue(slice.containsEvent(Setup.createCommentAdded()));
+    }
+
+    /**
+     * Tests that a copy, like a slice read back from disk, can look up the events it was created with.
+     */
+    @Test
+    public void testCopyContainsEvents() {
+        EventTimeSlice slice = new EventTimeSlice(TIME_SLICE);
+        slice.addEvent(Setup.createPatchsetCreated());
+        EventTimeSlice copy = slice.copy();
+        assertTrue(copy.containsEvent(Setup.createPatchsetCreated()));
+        copy.addEvent(Setup.createPatchsetCreated());
+        assertEquals(1, copy.getEvents().size());
+    }
+
+    /**
+     * Tests that a large number of events in the same time slice can be added and looked up,
+     * which used to be a scan of the whole list for each event.
+     */
+    //CS IGNORE MagicNumber FOR NEXT 1 LINES. REASON: Test data.
+    @Test(timeout = 10000)
+    public void testManyEvents() {
+        EventTimeSlice slice = new EventTimeSlice(TIME_SLICE);
+        for (int i = 0; i < MANY_EVENTS; i++) {
+            PatchsetCreated event = Setup.createPatchsetCreated();
+            event.getChange().setNumber(String.valueOf(i));
+            slice.addEvent(event);
+        }
+        for (int i = 0; i < MANY_EVENTS; i++) {
+            PatchsetCreated event = Setup.createPatchsetCreated();
+            event.getChange().setNumber(String.valueOf(i));
+            assertTrue(slice.containsEvent(event));
+        }
+        assertEquals(MANY_EVENTS, slice.getEvents().size());
+    }
+}
@@ -51,6 +51,7 @@ import java.io.PrintWriter;
 import java.util.Date;
 import java.util.Random;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -203,6 +204,39 @@ public class GerritMissedEventsLoadPersistTest {
         assertNotNull(missingEventsPlaybackManager.serverTimestamp);
     }
 
+    /**
+     * Given a server without a previous timestamp
+     * When several events are received within the write interval
+     * Then the timestamp updates are coalesced into one write
+     * And the write happens when the connection goes down.
+     * @throws IOException if it occurs.
+     */
+    @Test
+    public void testPersistIsCoalescedAndFlushedOnConnectionDown() throws IOException {
+        GerritMissedEventsPlaybackManager missingEventsPlaybackManager
+                = new GerritMissedEventsPlaybackManager("defaultServer");
+
+        PatchsetCreated patchsetCreated = Setup.createPatchsetCreated("someGerritServer", "someProject",
+                "refs/heads/master");
+        missingEventsPlaybackManager.gerritEvent(patchsetCreated);
+        missingEventsPlaybackManager.gerritEvent(patchsetCreated);
+        missingEventsPlaybackManager.gerritEvent(patchsetCreated);
+
+        assertEquals(0, missingEventsPlaybackManager.getFlushCount());
+        assertEquals(2, missingEventsPlaybackManager.getCoalescedWrites());
+
+        missingEventsPlaybackManager.connectionDown();
+        assertEquals(1, missingEventsPlaybackManager.getFlushCount());
+        EventTimeSlice persisted = (EventTimeSlice)GerritMissedEventsPlaybackManager
+                .getConfigXml("defaultServer").read();
+        assertEquals(patchsetCreated.getEventCreatedOn().getTime(), persisted.getTimeSlice());
+        assertEquals(1, persisted.getEvents().size());
+
+        //Nothing new to write
+        missingEventsPlaybackManager.flush();
+        assertEquals(1, missingEventsPlaybackManager.getFlushCount());
+    }
+
     /**
      * Return a missingEventsPlaybackManager.
      * @return missingEventsPlaybackManager.
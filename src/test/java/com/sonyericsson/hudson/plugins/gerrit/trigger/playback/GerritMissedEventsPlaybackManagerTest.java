@@ -54,12 +54,16 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
@@ -334,4 +338,58 @@ public class GerritMissedEventsPlaybackManagerTest {
 
     }
 
+    /**
+     * Creates a patchset-created event in json for the events-log plugin.
+     * @param patchSet the patch set number.
+     * @return the json.
+     */
+    private static String createPatchsetCreatedJson(String patchSet) {
+        return "{\"type\":\"patchset-created\",\"change\":{\"project\":\"testProject\",\"branch\":\"develop\","
+                + "\"id\":\"Icae2322236e0e521950a0232effda08d6ffcdab7\",\"number\":\"392335\","
+                + "\"subject\":\"subject\",\"owner\":{\"name\":\"Name\",\"email\":\"name@abc.com\"},"
+                + "\"url\":\"https://abc.aaa.se/392335\",\"status\":\"NEW\"},"
+                + "\"patchSet\":{\"number\":\"" + patchSet + "\",\"revision\":\"607eea8f472235b3ee47483b6\","
+                + "\"ref\":\"refs/changes/35/392335/" + patchSet + "\",\"uploader\":{\"name\":\"Name\","
+                + "\"email\":\"name@abc.com\"},\"createdOn\":1413448337},"
+                + "\"uploader\":{\"name\":\"Name\",\"email\":\"name@abc.com\"},\"eventCreatedOn\":1413448337}";
+    }
+
+    /**
+     * Given a Gerrit Server with Events-log plugin installed
+     * When we request the events from a time range longer than the playback window
+     * Then the range is requested one window at a time
+     * And every event of every response is handed over as it is read.
+     * @throws IOException if it occurs.
+     */
+    @Test
+    public void testEventsArePagedByTimeWindow() throws IOException {
+        GerritMissedEventsPlaybackManager missingEventsPlaybackManager =
+                setupManager();
+
+        stubFor(get(urlMatching(EVENTS_LOG_CHANGE_EVENTS_URL_REGEXP))
+                .willReturn(aResponse()
+                        .withStatus(HTTPOK)
+                        .withHeader("Content-Type", "text/html")
+                        .withBody(createPatchsetCreatedJson("1") + "\ngarbage\n" + createPatchsetCreatedJson("2"))));
+
+        Date lowerDate = new Date(System.currentTimeMillis()
+                - 2 * GerritMissedEventsPlaybackManager.PLAYBACK_WINDOW_MILLIS - SLEEPTIME);
+        final List<GerritTriggeredEvent> handled = new ArrayList<GerritTriggeredEvent>();
+        int count = missingEventsPlaybackManager.playBackEventsFromDateRange(lowerDate,
+                new GerritMissedEventsPlaybackManager.MissedEventHandler() {
+                    @Override
+                    public void handle(GerritTriggeredEvent evt) {
+                        handled.add(evt);
+                    }
+                });
+
+        //CS IGNORE MagicNumber FOR NEXT 4 LINES. REASON: Test data.
+        verify(3, getRequestedFor(urlMatching(EVENTS_LOG_CHANGE_EVENTS_URL_REGEXP)));
+        verify(2, getRequestedFor(urlMatching(EVENTS_LOG_CHANGE_EVENTS_URL_REGEXP + "&t2=.+")));
+        assertEquals(6, count);
+        assertEquals(6, handled.size());
+
+        //The same events returned by several windows are only listed once
+        assertEquals(2, missingEventsPlaybackManager.getEventsFromDateRange(lowerDate).size());
+    }
 }
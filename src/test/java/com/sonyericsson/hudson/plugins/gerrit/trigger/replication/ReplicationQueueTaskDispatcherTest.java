@@ -30,6 +30,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -62,6 +63,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
+import com.sonymobile.tools.gerrit.gerritevents.dto.attr.Provider;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeAbandoned;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeBasedEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.ChangeMerged;
@@ -72,6 +74,9 @@ import com.sonymobile.tools.gerrit.gerritevents.dto.events.GerritTriggeredEvent;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.PatchsetCreated;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefReplicated;
 import com.sonymobile.tools.gerrit.gerritevents.dto.events.RefUpdated;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.JenkinsAwareGerritHandler;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.events.ManualPatchsetCreated;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritCause;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritManualCause;
@@ -84,7 +89,7 @@ import com.sonyericsson.hudson.plugins.gerrit.trigger.mock.Setup;
  * @author Hugo Arès &lt;hugo.ares@ericsson.com&gt;
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest(Jenkins.class)
+@PrepareForTest({Jenkins.class, PluginImpl.class })
 public class ReplicationQueueTaskDispatcherTest {
 
     private ReplicationQueueTaskDispatcher dispatcher;
@@ -95,6 +100,9 @@ public class ReplicationQueueTaskDispatcherTest {
 
     private static final int HOURSBEFORECHANGEMERGEDFORPATCHSET = -8;
     private static final int HOURBEFOREREPLICATIONCACHECREATED = -1;
+    private static final int MILLISBETWEENSLAVETIMEOUTS = 1500;
+    private static final long SECONDSTOWAITFORTIMEOUT = 5;
+    private static final long MILLISBETWEENPOLLS = 10;
 
     /**
      * Create ReplicationQueueTaskDispatcher with a mocked GerritHandler.
@@ -274,6 +282,39 @@ public class ReplicationQueueTaskDispatcherTest {
         verify(queueMock, times(1)).maintain();
     }
 
+    /**
+     * Test that a replication event posted from the stream of events to the Jenkins aware handler reaches
+     * the dispatcher even though no trigger on the server is configured for replication events.
+     *
+     * @throws InterruptedException if so.
+     */
+    @Test
+    public void shouldUnblockItemWhenReplicationIsPostedToHandler() throws InterruptedException {
+        PowerMockito.mockStatic(PluginImpl.class);
+        when(PluginImpl.getServer_("someGerritServer")).thenReturn(new GerritServer("someGerritServer"));
+        JenkinsAwareGerritHandler handler = new JenkinsAwareGerritHandler(1);
+        try {
+            dispatcher = new ReplicationQueueTaskDispatcher(handler, ReplicationCache.Factory.createCache());
+            PatchsetCreated patchsetCreated = Setup.createPatchsetCreated("someGerritServer", "someProject",
+                    "refs/changes/1/1/1");
+            Item item = createItem(patchsetCreated, new String[] {"slaveA"});
+            assertNotNull("The item should be blocked", dispatcher.canRun(item));
+
+            handler.post("{\"type\":\"ref-replicated\",\"project\":\"someProject\","
+                    + "\"ref\":\"refs/changes/1/1/1\",\"status\":\"" + RefReplicated.SUCCEEDED_STATUS + "\","
+                    + "\"targetNode\":\"slaveA\"}",
+                    new Provider("someGerritServer", "localhost", "29418", "ssh", "http://localhost/", "2.9"));
+
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(SECONDSTOWAITFORTIMEOUT);
+            while (dispatcher.canRun(item) != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(MILLISBETWEENPOLLS);
+            }
+            assertNull("Item should not be blocked", dispatcher.canRun(item));
+        } finally {
+            handler.shutdown(true);
+        }
+    }
+
     /**
      * Test that it should NOT block item if patchset has expired compared to
      * when the Change Merged event is received.
@@ -528,7 +569,62 @@ public class ReplicationQueueTaskDispatcherTest {
         ReplicationFailedAction replicationFailedAction = item.getAction(ReplicationFailedAction.class);
         assertNotNull("Item should be tagged with replicationFailedAction", replicationFailedAction);
         assertTrue(replicationFailedAction.getReason().contains("slave2"));
+        //the timeout asked for a maintenance to unblock the item
+        verify(queueMock, times(1)).maintain();
+    }
+
+    /**
+     * Test that the replication timeout unblocks the item from a scheduler, without the queue polling it.
+     */
+    @Test
+    public void shouldFireQueueMaintenanceWhenSlaveReplicationTimeoutIsReached() {
+        PatchsetCreated patchsetCreated = Setup.createPatchsetCreated("someGerritServer", "someProject",
+                "refs/changes/1/1/1");
+        Item item = createItem(patchsetCreated, null);
+        List<GerritSlave> gerritSlaves = new ArrayList<GerritSlave>();
+        gerritSlaves.add(new GerritSlave("slave1", "host1", 1)); // slave timeout is 1 second
+        when(gerritTriggerMock.gerritSlavesToWaitFor("someGerritServer")).thenReturn(gerritSlaves);
+
+        assertNotNull("the item should be blocked", dispatcher.canRun(item));
+
+        verify(queueMock, timeout((int)TimeUnit.SECONDS.toMillis(SECONDSTOWAITFORTIMEOUT)).times(1)).maintain();
+        assertNull("Item should not be blocked", dispatcher.canRun(item));
+        assertNotNull("Item should be tagged with replicationFailedAction",
+                item.getAction(ReplicationFailedAction.class));
+    }
+
+    /**
+     * Test that the timeout of a Gerrit slave that has replicated does not unblock the item,
+     * it waits for the timeout of the slave it still waits for.
+     * @throws InterruptedException if test fails
+     */
+    @Test
+    public void shouldWaitForTimeoutOfSlaveStillWaitedFor() throws InterruptedException {
+        PatchsetCreated patchsetCreated = Setup.createPatchsetCreated("someGerritServer", "someProject",
+                "refs/changes/1/1/1");
+        Item item = createItem(patchsetCreated, null);
+        List<GerritSlave> gerritSlaves = new ArrayList<GerritSlave>();
+        gerritSlaves.add(new GerritSlave("slave1", "host1", 1)); // slave timeout is 1 second
+        gerritSlaves.add(new GerritSlave("slave2", "host2", 2)); // slave timeout is 2 seconds
+        when(gerritTriggerMock.gerritSlavesToWaitFor("someGerritServer")).thenReturn(gerritSlaves);
+
+        assertNotNull("the item should be blocked", dispatcher.canRun(item));
+        dispatcher.gerritEvent(Setup.createRefReplicatedEvent("someProject", "refs/changes/1/1/1", "someGerritServer",
+                "host1", RefReplicated.SUCCEEDED_STATUS));
+
+        //the timeout of slave1 has passed but it has replicated
+        Thread.sleep(MILLISBETWEENSLAVETIMEOUTS);
+        CauseOfBlockage cause = dispatcher.canRun(item);
+        assertNotNull("the item should be blocked", cause);
+        assertTrue(cause.getShortDescription().contains("slave2"));
         verify(queueMock, times(0)).maintain();
+
+        //the timeout of slave2 unblocks the item
+        verify(queueMock, timeout((int)TimeUnit.SECONDS.toMillis(SECONDSTOWAITFORTIMEOUT)).times(1)).maintain();
+        assertNull("Item should not be blocked", dispatcher.canRun(item));
+        ReplicationFailedAction replicationFailedAction = item.getAction(ReplicationFailedAction.class);
+        assertNotNull("Item should be tagged with replicationFailedAction", replicationFailedAction);
+        assertTrue(replicationFailedAction.getReason().contains("slave2"));
     }
 
     /**
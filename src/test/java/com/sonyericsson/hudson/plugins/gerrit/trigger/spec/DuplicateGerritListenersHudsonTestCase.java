@@ -173,7 +173,7 @@ public class DuplicateGerritListenersHudsonTestCase {
         Collection<GerritEventListener> gerritEventListeners =
                 Whitebox.getInternalState(handler, "gerritEventListeners");
         int nbrOfListeners = 0;
-        nbrOfListeners++; // EventListener adds 1 listener
+        nbrOfListeners++; // GerritProjectList adds 1 listener
         nbrOfListeners++; // DependencyQueueTaskDispatcher adds 1 listener
         nbrOfListeners++; // ReplicationQueueTaskDispatcher adds 1 listener
         if (server.isConnected() && server.getConfig().isEnableProjectAutoCompletion()
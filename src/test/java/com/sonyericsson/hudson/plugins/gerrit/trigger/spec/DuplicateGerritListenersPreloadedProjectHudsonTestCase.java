@@ -31,12 +31,14 @@ import com.gargoylesoftware.htmlunit.util.UrlUtils;
 import com.gargoylesoftware.htmlunit.xml.XmlPage;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.GerritServer;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.PluginImpl;
+import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritProjectList;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.GerritTrigger;
 import com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.data.GerritProject;
 import com.sonymobile.tools.gerrit.gerritevents.GerritEventListener;
 import com.sonymobile.tools.gerrit.gerritevents.GerritHandler;
 import hudson.model.FreeStyleProject;
 import hudson.model.Item;
+import hudson.model.Job;
 import hudson.model.TopLevelItem;
 import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
@@ -76,7 +78,6 @@ import java.util.List;
 
 import static com.sonyericsson.hudson.plugins.gerrit.trigger.mock.DuplicatesUtil.createGerritTriggeredJob;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -215,35 +216,27 @@ public class DuplicateGerritListenersPreloadedProjectHudsonTestCase {
     }
 
     /**
-     * Checks the list of event listeners for a single
-     * {@link com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.EventListener}
-     * that points to a {@link GerritTrigger} and checks if that is configured for the project pattern.
+     * Checks that {@link GerritProjectList} is listening and that it routes to a single {@link GerritTrigger}
+     * that is configured for the project pattern.
      *
      * @param gerritProjectPattern the pattern to check
      * @throws Exception if so
      */
     private void assertEventListenerWithSomeOtherProjectSet(String gerritProjectPattern) throws Exception {
-        Collection<GerritEventListener> eventListeners = getGerritEventListeners();
-        boolean found = false;
-        for (GerritEventListener listener : eventListeners) {
-            if (listener.getClass().getName().equals(
-                    "com.sonyericsson.hudson.plugins.gerrit.trigger.hudsontrigger.EventListener")) {
-                found = true;
-                GerritTrigger trigger = Whitebox.invokeMethod(listener, "getTrigger");
-                assertNotNull("No Trigger for EventListener", trigger);
-                assertSame(Whitebox.getInternalState(trigger, "job"), j.jenkins.getItem("testProj"));
-                List<GerritProject> projectList = trigger.getGerritProjects();
-                assertEquals(2, projectList.size());
-                boolean foundSomeOtherProject = false;
-                for (GerritProject project : projectList) {
-                    if (gerritProjectPattern.equals(project.getPattern())) {
-                        foundSomeOtherProject = true;
-                    }
-                }
-                assertTrue("Could not find " + gerritProjectPattern, foundSomeOtherProject);
+        assertTrue("No GerritProjectList", getGerritEventListeners().contains(GerritProjectList.getInstance()));
+        List<GerritTrigger> triggers = getRegisteredTriggers();
+        assertEquals("No single registered trigger", 1, triggers.size());
+        GerritTrigger trigger = triggers.get(0);
+        assertSame(Whitebox.getInternalState(trigger, "job"), j.jenkins.getItem("testProj"));
+        List<GerritProject> projectList = trigger.getGerritProjects();
+        assertEquals(2, projectList.size());
+        boolean foundSomeOtherProject = false;
+        for (GerritProject project : projectList) {
+            if (gerritProjectPattern.equals(project.getPattern())) {
+                foundSomeOtherProject = true;
             }
         }
-        assertTrue("No EventListener", found);
+        assertTrue("Could not find " + gerritProjectPattern, foundSomeOtherProject);
     }
 
     /**
@@ -351,12 +344,15 @@ public class DuplicateGerritListenersPreloadedProjectHudsonTestCase {
     /**
      * Checks the size of the listeners collection retrieved by {@link #getGerritEventListeners()}.
      *
-     * @param extra number of added listeners, other than the default.
+     * The triggers don't add listeners of their own, they are counted in {@link GerritProjectList} instead.
+     *
+     * @param extra number of added triggers, other than the default.
      */
     void assertNrOfEventListeners(int extra) {
+        assertEquals(extra + 1, getRegisteredTriggers().size());
         Collection<GerritEventListener> gerritEventListeners = getGerritEventListeners();
-        int nbrOfListeners = extra;
-        nbrOfListeners++; // EventListener adds 1 listener
+        int nbrOfListeners = 0;
+        nbrOfListeners++; // GerritProjectList adds 1 listener
         nbrOfListeners++; // DependencyQueueTaskDispatcher adds 1 listener
         nbrOfListeners++; // ReplicationQueueTaskDispatcher adds 1 listener
         GerritServer server = PluginImpl.getServer_(PluginImpl.DEFAULT_SERVER_NAME);
@@ -378,4 +374,20 @@ public class DuplicateGerritListenersPreloadedProjectHudsonTestCase {
                 getServer(PluginImpl.DEFAULT_SERVER_NAME), GerritHandler.class);
         return Whitebox.getInternalState(handler, "gerritEventListeners");
     }
+
+    /**
+     * Gets the triggers in {@link GerritProjectList} that belong to jobs in this Jenkins instance.
+     *
+     * @return the triggers.
+     */
+    private List<GerritTrigger> getRegisteredTriggers() {
+        List<GerritTrigger> triggers = new ArrayList<GerritTrigger>();
+        for (GerritTrigger trigger : GerritProjectList.getTriggers()) {
+            Job job = Whitebox.getInternalState(trigger, "job");
+            if (job != null && j.jenkins.getItemByFullName(job.getFullName(), Job.class) == job) {
+                triggers.add(trigger);
+            }
+        }
+        return triggers;
+    }
 }
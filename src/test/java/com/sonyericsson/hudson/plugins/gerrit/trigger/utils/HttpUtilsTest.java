@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Sony Mobile Communications Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.sonyericsson.hudson.plugins.gerrit.trigger.utils;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import org.apache.http.HttpResponse;
+import org.apache.http.pool.PoolStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link HttpUtils} against a local HTTP stub.
+ */
+public class HttpUtilsTest {
+
+    private static final int PORT = 8090;
+    private static final int REQUESTS = 5;
+    private static final String PLUGIN_PATH = "/plugins/events-log/";
+
+    /**
+     * The local HTTP stub.
+     */
+    // CS IGNORE VisibilityModifier FOR NEXT 2 LINES. REASON: WireMockRule.
+    @Rule
+    public final WireMockRule wireMockRule = new WireMockRule(PORT);
+
+    private MockPluginCheckerConfig config;
+
+    /**
+     * Creates a config for the stub and a response for the plugin.
+     */
+    @Before
+    public void setUp() {
+        config = new MockPluginCheckerConfig();
+        config.setGerritFrontEndURL("http://localhost:" + PORT);
+        config.setUseRestApi(true);
+        config.setGerritHttpUserName("user");
+        config.setGerritHttpPassword("passwd");
+
+        stubFor(get(urlEqualTo(PLUGIN_PATH))
+                .willReturn(aResponse()
+                        .withStatus(HttpURLConnection.HTTP_OK)
+                        .withBody("{}")));
+    }
+
+    /**
+     * Closes the client used by the test.
+     */
+    @After
+    public void tearDown() {
+        HttpUtils.closeClient(config);
+    }
+
+    /**
+     * Tests that requests to the same server reuse one kept-alive connection.
+     * @throws IOException if it occurs.
+     */
+    @Test
+    public void testConnectionIsReused() throws IOException {
+        for (int i = 0; i < REQUESTS; i++) {
+            HttpResponse response = HttpUtils.performHTTPGet(config, "http://localhost:" + PORT + PLUGIN_PATH);
+            assertEquals(HttpURLConnection.HTTP_OK, response.getStatusLine().getStatusCode());
+            HttpUtils.release(response);
+        }
+        PoolStats stats = HttpUtils.getPoolStats(config);
+        assertEquals(0, stats.getLeased());
+        assertEquals(1, stats.getAvailable());
+        assertEquals(HttpUtils.DEFAULT_MAX_CONNECTIONS_PER_SERVER, stats.getMax());
+        assertEquals(REQUESTS, HttpUtils.getRequestCount(config));
+    }
+
+    /**
+     * Tests that a connection is leased until its response is released.
+     * @throws IOException if it occurs.
+     */
+    @Test
+    public void testConnectionIsLeasedUntilReleased() throws IOException {
+        HttpResponse response = HttpUtils.performHTTPGet(config, "http://localhost:" + PORT + PLUGIN_PATH);
+        assertEquals(1, HttpUtils.getPoolStats(config).getLeased());
+        HttpUtils.release(response);
+        assertEquals(0, HttpUtils.getPoolStats(config).getLeased());
+    }
+
+    /**
+     * Tests that the plugin check gives its connection back to the pool.
+     */
+    @Test
+    public void testPluginCheckReleasesConnection() {
+        for (int i = 0; i < REQUESTS; i++) {
+            assertTrue(GerritPluginChecker.isPluginEnabled(config, "events-log"));
+        }
+        PoolStats stats = HttpUtils.getPoolStats(config);
+        assertEquals(0, stats.getLeased());
+        assertEquals(1, stats.getAvailable());
+    }
+
+    /**
+     * Tests that closing the client removes it and its statistics.
+     * @throws IOException if it occurs.
+     */
+    @Test
+    public void testCloseClient() throws IOException {
+        HttpUtils.release(HttpUtils.performHTTPGet(config, "http://localhost:" + PORT + PLUGIN_PATH));
+        HttpUtils.closeClient(config);
+        assertNull(HttpUtils.getPoolStats(config));
+        assertEquals(0, HttpUtils.getRequestCount(config));
+    }
+}